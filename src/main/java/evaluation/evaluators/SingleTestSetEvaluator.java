@@ -18,10 +18,15 @@ package evaluation.evaluators;
 
 import evaluation.evaluators.Evaluator;
 import evaluation.storage.ClassifierResults;
+import java.util.Iterator;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import static utilities.GenericTools.indexOfMax;
 
 import tsml.classifiers.Interpretable;
+import tsml.classifiers.TSClassifier;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.ts_fileIO.TSReader;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -89,6 +94,47 @@ public class SingleTestSetEvaluator extends Evaluator {
         return res;
     }
 
+    /**
+     * Gathers predictions on a test set which is streamed from file rather than loaded, so that arbitrarily large
+     * test sets can be scored in constant memory. The reader should be created with TSReader.streaming, and is
+     * consumed by this call. Data is never cloned here as each instance is only seen once.
+     */
+    public synchronized ClassifierResults evaluate(TSClassifier classifier, TSReader testData) throws Exception {
+        
+        final String[] classLabels = testData.getClassLabels();
+
+        ClassifierResults res = new ClassifierResults(classLabels.length);
+        res.setTimeUnit(TimeUnit.NANOSECONDS);
+        res.setClassifierName(classifier.getClassifier().getClass().getSimpleName());
+        res.setDatasetName(testData.getProblemName());
+        res.setFoldID(seed);
+        res.setSplit("train"); //todo revisit, or leave with the assumption that calling method will set this to test when needed
+
+        res.turnOffZeroTimingsErrors();
+        final Iterator<TimeSeriesInstance> iterator = testData.iterator();
+        while (iterator.hasNext()) {
+            TimeSeriesInstance testinst = iterator.next();
+            double trueClassVal = testinst.getLabelIndex();
+            if (setClassMissing)
+                testinst = new TimeSeriesInstance(testinst.stream().collect(Collectors.toList()), -1, Double.NaN);
+
+            long startTime = System.nanoTime();
+            double[] dist = classifier.distributionForInstance(testinst);
+            long predTime = System.nanoTime() - startTime;
+
+            if (vis) ((Interpretable)classifier.getClassifier()).lastClassifiedInterpretability();
+
+            res.addPrediction(trueClassVal, dist, indexOfMax(dist), predTime, ""); //todo indexOfMax does not break ties randomly.
+        }
+
+        res.turnOnZeroTimingsErrors();
+
+        res.finaliseResults();
+        res.findAllStatsOnce();
+        
+        return res;
+    }
+
     /**
      * Utility method, will build on the classifier on the train set and evaluate on the test set 
      */
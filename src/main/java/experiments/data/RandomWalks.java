@@ -0,0 +1,50 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package experiments.data;
+
+import java.util.Random;
+
+/**
+ * Synthetic series for tests, alongside the baked-in datasets of DatasetLoading. Random walks let a test choose the
+ * length, offset and number of series, and constant stretches exercise the special cases of zero variance.
+ */
+public class RandomWalks {
+
+    /**
+     * @param random the source of the standard normal steps, one per value after the first
+     * @param length the number of values
+     * @param start the first value, far from zero to expose cancellation in sums of squares
+     * @return a random walk of the given length
+     */
+    public static double[] randomWalk(Random random, int length, double start) {
+        double[] series = new double[length];
+        series[0] = start;
+        for (int i = 1; i < length; i++) {
+            series[i] = series[i - 1] + random.nextGaussian();
+        }
+        return series;
+    }
+
+    /**
+     * Hold the value before start over the values start to end-1, giving a constant stretch.
+     */
+    public static void flatten(double[] series, int start, int end) {
+        for (int i = start; i < end; i++) {
+            series[i] = series[start - 1];
+        }
+    }
+}
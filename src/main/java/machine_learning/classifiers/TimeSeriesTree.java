@@ -21,6 +21,7 @@ import weka.core.*;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 import static utilities.ArrayUtilities.normalise;
@@ -29,6 +30,10 @@ import static utilities.ArrayUtilities.sum;
 /**
  * Time series tree implementation from the time series forest (TSF) paper.
  *
+ * The tree is grown over a primitive copy of the training data. Each attribute keeps an array of instance indices
+ * sorted by value, and every node owns the same range of each array, partitioned in place when the node is split. The
+ * class counts below all k thresholds of an attribute are then found in a single pass over the node's range.
+ *
  * Author: Matthew Middlehurst
  **/
 public class TimeSeriesTree extends AbstractClassifier implements Randomizable, Serializable {
@@ -48,6 +53,17 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
     private double[] stdev;
     private int numAttributes;
 
+    //Only held while building, values[att][inst] are the (normalised) attribute values and sorted[att] the instance
+    //indices ordered by value for each attribute
+    private transient double[][] values;
+    private transient int[] classes;
+    private transient int numClasses;
+    private transient double[][] thresholds;
+    private transient int[][] thresholdOrder;
+    private transient int[][] sorted;
+    private transient boolean[] goesLeft;
+    private transient int[] buffer;
+
     protected static final long serialVersionUID = 1L;
 
     public TimeSeriesTree(){}
@@ -109,50 +125,73 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
 
         rand = new Random(seed);
 
-        Instances newData;
+        int numInstances = data.numInstances();
+        numClasses = data.numClasses();
+        values = new double[numAttributes][numInstances];
+        classes = new int[numInstances];
+        for (int j = 0; j < numInstances; j++){
+            Instance inst = data.instance(j);
+            for (int i = 0; i < numAttributes; i++){
+                values[i][j] = inst.value(i);
+            }
+            classes[j] = (int)inst.classValue();
+        }
+
         if (norm){
-            newData = new Instances(data);
             mean = new double[numAttributes];
             stdev = new double[numAttributes];
 
             for (int i = 0; i < numAttributes; i++){
-                for (Instance inst: newData){
-                    mean[i] += inst.value(i);
+                for (int j = 0; j < numInstances; j++){
+                    mean[i] += values[i][j];
                 }
-                mean[i] /= newData.numInstances();
+                mean[i] /= numInstances;
 
                 double squareSum = 0;
-                for (Instance inst: newData){
-                    double temp = inst.value(i) - mean[i];
+                for (int j = 0; j < numInstances; j++){
+                    double temp = values[i][j] - mean[i];
                     squareSum += temp * temp;
                 }
-                stdev[i] = Math.sqrt(squareSum/(newData.numInstances()-1));
+                stdev[i] = Math.sqrt(squareSum/(numInstances-1));
 
                 if (stdev[i] == 0) stdev[i] = 1;
 
-                for (Instance inst: newData){
-                    inst.setValue(i, (inst.value(i) - mean[i]) / stdev[i]);
+                for (int j = 0; j < numInstances; j++){
+                    values[i][j] = (values[i][j] - mean[i]) / stdev[i];
                 }
             }
         }
-        else{
-            newData = data;
-        }
 
-        double[][] thresholds = findThresholds(newData);
+        thresholds = findThresholds();
+        thresholdOrder = new int[numAttributes][];
+        sorted = new int[numAttributes][];
+        for (int i = 0; i < numAttributes; i++){
+            thresholdOrder[i] = sortIndices(thresholds[i]);
+            sorted[i] = sortIndices(values[i]);
+        }
+        goesLeft = new boolean[numInstances];
+        buffer = new int[numInstances];
 
-        double[] dist = new double[data.numClasses()];
-        for (Instance inst: data){
-            dist[(int)inst.classValue()]++;
+        double[] dist = new double[numClasses];
+        for (int j = 0; j < numInstances; j++){
+            dist[classes[j]]++;
         }
         double rootEntropy = 0;
-        for (int i = 0; i < data.numClasses(); i++) {
-            double p1 = dist[i]/data.numInstances();
+        for (int i = 0; i < numClasses; i++) {
+            double p1 = dist[i]/numInstances;
             rootEntropy += p1 > 0 ? -(p1*Math.log(p1)/log2) : 0;
         }
 
         root = new TreeNode();
-        root.buildTree(newData, thresholds, rootEntropy, dist);
+        root.buildTree(0, numInstances, rootEntropy, dist);
+
+        values = null;
+        classes = null;
+        thresholds = null;
+        thresholdOrder = null;
+        sorted = null;
+        goesLeft = null;
+        buffer = null;
     }
 
     @Override
@@ -215,13 +254,12 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
         return root.distributionForInstance(newInst, info);
     }
 
-    private double[][] findThresholds(Instances data){
+    private double[][] findThresholds(){
         double[][] thresholds = new double[numAttributes][k];
         for (int i = 0; i < numAttributes; i++){
             double min = Double.MAX_VALUE;
             double max = Double.MIN_VALUE;
-            for (Instance inst: data){
-                double v = inst.value(i);
+            for (double v: values[i]){
                 if (v < min){
                     min = v;
                 }
@@ -238,6 +276,21 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
         return thresholds;
     }
 
+    //indices of the array in ascending order of value, NaN last
+    private static int[] sortIndices(double[] array){
+        Integer[] order = new Integer[array.length];
+        for (int i = 0; i < order.length; i++){
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(array[a], array[b]));
+
+        int[] indices = new int[order.length];
+        for (int i = 0; i < order.length; i++){
+            indices[i] = order[i];
+        }
+        return indices;
+    }
+
     public ArrayList<Double>[] getTreeSplitsGain(){
         ArrayList<Double> splits = new ArrayList<>();
         ArrayList<Double> gain = new ArrayList<>();
@@ -291,13 +344,17 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
 
         TreeNode(){}
 
-        void buildTree(Instances data, double[][] thresholds, double entropy, double[] distribution){
+        //the node holds instances sorted[att][from] to sorted[att][to-1] for every attribute
+        void buildTree(int from, int to, double entropy, double[] distribution){
             double[][] bestEntropies = new double[0][0];
+            double[][][] gains = new double[k][][];
 
             for (int i = 0; i < numAttributes; i++){
+                findGains(i, from, to, distribution, entropy, gains);
+
                 for (int n = 0; n < k; n++){
                     //gain stored in [0][0]
-                    double[][] entropies = entropyGain(data, i, thresholds[i][n], entropy);
+                    double[][] entropies = gains[n];
 
                     if (entropies[0][0] > bestGain ||
                             (!useMargin && entropies[0][0] == bestGain && entropies[0][0] > 0 && rand.nextBoolean())){
@@ -308,8 +365,8 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
                         bestEntropies = entropies;
                     }
                     else if (useMargin && entropies[0][0] == bestGain && entropies[0][0] > 0){
-                        double margin = findMargin(data, i, thresholds[i][n]);
-                        if (bestMargin == Double.MIN_VALUE) bestMargin = findMargin(data, bestSplit, bestThreshold);
+                        double margin = findMargin(i, thresholds[i][n], from, to);
+                        if (bestMargin == Double.MIN_VALUE) bestMargin = findMargin(bestSplit, bestThreshold, from, to);
 
                         if (margin > bestMargin || (margin == bestMargin && rand.nextBoolean())){
                             bestSplit = i;
@@ -322,12 +379,12 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
             }
 
             if (bestSplit > -1){
-                Instances[] dataSplit = splitData(data);
+                int mid = splitData(from, to);
                 children = new TreeNode[2];
                 children[0] = new TreeNode();
-                children[0].buildTree(dataSplit[0], thresholds, bestEntropies[0][1], bestEntropies[1]);
+                children[0].buildTree(from, mid, bestEntropies[0][1], bestEntropies[1]);
                 children[1] = new TreeNode();
-                children[1].buildTree(dataSplit[1], thresholds, bestEntropies[0][2], bestEntropies[2]);
+                children[1].buildTree(mid, to, bestEntropies[0][2], bestEntropies[2]);
             }
             else{
                 leafDistribution = distribution;
@@ -335,41 +392,69 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
             }
         }
 
-        double[][] entropyGain(Instances data, int att, double threshold, double parentEntropy){
-            double[][] dists = new double[3][data.numClasses()];
-            for (Instance inst: data){
-                if (inst.value(att) <= threshold){
-                    dists[1][(int)inst.classValue()]++;
+        //entropy gain of splitting on each threshold of the attribute, the class counts of the node's instances with
+        //a value <= each threshold are found in one pass over the sorted values, and thresholds which split the node
+        //the same way share the result
+        void findGains(int att, int from, int to, double[] distribution, double entropy, double[][][] gains){
+            double[] attValues = values[att];
+            int[] order = sorted[att];
+            double[] counts = new double[numClasses];
+            double[][] last = null;
+            int p = from;
+            for (int n: thresholdOrder[att]){
+                double threshold = thresholds[att][n];
+                //a NaN threshold is sorted last and no value is <= it
+                if (Double.isNaN(threshold)){
+                    gains[n] = entropyGain(new double[numClasses], distribution, to - from, entropy);
+                    continue;
                 }
-                else{
-                    dists[2][(int)inst.classValue()]++;
+
+                int start = p;
+                while (p < to && attValues[order[p]] <= threshold){
+                    counts[classes[order[p]]]++;
+                    p++;
                 }
+                if (last == null || p > start){
+                    last = entropyGain(counts.clone(), distribution, to - from, entropy);
+                }
+                gains[n] = last;
+            }
+        }
+
+        double[][] entropyGain(double[] left, double[] distribution, int numInstances, double parentEntropy){
+            double[][] dists = new double[3][];
+            dists[1] = left;
+            dists[2] = new double[numClasses];
+            for (int i = 0; i < numClasses; i++){
+                dists[2][i] = distribution[i] - left[i];
             }
 
             double sumLeft = sum(dists[1]);
             double sumRight = sum(dists[2]);
 
             double[] entropies = new double[3];
-            for (int i = 0; i < data.numClasses(); i++) {
+            for (int i = 0; i < numClasses; i++) {
                 double p1 = dists[1][i]/sumLeft;
                 entropies[1] += p1 > 0 ? -(p1*Math.log(p1)/log2) : 0;
                 double p2 = dists[2][i]/sumRight;
                 entropies[2] += p2 > 0 ? -(p2*Math.log(p2)/log2) : 0;
             }
 
-            entropies[0] = parentEntropy - sumLeft/data.numInstances() * entropies[1]
-                    - sumRight/data.numInstances() * entropies[2];
+            entropies[0] = parentEntropy - sumLeft/numInstances * entropies[1]
+                    - sumRight/numInstances * entropies[2];
 
             dists[0] = entropies;
 
             return dists;
         }
 
-        double findMargin(Instances data, int att, double threshold){
+        double findMargin(int att, double threshold, int from, int to){
             double min = Double.MAX_VALUE;
 
-            for (Instance inst: data){
-                double n = Math.abs(inst.value(att)-threshold);
+            double[] attValues = values[att];
+            int[] order = sorted[att];
+            for (int p = from; p < to; p++){
+                double n = Math.abs(attValues[order[p]]-threshold);
                 if (n < min){
                     min = n;
                 }
@@ -378,21 +463,32 @@ public class TimeSeriesTree extends AbstractClassifier implements Randomizable,
             return min;
         }
 
-        Instances[] splitData(Instances data){
-            Instances[] split = new Instances[2];
-            split[0] = new Instances(data, data.numInstances());
-            split[1] = new Instances(data, data.numInstances());
+        //stable partition of the node's range of every attribute order, returns the start of the right child
+        int splitData(int from, int to){
+            double[] splitValues = values[bestSplit];
+            int mid = from;
+            for (int p = from; p < to; p++){
+                int j = sorted[bestSplit][p];
+                goesLeft[j] = splitValues[j] <= bestThreshold;
+                if (goesLeft[j]) mid++;
+            }
 
-            for (Instance inst: data){
-                if (inst.value(bestSplit) <= bestThreshold){
-                    split[0].add(inst);
-                }
-                else{
-                    split[1].add(inst);
+            for (int i = 0; i < numAttributes; i++){
+                int[] order = sorted[i];
+                int l = from, r = 0;
+                for (int p = from; p < to; p++){
+                    int j = order[p];
+                    if (goesLeft[j]){
+                        order[l++] = j;
+                    }
+                    else{
+                        buffer[r++] = j;
+                    }
                 }
+                System.arraycopy(buffer, 0, order, l, r);
             }
 
-            return split;
+            return mid;
         }
 
         double[] distributionForInstance(Instance inst){
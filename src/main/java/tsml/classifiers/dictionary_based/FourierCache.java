@@ -0,0 +1,159 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.dictionary_based;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Cache of the Fourier transforms of series used to build SFA words, shared by the members of a dictionary ensemble so
+ * that members with the same window size and normalisation transform each series once. Both the momentary Fourier
+ * transform of the sliding windows and the transform of the disjoint windows used to find breakpoints are cached.
+ *
+ * Transforms are keyed by the values of the series, the window size and whether the first coefficient is dropped to
+ * normalise. The coefficients are computed independently of each other, so a transform for a longer word length can
+ * be used in place of a shorter one. The cache holds at most a given number of doubles, evicting the least recently
+ * used transforms first.
+ *
+ * Transforms returned are shared and must not be modified.
+ */
+public class FourierCache {
+
+    private final long capacity;
+    private long size = 0;
+
+    private final LinkedHashMap<Key, double[][]> transforms = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Creates a cache using up to an eighth of the maximum heap size.
+     */
+    public FourierCache() {
+        this(Runtime.getRuntime().maxMemory() / 8 / Double.BYTES);
+    }
+
+    /**
+     * @param capacity maximum number of doubles held by the cache
+     */
+    public FourierCache(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the momentary Fourier transform of the series with at least the given number of values per window,
+     * computing and storing it if it is not in the cache.
+     *
+     * @param series series to transform
+     * @param windowSize sliding window size of the transform
+     * @param normalise whether the first Fourier coefficient is dropped
+     * @param numValues number of values needed for each window
+     * @param transform computes the transform of the series if it is not cached
+     * @return the transform of each sliding window, each with numValues or more values
+     */
+    public double[][] getMFT(double[] series, int windowSize, boolean normalise, int numValues,
+                             Function<double[], double[][]> transform) {
+        return get(series, windowSize, normalise, false, numValues, transform);
+    }
+
+    /**
+     * Returns the Fourier transform of the disjoint windows of the series with at least the given number of values
+     * per window, computing and storing it if it is not in the cache.
+     *
+     * @param series series to transform
+     * @param windowSize size of the disjoint windows
+     * @param normalise whether the first Fourier coefficient is dropped
+     * @param numValues number of values needed for each window
+     * @param transform computes the transform of the series if it is not cached
+     * @return the transform of each disjoint window, each with numValues or more values
+     */
+    public double[][] getDisjointDFT(double[] series, int windowSize, boolean normalise, int numValues,
+                                     Function<double[], double[][]> transform) {
+        return get(series, windowSize, normalise, true, numValues, transform);
+    }
+
+    public synchronized void clear() {
+        transforms.clear();
+        size = 0;
+    }
+
+    private double[][] get(double[] series, int windowSize, boolean normalise, boolean disjoint, int numValues,
+                           Function<double[], double[][]> transform) {
+        Key key = new Key(series, windowSize, normalise, disjoint);
+        synchronized (this) {
+            double[][] mft = transforms.get(key);
+            if (mft != null && mft[0].length >= numValues) return mft;
+        }
+
+        double[][] mft = transform.apply(series);
+        put(new Key(series.clone(), windowSize, normalise, disjoint), mft);
+        return mft;
+    }
+
+    private synchronized void put(Key key, double[][] mft) {
+        long entrySize = (long) mft.length * mft[0].length + key.series.length;
+        if (entrySize > capacity) return;
+
+        double[][] prev = transforms.get(key);
+        if (prev != null) {
+            // another thread may have cached a longer transform in the meantime
+            if (prev[0].length >= mft[0].length) return;
+            size -= (long) prev.length * prev[0].length + key.series.length;
+        }
+
+        transforms.put(key, mft);
+        size += entrySize;
+
+        Iterator<Map.Entry<Key, double[][]>> it = transforms.entrySet().iterator();
+        while (size > capacity) {
+            Map.Entry<Key, double[][]> eldest = it.next();
+            size -= (long) eldest.getValue().length * eldest.getValue()[0].length + eldest.getKey().series.length;
+            it.remove();
+        }
+    }
+
+    private static class Key {
+        private final double[] series;
+        private final int windowSize;
+        private final boolean normalise;
+        private final boolean disjoint;
+        private final int hash;
+
+        private Key(double[] series, int windowSize, boolean normalise, boolean disjoint) {
+            this.series = series;
+            this.windowSize = windowSize;
+            this.normalise = normalise;
+            this.disjoint = disjoint;
+            this.hash = 31 * (31 * Arrays.hashCode(series) + windowSize) + (normalise ? 1 : 0) + (disjoint ? 2 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && windowSize == key.windowSize && normalise == key.normalise
+                    && disjoint == key.disjoint && Arrays.equals(series, key.series);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
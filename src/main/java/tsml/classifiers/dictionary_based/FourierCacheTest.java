@@ -0,0 +1,79 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.dictionary_based;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class FourierCacheTest {
+
+    private static Function<double[], double[][]> transform(AtomicInteger calls, int numValues) {
+        return series -> {
+            calls.incrementAndGet();
+            return new double[series.length][numValues];
+        };
+    }
+
+    @Test
+    public void testSharedTransform() {
+        FourierCache cache = new FourierCache(1000);
+        AtomicInteger calls = new AtomicInteger();
+        double[][] mft = cache.getMFT(new double[]{1, 2, 3}, 2, true, 4, transform(calls, 4));
+
+        assertSame(mft, cache.getMFT(new double[]{1, 2, 3}, 2, true, 4, transform(calls, 4)));
+        assertSame(mft, cache.getMFT(new double[]{1, 2, 3}, 2, true, 2, transform(calls, 2)));
+        assertEquals(1, calls.get());
+
+        cache.getMFT(new double[]{1, 2, 3}, 2, false, 4, transform(calls, 4));
+        cache.getMFT(new double[]{1, 2, 3}, 3, true, 4, transform(calls, 4));
+        cache.getMFT(new double[]{1, 2, 4}, 2, true, 4, transform(calls, 4));
+        cache.getDisjointDFT(new double[]{1, 2, 3}, 2, true, 4, transform(calls, 4));
+        assertEquals(5, calls.get());
+
+        double[][] longer = cache.getMFT(new double[]{1, 2, 3}, 2, true, 6, transform(calls, 6));
+        assertSame(longer, cache.getMFT(new double[]{1, 2, 3}, 2, true, 4, transform(calls, 4)));
+        assertEquals(6, calls.get());
+    }
+
+    @Test
+    public void testEviction() {
+        // each entry holds 10 doubles with the series
+        FourierCache cache = new FourierCache(25);
+        AtomicInteger calls = new AtomicInteger();
+        cache.getMFT(new double[]{1, 2}, 2, true, 4, transform(calls, 4));
+        cache.getMFT(new double[]{3, 4}, 2, true, 4, transform(calls, 4));
+        cache.getMFT(new double[]{1, 2}, 2, true, 4, transform(calls, 4));
+        assertEquals(2, calls.get());
+
+        // the least recently used entry is evicted
+        cache.getMFT(new double[]{5, 6}, 2, true, 4, transform(calls, 4));
+        cache.getMFT(new double[]{1, 2}, 2, true, 4, transform(calls, 4));
+        assertEquals(3, calls.get());
+        cache.getMFT(new double[]{3, 4}, 2, true, 4, transform(calls, 4));
+        assertEquals(4, calls.get());
+
+        cache.clear();
+        cache.getMFT(new double[]{1, 2}, 2, true, 4, transform(calls, 4));
+        assertEquals(5, calls.get());
+    }
+}
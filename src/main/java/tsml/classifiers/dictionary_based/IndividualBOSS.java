@@ -17,6 +17,7 @@
  
 package tsml.classifiers.dictionary_based;
 
+import com.carrotsearch.hppc.LongIntHashMap;
 import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.dictionary_based.bitword.BitWordInt;
 import weka.classifiers.AbstractClassifier;
@@ -70,6 +71,8 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
     protected int numThreads = 1;
     protected ExecutorService ex;
 
+    protected transient FourierCache fourierCache;
+
     protected int seed = 0;
     protected Random rand;
 
@@ -113,6 +116,7 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         this.multiThread = boss.multiThread;
         this.numThreads = boss.numThreads;
         this.ex = boss.ex;
+        this.fourierCache = boss.fourierCache;
 
         this.seed = boss.seed;
         this.rand = boss.rand;
@@ -130,18 +134,21 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         this.numThreads = numThreads;
     }
 
-    public static class Bag extends HashMap<BitWordInt, Integer> {
+    //map of word => count
+    public static class Bag extends WordHistogram {
         double classVal;
-        protected static final long serialVersionUID = 22552L;
+        private final byte wordLength;
+        protected static final long serialVersionUID = 22553L;
 
-        public Bag() {
-            super();
+        public Bag(LongIntHashMap counts, byte wordLength) {
+            super(counts);
+            this.wordLength = wordLength;
         }
 
-        public Bag(int classValue) {
-            super();
-            classVal = classValue;
-        }
+        /**
+         * @return the word at the index as a BitWordInt
+         */
+        public BitWordInt getBitWord(int index) { return new BitWordInt((int)getWord(index), wordLength); }
 
         public double getClassVal() { return classVal; }
         public void setClassVal(double classVal) { this.classVal = classVal; }
@@ -163,6 +170,8 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
 
     public void setSeed(int i){ seed = i; }
 
+    public void setFourierCache(FourierCache cache) { fourierCache = cache; }
+
     public void clean() {
         SFAwords = null;
     }
@@ -254,7 +263,15 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         return dft;
     }
 
+    /**
+     * @return the Fourier transform of each sliding window of the series, from the ensemble's cache if one is set
+     */
     private double[][] performMFT(double[] series) {
+        if (fourierCache == null) return MFT(series);
+        return fourierCache.getMFT(series, windowSize, norm, wordLength + wordLength % 2, this::MFT);
+    }
+
+    private double[][] MFT(double[] series) {
         // ignore DC value?
         int startOffset = norm ? 2 : 0;
         int l = wordLength;
@@ -350,12 +367,21 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
         return subSequences;
     }
 
+    /**
+     * @return the Fourier transform of each disjoint window of the series, from the ensemble's cache if one is set
+     */
+    protected double[][] disjointDFT(double[] series) {
+        if (fourierCache == null) return performDFT(disjointWindows(series));
+        return fourierCache.getDisjointDFT(series, windowSize, norm, wordLength,
+                s -> performDFT(disjointWindows(s)));
+    }
+
     protected double[][] MCB(Instances data) {
         double[][][] dfts = new double[data.numInstances()][][];
 
         int sample = 0;
         for (Instance inst : data)
-            dfts[sample++] = performDFT(disjointWindows(toArrayNoClass(inst))); //approximation
+            dfts[sample++] = disjointDFT(toArrayNoClass(inst)); //approximation
 
         int numInsts = dfts.length;
         int numWindowsPerInst = dfts[0].length;
@@ -397,7 +423,7 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
      * to be used e.g to transform new test instances
      */
     protected Bag createBagSingle(double[][] dfts) {
-        Bag bag = new Bag();
+        LongIntHashMap bag = new LongIntHashMap();
         BitWordInt lastWord = new BitWordInt();
 
         for (double[] d : dfts) {
@@ -406,15 +432,12 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
             if (numerosityReduction && word.equals(lastWord))
                 continue;
 
-            Integer val = bag.get(word);
-            if (val == null)
-                val = 0;
-            bag.put(word, ++val);
+            bag.putOrAdd(WordHistogram.key(word.getWord().intValue(), 0), 1, 1);
 
             lastWord = word;
         }
 
-        return bag;
+        return new Bag(bag, (byte)wordLength);
     }
 
     protected BitWordInt createWord(double[] dft) {
@@ -488,27 +511,26 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
      * Builds a bag from the set of words for a pre-transformed series of a given wordlength.
      */
     protected Bag createBagFromWords(int thisWordLength, BitWordInt[] words) {
-        Bag bag = new Bag();
+        LongIntHashMap bag = new LongIntHashMap();
         BitWordInt lastWord = new BitWordInt();
+        byte length = (byte)thisWordLength;
 
         for (BitWordInt w : words) {
             BitWordInt word = new BitWordInt(w);
             if (wordLength != thisWordLength)
                 word.shorten(BitWordInt.MAX_LENGTH-thisWordLength);
+            length = word.getLength();
 
             //add to bag, unless num reduction applies
             if (numerosityReduction && word.equals(lastWord))
                 continue;
 
-            Integer val = bag.get(word);
-            if (val == null)
-                val = 0;
-            bag.put(word, ++val);
+            bag.putOrAdd(WordHistogram.key(word.getWord().intValue(), 0), 1, 1);
 
             lastWord = word;
         }
 
-        return bag;
+        return new Bag(bag, length);
     }
 
     protected BitWordInt[] createSFAwords(Instance inst) {
@@ -570,21 +592,8 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
      * @return distance FROM instA TO instB, or Double.MAX_VALUE if it would be greater than bestDist
      */
     public double BOSSdistance(Bag instA, Bag instB, double bestDist) {
-        double dist = 0.0;
-
         //find dist only from values in instA
-        for (Map.Entry<BitWordInt, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null)
-                valB = 0;
-            dist += (valA-valB)*(valA-valB);
-
-            if (dist > bestDist)
-                return Double.MAX_VALUE;
-        }
-
-        return dist;
+        return instA.distance(instB, 0, bestDist);
     }
 
     @Override
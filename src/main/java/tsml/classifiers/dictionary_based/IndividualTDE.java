@@ -24,7 +24,6 @@ import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.dictionary_based.bitword.BitWord;
 import tsml.classifiers.dictionary_based.bitword.BitWordInt;
-import tsml.classifiers.dictionary_based.bitword.BitWordLong;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.Converter;
@@ -33,8 +32,10 @@ import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.UnassignedClassException;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Function;
 
 /**
  * Improved BOSS classifier to be used with known parameters, for ensemble use TDE.
@@ -75,9 +76,14 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     protected int seriesLength;
 
     //feature selection
-    private ObjectHashSet<SerialisableComparablePair<BitWord, Byte>> chiSquare;
+    private LongHashSet chiSquareWords;
+    private LongHashSet chiSquareBigrams;
     protected int chiLimit = 2;
 
+    //inverted index of the train bags for histogram intersection, built on first use
+    protected boolean useInvertedIndex = false;
+    private transient InvertedIndex invertedIndex;
+
     protected int ensembleID = -1;
     protected double accuracy = -1;
     protected double weight = 1;
@@ -88,6 +94,8 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     protected int numThreads = 1;
     protected ExecutorService ex;
 
+    protected transient FourierCache fourierCache;
+
     private static final long serialVersionUID = 2L;
 
     public IndividualTDE(int wordLength, int alphabetSize, int windowSize, boolean normalise, int levels, boolean IGB,
@@ -137,6 +145,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         this.histogramIntersection = boss.histogramIntersection;
         this.useBigrams = boss.useBigrams;
         this.useFeatureSelection = boss.useFeatureSelection;
+        this.useInvertedIndex = boss.useInvertedIndex;
         this.levelWeighting = boss.levelWeighting;
         this.numerosityReduction = boss.numerosityReduction;
         this.cleanAfterBuild = boss.cleanAfterBuild;
@@ -145,6 +154,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         this.multiThread = boss.multiThread;
         this.numThreads = boss.numThreads;
         this.ex = boss.ex;
+        this.fourierCache = boss.fourierCache;
 
         this.seed = boss.seed;
         this.rand = boss.rand;
@@ -167,19 +177,26 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         this.numThreads = numThreads;
     }
 
-    //map of <word, level> => count
-    public static class Bag extends HashMap<SerialisableComparablePair<BitWord, Byte>, Integer> {
+    //histograms of <word, level> => count and bigram => count
+    public static class Bag implements Serializable {
+        private final WordHistogram words;
+        private final WordHistogram bigrams;
         private int classVal;
 
-        public Bag() {
-            super();
+        public Bag(LongIntHashMap words, LongIntHashMap bigrams) {
+            this(new WordHistogram(words), new WordHistogram(bigrams), 0);
         }
 
-        public Bag(int classValue) {
-            super();
+        public Bag(WordHistogram words, WordHistogram bigrams, int classValue) {
+            this.words = words;
+            this.bigrams = bigrams;
             classVal = classValue;
         }
 
+        public WordHistogram getWords() { return words; }
+        public WordHistogram getBigrams() { return bigrams; }
+        public int size() { return words.size() + bigrams.size(); }
+
         public int getClassVal() { return classVal; }
         public void setClassVal(int classVal) { this.classVal = classVal; }
     }
@@ -207,6 +224,8 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     public void setHistogramIntersection(boolean b) { histogramIntersection = b; }
     public void setUseBigrams(boolean b) { useBigrams = b; }
     public void setUseFeatureSelection(boolean b) { useFeatureSelection = b; }
+    public void setUseInvertedIndex(boolean b) { useInvertedIndex = b; }
+    public void setFourierCache(FourierCache cache) { fourierCache = cache; }
 
     public void clean() {
         SFAwords = null;
@@ -299,7 +318,15 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         return dft;
     }
 
+    /**
+     * @return the Fourier transform of each sliding window of the series, from the ensemble's cache if one is set
+     */
     protected double[][] performMFT(double[] series) {
+        if (fourierCache == null) return MFT(series);
+        return fourierCache.getMFT(series, windowSize, norm, wordLength + wordLength % 2, this::MFT);
+    }
+
+    protected double[][] MFT(double[] series) {
         // ignore DC value?
         int startOffset = norm ? 2 : 0;
         int l = wordLength;
@@ -386,13 +413,21 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         return subSequences;
     }
 
+    /**
+     * @return the Fourier transform of each disjoint window of the series, from the ensemble's cache if one is set
+     */
+    protected double[][] disjointDFT(double[] series) {
+        if (fourierCache == null) return performDFT(disjointWindows(series));
+        return fourierCache.getDisjointDFT(series, windowSize, norm, wordLength,
+                s -> performDFT(disjointWindows(s)));
+    }
+
     private double[][] MCB(double[][][] data, int d) {
         double[][][] dfts = new double[data.length][][];
 
         int sample = 0;
         for (int i = 0; i < data.length; i++) {
-            double[][] windows = disjointWindows(data[i][d]);
-            dfts[sample++] = performDFT(windows); //approximation
+            dfts[sample++] = disjointDFT(data[i][d]); //approximation
         }
 
         int numInsts = dfts.length;
@@ -436,11 +471,10 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         }
 
         for (int i = 0; i < data.length; i++) {
-            double[][] windows = disjointWindows(data[i][d]);
-            double[][] dfts = performDFT(windows); //approximation
+            double[][] dfts = disjointDFT(data[i][d]); //approximation
 
             for (double[] dft : dfts) {
-                for (int n = 0; n < dft.length; n++) {
+                for (int n = 0; n < wordLength; n++) {
                     // round to 2 decimal places to reduce noise
                     double value = Math.round(dft[n] * 100.0) / 100.0;
 
@@ -554,22 +588,31 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     }
 
     private void trainChiSquared() {
+        chiSquareWords = trainChiSquared(Bag::getWords);
+        chiSquareBigrams = trainChiSquared(Bag::getBigrams);
+
+        // best elements above limit
+        for (int i = 0; i < bags.size(); i++) {
+            bags.set(i, filterChiSquared(bags.get(i)));
+        }
+    }
+
+    private LongHashSet trainChiSquared(Function<Bag, WordHistogram> histogram) {
         // Chi2 Test
-        ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>> featureCount
-                = new ObjectIntHashMap<>(bags.get(0).size());
+        LongIntHashMap featureCount = new LongIntHashMap(histogram.apply(bags.get(0)).size());
         DoubleDoubleHashMap classProb = new DoubleDoubleHashMap(10);
-        DoubleObjectHashMap<ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>>> observed
-                = new DoubleObjectHashMap<>(bags.get(0).size());
+        DoubleObjectHashMap<LongIntHashMap> observed = new DoubleObjectHashMap<>(histogram.apply(bags.get(0)).size());
 
         // count number of samples with this word
         for (Bag bag : bags) {
             if (!observed.containsKey(bag.classVal)) {
-                observed.put(bag.classVal, new ObjectIntHashMap<>());
+                observed.put(bag.classVal, new LongIntHashMap());
             }
-            for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> word : bag.entrySet()) {
-                if (word.getValue() > 0) {
-                    featureCount.putOrAdd(word.getKey(), 1, 1);
-                    observed.get(bag.classVal).putOrAdd(word.getKey(), 1, 1);
+            WordHistogram words = histogram.apply(bag);
+            for (int i = 0; i < words.size(); i++) {
+                if (words.getCount(i) > 0) {
+                    featureCount.putOrAdd(words.getWord(i), 1, 1);
+                    observed.get(bag.classVal).putOrAdd(words.getWord(i), 1, 1);
                 }
             }
 
@@ -577,42 +620,26 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         }
 
         // chi-squared: observed minus expected occurrence
-        chiSquare = new ObjectHashSet<>(featureCount.size());
+        LongHashSet chiSquare = new LongHashSet(featureCount.size());
         for (DoubleDoubleCursor classLabel : classProb) {
             classLabel.value /= bags.size();
             if (observed.get(classLabel.key) != null) {
-                ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>> observe = observed.get(classLabel.key);
-                for (ObjectIntCursor<SerialisableComparablePair<BitWord, Byte>> feature : featureCount) {
+                LongIntHashMap observe = observed.get(classLabel.key);
+                for (LongIntCursor feature : featureCount) {
                     double expected = classLabel.value * feature.value;
                     double chi = observe.get(feature.key) - expected;
                     double newChi = chi * chi / expected;
-                    if (newChi >= chiLimit && !chiSquare.contains(feature.key)) {
+                    if (newChi >= chiLimit) {
                         chiSquare.add(feature.key);
                     }
                 }
             }
         }
-
-        // best elements above limit
-        for (int i = 0; i < bags.size(); i++) {
-            Bag newBag = new Bag(bags.get(i).classVal);
-            for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> cursor : bags.get(i).entrySet()) {
-                if (chiSquare.contains(cursor.getKey())) {
-                    newBag.put(cursor.getKey(), cursor.getValue());
-                }
-            }
-            bags.set(i, newBag);
-        }
+        return chiSquare;
     }
 
     private Bag filterChiSquared(Bag bag) {
-        Bag newBag = new Bag(bag.classVal);
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> cursor : bag.entrySet()) {
-            if (chiSquare.contains(cursor.getKey())) {
-                newBag.put(cursor.getKey(), cursor.getValue());
-            }
-        }
-        return newBag;
+        return new Bag(bag.words.filter(chiSquareWords), bag.bigrams.filter(chiSquareBigrams), bag.classVal);
     }
 
     /**
@@ -622,7 +649,8 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
      * to be used e.g to transform new test instances
      */
     private Bag createSPBagSingle(double[][] dfts) {
-        Bag bag = new Bag();
+        LongIntHashMap bag = new LongIntHashMap();
+        LongIntHashMap bigrams = new LongIntHashMap();
         BitWord lastWord = new BitWordInt();
         BitWord[] words = new BitWord[dfts.length];
 
@@ -635,10 +663,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
             if (useBigrams) {
                 if (wInd - windowSize >= 0) {
-                    BitWord bigram = new BitWordLong(words[wInd - windowSize], word);
-
-                    SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(bigram, (byte) -1);
-                    bag.merge(key, 1, Integer::sum);
+                    bigrams.putOrAdd(bigram(words[wInd - windowSize], word), 1, 1);
                 }
             }
 
@@ -661,7 +686,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
         applyPyramidWeights(bag);
 
-        return bag;
+        return new Bag(bag, bigrams);
     }
 
     private BitWord createWord(double[] dft) {
@@ -735,7 +760,8 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
      * Builds a bag from the set of words for a pre-transformed series of a given wordlength.
      */
     private Bag createSPBagFromWords(int thisWordLength, BitWord[] words) {
-        Bag bag = new Bag();
+        LongIntHashMap bag = new LongIntHashMap();
+        LongIntHashMap bigrams = new LongIntHashMap();
         BitWord lastWord = new BitWordInt();
         BitWord[] newWords = new BitWord[words.length];
 
@@ -750,10 +776,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
             if (useBigrams) {
                 if (wInd - windowSize >= 0) {
-                    BitWord bigram = new BitWordLong(newWords[wInd - windowSize], word);
-
-                    SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(bigram, (byte) -1);
-                    bag.merge(key, 1, Integer::sum);
+                    bigrams.putOrAdd(bigram(newWords[wInd - windowSize], word), 1, 1);
                 }
             }
 
@@ -776,7 +799,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
         applyPyramidWeights(bag);
 
-        return bag;
+        return new Bag(bag, bigrams);
     }
 
     public void changeNumLevels(int newLevels) {
@@ -793,12 +816,13 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             bag.setClassVal(bags.get(inst).classVal);
             bags.set(inst, bag); //overwrite old
         }
+        invertedIndex = null;
     }
 
-    protected void applyPyramidWeights(Bag bag) {
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> ent : bag.entrySet()) {
+    protected void applyPyramidWeights(LongIntHashMap bag) {
+        for (LongIntCursor ent : bag) {
             //find level that this quadrant is on
-            int quadrant = ent.getKey().var2;
+            int quadrant = WordHistogram.level(ent.key);
             int qEnd = 0;
             int level = 0;
             while (qEnd < quadrant) {
@@ -807,12 +831,12 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             }
 
             //double val = ent.getValue() * (Math.pow(levelWeighting, levels-level-1)); //weighting ^ (levels - level)
-            int val = ent.getValue() * (int)Math.pow(2,level);
-            bag.put(ent.getKey(), val);
+            int val = ent.value * (int)Math.pow(2,level);
+            bag.indexReplace(ent.index, val);
         }
     }
 
-    private void addWordToPyramid(BitWord word, int wInd, Bag bag) {
+    private void addWordToPyramid(BitWord word, int wInd, LongIntHashMap bag) {
         int qStart = 0; //for this level, whats the start index for quadrants
         //e.g level 0 = 0
         //    level 1 = 1
@@ -824,13 +848,19 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             int pos = wInd + (windowSize/2); //use the middle of the window as its position
             int quadrant = qStart + (pos/quadrantSize);
 
-            SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(word, (byte)quadrant);
-            bag.merge(key, 1, Integer::sum);
+            bag.putOrAdd(WordHistogram.key(word.getWord().intValue(), (byte)quadrant), 1, 1);
 
             qStart += numQuadrants;
         }
     }
 
+    /**
+     * @return key of the bigram of two words, the same value as a BitWordLong of the pair
+     */
+    protected static long bigram(BitWord first, BitWord second) {
+        return (first.getWord().longValue() << 32) | (second.getWord().intValue() & 0xFFFFFFFFL);
+    }
+
     private BitWord[] createSFAwords(double[] inst) {
         double[][] dfts = performMFT(inst); //approximation
         BitWord[] words = new BitWord[dfts.length];
@@ -858,6 +888,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
         SFAwords = new BitWord[data.numInstances()][];
         bags = new ArrayList<>(data.numInstances());
+        invertedIndex = null;
         seriesLength = data.getMaxLength();
 
         if (multiThread){
@@ -907,67 +938,79 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
      * @return distance FROM instA TO instB, or Double.MAX_VALUE if it would be greater than bestDist
      */
     public double BOSSdistance(Bag instA, Bag instB, double bestDist) {
-        double dist = 0.0;
+        //find dist only from values in instA, words missing from instB count as 1
+        double dist = instA.words.distance(instB.words, 1, bestDist);
+        if (dist == Double.MAX_VALUE)
+            return dist;
 
-        //find dist only from values in instA
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null) valB = 1;
-            dist += (valA-valB)*(valA-valB);
-
-            if (dist > bestDist)
-                return Double.MAX_VALUE;
-        }
-
-        return dist;
+        double bigramDist = instA.bigrams.distance(instB.bigrams, 1, bestDist - dist);
+        return bigramDist == Double.MAX_VALUE ? bigramDist : dist + bigramDist;
     }
 
     public double histogramIntersection(Bag instA, Bag instB) {
         //min vals of keys that exist in only one of the bags will always be 0
         //therefore want to only bother looking at counts of words in both bags
-        //therefore will simply loop over words in a, skipping those that dont appear in b
-        //no need to loop over b, since only words missed will be those not in a anyway
-
-        double sim = 0.0;
-
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null)
-                continue;
 
-            sim += Math.min(valA,valB);
-        }
-
-        return sim;
+        return instA.words.intersection(instB.words) + instA.bigrams.intersection(instB.bigrams);
     }
 
-    @Override
-    public double classifyInstance(TimeSeriesInstance instance) throws Exception{
-        Bag testBag = BOSSSpatialPyramidsTransform(instance);
-
-        if (useFeatureSelection) testBag = filterChiSquared(testBag);
+    /**
+     * Finds the class of the nearest train bag to the test bag, using the inverted index if enabled and histogram
+     * intersection is used.
+     *
+     * @param testBag bag to classify
+     * @param testIndex index of the train bag to skip for leave-one-out, or -1
+     * @return class value of the nearest neighbour
+     */
+    private double nearestNeighbour(Bag testBag, int testIndex) {
+        if (histogramIntersection && useInvertedIndex) {
+            int nn = getInvertedIndex().nearestNeighbour(new WordHistogram[]{ testBag.words, testBag.bigrams },
+                    testIndex);
+            return nn == -1 ? 0 : bags.get(nn).classVal;
+        }
 
         //1NN distance
         double bestDist = Double.MAX_VALUE;
         double nn = 0;
 
-        for (Bag bag : bags) {
+        for (int i = 0; i < bags.size(); ++i) {
+            if (i == testIndex) //skip 'this' one, leave-one-out
+                continue;
+
             double dist;
             if (histogramIntersection)
-                dist = -histogramIntersection(testBag, bag);
-            else dist = BOSSdistance(testBag, bag, bestDist);
+                dist = -histogramIntersection(testBag, bags.get(i));
+            else dist = BOSSdistance(testBag, bags.get(i), bestDist);
 
             if (dist < bestDist) {
                 bestDist = dist;
-                nn = bag.classVal;
+                nn = bags.get(i).classVal;
             }
         }
 
         return nn;
     }
 
+    private synchronized InvertedIndex getInvertedIndex() {
+        if (invertedIndex == null) {
+            WordHistogram[][] histograms = new WordHistogram[bags.size()][];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = new WordHistogram[]{ bags.get(i).words, bags.get(i).bigrams };
+            }
+            invertedIndex = new InvertedIndex(histograms);
+        }
+        return invertedIndex;
+    }
+
+    @Override
+    public double classifyInstance(TimeSeriesInstance instance) throws Exception{
+        Bag testBag = BOSSSpatialPyramidsTransform(instance);
+
+        if (useFeatureSelection) testBag = filterChiSquared(testBag);
+
+        return nearestNeighbour(testBag, -1);
+    }
+
     @Override
     public double classifyInstance(Instance instance) throws Exception{
         return classifyInstance(Converter.fromArff(instance));
@@ -997,26 +1040,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     public double classifyInstance(int testIndex) throws Exception{
         Bag testBag = bags.get(testIndex);
 
-        //1NN distance
-        double bestDist = Double.MAX_VALUE;
-        double nn = 0;
-
-        for (int i = 0; i < bags.size(); ++i) {
-            if (i == testIndex) //skip 'this' one, leave-one-out
-                continue;
-
-            double dist;
-            if (histogramIntersection)
-                dist = -histogramIntersection(testBag, bags.get(i));
-            else dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-            if (dist < bestDist) {
-                bestDist = dist;
-                nn = bags.get(i).classVal;
-            }
-        }
-
-        return nn;
+        return nearestNeighbour(testBag, testIndex);
     }
 
     public class TestNearestNeighbourThread implements Callable<Double>{
@@ -1032,23 +1056,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
             if (useFeatureSelection) testBag = filterChiSquared(testBag);
 
-            //1NN distance
-            double bestDist = Double.MAX_VALUE;
-            double nn = 0;
-
-            for (Bag bag : bags) {
-                double dist;
-                if (histogramIntersection)
-                    dist = -histogramIntersection(testBag, bag);
-                else dist = BOSSdistance(testBag, bag, bestDist);
-
-                if (dist < bestDist) {
-                    bestDist = dist;
-                    nn = bag.classVal;
-                }
-            }
-
-            return nn;
+            return nearestNeighbour(testBag, -1);
         }
     }
 
@@ -1063,26 +1071,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         public Double call() {
             Bag testBag = bags.get(testIndex);
 
-            //1NN distance
-            double bestDist = Double.MAX_VALUE;
-            double nn = 0;
-
-            for (int i = 0; i < bags.size(); ++i) {
-                if (i == testIndex) //skip 'this' one, leave-one-out
-                    continue;
-
-                double dist;
-                if (histogramIntersection)
-                    dist = -histogramIntersection(testBag, bags.get(i));
-                else dist = BOSSdistance(testBag, bags.get(i), bestDist);
-
-                if (dist < bestDist) {
-                    bestDist = dist;
-                    nn = bags.get(i).classVal;
-                }
-            }
-
-            return nn;
+            return nearestNeighbour(testBag, testIndex);
         }
     }
 
@@ -0,0 +1,214 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.dictionary_based;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Inverted index from words to the bags containing them, for nearest neighbour search by histogram intersection.
+ * Each bag is made of one or more word histograms, such as words and bigrams, each indexed separately.
+ *
+ * A query only visits the bags sharing a word with it. Query words are visited in descending order of the most they
+ * can add to a bag's similarity, and once that remaining mass cannot lift a bag past the best similarity found the
+ * search only completes the bags still able to win, looking their remaining words up directly.
+ */
+public class InvertedIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final WordHistogram[][] bags;
+    private final Postings[] postings;
+
+    /**
+     * @param bags histograms of each bag, all bags with the same number of histograms
+     */
+    public InvertedIndex(WordHistogram[][] bags) {
+        this.bags = bags;
+        int numHistograms = bags.length > 0 ? bags[0].length : 0;
+        postings = new Postings[numHistograms];
+        for (int i = 0; i < numHistograms; i++) {
+            postings[i] = new Postings(bags, i);
+        }
+    }
+
+    public int numBags() {
+        return bags.length;
+    }
+
+    /**
+     * Finds the bag with the highest histogram intersection with the query, summed over its histograms. Ties are won
+     * by the first bag, as with a linear scan keeping the first strictly better bag.
+     *
+     * @param query histograms of the query bag, in the same order as the indexed bags
+     * @param exclude index of a bag to skip, or -1
+     * @return index of the nearest bag, or -1 if there are no bags to search
+     */
+    public int nearestNeighbour(WordHistogram[] query, int exclude) {
+        if (bags.length == 0 || (bags.length == 1 && exclude == 0)) return -1;
+
+        // each query word in the index with the most it can add to the similarity of any bag
+        int numTerms = 0;
+        for (WordHistogram histogram : query) {
+            numTerms += histogram.size();
+        }
+        long[] terms = new long[numTerms];
+        int[] termHistogram = new int[numTerms];
+        int[] termWord = new int[numTerms];
+        int[] termCount = new int[numTerms];
+        numTerms = 0;
+        for (int h = 0; h < query.length; h++) {
+            for (int i = 0; i < query[h].size(); i++) {
+                int word = postings[h].indexOf(query[h].getWord(i));
+                if (word < 0) continue;
+
+                int count = query[h].getCount(i);
+                int bound = Math.min(count, postings[h].maxCounts[word]);
+                // sorted by descending bound, the position breaks ties
+                terms[numTerms] = ((long) -bound << 32) | numTerms;
+                termHistogram[numTerms] = h;
+                termWord[numTerms] = word;
+                termCount[numTerms] = count;
+                numTerms++;
+            }
+        }
+        Arrays.sort(terms, 0, numTerms);
+
+        long[] remaining = new long[numTerms + 1];
+        for (int t = numTerms - 1; t >= 0; t--) {
+            remaining[t] = remaining[t + 1] - (terms[t] >> 32);
+        }
+
+        long[] sims = new long[bags.length];
+        long best = 0;
+        int t = 0;
+        for (; t < numTerms && remaining[t] >= best; t++) {
+            int term = (int) terms[t];
+            Postings p = postings[termHistogram[term]];
+            int word = termWord[term];
+            int count = termCount[term];
+            for (int i = p.offsets[word]; i < p.offsets[word + 1]; i++) {
+                int bag = p.bags[i];
+                if (bag == exclude) continue;
+
+                sims[bag] += Math.min(count, p.counts[i]);
+                if (sims[bag] > best) best = sims[bag];
+            }
+        }
+
+        if (t == numTerms) {
+            for (int bag = 0; bag < bags.length; bag++) {
+                if (bag != exclude && sims[bag] == best) return bag;
+            }
+        }
+
+        // no bag without a similarity yet can reach the best, complete the bags which can
+        int[] candidates = new int[bags.length];
+        int numCandidates = 0;
+        for (int bag = 0; bag < bags.length; bag++) {
+            if (bag != exclude && sims[bag] + remaining[t] >= best) candidates[numCandidates++] = bag;
+        }
+
+        for (; t < numTerms && numCandidates > 1; t++) {
+            int term = (int) terms[t];
+            int h = termHistogram[term];
+            long word = postings[h].words[termWord[term]];
+            int count = termCount[term];
+
+            int n = 0;
+            for (int i = 0; i < numCandidates; i++) {
+                int bag = candidates[i];
+                sims[bag] += Math.min(count, bags[bag][h].get(word));
+                if (sims[bag] > best) best = sims[bag];
+            }
+            for (int i = 0; i < numCandidates; i++) {
+                if (sims[candidates[i]] + remaining[t + 1] >= best) candidates[n++] = candidates[i];
+            }
+            numCandidates = n;
+        }
+
+        for (int i = 0; i < numCandidates; i++) {
+            if (sims[candidates[i]] == best || numCandidates == 1) return candidates[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Postings of one histogram of the bags, the bags containing words[i] and their counts stored in bags and counts
+     * from offsets[i] to offsets[i + 1] in ascending order of bag.
+     */
+    private static class Postings implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] words;
+        private final int[] maxCounts;
+        private final int[] offsets;
+        private final int[] bags;
+        private final int[] counts;
+
+        private Postings(WordHistogram[][] histograms, int h) {
+            int total = 0;
+            for (WordHistogram[] bag : histograms) {
+                total += bag[h].size();
+            }
+
+            long[] all = new long[total];
+            int n = 0;
+            for (WordHistogram[] bag : histograms) {
+                for (int i = 0; i < bag[h].size(); i++) {
+                    all[n++] = bag[h].getWord(i);
+                }
+            }
+            Arrays.sort(all);
+            int numWords = 0;
+            for (int i = 0; i < total; i++) {
+                if (i == 0 || all[i] != all[i - 1]) all[numWords++] = all[i];
+            }
+            words = Arrays.copyOf(all, numWords);
+
+            maxCounts = new int[numWords];
+            offsets = new int[numWords + 1];
+            for (WordHistogram[] bag : histograms) {
+                for (int i = 0; i < bag[h].size(); i++) {
+                    offsets[indexOf(bag[h].getWord(i)) + 1]++;
+                }
+            }
+            for (int i = 0; i < numWords; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            bags = new int[total];
+            counts = new int[total];
+            int[] next = Arrays.copyOf(offsets, numWords);
+            for (int b = 0; b < histograms.length; b++) {
+                WordHistogram bag = histograms[b][h];
+                for (int i = 0; i < bag.size(); i++) {
+                    int word = indexOf(bag.getWord(i));
+                    bags[next[word]] = b;
+                    counts[next[word]++] = bag.getCount(i);
+                    if (bag.getCount(i) > maxCounts[word]) maxCounts[word] = bag.getCount(i);
+                }
+            }
+        }
+
+        private int indexOf(long word) {
+            return Arrays.binarySearch(words, word);
+        }
+    }
+}
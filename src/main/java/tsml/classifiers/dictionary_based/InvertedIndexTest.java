@@ -0,0 +1,87 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.dictionary_based;
+
+import com.carrotsearch.hppc.LongIntHashMap;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class InvertedIndexTest {
+
+    private static WordHistogram histogram(Random rand, int numWords, int vocabulary, int maxCount) {
+        LongIntHashMap counts = new LongIntHashMap();
+        for (int i = 0; i < numWords; i++) {
+            counts.putOrAdd(rand.nextInt(vocabulary), rand.nextInt(maxCount) + 1, rand.nextInt(maxCount) + 1);
+        }
+        return new WordHistogram(counts);
+    }
+
+    private static int linearScan(WordHistogram[][] bags, WordHistogram[] query, int exclude) {
+        double bestDist = Double.MAX_VALUE;
+        int nn = -1;
+        for (int i = 0; i < bags.length; i++) {
+            if (i == exclude) continue;
+
+            double dist = -(query[0].intersection(bags[i][0]) + query[1].intersection(bags[i][1]));
+            if (dist < bestDist) {
+                bestDist = dist;
+                nn = i;
+            }
+        }
+        return nn;
+    }
+
+    @Test
+    public void testMatchesLinearScan() {
+        Random rand = new Random(0);
+        for (int r = 0; r < 200; r++) {
+            int vocabulary = 5 + rand.nextInt(60);
+            int maxCount = 1 + rand.nextInt(4);
+            WordHistogram[][] bags = new WordHistogram[1 + rand.nextInt(30)][];
+            for (int i = 0; i < bags.length; i++) {
+                bags[i] = new WordHistogram[]{ histogram(rand, rand.nextInt(20), vocabulary, maxCount),
+                        histogram(rand, rand.nextInt(10), vocabulary, maxCount) };
+            }
+            InvertedIndex index = new InvertedIndex(bags);
+
+            WordHistogram[] query = { histogram(rand, rand.nextInt(20), vocabulary, maxCount),
+                    histogram(rand, rand.nextInt(10), vocabulary, maxCount) };
+            assertEquals(linearScan(bags, query, -1), index.nearestNeighbour(query, -1));
+
+            int exclude = rand.nextInt(bags.length);
+            assertEquals(linearScan(bags, bags[exclude], exclude), index.nearestNeighbour(bags[exclude], exclude));
+        }
+    }
+
+    @Test
+    public void testNoSharedWords() {
+        LongIntHashMap a = new LongIntHashMap();
+        a.put(1, 2);
+        LongIntHashMap b = new LongIntHashMap();
+        b.put(2, 1);
+        WordHistogram[][] bags = { { new WordHistogram(a) }, { new WordHistogram(b) } };
+        InvertedIndex index = new InvertedIndex(bags);
+
+        assertEquals(0, index.nearestNeighbour(new WordHistogram[]{ new WordHistogram(new LongIntHashMap()) }, -1));
+        assertEquals(1, index.nearestNeighbour(bags[0], 0));
+        assertEquals(-1, new InvertedIndex(new WordHistogram[][]{ bags[0] }).nearestNeighbour(bags[0], 0));
+    }
+}
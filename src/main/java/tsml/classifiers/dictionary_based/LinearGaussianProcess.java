@@ -0,0 +1,231 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.dictionary_based;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Gaussian process regression surrogate for parameter search, giving the same predictions as a weka GaussianProcesses
+ * with its default options: attributes normalised to [0, 1] over the observations, a linear PolyKernel and a noise
+ * level of 1.
+ *
+ * With a linear kernel the predictive mean k*^T (K + I)^-1 (y - mean(y)) + mean(y) is equal to
+ * x*^T (X^T X + I)^-1 X^T (y - mean(y)) + mean(y), so the model is fitted by a Cholesky decomposition of a matrix the
+ * size of the number of attributes rather than the number of observations. The cross products needed are kept as
+ * observations are added, so refitting to a new set of targets and scoring a whole pool of candidates is cheap.
+ */
+public class LinearGaussianProcess implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int classIndex;
+    private final int numAttributes;
+
+    private final ArrayList<double[]> observations = new ArrayList<>();
+    private final double[] min;
+    private final double[] max;
+    private final double[] sums;
+    private final double[][] crossProducts;
+
+    private double[] coefficients;
+    private double[] offsets;
+    private double meanTarget;
+
+    /**
+     * @param header dataset format of the observations and candidates, the class attribute is ignored
+     */
+    public LinearGaussianProcess(Instances header) {
+        classIndex = header.classIndex();
+        numAttributes = header.numAttributes() - (classIndex >= 0 ? 1 : 0);
+        min = new double[numAttributes];
+        max = new double[numAttributes];
+        sums = new double[numAttributes];
+        crossProducts = new double[numAttributes][numAttributes];
+    }
+
+    public int numObservations() {
+        return observations.size();
+    }
+
+    /**
+     * Adds an observed input, its target is supplied later in fit.
+     *
+     * @param inst the observed input
+     */
+    public void addObservation(Instance inst) {
+        double[] x = values(inst);
+        if (observations.isEmpty()) {
+            System.arraycopy(x, 0, min, 0, numAttributes);
+            System.arraycopy(x, 0, max, 0, numAttributes);
+        }
+
+        for (int i = 0; i < numAttributes; i++) {
+            if (x[i] < min[i]) min[i] = x[i];
+            if (x[i] > max[i]) max[i] = x[i];
+            sums[i] += x[i];
+            for (int n = i; n < numAttributes; n++) {
+                crossProducts[i][n] += x[i] * x[n];
+            }
+        }
+
+        observations.add(x);
+    }
+
+    /**
+     * Fits the model to the targets of the observations, in the order they were added.
+     *
+     * @param targets target value of each observation
+     * @return false if the targets are all equal, in which case every prediction is NaN as with the weka model
+     */
+    public boolean fit(List<Double> targets) {
+        int size = observations.size();
+        if (targets.size() != size)
+            throw new IllegalArgumentException("Expected " + size + " targets, got " + targets.size());
+
+        double minTarget = Double.MAX_VALUE;
+        double maxTarget = -Double.MAX_VALUE;
+        double sum = 0;
+        for (double target : targets) {
+            if (target < minTarget) minTarget = target;
+            if (target > maxTarget) maxTarget = target;
+            sum += target;
+        }
+        meanTarget = sum / size;
+
+        if (size == 0 || minTarget == maxTarget) {
+            coefficients = null;
+            return false;
+        }
+
+        // scale of each normalised attribute, constant attributes normalise to 0
+        double[] scale = new double[numAttributes];
+        for (int i = 0; i < numAttributes; i++) {
+            if (max[i] > min[i]) scale[i] = 1.0 / (max[i] - min[i]);
+        }
+
+        // X^T X + I over the normalised observations, from the raw sums and cross products
+        double[][] a = new double[numAttributes][numAttributes];
+        for (int i = 0; i < numAttributes; i++) {
+            for (int n = i; n < numAttributes; n++) {
+                double centred = crossProducts[i][n] - min[i] * sums[n] - min[n] * sums[i]
+                        + size * min[i] * min[n];
+                a[i][n] = a[n][i] = scale[i] * scale[n] * centred;
+            }
+            a[i][i] += 1;
+        }
+
+        // X^T (y - mean(y))
+        double[] b = new double[numAttributes];
+        for (int j = 0; j < size; j++) {
+            double[] x = observations.get(j);
+            double residual = targets.get(j) - meanTarget;
+            for (int i = 0; i < numAttributes; i++) {
+                b[i] += (x[i] - min[i]) * residual;
+            }
+        }
+        for (int i = 0; i < numAttributes; i++) {
+            b[i] *= scale[i];
+        }
+
+        double[] w = choleskySolve(a, b);
+        coefficients = new double[numAttributes];
+        offsets = min.clone();
+        for (int i = 0; i < numAttributes; i++) {
+            coefficients[i] = w[i] * scale[i];
+        }
+        return true;
+    }
+
+    /**
+     * Predicts the target of every candidate using the last fit.
+     *
+     * @param candidates inputs to score, in the same format as the observations
+     * @return predicted target of each candidate
+     */
+    public double[] predict(Instances candidates) {
+        double[] predictions = new double[candidates.numInstances()];
+        for (int j = 0; j < predictions.length; j++) {
+            predictions[j] = predict(candidates.get(j));
+        }
+        return predictions;
+    }
+
+    /**
+     * Predicts the target of a candidate using the last fit.
+     *
+     * @param inst input to score
+     * @return predicted target
+     */
+    public double predict(Instance inst) {
+        if (coefficients == null) return Double.NaN;
+
+        double pred = meanTarget;
+        for (int i = 0, n = 0; i < numAttributes; i++, n++) {
+            if (n == classIndex) n++;
+            pred += coefficients[i] * (inst.value(n) - offsets[i]);
+        }
+        return pred;
+    }
+
+    private double[] values(Instance inst) {
+        double[] x = new double[numAttributes];
+        for (int i = 0, n = 0; i < numAttributes; i++, n++) {
+            if (n == classIndex) n++;
+            x[i] = inst.value(n);
+        }
+        return x;
+    }
+
+    /**
+     * Solves a x = b for a symmetric positive definite matrix a, overwriting a with its Cholesky factor.
+     */
+    private static double[] choleskySolve(double[][] a, double[] b) {
+        int d = b.length;
+        for (int i = 0; i < d; i++) {
+            for (int n = 0; n <= i; n++) {
+                double sum = a[i][n];
+                for (int k = 0; k < n; k++) {
+                    sum -= a[i][k] * a[n][k];
+                }
+                a[i][n] = i == n ? Math.sqrt(sum) : sum / a[n][n];
+            }
+        }
+
+        double[] x = new double[d];
+        for (int i = 0; i < d; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= a[i][k] * x[k];
+            }
+            x[i] = sum / a[i][i];
+        }
+        for (int i = d - 1; i >= 0; i--) {
+            double sum = x[i];
+            for (int k = i + 1; k < d; k++) {
+                sum -= a[k][i] * x[k];
+            }
+            x[i] = sum / a[i][i];
+        }
+        return x;
+    }
+}
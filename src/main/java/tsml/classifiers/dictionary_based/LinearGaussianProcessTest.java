@@ -0,0 +1,93 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.dictionary_based;
+
+import org.junit.Test;
+import weka.classifiers.functions.GaussianProcesses;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LinearGaussianProcessTest {
+
+    private static Instances parameters(Random rand, int size) {
+        ArrayList<Attribute> atts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            atts.add(new Attribute("att" + i));
+        }
+        Instances data = new Instances("params", atts, size);
+        data.setClassIndex(2);
+        for (int i = 0; i < size; i++) {
+            // the last attribute is constant over the observations
+            data.add(new DenseInstance(1, new double[]{rand.nextInt(10) + 8, rand.nextInt(200), -1,
+                    rand.nextInt(2), 4}));
+        }
+        return data;
+    }
+
+    @Test
+    public void testMatchesGaussianProcesses() throws Exception {
+        Random rand = new Random(0);
+        Instances candidates = parameters(rand, 100);
+        candidates.get(0).setValue(4, 3);
+        LinearGaussianProcess model = new LinearGaussianProcess(candidates);
+        Instances observed = new Instances(candidates, 0);
+        ArrayList<Double> targets = new ArrayList<>();
+
+        for (int n = 0; n < 30; n++) {
+            Instances obs = parameters(rand, 1);
+            model.addObservation(obs.get(0));
+            observed.add(obs.get(0));
+            targets.add(rand.nextDouble());
+            if (n == 0) continue;
+
+            for (int i = 0; i < observed.numInstances(); i++) {
+                observed.get(i).setClassValue(targets.get(i));
+            }
+            GaussianProcesses gp = new GaussianProcesses();
+            gp.buildClassifier(observed);
+
+            assertTrue(model.fit(targets));
+            double[] preds = model.predict(candidates);
+            for (int i = 0; i < candidates.numInstances(); i++) {
+                assertEquals(gp.classifyInstance(candidates.get(i)), preds[i], 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testConstantTargets() {
+        Instances candidates = parameters(new Random(1), 10);
+        LinearGaussianProcess model = new LinearGaussianProcess(candidates);
+        model.addObservation(candidates.get(0));
+        model.addObservation(candidates.get(1));
+
+        assertFalse(model.fit(Arrays.asList(0.5, 0.5)));
+        assertTrue(Double.isNaN(model.predict(candidates.get(2))));
+        assertTrue(model.fit(Arrays.asList(0.5, 0.75)));
+        assertFalse(Double.isNaN(model.predict(candidates.get(2))));
+    }
+}
@@ -19,6 +19,7 @@ package tsml.classifiers.dictionary_based;
 
 import com.carrotsearch.hppc.DoubleDoubleHashMap;
 import com.carrotsearch.hppc.DoubleObjectHashMap;
+import com.carrotsearch.hppc.LongIntHashMap;
 import com.carrotsearch.hppc.ObjectHashSet;
 import com.carrotsearch.hppc.ObjectIntHashMap;
 import com.carrotsearch.hppc.cursors.DoubleDoubleCursor;
@@ -522,7 +523,7 @@ public class MultivariateIndividualTDE extends IndividualTDE {
         for (int d = 0; d < breakpoints.length; d++) {
             ArrayList<Bag> tempBags = new ArrayList<>();
             for (int i = 0; i < split.length; i++){
-                Bag bag = new Bag(data.get(i).getLabelIndex());
+                LongIntHashMap bag = new LongIntHashMap();
                 for (int n = 0; n < breakpointDFT[d][i].length; n++){
                     BitWord word = createWord(breakpointDFT[d][i][n], d);
                     int qStart = 0; //for this level, whats the start index for quadrants
@@ -535,14 +536,14 @@ public class MultivariateIndividualTDE extends IndividualTDE {
                         int pos = wInd + (windowSize/2); //use the middle of the window as its position
                         int quadrant = qStart + (pos/quadrantSize);
 
-                        SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(word, (byte)quadrant);
-                        bag.merge(key, 1, Integer::sum);
+                        bag.putOrAdd(WordHistogram.key(word.getWord().intValue(), (byte)quadrant), 1, 1);
 
                         qStart += numQuadrants;
                     }
                 }
                 applyPyramidWeights(bag);
-                tempBags.add(bag);
+                tempBags.add(new Bag(new WordHistogram(bag), new WordHistogram(new LongIntHashMap()),
+                        data.get(i).getLabelIndex()));
             }
 
             for (int n = 0; n < split.length; n++){
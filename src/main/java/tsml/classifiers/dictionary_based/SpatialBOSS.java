@@ -32,18 +32,16 @@ import java.util.LinkedList;
 import java.util.List;
 
 
-import tsml.classifiers.dictionary_based.bitword.BitWord;
+import com.carrotsearch.hppc.LongIntHashMap;
 import tsml.classifiers.dictionary_based.bitword.BitWordInt;
 import utilities.InstanceTools;
 import tsml.classifiers.SaveParameterInfo;
 import weka.core.TechnicalInformation;
 
-import utilities.generic_storage.ComparablePair;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map.Entry;
 import utilities.ClassifierTools;
 import weka.core.Capabilities;
 import weka.core.Instance;
@@ -670,6 +668,9 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
 
         protected boolean numerosityReduction = true; 
 
+        //weight of the counts in each quadrant, found from the levels and seriesLength when first needed
+        protected transient double[] quadrantWeights;
+
         protected static final long serialVersionUID = 1L;
 
         public BOSSSpatialPyramidsIndividual(int wordLength, int alphabetSize, int windowSize, boolean normalise, int levels) {
@@ -706,17 +707,12 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
             bags = new ArrayList<>(boss.bags.size());
         }
 
-        //map of <word, level> => count
-        public static class SPBag extends HashMap<ComparablePair<BitWord, Integer>, Double> {
+        //map of <word, level> => count, counts are weighted by level when bags are compared
+        public static class SPBag extends WordHistogram {
             double classVal;
 
-            public SPBag() {
-                super();
-            }
-
-            public SPBag(int classValue) {
-                super();
-                classVal = classValue;
+            public SPBag(LongIntHashMap counts) {
+                super(counts);
             }
 
             public double getClassVal() { return classVal; }
@@ -987,7 +983,7 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
          * to be used e.g to transform new test instances
          */
         protected SPBag createSPBagSingle(double[][] dfts) {
-            SPBag bag = new SPBag();
+            LongIntHashMap bag = new LongIntHashMap();
             BitWordInt lastWord = new BitWordInt();
 
             int wInd = 0;
@@ -1013,9 +1009,7 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
                 }
             }
 
-            applyPyramidWeights(bag);
-
-            return bag;
+            return new SPBag(bag);
         }
 
         protected BitWordInt createWord(double[] dft) {
@@ -1090,20 +1084,16 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
         }
 
         protected SPBag shortenSPBag(int newWordLength, int bagIndex) {
-            SPBag newSPBag = new SPBag();
+            LongIntHashMap newSPBag = new LongIntHashMap();
 
             for (BitWordInt word : SFAwords[bagIndex]) {
                 BitWordInt shortWord = new BitWordInt(word);
                 shortWord.shortenByFourierCoefficient();
 
-                Double val = newSPBag.get(shortWord);
-                if (val == null)
-                    val = 0.0;
-
-                newSPBag.put(new ComparablePair<BitWord, Integer>(shortWord, 0), val + 1.0);
+                newSPBag.putOrAdd(WordHistogram.key(shortWord.getWord().intValue(), 0), 1, 1);
             }
 
-            return newSPBag;
+            return new SPBag(newSPBag);
         }
 
         /**
@@ -1114,7 +1104,7 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
          *      and therefore sfawords are that particular length already, no need to shorten
          */
         protected SPBag createSPBagFromWords(int thisWordLength, BitWordInt[] words, boolean wordLengthSearching) {
-            SPBag bag = new SPBag();
+            LongIntHashMap bag = new LongIntHashMap();
             BitWordInt lastWord = new BitWordInt();
 
             int wInd = 0;
@@ -1142,9 +1132,7 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
                 }
             }
 
-            applyPyramidWeights(bag);
-
-            return bag;
+            return new SPBag(bag);
         }
 
         protected void changeNumLevels(int newLevels) {
@@ -1155,6 +1143,7 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
                 return;
 
             this.levels = newLevels;
+            quadrantWeights = null;
 
             for (int inst = 0; inst < bags.size(); ++inst) {
                 SPBag bag = createSPBagFromWords(wordLength, SFAwords[inst], true); //rebuild bag
@@ -1163,23 +1152,29 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
             }
         }
 
-        protected void applyPyramidWeights(SPBag bag) {
-            for (Entry<ComparablePair<BitWord, Integer>, Double> ent : bag.entrySet()) {
-                //find level that this quadrant is on
-                int quadrant = ent.getKey().var2;
-                int qEnd = 0; 
-                int level = 0; 
-                while (qEnd < quadrant) {
-                    int numQuadrants = (int)Math.pow(2, ++level);
-                    qEnd+=numQuadrants;
-                }
+        protected double[] getQuadrantWeights() {
+            if (quadrantWeights == null) {
+                //words near the end of a series can fall one quadrant past the last on a level
+                int lastLevelQuadrants = (int)Math.pow(2, levels-1);
+                int numQuadrants = levels > 0 ? lastLevelQuadrants + (seriesLength-1) / (seriesLength / lastLevelQuadrants) : 0;
+                double[] weights = new double[numQuadrants];
+                for (int quadrant = 0; quadrant < numQuadrants; quadrant++) {
+                    //find level that this quadrant is on
+                    int qEnd = 0;
+                    int level = 0;
+                    while (qEnd < quadrant) {
+                        int levelQuadrants = (int)Math.pow(2, ++level);
+                        qEnd+=levelQuadrants;
+                    }
 
-                double val = ent.getValue() * (Math.pow(levelWeighting, levels-level-1)); //weighting ^ (levels - level)
-                bag.put(ent.getKey(), val); 
+                    weights[quadrant] = Math.pow(levelWeighting, levels-level-1); //weighting ^ (levels - level)
+                }
+                quadrantWeights = weights;
             }
+            return quadrantWeights;
         }
 
-        protected void addWordToPyramid(BitWordInt word, int wInd, SPBag bag) {
+        protected void addWordToPyramid(BitWordInt word, int wInd, LongIntHashMap bag) {
             int qStart = 0; //for this level, whats the start index for quadrants
             //e.g level 0 = 0
             //    level 1 = 1
@@ -1191,12 +1186,7 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
                 int pos = wInd + (windowSize/2); //use the middle of the window as its position
                 int quadrant = qStart + (pos/quadrantSize); 
 
-                ComparablePair<BitWord, Integer> key = new ComparablePair<>(word, quadrant);
-                Double val = bag.get(key);
-
-                if (val == null)
-                    val = 0.0;
-                bag.put(key, ++val);   
+                bag.putOrAdd(WordHistogram.key(word.getWord().intValue(), quadrant), 1, 1);
 
                 qStart += numQuadrants;
             }
@@ -1217,6 +1207,7 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
                 throw new Exception("BOSSSpatialPyramids_BuildClassifier: Class attribute not set as last attribute in dataset");
 
             seriesLength = data.numAttributes()-1;
+            quadrantWeights = null;
 
             breakpoints = MCB(data); //breakpoints to be used for making sfa words for train AND test data
 
@@ -1237,18 +1228,8 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
          * @return distance FROM instA TO instB
          */
         public double BOSSSpatialPyramidsDistance(SPBag instA, SPBag instB) {
-            double dist = 0.0;
-
             //find dist only from values in instA
-            for (Entry<ComparablePair<BitWord, Integer>, Double> entry : instA.entrySet()) {
-                Double valA = entry.getValue();
-                Double valB = instB.get(entry.getKey());
-                if (valB == null)
-                    valB = 0.0;
-                dist += (valA-valB)*(valA-valB);
-            }
-
-            return dist;
+            return instA.distance(instB, getQuadrantWeights(), Double.MAX_VALUE);
         }
 
            /**
@@ -1259,41 +1240,15 @@ public class SpatialBOSS extends EnhancedAbstractClassifier implements SaveParam
          * @return distance FROM instA TO instB, or Double.MAX_VALUE if it would be greater than bestDist
          */
         public double BOSSSpatialPyramidsDistance(SPBag instA, SPBag instB, double bestDist) {
-            double dist = 0.0;
-
             //find dist only from values in instA
-            for (Entry<ComparablePair<BitWord, Integer>, Double> entry : instA.entrySet()) {
-                Double valA = entry.getValue();
-                Double valB = instB.get(entry.getKey());
-                if (valB == null)
-                    valB = 0.0;
-                dist += (valA-valB)*(valA-valB);
-
-                if (dist > bestDist)
-                    return Double.MAX_VALUE;
-            }
-
-            return dist;
+            return instA.distance(instB, getQuadrantWeights(), bestDist);
         }
 
         public double histogramIntersection(SPBag instA, SPBag instB) {
             //min vals of keys that exist in only one of the bags will always be 0
             //therefore want to only bother looking at counts of words in both bags
-            //therefore will simply loop over words in a, skipping those that dont appear in b
-            //no need to loop over b, since only words missed will be those not in a anyway
-
-            double sim = 0.0;
-
-            for (Entry<ComparablePair<BitWord, Integer>, Double> entry : instA.entrySet()) {
-                Double valA = entry.getValue();
-                Double valB = instB.get(entry.getKey());
-                if (valB == null)
-                    continue;
-
-                sim += Math.min(valA,valB);
-            }
 
-            return sim;
+            return instA.intersection(instB, getQuadrantWeights());
         }
 
         @Override
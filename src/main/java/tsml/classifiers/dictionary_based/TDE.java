@@ -25,7 +25,6 @@ import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.Converter;
 import utilities.ClassifierTools;
-import weka.classifiers.functions.GaussianProcesses;
 import weka.core.*;
 
 import java.io.*;
@@ -78,6 +77,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
     private boolean histogramIntersection = true;
     private Boolean useBigrams; //defaults to true if univariate, false if multivariate
     private boolean useFeatureSelection = false;
+    private boolean useInvertedIndex = false;
 
     private double trainProportion = 0.7;
 
@@ -88,7 +88,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
     private int initialRandomParameters = 50;
     private int initialParameterCount;
     private Instances parameterPool;
-    private Instances prevParameters;
+    private LinearGaussianProcess parameterModel;
     private int parametersRemaining;
 
     private final int[] wordLengths = {16, 14, 12, 10, 8};
@@ -122,6 +122,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
     private ArrayList<Double> paramTime;
 
     private transient TimeSeriesInstances train;
+    private transient FourierCache fourierCache;
 
     private int numThreads = 1;
     private boolean multiThread = false;
@@ -226,6 +227,14 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
      */
     public void setUseFeatureSelection(boolean b) { useFeatureSelection = b; }
 
+    /**
+     * Whether IndividualTDE classifiers search for nearest neighbours using an inverted index of their train bags when
+     * using histogram intersection.
+     *
+     * @param b use inverted index
+     */
+    public void setUseInvertedIndex(boolean b) { useInvertedIndex = b; }
+
     /**
      * Whether to remove ensemble members below a proportion of the highest accuracy.
      *
@@ -317,6 +326,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
         getTSCapabilities().test(data);
 
         train = data;
+        fourierCache = new FourierCache();
 
         //Window length settings
         int minWindow = 10;
@@ -393,6 +403,9 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
         trainResults.setBuildPlusEstimateTime(trainResults.getBuildTime() + trainResults.getErrorEstimateTime());
         trainResults.setParas(getParameters());
 
+        //transforms of the train series are not needed for new instances
+        fourierCache.clear();
+
         //delete any serialised files and holding folder for checkpointing on completion
         if (checkpoint && cleanupCheckpointFiles) {
             checkpointCleanup();
@@ -444,7 +457,9 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
             indiv.setHistogramIntersection(histogramIntersection);
             indiv.setUseBigrams(useBigrams);
             indiv.setUseFeatureSelection(useFeatureSelection);
+            indiv.setUseInvertedIndex(useInvertedIndex);
             indiv.setSeed(seed);
+            indiv.setFourierCache(fourierCache);
 
             TimeSeriesInstances data = trainProportion < 1 && trainProportion > 0 ? subsampleData(series, indiv)
                     : series;
@@ -645,8 +660,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
 
         Instances parameterPool = new Instances("params", atts, possibleParameters.size());
         parameterPool.setClassIndex(numAtts - 1);
-        prevParameters = new Instances(parameterPool, 0);
-        prevParameters.setClassIndex(numAtts - 1);
+        parameterModel = new LinearGaussianProcess(parameterPool);
         parametersRemaining = possibleParameters.size();
 
         for (double[] possibleParameter : possibleParameters) {
@@ -678,21 +692,16 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
 
         if (trainTimeContract && System.nanoTime() - trainResults.getBuildTime() - checkpointTimeDiff
                 > trainContractTimeNanos / 10 * 9) {
-            if (prevParameters.size() > 0) {
-                for (int i = 0; i < paramTime.size(); i++) {
-                    prevParameters.get(i).setClassValue(paramTime.get(i));
-                }
-
-                GaussianProcesses gp = new GaussianProcesses();
-                gp.buildClassifier(prevParameters);
-                long remainingTime = trainContractTimeNanos - (System.nanoTime() - trainResults.getBuildTime()
-                        - checkpointTimeDiff);
-
-                for (int i = 0; i < parameterPool.size(); i++) {
-                    double pred = gp.classifyInstance(parameterPool.get(i));
-                    if (pred > remainingTime) {
-                        parameterPool.remove(i);
-                        i--;
+            if (parameterModel.numObservations() > 0) {
+                if (parameterModel.fit(paramTime)) {
+                    long remainingTime = trainContractTimeNanos - (System.nanoTime() - trainResults.getBuildTime()
+                            - checkpointTimeDiff);
+
+                    double[] preds = parameterModel.predict(parameterPool);
+                    for (int i = preds.length - 1; i >= 0; i--) {
+                        if (preds[i] > remainingTime) {
+                            parameterPool.remove(i);
+                        }
                     }
                 }
 
@@ -705,21 +714,15 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
                 initialParameterCount++;
                 params = parameterPool.remove(rand.nextInt(parameterPool.size()));
             } else {
-                for (int i = 0; i < paramAccuracy.size(); i++) {
-                    prevParameters.get(i).setClassValue(paramAccuracy.get(i));
-                }
-
-                GaussianProcesses gp = new GaussianProcesses();
-                gp.buildClassifier(prevParameters);
+                parameterModel.fit(paramAccuracy);
+                double[] preds = parameterModel.predict(parameterPool);
                 int bestIndex = 0;
                 double bestAcc = -1;
 
-                for (int i = 0; i < parameterPool.numInstances(); i++) {
-                    double pred = gp.classifyInstance(parameterPool.get(i));
-
-                    if (pred > bestAcc) {
+                for (int i = 0; i < preds.length; i++) {
+                    if (preds[i] > bestAcc) {
                         bestIndex = i;
-                        bestAcc = pred;
+                        bestAcc = preds[i];
                     }
                 }
 
@@ -729,7 +732,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
             params = parameterPool.remove(rand.nextInt(parameterPool.size()));
         }
 
-        prevParameters.add(params);
+        parameterModel.addObservation(params);
         parametersRemaining = parameterPool.size();
         return params.toDoubleArray();
     }
@@ -1108,6 +1111,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
         histogramIntersection = saved.histogramIntersection;
         useBigrams = saved.useBigrams;
         useFeatureSelection = saved.useFeatureSelection;
+        useInvertedIndex = saved.useInvertedIndex;
         trainProportion = saved.trainProportion;
         dimensionCutoffThreshold = saved.dimensionCutoffThreshold;
         maxNoDimensions = saved.maxNoDimensions;
@@ -1115,7 +1119,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
         initialRandomParameters = saved.initialRandomParameters;
         initialParameterCount = saved.initialParameterCount;
         parameterPool = saved.parameterPool;
-        prevParameters = saved.prevParameters;
+        parameterModel = saved.parameterModel;
         parametersRemaining = saved.parametersRemaining;
         //wordLengths = saved.wordLengths;
         //alphabetSize = saved.alphabetSize;
@@ -18,8 +18,6 @@
 package tsml.classifiers.dictionary_based;
 
 import com.carrotsearch.hppc.*;
-import com.carrotsearch.hppc.cursors.DoubleIntCursor;
-import com.carrotsearch.hppc.cursors.IntCursor;
 import com.carrotsearch.hppc.cursors.LongDoubleCursor;
 import com.carrotsearch.hppc.cursors.LongIntCursor;
 import de.bwaldvogel.liblinear.*;
@@ -157,16 +155,17 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     return Arrays.copyOfRange(wLengths, 0, a);
   }
 
-  protected static double[] getLabels(final WEASELTransform.BagOfBigrams[] bagOfPatternsTestSamples) {
-    double[] labels = new double[bagOfPatternsTestSamples.length];
-    for (int i = 0; i < bagOfPatternsTestSamples.length; i++) {
-      labels[i] = bagOfPatternsTestSamples[i].label;
+  protected static double[] getLabels(final int[] classes) {
+    double[] labels = new double[classes.length];
+    for (int i = 0; i < classes.length; i++) {
+      labels[i] = classes[i];
     }
     return labels;
   }
 
   protected static Problem initLibLinearProblem(
-          final WEASELTransform.BagOfBigrams[] bob,
+          final WEASELTransform.WindowFeatures[] features,
+          final int[] classes,
           final WEASELTransform.Dictionary dict,
           final double bias) {
     Linear.resetRandom();
@@ -174,39 +173,52 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
 
     Problem problem = new Problem();
     problem.bias = bias;
-    problem.y = getLabels(bob);
+    problem.y = getLabels(classes);
 
-    final FeatureNode[][] features = initLibLinear(bob, dict);
+    final FeatureNode[][] x = initLibLinear(features, classes.length, dict);
 
     problem.n = dict.size() + 1;
-    problem.l = features.length;
-    problem.x = features;
+    problem.l = x.length;
+    problem.x = x;
     return problem;
   }
 
+  /**
+   * Assigns a column to each selected word and converts the CSR rows of all windows
+   * into the sparse vectors used by liblinear.
+   */
   protected static FeatureNode[][] initLibLinear(
-          final WEASELTransform.BagOfBigrams[] bob,
+          final WEASELTransform.WindowFeatures[] features,
+          final int numSamples,
           final WEASELTransform.Dictionary dict) {
-    FeatureNode[][] featuresTrain = new FeatureNode[bob.length][];
-    for (int j = 0; j < bob.length; j++) {
-      WEASELTransform.BagOfBigrams bop = bob[j];
-      ArrayList<FeatureNode> features = new ArrayList<>(bop.bob.size());
-      for (LongIntCursor word : bop.bob) {
-        if (word.value > 0) {
-          features.add(new FeatureNode(dict.getWordChi(word.key), (word.value)));
+    FeatureNode[][] featuresTrain = new FeatureNode[numSamples][];
+    for (int j = 0; j < numSamples; j++) {
+      int size = 0;
+      for (WEASELTransform.WindowFeatures window : features) {
+        size += window.rows[j + 1] - window.rows[j];
+      }
+
+      FeatureNode[] featuresArray = new FeatureNode[size];
+      int n = 0;
+      for (WEASELTransform.WindowFeatures window : features) {
+        for (int k = window.rows[j]; k < window.rows[j + 1]; k++) {
+          featuresArray[n++] = new FeatureNode(dict.getWordChi(window.words[k]), window.counts[k]);
         }
       }
-      FeatureNode[] featuresArray = features.toArray(new FeatureNode[]{});
-      Arrays.sort(featuresArray, new Comparator<FeatureNode>() {
-        public int compare(FeatureNode o1, FeatureNode o2) {
-          return Integer.compare(o1.index, o2.index);
-        }
-      });
+      sortByIndex(featuresArray);
       featuresTrain[j] = featuresArray;
     }
     return featuresTrain;
   }
 
+  private static void sortByIndex(FeatureNode[] features) {
+    Arrays.sort(features, new Comparator<FeatureNode>() {
+      public int compare(FeatureNode o1, FeatureNode o2) {
+        return Integer.compare(o1.index, o2.index);
+      }
+    });
+  }
+
   private static void swap(int[] array, int idxA, int idxB) {
     int temp = array[idxA];
     array[idxA] = array[idxB];
@@ -294,28 +306,33 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       int bestF = -1;
       boolean bestNorm = false;
 
+      final int[] classes = new int[samples.numInstances()];
+      for (int i = 0; i < classes.length; i++) {
+        classes[i] = (int) samples.get(i).classValue();
+      }
+
       optimize:
       for (final boolean mean : NORMALIZATION) {
         int[] windowLengths = getWindowLengths(samples, mean);
         WEASELTransform model = new WEASELTransform(maxF, maxS, windowLengths, mean);
-        int[][][] words = model.createWords(samples);
-
-        for (int f = minF; f <= maxF; f += 2) {
-          model.dict.reset();
-
-          final WEASELTransform.BagOfBigrams[] bop = new WEASELTransform.BagOfBigrams[samples.size()];
-          final int ff = f;
 
-          for (int w = 0; w < model.windowLengths.length; w++) {
-            WEASELTransform.BagOfBigrams[] bobForOneWindow = fitOneWindow(
-                    samples,
-                    model.windowLengths, mean,
-                    words[w], ff, w);
-            mergeBobs(bop, bobForOneWindow);
+        // stream the windows: the words of one window are only resident while the
+        // filtered features for every word length are extracted from them
+        final WEASELTransform.WindowFeatures[][] features =
+                new WEASELTransform.WindowFeatures[(maxF - minF) / 2 + 1][model.windowLengths.length];
+        for (int w = 0; w < model.windowLengths.length; w++) {
+          int[][] words = model.createWords(samples, w);
+          for (int f = minF, i = 0; f <= maxF; f += 2, i++) {
+            features[i][w] = model.fitWindow(words, classes, samples.numClasses(), w, f, chi);
           }
+        }
+
+        for (int f = minF, i = 0; f <= maxF; f += 2, i++) {
+          model.dict.reset();
 
           // train liblinear
-          final Problem problem = initLibLinearProblem(bop, model.dict, bias);
+          final Problem problem = initLibLinearProblem(features[i], classes, model.dict, bias);
+          features[i] = null;
           int correct = trainLibLinear(problem, solverType, c, iterations, p, folds);
 
           if (correct > maxCorrect) {
@@ -333,18 +350,14 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       int[] windowLengths = getWindowLengths(samples, bestNorm);
       WEASELTransform model = new WEASELTransform(maxF, maxS, windowLengths, bestNorm);
 
-      final WEASELTransform.BagOfBigrams[] bop = new WEASELTransform.BagOfBigrams[samples.size()];
+      final WEASELTransform.WindowFeatures[] features = new WEASELTransform.WindowFeatures[model.windowLengths.length];
       for (int w = 0; w < model.windowLengths.length; w++) {
         int[][] words = model.createWords(samples, w);
-        WEASELTransform.BagOfBigrams[] bobForOneWindow = fitOneWindow(
-                samples,
-                model.windowLengths, bestNorm,
-                words, bestF, w);
-        mergeBobs(bop, bobForOneWindow);
+        features[w] = model.fitWindow(words, classes, samples.numClasses(), w, bestF, chi);
       }
 
       // train liblinear
-      Problem problem = initLibLinearProblem(bop, model.dict, bias);
+      Problem problem = initLibLinearProblem(features, classes, model.dict, bias);
       de.bwaldvogel.liblinear.Model linearModel = Linear.train(problem, new Parameter(solverType, c, iterations, p));
 
       this.classifier = new WEASELModel(
@@ -382,63 +395,19 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
 
   }
 
-  private WEASELTransform.BagOfBigrams[] fitOneWindow(
-          Instances samples,
-          int[] windowLengths, boolean mean,
-          int[][] word, int f, int w) {
-    WEASELTransform modelForWindow = new WEASELTransform(f, maxS, windowLengths, mean);
-    WEASELTransform.BagOfBigrams[] bopForWindow = modelForWindow.createBagOfPatterns(word, samples, w, f);
-    modelForWindow.trainChiSquared(bopForWindow, chi);
-    return bopForWindow;
-  }
-
-  private synchronized void mergeBobs(
-          WEASELTransform.BagOfBigrams[] bop,
-          WEASELTransform.BagOfBigrams[] bopForWindow) {
-    for (int i = 0; i < bop.length; i++) {
-      if (bop[i]==null) {
-        bop[i] = bopForWindow[i];
-      }
-      else {
-        bop[i].bob.putAll(bopForWindow[i].bob);
-      }
-    }
-  }
-
-
   @Override
   public double classifyInstance(Instance instance) throws Exception {
-    // iterate each sample to classify
-    final WEASELTransform.BagOfBigrams[] bagTest = new WEASELTransform.BagOfBigrams[1];
-    for (int w = 0; w < classifier.weasel.windowLengths.length; w++) {
-      int[] wordsTest = classifier.weasel.createWords(instance, w);
-      WEASELTransform.BagOfBigrams[] bopForWindow =
-              new WEASELTransform.BagOfBigrams[]{classifier.weasel.createBagOfPatterns(wordsTest, instance, w, classifier.features)};
-      classifier.weasel.dict.filterChiSquared(bopForWindow);
-      mergeBobs(bagTest, bopForWindow);
-    }
-
-    FeatureNode[][] features = initLibLinear(bagTest, classifier.weasel.dict);
-    return Linear.predict(classifier.linearModel, features[0]);
+    FeatureNode[] features = classifier.weasel.transform(instance, classifier.features);
+    return Linear.predict(classifier.linearModel, features);
   }
 
   @Override
   public double[] distributionForInstance(Instance instance) throws Exception {
     double[] classHist = new double[instance.numClasses()];
 
-    // iterate each sample to classify
-    final WEASELTransform.BagOfBigrams[] bagTest = new WEASELTransform.BagOfBigrams[1];
-    for (int w = 0; w < classifier.weasel.windowLengths.length; w++) {
-      int[] wordsTest = classifier.weasel.createWords(instance, w);
-      WEASELTransform.BagOfBigrams[] bopForWindow =
-              new WEASELTransform.BagOfBigrams[]{classifier.weasel.createBagOfPatterns(wordsTest, instance, w, classifier.features)};
-      classifier.weasel.dict.filterChiSquared(bopForWindow);
-      mergeBobs(bagTest, bopForWindow);
-    }
-
-    FeatureNode[][] features = initLibLinear(bagTest, classifier.weasel.dict);
+    FeatureNode[] features = classifier.weasel.transform(instance, classifier.features);
     double[] probabilities = new double[classifier.linearModel.getNrClass()];
-    Linear.predictProbability(classifier.linearModel, features[0], probabilities);
+    Linear.predictProbability(classifier.linearModel, features, probabilities);
 
     // TODO do we have to remap classes to indices???
     for (int i = 0; i < classifier.linearModel.getLabels().length; i++) {
@@ -521,15 +490,19 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     public Dictionary dict;
 
     /**
-     * The WEASEL-model: a histogram of SFA word and bi-gram frequencies
+     * The chi-squared filtered WEASEL-model of all samples for one window length: histograms
+     * of SFA word and bi-gram frequencies stored row-major (CSR). The words of sample i are
+     * words[rows[i]] to words[rows[i+1]-1], in ascending order.
      */
-    public static class BagOfBigrams {
-      public LongIntHashMap bob;
-      public Double label;
+    public static class WindowFeatures {
+      public int[] rows;
+      public long[] words;
+      public int[] counts;
 
-      public BagOfBigrams(int size, Double label) {
-        this.bob = new LongIntHashMap(size);
-        this.label = label;
+      public WindowFeatures(int[] rows, long[] words, int[] counts) {
+        this.rows = rows;
+        this.words = words;
+        this.counts = counts;
       }
     }
 
@@ -563,18 +536,6 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       public int size() {
         return this.dictChi.size();
       }
-
-      public void filterChiSquared(final BagOfBigrams[] bagOfPatterns) {
-        for (int j = 0; j < bagOfPatterns.length; j++) {
-          LongIntHashMap oldMap = bagOfPatterns[j].bob;
-          bagOfPatterns[j].bob = new LongIntHashMap();
-          for (LongIntCursor word : oldMap) {
-            if (this.dictChi.containsKey(word.key) && word.value > 0) {
-              bagOfPatterns[j].bob.put(word.key, word.value);
-            }
-          }
-        }
-      }
     }
 
     public WEASELTransform( int maxF, int maxS,
@@ -587,21 +548,6 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       this.signature = new SFASupervised[windowLengths.length];
     }
 
-    /**
-     * Create SFA words and bigrams for all samples
-     *
-     * @param samples
-     * @return
-     */
-    public int[][][] createWords(final Instances samples) {
-      // create bag of words for each window queryLength
-      final int[][][] words = new int[this.windowLengths.length][samples.numInstances()][];
-      for (int w = 0; w < this.windowLengths.length; w++) {
-        words[w] = createWords(samples, w);
-      };
-      return words;
-    }
-
     /**
      * Create SFA words and bigrams for a single sample
      *
@@ -657,50 +603,67 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     }
 
     /**
+     * Creates the bags of one window length for all samples, keeps the words that pass
+     * the chi-squared test and returns them in CSR form.
+     * <p>
+     * The samples are streamed through twice, one bag at a time: the first pass collects
+     * the per class document frequencies, the second the counts of the selected words.
+     * <p>
      * Implementation based on:
      * https://github.com/scikit-learn/scikit-learn/blob/c957249/sklearn/feature_selection/univariate_selection.py#L170
+     *
+     * @param words the SFA words of each sample for this window length
+     * @param classes the class index of each sample
      */
-    public void trainChiSquared(final BagOfBigrams[] bob, double p_limit) {
+    public WindowFeatures fitWindow(
+            final int[][] words,
+            final int[] classes,
+            final int numClasses,
+            final int w,    // index of used windowSize
+            final int wordLength,
+            final double p_limit) {
       // Chi2 Test
-      LongIntHashMap featureCount = new LongIntHashMap(bob[0].bob.size());
-      DoubleIntHashMap classProb = new DoubleIntHashMap(10);
-      DoubleObjectHashMap<LongIntHashMap> observed = new DoubleObjectHashMap<>();
+      LongIntHashMap featureCount = new LongIntHashMap();
+      int[] classProb = new int[numClasses];
+      LongIntHashMap[] observed = new LongIntHashMap[numClasses];
+      LongIntHashMap bag = new LongIntHashMap();
 
       // count number of samples with this word
-      for (BagOfBigrams bagOfPattern : bob) {
-        double label = bagOfPattern.label;
+      for (int j = 0; j < words.length; j++) {
+        createBag(words[j], w, wordLength, bag);
 
-        int index = -1;
-        LongIntHashMap obs = null;
-        if ((index = observed.indexOf(label)) > -1) {
-          obs = observed.indexGet(index);
-        } else {
-          obs = new LongIntHashMap();
-          observed.put(label, obs);
+        // samples per class
+        classProb[classes[j]]++;
+
+        if (observed[classes[j]] == null) {
+          observed[classes[j]] = new LongIntHashMap();
         }
+        LongIntHashMap obs = observed[classes[j]];
 
-        for (LongIntCursor word : bagOfPattern.bob) {
-          if (word.value > 0) {
-            featureCount.putOrAdd(word.key, 1,1); //word.value, word.value);
+        for (LongIntCursor word : bag) {
+          featureCount.putOrAdd(word.key, 1, 1);
 
-            // count observations per class for this feature
-            obs.putOrAdd(word.key, 1,1); //word.value, word.value);
-          }
+          // count observations per class for this feature
+          obs.putOrAdd(word.key, 1, 1);
         }
       }
 
-      // samples per class
-      for (BagOfBigrams bagOfPattern : bob) {
-        double label = bagOfPattern.label;
-        classProb.putOrAdd(label, 1, 1);
+      int numObservedClasses = 0;
+      for (int prob : classProb) {
+        if (prob > 0) {
+          numObservedClasses++;
+        }
       }
 
       // p_value-squared: observed minus expected occurrence
       LongDoubleHashMap chiSquareSum = new LongDoubleHashMap(featureCount.size());
 
-      for (DoubleIntCursor prob : classProb) {
-        double p = ((double)prob.value) / bob.length;
-        LongIntHashMap obs = observed.get(prob.key);
+      for (int k = 0; k < numClasses; k++) {
+        if (classProb[k] == 0) {
+          continue;
+        }
+        double p = ((double) classProb[k]) / words.length;
+        LongIntHashMap obs = observed[k];
 
         for (LongIntCursor feature : featureCount) {
           double expected = p * feature.value;
@@ -714,13 +677,15 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
           }
         }
       }
+      featureCount = null;
+      observed = null;
 
-      LongHashSet chiSquare = new LongHashSet(featureCount.size());
-      ArrayList<PValueKey> values = new ArrayList<PValueKey>(featureCount.size());
+      LongHashSet chiSquare = new LongHashSet(chiSquareSum.size());
+      ArrayList<PValueKey> values = new ArrayList<PValueKey>(chiSquareSum.size());
 
       for (LongDoubleCursor feature : chiSquareSum) {
         double newChi = feature.value;
-        double pvalue = Statistics.chiSquaredProbability(newChi, classProb.keys().size()-1);
+        double pvalue = Statistics.chiSquaredProbability(newChi, numObservedClasses - 1);
 
         if (pvalue <= p_limit) {
           chiSquare.add(feature.key);
@@ -766,17 +731,30 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
         }
       }
 
-      // remove values
-      for (int j = 0; j < bob.length; j++) {
-        LongIntHashMap oldMap = bob[j].bob;
-        bob[j].bob = new LongIntHashMap();
-        for (LongIntCursor cursor : oldMap) {
-          if (chiSquare.contains(cursor.key)) {
-            bob[j].bob.put(cursor.key, cursor.value);
+      // keep the selected words of each sample
+      int[] rows = new int[words.length + 1];
+      LongArrayList selectedWords = new LongArrayList();
+      IntArrayList selectedCounts = new IntArrayList();
+      for (int j = 0; j < words.length; j++) {
+        createBag(words[j], w, wordLength, bag);
+
+        long[] keys = new long[bag.size()];
+        int size = 0;
+        for (LongIntCursor word : bag) {
+          if (chiSquare.contains(word.key)) {
+            keys[size++] = word.key;
           }
         }
-        oldMap.clear();
+        Arrays.sort(keys, 0, size);
+
+        for (int k = 0; k < size; k++) {
+          selectedWords.add(keys[k]);
+          selectedCounts.add(bag.get(keys[k]));
+        }
+        rows[j + 1] = selectedWords.size();
       }
+
+      return new WindowFeatures(rows, selectedWords.toArray(), selectedCounts.toArray());
     }
 
     static class PValueKey {
@@ -795,14 +773,14 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     }
 
     /**
-     * Create words and bi-grams for all window lengths
+     * Creates the histogram of words and bi-grams of one sample for one window length.
      */
-    public BagOfBigrams createBagOfPatterns(
+    protected void createBag(
             final int[] words,
-            final Instance sample,
             final int w,    // index of used windowSize
-            final int wordLength) {
-      BagOfBigrams bagOfPatterns = new BagOfBigrams(words.length * 2, sample.classValue());
+            final int wordLength,
+            final LongIntHashMap bag) {
+      bag.clear();
 
       final byte usedBits = (byte) binlog(this.alphabetSize);
       final long mask = (1L << (usedBits * wordLength)) - 1L;
@@ -811,56 +789,39 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       // create subsequences
       for (int offset = 0; offset < words.length; offset++) {
         long word = (words[offset] & mask) << highestBit | (long) w;
-        bagOfPatterns.bob.putOrAdd(word, 1, 1);
+        bag.putOrAdd(word, 1, 1);
 
         // add 2 grams
         if (offset - this.windowLengths[w] >= 0) {
           long prevWord = (words[offset - this.windowLengths[w]] & mask);
           if (prevWord != 0) {
             long newWord = (prevWord << 32 | word);
-            bagOfPatterns.bob.putOrAdd(newWord, 1, 1);
+            bag.putOrAdd(newWord, 1, 1);
           }
         }
       }
-      return bagOfPatterns;
     }
 
     /**
-     * Create words and bi-grams for all window lengths
+     * Transforms a single sample into the liblinear feature vector of the words kept
+     * in the dictionary.
      */
-    public BagOfBigrams[] createBagOfPatterns(
-            final int[][] wordsForWindowLength,
-            final Instances samples,
-            final int w,    // index of used windowSize
-            final int wordLength) {
-      BagOfBigrams[] bagOfPatterns = new BagOfBigrams[samples.size()];
-
-      final byte usedBits = (byte) binlog(this.alphabetSize);
-      final long mask = (1L << (usedBits * wordLength)) - 1L;
-      int highestBit = binlog(Integer.highestOneBit(MAX_WINDOW_LENGTH))+1;
-
-      // iterate all samples
-      // and create a bag of pattern
-      for (int j = 0; j < samples.size(); j++) {
-        bagOfPatterns[j] = new BagOfBigrams(wordsForWindowLength[j].length * 2, samples.get(j).classValue());
-
-        // create subsequences
-        for (int offset = 0; offset < wordsForWindowLength[j].length; offset++) {
-          long word = (wordsForWindowLength[j][offset] & mask) << highestBit | (long) w;
-          bagOfPatterns[j].bob.putOrAdd(word, 1, 1);
-
-          // add 2 grams
-          if (offset - this.windowLengths[w] >= 0) {
-            long prevWord = (wordsForWindowLength[j][offset - this.windowLengths[w]] & mask);
-            if (prevWord != 0) {
-              long newWord = (prevWord << 32 | word);
-              bagOfPatterns[j].bob.putOrAdd(newWord, 1, 1);
-            }
+    public FeatureNode[] transform(final Instance sample, final int wordLength) {
+      ArrayList<FeatureNode> features = new ArrayList<>();
+      LongIntHashMap bag = new LongIntHashMap();
+      for (int w = 0; w < this.windowLengths.length; w++) {
+        createBag(createWords(sample, w), w, wordLength, bag);
+        for (LongIntCursor word : bag) {
+          int index = this.dict.dictChi.indexOf(word.key);
+          if (index > -1) {
+            features.add(new FeatureNode(this.dict.dictChi.indexGet(index), word.value));
           }
         }
       }
 
-      return bagOfPatterns;
+      FeatureNode[] featuresArray = features.toArray(new FeatureNode[]{});
+      sortByIndex(featuresArray);
+      return featuresArray;
     }
   }
 
@@ -880,6 +841,9 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     public int wordLength = 0;
     public boolean initialized = false;
 
+    // number of distinct labels in the orderline
+    public int numClasses = 0;
+
     public int maxWordLength;
 
     // The Momentary Fourier Transform
@@ -915,11 +879,11 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
 
     class ValueLabel {
       public double value;
-      public double label;
+      public int label;
 
-      public ValueLabel(double key, Double label) {
+      public ValueLabel(double key, int label) {
         this.value = key;
-        this.label = label != null? label : 0;
+        this.label = label;
       }
 
       @Override
@@ -942,7 +906,7 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       this.transformation = new MFT(windowLength, normMean);
 
       ArrayList<double[]> sa = new ArrayList<>(timeSeries.numInstances());
-      ArrayList<Double> labels = new ArrayList<>(timeSeries.numInstances());
+      DoubleArrayList labels = new DoubleArrayList(timeSeries.numInstances());
 
       for (Instance t : timeSeries) {
         for (double[] data : getDisjointSequences(t, windowLength, normMean)) {
@@ -951,12 +915,8 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
         }
       }
 
-      double[][] allSamples = new double[sa.size()][];
-      double[] allLabels = new double[sa.size()];
-      for (int i = 0; i < sa.size(); i++) {
-        allSamples[i] = sa.get(i);
-        allLabels[i] = labels.get(i);
-      }
+      double[][] allSamples = sa.toArray(new double[sa.size()][]);
+      double[] allLabels = labels.toArray();
 
       fitTransform(allSamples, allLabels, wordLength, symbols, normMean);
     }
@@ -1012,11 +972,40 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       return data;
     }
 
-    protected double entropy(ObjectIntHashMap<Double> frequency, double total) {
+    /**
+     * Maps each label to the index of its value among the distinct labels, in ascending
+     * order.
+     */
+    protected static int[] classIndices(double[] labels) {
+      double[] distinct = labels.clone();
+      Arrays.sort(distinct);
+      int numDistinct = 0;
+      for (int i = 0; i < distinct.length; i++) {
+        if (i == 0 || distinct[i] != distinct[numDistinct - 1]) {
+          distinct[numDistinct++] = distinct[i];
+        }
+      }
+
+      int[] classes = new int[labels.length];
+      for (int i = 0; i < labels.length; i++) {
+        classes[i] = Arrays.binarySearch(distinct, 0, numDistinct, labels[i]);
+      }
+      return classes;
+    }
+
+    protected static int numClasses(int[] classes) {
+      int numClasses = 0;
+      for (int label : classes) {
+        numClasses = Math.max(label + 1, numClasses);
+      }
+      return numClasses;
+    }
+
+    protected double entropy(int[] frequency, double total) {
       double entropy = 0;
       double log2 = 1.0 / Math.log(2.0);
-      for (IntCursor element : frequency.values()) {
-        double p = element.value / total;
+      for (int count : frequency) {
+        double p = count / total;
         if (p > 0) {
           entropy -= p * Math.log(p) * log2;
         }
@@ -1025,7 +1014,7 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
     }
 
     protected double calculateInformationGain(
-            ObjectIntHashMap<Double> cIn, ObjectIntHashMap<Double> cOut,
+            int[] cIn, int[] cOut,
             double class_entropy,
             double total_c_in,
             double total) {
@@ -1048,23 +1037,23 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
 
       // class entropy
       int total = end - start;
-      ObjectIntHashMap<Double> cIn = new ObjectIntHashMap<>();
-      ObjectIntHashMap<Double> cOut = new ObjectIntHashMap<>();
+      int[] cIn = new int[this.numClasses];
+      int[] cOut = new int[this.numClasses];
       for (int pos = start; pos < end; pos++) {
-        cOut.putOrAdd(element.get(pos).label, 1, 1);
+        cOut[element.get(pos).label]++;
       }
       double class_entropy = entropy(cOut, total);
 
       int i = start;
-      Double lastLabel = element.get(i).label;
+      int lastLabel = element.get(i).label;
       i += moveElement(element, cIn, cOut, start);
 
       for (int split = start + 1; split < end - 1; split++) {
-        Double label = element.get(i).label;
+        int label = element.get(i).label;
         i += moveElement(element, cIn, cOut, split);
 
         // only inspect changes of the label
-        if (!label.equals(lastLabel)) {
+        if (label != lastLabel) {
           double gain = calculateInformationGain(cIn, cOut, class_entropy, i, total);
           gain = Math.round(gain * 1000.0) / 1000.0; // round for 4 decimal places
 
@@ -1098,10 +1087,10 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
 
     protected int moveElement(
             List<ValueLabel> element,
-            ObjectIntHashMap<Double> cIn, ObjectIntHashMap<Double> cOut,
+            int[] cIn, int[] cOut,
             int pos) {
-      cIn.putOrAdd(element.get(pos).label, 1, 1);
-      cOut.putOrAdd(element.get(pos).label, -1, -1);
+      cIn[element.get(pos).label]++;
+      cOut[element.get(pos).label]--;
       return 1;
     }
 
@@ -1188,26 +1177,12 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
             double[][] samples,
             double[] labels,
             double[][] transformedSignal) {
-      HashMap<Double, ArrayList<double[]>> classes = new HashMap<>();
-      for (int i = 0; i < samples.length; i++) {
-        ArrayList<double[]> allTs = classes.get(labels[i]);
-        if (allTs == null) {
-          allTs = new ArrayList<>();
-          classes.put(labels[i], allTs);
-        }
-        allTs.add(transformedSignal[i]);
-      }
-
-      double nSamples = transformedSignal.length;
-      double nClasses = classes.keySet().size();
+      int[] classes = classIndices(labels);
+      int nClasses = numClasses(classes);
 
-//    int length = 0;
-//    for (int i = 0; i < transformedSignal.length; i++) {
-//      length = Math.max(transformedSignal[i].length, length);
-//    }
       int length = (transformedSignal != null && transformedSignal.length > 0) ? transformedSignal[0].length : 0;
 
-      double[] f = getFoneway(length, classes, nSamples, nClasses);
+      double[] f = getFoneway(length, transformedSignal, classes, nClasses);
 
       // sort by largest f-value
       @SuppressWarnings("unchecked")
@@ -1228,6 +1203,8 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
      */
     protected double[][] fillOrderline(double[][] samples, double[] labels, int l) {
       double[][] transformedSamples = new double[samples.length][];
+      int[] classes = classIndices(labels);
+      this.numClasses = numClasses(classes);
 
       for (int i = 0; i < samples.length; i++) {
         // z-normalization
@@ -1239,7 +1216,7 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
         for (int j = 0; j < transformedSamples[i].length; j++) {
           // round to 2 decimal places to reduce noise
           double value = Math.round(transformedSamples[i][j] * 100.0) / 100.0;
-          this.orderLine[j].add(new ValueLabel(value, labels[i]));
+          this.orderLine[j].add(new ValueLabel(value, classes[i]));
         }
       }
 
@@ -1252,7 +1229,7 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
             if (comp != 0) {
               return comp;
             }
-            return Double.compare(o1.label,o2.label);
+            return Integer.compare(o1.label,o2.label);
           }
         });
       }
@@ -1266,43 +1243,36 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
      * more groups, possibly with differing sizes.
      *
      * @param length
-     * @param classes
-     * @param nSamples
+     * @param samples
+     * @param classes the class index of each sample
      * @param nClasses
      * @return
      */
     public static double[] getFoneway(
             int length,
-            Map<Double, ArrayList<double[]>> classes,
-            double nSamples,
-            double nClasses) {
+            double[][] samples,
+            int[] classes,
+            int nClasses) {
+      double nSamples = samples.length;
       double[] ss_alldata = new double[length];
-      HashMap<Double, double[]> sums_args = new HashMap<>();
-
-      for (Map.Entry<Double, ArrayList<double[]>> allTs : classes.entrySet()) {
+      double[][] sums_args = new double[nClasses][length];
+      int[] n_samples_per_class = new int[nClasses];
 
-        double[] sums = new double[ss_alldata.length];
-        sums_args.put(allTs.getKey(), sums);
+      for (int j = 0; j < samples.length; j++) {
+        double[] ts = samples[j];
+        double[] sums = sums_args[classes[j]];
+        n_samples_per_class[classes[j]]++;
 
-        for (double[] ts : allTs.getValue()) {
-          for (int i = 0; i < ts.length; i++) {
-            ss_alldata[i] += ts[i] * ts[i];
-            sums[i] += ts[i];
-          }
+        for (int i = 0; i < ts.length; i++) {
+          ss_alldata[i] += ts[i] * ts[i];
+          sums[i] += ts[i];
         }
       }
 
       double[] square_of_sums_alldata = new double[ss_alldata.length];
-      Map<Double, double[]> square_of_sums_args = new HashMap<>();
-      for (Map.Entry<Double, double[]> sums : sums_args.entrySet()) {
-        for (int i = 0; i < sums.getValue().length; i++) {
-          square_of_sums_alldata[i] += sums.getValue()[i];
-        }
-
-        double[] squares = new double[sums.getValue().length];
-        square_of_sums_args.put(sums.getKey(), squares);
-        for (int i = 0; i < sums.getValue().length; i++) {
-          squares[i] += sums.getValue()[i] * sums.getValue()[i];
+      for (double[] sums : sums_args) {
+        for (int i = 0; i < sums.length; i++) {
+          square_of_sums_alldata[i] += sums[i];
         }
       }
 
@@ -1318,10 +1288,10 @@ public class WEASEL extends EnhancedAbstractClassifier implements TechnicalInfor
       double[] ssbn = new double[ss_alldata.length];    // sum of squares between
       double[] sswn = new double[ss_alldata.length];    // sum of squares within
 
-      for (Map.Entry<Double, double[]> sums : square_of_sums_args.entrySet()) {
-        double n_samples_per_class = classes.get(sums.getKey()).size();
-        for (int i = 0; i < sums.getValue().length; i++) {
-          ssbn[i] += sums.getValue()[i] / n_samples_per_class;
+      for (int k = 0; k < nClasses; k++) {
+        double[] sums = sums_args[k];
+        for (int i = 0; i < sums.length; i++) {
+          ssbn[i] += sums[i] * sums[i] / n_samples_per_class[k];
         }
       }
 
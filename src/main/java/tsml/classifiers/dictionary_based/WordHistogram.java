@@ -0,0 +1,191 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.dictionary_based;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongIntHashMap;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Compact histogram of word counts, used for the bags of the BOSS family. Words are stored as primitive long keys
+ * sorted in ascending order alongside their counts, so a bag holds no boxed keys or counts and two bags are compared
+ * with a single merge over their keys rather than a hash lookup per word.
+ *
+ * Words at a level of a spatial pyramid are keyed by key(word, level), the level in the upper 32 bits and the word in
+ * the lower. Any other long, such as a bigram of two words, can be used as a key so long as it is kept apart from
+ * leveled words.
+ *
+ * Histograms are built by counting into a LongIntHashMap and are immutable once created.
+ */
+public class WordHistogram implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long[] words;
+    private final int[] counts;
+
+    public WordHistogram(LongIntHashMap counts) {
+        this.words = counts.keys().toArray();
+        Arrays.sort(this.words);
+        this.counts = new int[this.words.length];
+        for (int i = 0; i < this.words.length; i++) {
+            this.counts[i] = counts.get(this.words[i]);
+        }
+    }
+
+    protected WordHistogram(WordHistogram histogram) {
+        this.words = histogram.words;
+        this.counts = histogram.counts;
+    }
+
+    private WordHistogram(long[] words, int[] counts) {
+        this.words = words;
+        this.counts = counts;
+    }
+
+    public static long key(int word, int level) {
+        return ((long) level << 32) | (word & 0xFFFFFFFFL);
+    }
+
+    public static int level(long key) {
+        return (int) (key >> 32);
+    }
+
+    public int size() { return words.length; }
+
+    public long getWord(int index) { return words[index]; }
+
+    public int getCount(int index) { return counts[index]; }
+
+    /**
+     * @return the count of the word, 0 if it does not appear
+     */
+    public int get(long word) {
+        int index = Arrays.binarySearch(words, word);
+        return index >= 0 ? counts[index] : 0;
+    }
+
+    /**
+     * @return histogram with only the words in the set
+     */
+    public WordHistogram filter(LongHashSet keep) {
+        long[] newWords = new long[words.length];
+        int[] newCounts = new int[words.length];
+        int size = 0;
+        for (int i = 0; i < words.length; i++) {
+            if (keep.contains(words[i])) {
+                newWords[size] = words[i];
+                newCounts[size++] = counts[i];
+            }
+        }
+        return new WordHistogram(Arrays.copyOf(newWords, size), Arrays.copyOf(newCounts, size));
+    }
+
+    /**
+     * Squared difference of the counts of the words in this histogram, NON-SYMMETRIC as words only in other are
+     * ignored.
+     *
+     * @param absentCount count taken for words of this histogram missing from other
+     * @return distance FROM this TO other, or Double.MAX_VALUE if it would be greater than bestDist
+     */
+    public double distance(WordHistogram other, int absentCount, double bestDist) {
+        double dist = 0.0;
+        int j = 0;
+        for (int i = 0; i < words.length; i++) {
+            j = advance(other.words, j, words[i]);
+            int countB = j < other.words.length && other.words[j] == words[i] ? other.counts[j] : absentCount;
+            dist += (counts[i] - countB) * (counts[i] - countB);
+
+            if (dist > bestDist)
+                return Double.MAX_VALUE;
+        }
+        return dist;
+    }
+
+    /**
+     * As distance(other, 0, bestDist) with the counts of each word scaled by the weight of its level, for words keyed
+     * by key(word, level).
+     */
+    public double distance(WordHistogram other, double[] levelWeights, double bestDist) {
+        double dist = 0.0;
+        int j = 0;
+        for (int i = 0; i < words.length; i++) {
+            j = advance(other.words, j, words[i]);
+            double weight = levelWeights[level(words[i])];
+            double valA = counts[i] * weight;
+            double valB = j < other.words.length && other.words[j] == words[i] ? other.counts[j] * weight : 0.0;
+            dist += (valA - valB) * (valA - valB);
+
+            if (dist > bestDist)
+                return Double.MAX_VALUE;
+        }
+        return dist;
+    }
+
+    /**
+     * @return sum of the minimum count of each word in both histograms
+     */
+    public double intersection(WordHistogram other) {
+        double sim = 0.0;
+        int i = 0, j = 0;
+        while (i < words.length && j < other.words.length) {
+            if (words[i] < other.words[j]) {
+                i++;
+            } else if (words[i] > other.words[j]) {
+                j++;
+            } else {
+                sim += Math.min(counts[i], other.counts[j]);
+                i++;
+                j++;
+            }
+        }
+        return sim;
+    }
+
+    /**
+     * As intersection(other) with the counts of each word scaled by the weight of its level, for words keyed by
+     * key(word, level).
+     */
+    public double intersection(WordHistogram other, double[] levelWeights) {
+        double sim = 0.0;
+        int i = 0, j = 0;
+        while (i < words.length && j < other.words.length) {
+            if (words[i] < other.words[j]) {
+                i++;
+            } else if (words[i] > other.words[j]) {
+                j++;
+            } else {
+                double weight = levelWeights[level(words[i])];
+                sim += Math.min(counts[i] * weight, other.counts[j] * weight);
+                i++;
+                j++;
+            }
+        }
+        return sim;
+    }
+
+    // index of the first word in words from index onwards that is not less than word
+    private static int advance(long[] words, int index, long word) {
+        while (index < words.length && words[index] < word) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.dictionary_based;
+
+import com.carrotsearch.hppc.LongHashSet;
+import com.carrotsearch.hppc.LongIntHashMap;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class WordHistogramTest {
+
+    private static WordHistogram histogram(long... wordsAndCounts) {
+        LongIntHashMap counts = new LongIntHashMap();
+        for (int i = 0; i < wordsAndCounts.length; i += 2) {
+            counts.put(wordsAndCounts[i], (int) wordsAndCounts[i + 1]);
+        }
+        return new WordHistogram(counts);
+    }
+
+    @Test
+    public void testGet() {
+        WordHistogram a = histogram(5, 2, -3, 1, 1L << 40, 4);
+        assertEquals(3, a.size());
+        assertEquals(-3, a.getWord(0));
+        assertEquals(2, a.get(5));
+        assertEquals(4, a.get(1L << 40));
+        assertEquals(0, a.get(6));
+    }
+
+    @Test
+    public void testDistance() {
+        WordHistogram a = histogram(1, 3, 2, 1, 7, 2);
+        WordHistogram b = histogram(1, 1, 5, 4, 7, 2);
+        // (3-1)^2 + (1-0)^2 + (2-2)^2, words only in b are ignored
+        assertEquals(5, a.distance(b, 0, Double.MAX_VALUE), 0);
+        assertEquals(4 + 0 + 0, a.distance(b, 1, Double.MAX_VALUE), 0);
+        assertEquals(Double.MAX_VALUE, a.distance(b, 0, 4.5), 0);
+        assertEquals(4 + 16, b.distance(a, 0, Double.MAX_VALUE), 0);
+    }
+
+    @Test
+    public void testIntersection() {
+        WordHistogram a = histogram(1, 3, 2, 1, 7, 2);
+        WordHistogram b = histogram(1, 1, 5, 4, 7, 5);
+        assertEquals(3, a.intersection(b), 0);
+        assertEquals(3, b.intersection(a), 0);
+    }
+
+    @Test
+    public void testLevelWeights() {
+        WordHistogram a = histogram(WordHistogram.key(9, 0), 2, WordHistogram.key(9, 1), 3, WordHistogram.key(-1, 2), 1);
+        WordHistogram b = histogram(WordHistogram.key(9, 0), 1, WordHistogram.key(-1, 2), 4);
+        assertEquals(2, WordHistogram.level(WordHistogram.key(-1, 2)));
+        double[] weights = {0.25, 0.5, 0.5};
+        assertEquals(0.25 + 0.5, a.intersection(b, weights), 0);
+        // (0.5-0.25)^2 + (1.5-0)^2 + (0.5-2)^2
+        assertEquals(0.0625 + 2.25 + 2.25, a.distance(b, weights, Double.MAX_VALUE), 0);
+    }
+
+    @Test
+    public void testFilter() {
+        WordHistogram a = histogram(1, 3, 2, 1, 7, 2);
+        LongHashSet keep = new LongHashSet();
+        keep.add(2);
+        keep.add(7);
+        keep.add(8);
+        WordHistogram filtered = a.filter(keep);
+        assertEquals(2, filtered.size());
+        assertEquals(0, filtered.get(1));
+        assertEquals(2, filtered.get(7));
+    }
+}
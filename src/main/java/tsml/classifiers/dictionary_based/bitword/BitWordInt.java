@@ -89,6 +89,11 @@ public class BitWordInt implements BitWord {
         this.length = bw.length;
     }
 
+    public BitWordInt(int word, byte length) {
+        this.word = word;
+        this.length = length;
+    }
+
     public BitWordInt(int [] letters) throws Exception {
         setWord(letters);
     }
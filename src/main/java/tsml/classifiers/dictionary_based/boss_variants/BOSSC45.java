@@ -35,9 +35,6 @@ import weka.core.Capabilities;
 import weka.classifiers.Classifier;
 import weka.core.TechnicalInformation;
 
-import java.util.Map.Entry;
-
-import tsml.classifiers.dictionary_based.bitword.BitWordInt;
 import utilities.ClassifierTools;
 import experiments.data.DatasetLoading;
 import java.util.concurrent.TimeUnit;
@@ -642,8 +639,8 @@ public class BOSSC45 extends EnhancedAbstractClassifier implements SaveParameter
             ArrayList<Attribute> attInfo = new ArrayList<>();
             Set<String> wordsFound = new HashSet<>();
             for (Bag bag : bags) 
-                for (Entry<BitWordInt,Integer> entry : bag.entrySet())
-                    wordsFound.add(entry.getKey().toString());
+                for (int j = 0; j < bag.size(); j++)
+                    wordsFound.add(bag.getBitWord(j).toString());
             for (String word : wordsFound) 
                 attInfo.add(new Attribute(word));
 
@@ -661,8 +658,8 @@ public class BOSSC45 extends EnhancedAbstractClassifier implements SaveParameter
                 init[init.length-1] = bag.getClassVal();
 
                 bagInsts.add(new DenseInstance(1, init));
-                for (Entry<BitWordInt,Integer> entry : bag.entrySet())
-                    bagInsts.get(i).setValue(bagInsts.attribute(entry.getKey().toString()), entry.getValue());
+                for (int j = 0; j < bag.size(); j++)
+                    bagInsts.get(i).setValue(bagInsts.attribute(bag.getBitWord(j).toString()), bag.getCount(j));
 
                 i++;
             }
@@ -744,10 +741,10 @@ public class BOSSC45 extends EnhancedAbstractClassifier implements SaveParameter
 
             //TEMPORARILY create it on the end of the train insts to easily copy over the attribute data.
             bagInsts.add(new DenseInstance(1, init));
-            for (Entry<BitWordInt,Integer> entry : testBag.entrySet()) {
-                Attribute att = bagInsts.attribute(entry.getKey().toString());
+            for (int j = 0; j < testBag.size(); j++) {
+                Attribute att = bagInsts.attribute(testBag.getBitWord(j).toString());
                 if (att != null)
-                    bagInsts.get(bagInsts.size()-1).setValue(att, entry.getValue());
+                    bagInsts.get(bagInsts.size()-1).setValue(att, testBag.getCount(j));
             }
 
             Instance testInst = bagInsts.remove(bagInsts.size()-1);
@@ -766,10 +763,10 @@ public class BOSSC45 extends EnhancedAbstractClassifier implements SaveParameter
 
             //TEMPORARILY create it on the end of the train isnts to easily copy over the attribute data.
             bagInsts.add(new DenseInstance(1, init));
-            for (Entry<BitWordInt,Integer> entry : testBag.entrySet()) {
-                Attribute att = bagInsts.attribute(entry.getKey().toString());
+            for (int j = 0; j < testBag.size(); j++) {
+                Attribute att = bagInsts.attribute(testBag.getBitWord(j).toString());
                 if (att != null)
-                    bagInsts.get(bagInsts.numInstances()-1).setValue(att, entry.getValue());
+                    bagInsts.get(bagInsts.numInstances()-1).setValue(att, testBag.getCount(j));
             }
             Instance testInst = bagInsts.remove(bagInsts.size()-1);
 
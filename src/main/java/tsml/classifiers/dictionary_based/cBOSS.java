@@ -133,6 +133,7 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
     private Instances seriesHeader;
 
     private transient Instances train;
+    private transient FourierCache fourierCache;
     private double ensembleCvAcc = -1;
     private double[] ensembleCvPreds = null;
 
@@ -541,6 +542,7 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
         }
 */
         train = data;
+        fourierCache = new FourierCache();
 
         if (getEstimateOwnPerformance()){
             trainDistributions = new double[data.numInstances()][data.numClasses()];
@@ -598,6 +600,9 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
         trainResults.setBuildPlusEstimateTime(trainResults.getBuildTime() + trainResults.getErrorEstimateTime());
         trainResults.setParas(getParameters());
 
+        //transforms of the train series are not needed for new instances
+        fourierCache.clear();
+
         //delete any serialised files and holding folder for checkpointing on completion
         if (checkpoint && cleanupCheckpointFiles){
             checkpointCleanup();
@@ -622,6 +627,7 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
             Instances data = resampleData(series[currentSeries], boss);
             boss.cleanAfterBuild = true;
             boss.seed = seed;
+            boss.setFourierCache(fourierCache);
             boss.buildClassifier(data);
             boss.accuracy = individualTrainAcc(boss, data, numClassifiers[currentSeries] < maxEnsembleSize ? Double.MIN_VALUE : lowestAcc[currentSeries]);
 
@@ -751,6 +757,7 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
             Instances data = resampleData(series[currentSeries], boss);
             boss.cleanAfterBuild = true;
             boss.seed = seed;
+            boss.setFourierCache(fourierCache);
             boss.buildClassifier(data);
             classifiers[currentSeries].add(boss);
             numClassifiers[currentSeries]++;
@@ -56,6 +56,8 @@ public abstract class BaseDistanceMeasure implements DistanceMeasure {
     // whether to invert the distance measure. false --> the smaller the distance the more similar. true --> the
     // larger the distance the more similar
     private boolean invert;
+    // whether to check the lower bound before finding the full distance when a limit is given
+    private boolean lowerBounding;
 
     @Override
     public String toString() {
@@ -121,11 +123,42 @@ public abstract class BaseDistanceMeasure implements DistanceMeasure {
             a = b;
             b = tmp;
         }
+        // skip the full distance if it's bound to be above the limit
+        if(lowerBounding && limit != Double.POSITIVE_INFINITY) {
+            final LowerBound lowerBound = getLowerBound();
+            if(lowerBound != null && lowerBound.lowerBound(a, b, limit) > limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
         return findDistance(a, b, limit);
     }
 
     protected abstract double findDistance(final Instance a, final Instance b, final double limit);
 
+    /**
+     * the lower bound for this distance measure, cheapest first if several are cascaded. Null if there's no bound.
+     *
+     * @return
+     */
+    public LowerBound getLowerBound() {
+        return null;
+    }
+
+    public boolean isLowerBounding() {
+        return lowerBounding;
+    }
+
+    /**
+     * whether to check the lower bound before finding the full distance. Only applies when a limit is given. Note
+     * this changes the result for pairs over the limit: the distance is abandoned (infinity) rather than possibly
+     * finished off.
+     *
+     * @param lowerBounding
+     */
+    public void setLowerBounding(final boolean lowerBounding) {
+        this.lowerBounding = lowerBounding;
+    }
+
     @Override
     public final double distance(final Instance a, final Instance b, final double limit, final PerformanceStats stats) {
         return distance(a, b, limit);
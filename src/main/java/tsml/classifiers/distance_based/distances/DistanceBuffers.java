@@ -0,0 +1,94 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances;
+
+import weka.core.Instance;
+
+/**
+ * Per thread scratch arrays for the distance kernels. Once grown to the longest series seen a distance computation
+ * allocates nothing. An array is only valid until the same slot is requested again on the same thread, so callers
+ * must not hold on to them or pass them to other threads.
+ */
+public class DistanceBuffers {
+
+    // double slots
+    public static final int A = 0;
+    public static final int B = 1;
+    public static final int ROW = 2;
+    public static final int PREV_ROW = 3;
+    public static final int COSTS = 4;
+    public static final int PROJECTION = 5;
+    public static final int UPPER = 6;
+    public static final int LOWER = 7;
+    private static final int NUM_DOUBLE_SLOTS = 8;
+    // int slots
+    public static final int INT_ROW = 0;
+    public static final int INT_PREV_ROW = 1;
+    public static final int MAX_INDICES = 2;
+    public static final int MIN_INDICES = 3;
+    private static final int NUM_INT_SLOTS = 4;
+
+    private static final ThreadLocal<DistanceBuffers> BUFFERS = ThreadLocal.withInitial(DistanceBuffers::new);
+
+    private final double[][] doubles = new double[NUM_DOUBLE_SLOTS][0];
+    private final int[][] ints = new int[NUM_INT_SLOTS][0];
+
+    private DistanceBuffers() {}
+
+    public static DistanceBuffers get() {
+        return BUFFERS.get();
+    }
+
+    /**
+     * @param slot
+     * @param length
+     * @return an array of at least the given length. The contents are whatever was left by the last user.
+     */
+    public double[] getDoubles(int slot, int length) {
+        double[] array = doubles[slot];
+        if(array.length < length) {
+            array = new double[length];
+            doubles[slot] = array;
+        }
+        return array;
+    }
+
+    public int[] getInts(int slot, int length) {
+        int[] array = ints[slot];
+        if(array.length < length) {
+            array = new int[length];
+            ints[slot] = array;
+        }
+        return array;
+    }
+
+    /**
+     * copy the values of an instance, excluding the class value at the end, into a slot.
+     * @param slot
+     * @param instance
+     * @return
+     */
+    public double[] getValues(int slot, Instance instance) {
+        final int length = instance.numAttributes() - 1;
+        final double[] array = getDoubles(slot, length);
+        for(int i = 0; i < length; i++) {
+            array[i] = instance.value(i);
+        }
+        return array;
+    }
+}
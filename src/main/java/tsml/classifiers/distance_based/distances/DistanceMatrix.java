@@ -0,0 +1,274 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import weka.core.DistanceFunction;
+import weka.core.Instance;
+
+/**
+ * Matrix of pairwise distances, computed in square tiles which can be spread over several threads. Distances from a
+ * symmetric distance measure between a set of instances and itself are stored once, as the lower triangle of a
+ * primitive array.
+ * <p>
+ * Optionally the distances can be early abandoned against the current k-th nearest neighbour. A distance is then only
+ * guaranteed to be exact if it's within the k nearest neighbours of its row (or of its column, for pairwise
+ * matrices); any other may be positive infinity. This is all a knn / LOOCV needs.
+ * <p>
+ * The distance function must be safe to call from several threads at once when given an executor.
+ */
+public class DistanceMatrix implements Serializable {
+
+    // the side length of a tile, i.e. a block of distances computed by one task
+    private static final int TILE_SIZE = 64;
+
+    private final int numRows;
+    private final int numColumns;
+    // whether only the lower triangle is stored
+    private final boolean triangular;
+    // whether the diagonal is excluded, i.e. rows and columns are the same instances
+    private final boolean pairwise;
+    private final double[] distances;
+
+    private DistanceMatrix(int numRows, int numColumns, boolean pairwise, boolean triangular) {
+        this.numRows = numRows;
+        this.numColumns = numColumns;
+        this.pairwise = pairwise;
+        this.triangular = triangular;
+        final long size = triangular ? (long) numRows * (numRows - 1) / 2 : (long) numRows * numColumns;
+        if(size > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("too many distances to hold in a single array: " + size);
+        }
+        distances = new double[(int) size];
+    }
+
+    /**
+     * the distance between every pair of instances. The diagonal is not computed and is always 0.
+     *
+     * @param distanceFunction
+     * @param data
+     * @param k the number of nearest neighbours to keep exact, or less than 1 to compute every distance exactly
+     * @param executor the threads to compute tiles on, or null to compute on the calling thread
+     * @return
+     */
+    public static DistanceMatrix pairwise(DistanceFunction distanceFunction, List<? extends Instance> data, int k,
+            ExecutorService executor) {
+        final boolean symmetric = distanceFunction instanceof DistanceMeasure
+                && ((DistanceMeasure) distanceFunction).isSymmetric();
+        final DistanceMatrix matrix = new DistanceMatrix(data.size(), data.size(), true, symmetric);
+        matrix.compute(distanceFunction, data, data, k, executor);
+        return matrix;
+    }
+
+    /**
+     * the distance from every row instance to every column instance, e.g. test instances to train instances.
+     *
+     * @param distanceFunction
+     * @param rows
+     * @param columns
+     * @param k the number of nearest columns to keep exact per row, or less than 1 to compute every distance exactly
+     * @param executor the threads to compute tiles on, or null to compute on the calling thread
+     * @return
+     */
+    public static DistanceMatrix between(DistanceFunction distanceFunction, List<? extends Instance> rows,
+            List<? extends Instance> columns, int k, ExecutorService executor) {
+        final DistanceMatrix matrix = new DistanceMatrix(rows.size(), columns.size(), false, false);
+        matrix.compute(distanceFunction, rows, columns, k, executor);
+        return matrix;
+    }
+
+    /**
+     * a symmetric matrix of distances between every pair of instances, all abandoned (positive infinity) until set.
+     * This is for distances found by other means, e.g. a search over distance measure parameters.
+     *
+     * @param numInstances
+     * @return
+     */
+    public static DistanceMatrix pairwise(int numInstances) {
+        final DistanceMatrix matrix = new DistanceMatrix(numInstances, numInstances, true, true);
+        Arrays.fill(matrix.distances, Double.POSITIVE_INFINITY);
+        return matrix;
+    }
+
+    private int index(int row, int column) {
+        final long index;
+        if(triangular) {
+            // lower triangle, row > column
+            if(row < column) {
+                final int tmp = row;
+                row = column;
+                column = tmp;
+            }
+            index = (long) row * (row - 1) / 2 + column;
+        } else {
+            index = (long) row * numColumns + column;
+        }
+        return (int) index;
+    }
+
+    public double get(int row, int column) {
+        if(pairwise && row == column) {
+            return 0;
+        }
+        return distances[index(row, column)];
+    }
+
+    public void set(int row, int column, double distance) {
+        if(pairwise && row == column) {
+            throw new IllegalArgumentException("cannot set the diagonal");
+        }
+        distances[index(row, column)] = distance;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public int getNumColumns() {
+        return numColumns;
+    }
+
+    /**
+     * @return whether each distance is only stored once, i.e. get(i, j) == get(j, i)
+     */
+    public boolean isTriangular() {
+        return triangular;
+    }
+
+    private void compute(DistanceFunction distanceFunction, List<? extends Instance> rows,
+            List<? extends Instance> columns, int k, ExecutorService executor) {
+        final NearestDistances[] rowNearest = k > 0 ? NearestDistances.array(numRows, k) : null;
+        // a pairwise matrix can only abandon a distance if it's not a neighbour of the row or the column instance. A
+        // triangular matrix holds each pair once, so the row and column of an instance are one set of distances.
+        // Otherwise the distances in the column of an instance are not those in its row, so they're tracked apart
+        final NearestDistances[] columnNearest;
+        if(rowNearest == null || !pairwise) {
+            columnNearest = null;
+        } else if(triangular) {
+            columnNearest = rowNearest;
+        } else {
+            columnNearest = NearestDistances.array(numColumns, k);
+        }
+        final List<Runnable> tiles = new ArrayList<>();
+        for(int rowStart = 0; rowStart < numRows; rowStart += TILE_SIZE) {
+            // triangular matrices only need the tiles on or below the diagonal
+            final int columnEnd = triangular ? rowStart + 1 : numColumns;
+            for(int columnStart = 0; columnStart < columnEnd; columnStart += TILE_SIZE) {
+                final int tileRowStart = rowStart;
+                final int tileColumnStart = columnStart;
+                tiles.add(() -> computeTile(distanceFunction, rows, columns, tileRowStart, tileColumnStart,
+                        rowNearest, columnNearest));
+            }
+        }
+        if(executor == null) {
+            tiles.forEach(Runnable::run);
+        } else {
+            final List<Future<?>> futures = new ArrayList<>(tiles.size());
+            for(Runnable tile : tiles) {
+                futures.add(executor.submit(tile));
+            }
+            try {
+                for(Future<?> future : futures) {
+                    future.get();
+                }
+            } catch(InterruptedException | ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void computeTile(DistanceFunction distanceFunction, List<? extends Instance> rows,
+            List<? extends Instance> columns, int rowStart, int columnStart, NearestDistances[] rowNearest,
+            NearestDistances[] columnNearest) {
+        final int rowEnd = Math.min(numRows, rowStart + TILE_SIZE);
+        final int columnEnd = Math.min(numColumns, columnStart + TILE_SIZE);
+        for(int i = rowStart; i < rowEnd; i++) {
+            final Instance row = rows.get(i);
+            // stay below the diagonal for triangular matrices
+            final int end = triangular ? Math.min(columnEnd, i) : columnEnd;
+            for(int j = columnStart; j < end; j++) {
+                if(pairwise && i == j) {
+                    continue;
+                }
+                double limit = Double.POSITIVE_INFINITY;
+                if(rowNearest != null) {
+                    // only abandon if the distance can't be a nearest neighbour of either the row or the column.
+                    // Limits only ever shrink so a stale read just abandons less.
+                    limit = rowNearest[i].getLimit();
+                    if(columnNearest != null) {
+                        limit = Math.max(limit, columnNearest[j].getLimit());
+                    }
+                }
+                final double distance = distanceFunction.distance(row, columns.get(j), limit);
+                distances[index(i, j)] = distance;
+                if(rowNearest != null && distance != Double.POSITIVE_INFINITY) {
+                    rowNearest[i].add(distance);
+                    if(columnNearest != null) {
+                        columnNearest[j].add(distance);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * the k smallest distances seen so far for a row / column.
+     */
+    private static class NearestDistances {
+        private final double[] nearest;
+        private volatile double limit = Double.POSITIVE_INFINITY;
+
+        private NearestDistances(int k) {
+            nearest = new double[k];
+            Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+        }
+
+        private static NearestDistances[] array(int length, int k) {
+            final NearestDistances[] array = new NearestDistances[length];
+            for(int i = 0; i < length; i++) {
+                array[i] = new NearestDistances(k);
+            }
+            return array;
+        }
+
+        private double getLimit() {
+            return limit;
+        }
+
+        private synchronized void add(double distance) {
+            // insertion into the sorted k nearest
+            int i = nearest.length - 1;
+            if(distance >= nearest[i]) {
+                return;
+            }
+            while(i > 0 && nearest[i - 1] > distance) {
+                nearest[i] = nearest[i - 1];
+                i--;
+            }
+            nearest[i] = distance;
+            limit = nearest[nearest.length - 1];
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.msm.MSMDistance;
+import weka.core.Instances;
+
+import static tsml.classifiers.distance_based.distances.erp.ERPDistanceTest.buildRandomDataset;
+
+/**
+ * Purpose: test the distance matrix against the distance measure
+ * <p>
+ * Contributors: goastler
+ */
+public class DistanceMatrixTest {
+
+    private Instances instances;
+    private ExecutorService executor;
+
+    @Before
+    public void before() {
+        // more instances than a single tile
+        instances = buildRandomDataset(new Random(0), -5, 5, 30, 150, 2);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void after() {
+        executor.shutdown();
+    }
+
+    private static DTWDistance buildDtw(Instances instances) {
+        final DTWDistance df = new DTWDistance();
+        df.setWindowSize(5);
+        df.setInstances(instances);
+        return df;
+    }
+
+    @Test
+    public void testPairwise() {
+        final DTWDistance df = buildDtw(instances);
+        final DistanceMatrix matrix = DistanceMatrix.pairwise(df, instances, -1, executor);
+        Assert.assertTrue(matrix.isTriangular());
+        Assert.assertEquals(instances.size(), matrix.getNumRows());
+        for(int i = 0; i < instances.size(); i++) {
+            Assert.assertEquals(0, matrix.get(i, i), 0);
+            for(int j = 0; j < instances.size(); j++) {
+                if(i != j) {
+                    Assert.assertEquals(df.distance(instances.get(i), instances.get(j)), matrix.get(i, j), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSequentialMatchesParallel() {
+        final MSMDistance df = new MSMDistance();
+        df.setInstances(instances);
+        final DistanceMatrix parallel = DistanceMatrix.pairwise(df, instances, -1, executor);
+        final DistanceMatrix sequential = DistanceMatrix.pairwise(df, instances, -1, null);
+        for(int i = 0; i < instances.size(); i++) {
+            for(int j = 0; j < instances.size(); j++) {
+                Assert.assertEquals(sequential.get(i, j), parallel.get(i, j), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testBetween() {
+        final DTWDistance df = buildDtw(instances);
+        final Instances rows = new Instances(instances, 0, 20);
+        final DistanceMatrix matrix = DistanceMatrix.between(df, rows, instances, -1, executor);
+        Assert.assertFalse(matrix.isTriangular());
+        Assert.assertEquals(rows.size(), matrix.getNumRows());
+        Assert.assertEquals(instances.size(), matrix.getNumColumns());
+        for(int i = 0; i < rows.size(); i++) {
+            for(int j = 0; j < instances.size(); j++) {
+                Assert.assertEquals(df.distance(rows.get(i), instances.get(j)), matrix.get(i, j), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testEarlyAbandonKeepsNearestNeighbours() {
+        final DTWDistance df = buildDtw(instances);
+        final int k = 3;
+        final DistanceMatrix full = DistanceMatrix.pairwise(df, instances, -1, executor);
+        final DistanceMatrix abandoned = DistanceMatrix.pairwise(df, instances, k, executor);
+        for(int i = 0; i < instances.size(); i++) {
+            final double[] row = new double[instances.size() - 1];
+            int index = 0;
+            for(int j = 0; j < instances.size(); j++) {
+                if(i != j) {
+                    final double distance = abandoned.get(i, j);
+                    // any distance kept must be exact
+                    if(distance != Double.POSITIVE_INFINITY) {
+                        Assert.assertEquals(full.get(i, j), distance, 0);
+                    }
+                    row[index++] = full.get(i, j);
+                }
+            }
+            // every distance within the k nearest must be kept
+            Arrays.sort(row);
+            final double kth = row[k - 1];
+            for(int j = 0; j < instances.size(); j++) {
+                if(i != j && full.get(i, j) <= kth) {
+                    Assert.assertEquals(full.get(i, j), abandoned.get(i, j), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEarlyAbandonAsymmetricKeepsNearestNeighbours() {
+        // dtw plus a penalty on the first instance only, so d(a, b) != d(b, a)
+        final DTWDistance df = new DTWDistance() {
+            @Override protected double findDistance(final double[] a, final int aLength, final double[] b,
+                    final int bLength, final double limit) {
+                final double penalty = a[0] * a[0];
+                final double distance = super.findDistance(a, aLength, b, bLength, limit - penalty);
+                return distance == Double.POSITIVE_INFINITY ? distance : distance + penalty;
+            }
+
+            @Override public boolean isSymmetric() {
+                return false;
+            }
+        };
+        df.setWindowSize(5);
+        df.setInstances(instances);
+        final int k = 3;
+        final DistanceMatrix full = DistanceMatrix.pairwise(df, instances, -1, executor);
+        final DistanceMatrix abandoned = DistanceMatrix.pairwise(df, instances, k, executor);
+        Assert.assertFalse(abandoned.isTriangular());
+        for(int i = 0; i < instances.size(); i++) {
+            final double[] row = new double[instances.size() - 1];
+            final double[] column = new double[instances.size() - 1];
+            int index = 0;
+            for(int j = 0; j < instances.size(); j++) {
+                if(i != j) {
+                    final double distance = abandoned.get(i, j);
+                    if(distance != Double.POSITIVE_INFINITY) {
+                        Assert.assertEquals(full.get(i, j), distance, 0);
+                    }
+                    row[index] = full.get(i, j);
+                    column[index++] = full.get(j, i);
+                }
+            }
+            // every distance within the k nearest of its row or its column must be kept
+            Arrays.sort(row);
+            Arrays.sort(column);
+            for(int j = 0; j < instances.size(); j++) {
+                if(i != j && full.get(i, j) <= row[k - 1]) {
+                    Assert.assertEquals(full.get(i, j), abandoned.get(i, j), 0);
+                }
+                if(i != j && full.get(j, i) <= column[k - 1]) {
+                    Assert.assertEquals(full.get(j, i), abandoned.get(j, i), 0);
+                }
+            }
+        }
+    }
+}
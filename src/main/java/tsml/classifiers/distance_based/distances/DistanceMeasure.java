@@ -60,4 +60,10 @@ public interface DistanceMeasure extends Serializable, DistanceFunction, ParamHa
             return df.getClass().getSimpleName();
         }
     }
+
+    static void setLowerBounding(DistanceFunction df, boolean lowerBounding) {
+        if(df instanceof BaseDistanceMeasure) {
+            ((BaseDistanceMeasure) df).setLowerBounding(lowerBounding);
+        }
+    }
 }
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.erp.ERPDistance;
+import tsml.classifiers.distance_based.distances.lcss.LCSSDistance;
+import tsml.classifiers.distance_based.distances.msm.MSMDistance;
+import tsml.classifiers.distance_based.distances.twed.TWEDistance;
+import tsml.classifiers.distance_based.distances.wdtw.WDTWDistance;
+import utilities.InstanceTools;
+import weka.core.Instances;
+
+/**
+ * Rough throughput / allocation benchmark of the elastic distance measures, through both the Instance and the double[]
+ * entry points. Allocation is measured per thread so needs a HotSpot jvm. Run with a fixed heap for stable numbers.
+ *
+ * Usage: DistanceMeasureBenchmark [numSeries] [seriesLength] [windowPercentage]
+ */
+public class DistanceMeasureBenchmark {
+
+    public static void main(String[] args) {
+        final int numSeries = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        final int seriesLength = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        final double windowPercentage = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        final Random random = new Random(0);
+        final double[][] series = new double[numSeries][seriesLength];
+        final double[] labels = new double[numSeries];
+        for(double[] values : series) {
+            for(int i = 0; i < values.length; i++) {
+                values[i] = random.nextGaussian();
+            }
+        }
+        final Instances data = InstanceTools.toWekaInstances(series, labels);
+
+        final DTWDistance dtw = new DTWDistance();
+        dtw.setWindowSizePercentage(windowPercentage);
+        final WDTWDistance wdtw = new WDTWDistance();
+        wdtw.setWindowSizePercentage(windowPercentage);
+        final ERPDistance erp = new ERPDistance();
+        erp.setWindowSizePercentage(windowPercentage);
+        final LCSSDistance lcss = new LCSSDistance();
+        lcss.setWindowSizePercentage(windowPercentage);
+        final MSMDistance msm = new MSMDistance();
+        final TWEDistance twed = new TWEDistance();
+        final MatrixBasedDistanceMeasure[] distanceMeasures = {dtw, wdtw, erp, lcss, msm, twed};
+
+        System.out.println(numSeries + " series of length " + seriesLength + ", " + numSeries * numSeries
+                + " comparisons per measure");
+        double checksum = 0;
+        // two passes, the first to warm up the jit
+        for(int pass = 0; pass < 2; pass++) {
+            for(MatrixBasedDistanceMeasure distanceMeasure : distanceMeasures) {
+                distanceMeasure.setInstances(data);
+                long allocated = allocatedBytes();
+                long timeStamp = System.nanoTime();
+                for(int i = 0; i < numSeries; i++) {
+                    for(int j = 0; j < numSeries; j++) {
+                        checksum += distanceMeasure.distance(data.get(i), data.get(j));
+                    }
+                }
+                final long instanceTime = System.nanoTime() - timeStamp;
+                final long instanceAllocated = allocatedBytes() - allocated;
+                allocated = allocatedBytes();
+                timeStamp = System.nanoTime();
+                for(int i = 0; i < numSeries; i++) {
+                    for(int j = 0; j < numSeries; j++) {
+                        checksum += distanceMeasure.distance(series[i], series[j]);
+                    }
+                }
+                final long arrayTime = System.nanoTime() - timeStamp;
+                final long arrayAllocated = allocatedBytes() - allocated;
+                if(pass > 0) {
+                    final int comparisons = numSeries * numSeries;
+                    System.out.println(distanceMeasure.getName() + ":");
+                    System.out.println("    instance: " + comparisons * 1000000000L / instanceTime + " ops/s, "
+                            + instanceAllocated / comparisons + " bytes/op");
+                    System.out.println("    array: " + comparisons * 1000000000L / arrayTime + " ops/s, "
+                            + arrayAllocated / comparisons + " bytes/op");
+                }
+            }
+        }
+        // print the checksum so the jit can't eliminate the loops above
+        System.out.println("checksum: " + checksum);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances;
+
+import java.io.Serializable;
+import weka.core.Instance;
+
+/**
+ * The upper and lower envelope of a series, i.e. the max / min value within the warping window around each point.
+ * Used by the envelope based lower bounds (LB_Keogh, LB_Improved, etc).
+ */
+public class Envelope implements Serializable {
+
+    private final int windowSize;
+    private final double[] upper;
+    private final double[] lower;
+
+    private Envelope(int windowSize, double[] upper, double[] lower) {
+        this.windowSize = windowSize;
+        this.upper = upper;
+        this.lower = lower;
+    }
+
+    /**
+     * build the envelope of an instance, ignoring the class value at the end.
+     * @param instance
+     * @param windowSize
+     * @return
+     */
+    public static Envelope of(Instance instance, int windowSize) {
+        final double[] values = new double[instance.numAttributes() - 1];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = instance.value(i);
+        }
+        return of(values, windowSize);
+    }
+
+    public static Envelope of(double[] values, int windowSize) {
+        final double[] upper = new double[values.length];
+        final double[] lower = new double[values.length];
+        fill(values, values.length, windowSize, upper, lower);
+        return new Envelope(windowSize, upper, lower);
+    }
+
+    /**
+     * Fill the upper / lower envelope of the first length values in linear time (Lemire's streaming min / max).
+     * @param values
+     * @param length
+     * @param windowSize
+     * @param upper
+     * @param lower
+     */
+    public static void fill(double[] values, int length, int windowSize, double[] upper, double[] lower) {
+        // deques of indices, values in decreasing order for the max and increasing order for the min. Each index is
+        // added once so neither can outgrow the series.
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        final int[] maxIndices = buffers.getInts(DistanceBuffers.MAX_INDICES, length);
+        final int[] minIndices = buffers.getInts(DistanceBuffers.MIN_INDICES, length);
+        int maxHead = 0, maxTail = 0, minHead = 0, minTail = 0;
+        for(int j = 0; j < length + windowSize; j++) {
+            if(j < length) {
+                while(maxTail > maxHead && values[maxIndices[maxTail - 1]] <= values[j]) {
+                    maxTail--;
+                }
+                maxIndices[maxTail++] = j;
+                while(minTail > minHead && values[minIndices[minTail - 1]] >= values[j]) {
+                    minTail--;
+                }
+                minIndices[minTail++] = j;
+            }
+            // the window around i is now complete
+            final int i = j - windowSize;
+            if(i >= 0 && i < length) {
+                while(maxIndices[maxHead] < i - windowSize) {
+                    maxHead++;
+                }
+                while(minIndices[minHead] < i - windowSize) {
+                    minHead++;
+                }
+                upper[i] = values[maxIndices[maxHead]];
+                lower[i] = values[minIndices[minHead]];
+            }
+        }
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public int length() {
+        return upper.length;
+    }
+
+    public double getUpper(int i) {
+        return upper[i];
+    }
+
+    public double getLower(int i) {
+        return lower[i];
+    }
+}
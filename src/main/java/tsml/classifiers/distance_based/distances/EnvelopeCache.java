@@ -0,0 +1,67 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances;
+
+import com.google.common.collect.MapMaker;
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentMap;
+import weka.core.Instance;
+
+/**
+ * Caches the envelope of each instance so it is only computed once per window size rather than once per distance
+ * computation. Instances are weakly referenced by identity, so entries disappear along with the instance. Safe to use
+ * from multiple threads.
+ */
+public class EnvelopeCache implements Serializable {
+
+    // not worth serialising, rebuilt on demand
+    private transient ConcurrentMap<Instance, Envelope> envelopes;
+
+    private ConcurrentMap<Instance, Envelope> getEnvelopes() {
+        ConcurrentMap<Instance, Envelope> envelopes = this.envelopes;
+        if(envelopes == null) {
+            synchronized(this) {
+                if(this.envelopes == null) {
+                    this.envelopes = new MapMaker().weakKeys().makeMap();
+                }
+                envelopes = this.envelopes;
+            }
+        }
+        return envelopes;
+    }
+
+    /**
+     * get the envelope of an instance, computing it if not cached for the given window size.
+     * @param instance
+     * @param windowSize
+     * @return
+     */
+    public Envelope get(Instance instance, int windowSize) {
+        final ConcurrentMap<Instance, Envelope> envelopes = getEnvelopes();
+        Envelope envelope = envelopes.get(instance);
+        if(envelope == null || envelope.getWindowSize() != windowSize) {
+            envelope = Envelope.of(instance, windowSize);
+            envelopes.put(instance, envelope);
+        }
+        return envelope;
+    }
+
+    public void clear() {
+        getEnvelopes().clear();
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances;
+
+import java.io.Serializable;
+import weka.core.Instance;
+
+/**
+ * A lower bound of a distance measure. Bounds are checked before the full distance is computed so the computation can
+ * be skipped when the bound already exceeds the early abandon limit. The instances are given in the same order as
+ * findDistance receives them, i.e. longest first.
+ */
+public interface LowerBound extends Serializable {
+
+    /**
+     * find a lower bound of the distance between a and b. The bound may stop early and return any value above the
+     * limit once it has been exceeded.
+     *
+     * @param a the first (longest) instance
+     * @param b the second instance
+     * @param limit the early abandon limit
+     * @return a value no larger than the distance between a and b
+     */
+    double lowerBound(Instance a, Instance b, double limit);
+}
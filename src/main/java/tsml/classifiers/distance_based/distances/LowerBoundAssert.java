@@ -0,0 +1,46 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package tsml.classifiers.distance_based.distances;
+
+import org.junit.Assert;
+import weka.core.Instance;
+
+/**
+ * Purpose: assertions shared by the tests of distance measures with a lower bound
+ * <p>
+ * Contributors: goastler
+ */
+public class LowerBoundAssert {
+
+    /**
+     * check the lower bound of a distance measure never exceeds the distance and never changes a distance within the
+     * limit.
+     */
+    public static void assertLowerBound(BaseDistanceMeasure df, Instance ai, Instance bi, double limit) {
+        final double distance = df.distance(ai, bi);
+        Assert.assertTrue(df.getLowerBound().lowerBound(ai, bi, Double.POSITIVE_INFINITY) <= distance);
+        final double abandoned = df.distance(ai, bi, limit);
+        df.setLowerBounding(true);
+        final double bounded = df.distance(ai, bi, limit);
+        df.setLowerBounding(false);
+        if(distance <= limit) {
+            Assert.assertEquals(abandoned, bounded, 0);
+        } else {
+            Assert.assertTrue(bounded > limit);
+        }
+    }
+}
@@ -17,6 +17,12 @@
  
 package tsml.classifiers.distance_based.distances;
 
+import weka.core.Instance;
+
+/**
+ * Distance measure computed row by row over a cost matrix. The matrix is only kept if generateDistanceMatrix is set,
+ * otherwise two rows are reused from DistanceBuffers so a distance computation allocates nothing.
+ */
 public abstract class MatrixBasedDistanceMeasure extends BaseDistanceMeasure {
 
     private boolean generateDistanceMatrix = false;
@@ -30,4 +36,38 @@ public abstract class MatrixBasedDistanceMeasure extends BaseDistanceMeasure {
     }
 
     public abstract void cleanDistanceMatrix();
+
+    @Override protected double findDistance(final Instance a, final Instance b, final double limit) {
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        return findDistance(buffers.getValues(DistanceBuffers.A, a), a.numAttributes() - 1,
+                buffers.getValues(DistanceBuffers.B, b), b.numAttributes() - 1, limit);
+    }
+
+    /**
+     * find the distance between the first aLength values of a and the first bLength values of b. a is the longest
+     * if isLongestInstanceFirst.
+     */
+    protected abstract double findDistance(double[] a, int aLength, double[] b, int bLength, double limit);
+
+    /**
+     * the distance between two series held in arrays, i.e. without a class value. Lower bounds are not checked.
+     *
+     * @param a
+     * @param b
+     * @param limit
+     * @return
+     */
+    public final double distance(double[] a, double[] b, final double limit) {
+        // put a as the longest time series
+        if(isLongestInstanceFirst() && b.length > a.length) {
+            final double[] tmp = a;
+            a = b;
+            b = tmp;
+        }
+        return findDistance(a, a.length, b, b.length, limit);
+    }
+
+    public final double distance(final double[] a, final double[] b) {
+        return distance(a, b, getMaxDistance());
+    }
 }
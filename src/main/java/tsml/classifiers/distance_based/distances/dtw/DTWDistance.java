@@ -18,10 +18,11 @@
 package tsml.classifiers.distance_based.distances.dtw;
 
 
+import tsml.classifiers.distance_based.distances.DistanceBuffers;
 import tsml.classifiers.distance_based.distances.DoubleMatrixBasedDistanceMeasure;
+import tsml.classifiers.distance_based.distances.LowerBound;
 import tsml.classifiers.distance_based.distances.WarpingParameter;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import weka.core.Instance;
 
 /**
  * DTW distance measure.
@@ -33,11 +34,14 @@ public class DTWDistance extends DoubleMatrixBasedDistanceMeasure implements DTW
     public static final String WINDOW_SIZE_FLAG = WarpingParameter.WINDOW_SIZE_FLAG;
     public static final String WINDOW_SIZE_PERCENTAGE_FLAG = WarpingParameter.WINDOW_SIZE_PERCENTAGE_FLAG;
     private final WarpingParameter warpingParameter = new WarpingParameter();
+    private final DTWLowerBound lowerBound = new DTWLowerBound(warpingParameter);
 
-    @Override protected double findDistance(final Instance a, final Instance b, final double limit) {
+    @Override public LowerBound getLowerBound() {
+        return lowerBound;
+    }
 
-        int aLength = a.numAttributes() - 1;
-        int bLength = b.numAttributes() - 1;
+    @Override protected double findDistance(final double[] a, final int aLength, final double[] b, final int bLength,
+        final double limit) {
 
         final boolean generateDistanceMatrix = isGenerateDistanceMatrix();
         final double[][] matrix = generateDistanceMatrix ? new double[aLength][bLength] : null;
@@ -47,11 +51,12 @@ public class DTWDistance extends DoubleMatrixBasedDistanceMeasure implements DTW
         // Full DTW
         final int windowSize = findWindowSize(aLength);
 
-        double[] row = new double[bLength];
-        double[] prevRow = new double[bLength];
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        double[] row = buffers.getDoubles(DistanceBuffers.ROW, bLength);
+        double[] prevRow = buffers.getDoubles(DistanceBuffers.PREV_ROW, bLength);
         // top left cell of matrix will simply be the sq diff
         // min can be init'd to the top left cell
-        double min = Math.pow(a.value(0) - b.value(0), 2);
+        double min = Math.pow(a[0] - b[0], 2);
         row[0] = min;
         // start and end of window
         // start at the next cell of the first row
@@ -65,12 +70,12 @@ public class DTWDistance extends DoubleMatrixBasedDistanceMeasure implements DTW
         }
         // the first row is populated from the sq diff + the cell before
         for(int j = start; j <= end; j++) {
-            double cost = row[j - 1] + Math.pow(a.value(0) - b.value(j), 2);
+            double cost = row[j - 1] + Math.pow(a[0] - b[j], 2);
             row[j] = cost;
             min = Math.min(min, cost);
         }
         if(generateDistanceMatrix) {
-            System.arraycopy(row, 0, matrix[0], 0, row.length);
+            System.arraycopy(row, 0, matrix[0], 0, bLength);
         }
         // early abandon if work has been done populating the first row for >1 entry
         if(min > limit) {
@@ -98,7 +103,7 @@ public class DTWDistance extends DoubleMatrixBasedDistanceMeasure implements DTW
             }
             // if assessing the left most column then only top is the option - not left or left-top
             if(start == 0) {
-                final double cost = prevRow[start] + Math.pow(a.value(i) - b.value(0), 2);
+                final double cost = prevRow[start] + Math.pow(a[i] - b[0], 2);
                 row[start] = cost;
                 min = Math.min(min, cost);
                 // shift to next cell
@@ -109,12 +114,12 @@ public class DTWDistance extends DoubleMatrixBasedDistanceMeasure implements DTW
                 final double topLeft = prevRow[j - 1];
                 final double left = row[j - 1];
                 final double top = prevRow[j];
-                final double cost = Math.min(top, Math.min(left, topLeft)) + Math.pow(a.value(i) - b.value(j), 2);
+                final double cost = Math.min(top, Math.min(left, topLeft)) + Math.pow(a[i] - b[j], 2);
                 row[j] = cost;
                 min = Math.min(min, cost);
             }
             if(generateDistanceMatrix) {
-                System.arraycopy(row, 0, matrix[i], 0, row.length);
+                System.arraycopy(row, 0, matrix[i], 0, bLength);
             }
             if(min > limit) {
                 return Double.POSITIVE_INFINITY;
@@ -21,6 +21,7 @@ import java.util.Random;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import tsml.classifiers.distance_based.distances.LowerBoundAssert;
 import tsml.classifiers.distance_based.distances.erp.ERPDistance;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceConfigs;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceTest;
@@ -108,6 +109,7 @@ public class DTWDistanceTest {
                     df.setWindowSize(window);
                     df.setGenerateDistanceMatrix(true);
                     Assert.assertEquals(df.distance(ai, bi, limit), origDtw(ai, bi, limit, window), 0);
+                    LowerBoundAssert.assertLowerBound(df, ai, bi, limit);
                 }
             }
         };
@@ -0,0 +1,112 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.dtw;
+
+import tsml.classifiers.distance_based.distances.DistanceBuffers;
+import tsml.classifiers.distance_based.distances.Envelope;
+import tsml.classifiers.distance_based.distances.EnvelopeCache;
+import tsml.classifiers.distance_based.distances.LowerBound;
+import tsml.classifiers.distance_based.distances.WarpingDistanceMeasure;
+import weka.core.Instance;
+
+/**
+ * Cascade of lower bounds for DTW, cheapest first: LB_Kim (first / last points), LB_Keogh (a against the envelope of
+ * b) and LB_Improved (Lemire, 2009) which adds b against the envelope of a projected onto b's envelope. The envelope of
+ * b is cached as b is typically a train instance compared against many others. Only equal length series are bounded.
+ */
+public class DTWLowerBound implements LowerBound {
+
+    private final WarpingDistanceMeasure warpingParameter;
+    private final EnvelopeCache envelopes = new EnvelopeCache();
+
+    public DTWLowerBound(final WarpingDistanceMeasure warpingParameter) {
+        this.warpingParameter = warpingParameter;
+    }
+
+    /**
+     * the smallest weight applied to a squared difference, 1 for plain DTW.
+     * @param length
+     * @param windowSize
+     * @return
+     */
+    protected double findMinWeight(int length, int windowSize) {
+        return 1;
+    }
+
+    private static double sqDiff(double a, double b) {
+        final double diff = a - b;
+        return diff * diff;
+    }
+
+    @Override public double lowerBound(final Instance a, final Instance b, final double limit) {
+        final int length = a.numAttributes() - 1;
+        if(length != b.numAttributes() - 1) {
+            return 0;
+        }
+        final int windowSize = warpingParameter.findWindowSize(length);
+        final double weight = findMinWeight(length, windowSize);
+        // work in unweighted units, scaling the limit instead of every cost
+        final double scaledLimit = limit / weight;
+        // LB_Kim: the first and last points are always aligned
+        double bound = sqDiff(a.value(0), b.value(0));
+        if(length > 1) {
+            bound += sqDiff(a.value(length - 1), b.value(length - 1));
+        }
+        if(bound > scaledLimit) {
+            return bound * weight;
+        }
+        // LB_Keogh: distance from a to the envelope of b. Keep the projection of a onto the envelope for LB_Improved.
+        final Envelope envelope = envelopes.get(b, windowSize);
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        final double[] projection = buffers.getDoubles(DistanceBuffers.PROJECTION, length);
+        bound = 0;
+        for(int i = 0; i < length; i++) {
+            final double value = a.value(i);
+            final double upper = envelope.getUpper(i);
+            final double lower = envelope.getLower(i);
+            if(value > upper) {
+                bound += sqDiff(value, upper);
+                projection[i] = upper;
+            } else if(value < lower) {
+                bound += sqDiff(value, lower);
+                projection[i] = lower;
+            } else {
+                projection[i] = value;
+            }
+            if(bound > scaledLimit) {
+                return bound * weight;
+            }
+        }
+        // LB_Improved: add the distance from b to the envelope of the projection
+        final double[] upper = buffers.getDoubles(DistanceBuffers.UPPER, length);
+        final double[] lower = buffers.getDoubles(DistanceBuffers.LOWER, length);
+        Envelope.fill(projection, length, windowSize, upper, lower);
+        for(int i = 0; i < length; i++) {
+            final double value = b.value(i);
+            if(value > upper[i]) {
+                bound += sqDiff(value, upper[i]);
+            } else if(value < lower[i]) {
+                bound += sqDiff(value, lower[i]);
+            }
+            if(bound > scaledLimit) {
+                break;
+            }
+        }
+        return bound * weight;
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.dtw;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import tsml.classifiers.distance_based.distances.DistanceBuffers;
+import tsml.classifiers.distance_based.distances.DistanceMatrix;
+import tsml.classifiers.distance_based.distances.Envelope;
+
+/**
+ * Finds the k nearest neighbours of every instance in a set under DTW for many window sizes at once, i.e. the work
+ * behind a LOOCV of every window. This follows FastWWS (Tan et al., "Efficient search of the best warping window for
+ * dynamic time warping", SDM 2018) and relies on two properties of the window:
+ * <ul>
+ * <li>shrinking the window can only increase the distance, so the distance at a larger window is a lower bound for
+ * all smaller windows</li>
+ * <li>if the warping path found at window w never strays further than v from the diagonal then the distance is the
+ * same for every window in [v, w]</li>
+ * </ul>
+ * Windows are therefore searched from largest to smallest, reusing the distances, lower bounds and path extents from
+ * earlier windows to skip most DTW computations. Series must all be the same length.
+ * <p>
+ * Contributors: goastler
+ */
+public class DTWWindowSearch implements Serializable {
+
+    private final double[][] series;
+    private final int k;
+    private final int length;
+    // per pair of series, indexed as a lower triangle
+    // the last distance computed in full
+    private final double[] distances;
+    // the smallest window the last distance computed is valid for, i.e. how far its warping path strays
+    private final int[] validities;
+    // a lower bound on the distance at the current window and all smaller windows
+    private final double[] lowerBounds;
+    // the envelope of each series at the current window
+    private final double[][] uppers;
+    private final double[][] lowers;
+    // window size to the nearest neighbour distances
+    private final Map<Integer, Neighbours> neighboursByWindowSize = new HashMap<>();
+    // count of full dtw computations for the last search
+    private long computationCount;
+
+    /**
+     * @param series the values of each series, excluding any class value
+     * @param k the number of nearest neighbours to find for each series
+     */
+    public DTWWindowSearch(double[][] series, int k) {
+        if(k < 1) {
+            throw new IllegalArgumentException("k must be at least 1: " + k);
+        }
+        if(series.length < 2) {
+            throw new IllegalArgumentException("need at least 2 series");
+        }
+        this.series = series;
+        this.k = k;
+        length = series[0].length;
+        for(double[] values : series) {
+            if(values.length != length) {
+                throw new IllegalArgumentException("series must be equal length");
+            }
+        }
+        final long numPairs = (long) series.length * (series.length - 1) / 2;
+        if(numPairs > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("too many series: " + series.length);
+        }
+        distances = new double[(int) numPairs];
+        validities = new int[(int) numPairs];
+        lowerBounds = new double[(int) numPairs];
+        uppers = new double[series.length][length];
+        lowers = new double[series.length][length];
+    }
+
+    private static int index(int i, int j) {
+        if(i < j) {
+            final int tmp = i;
+            i = j;
+            j = tmp;
+        }
+        return (int) ((long) i * (i - 1) / 2 + j);
+    }
+
+    /**
+     * find the nearest neighbours of every series for each window size.
+     *
+     * @param windowSizes the window sizes, in the same units as DTWDistance.setWindowSize
+     */
+    public void search(int... windowSizes) {
+        neighboursByWindowSize.clear();
+        computationCount = 0;
+        // nothing is known yet, so only the first and last points bound the distance. These are on every path.
+        Arrays.fill(validities, Integer.MAX_VALUE);
+        for(int i = 1; i < series.length; i++) {
+            for(int j = 0; j < i; j++) {
+                lowerBounds[index(i, j)] = lowerBoundKim(series[i], series[j]);
+            }
+        }
+        // largest window first, as each window bounds those smaller
+        final int[] sorted = Arrays.stream(windowSizes).map(this::findWindowSize).distinct().sorted().toArray();
+        for(int w = sorted.length - 1; w >= 0; w--) {
+            neighboursByWindowSize.put(sorted[w], search(sorted[w]));
+        }
+    }
+
+    private Neighbours search(int windowSize) {
+        final Neighbours neighbours = new Neighbours();
+        final double[] nearest = new double[k];
+        for(int i = 0; i < series.length; i++) {
+            Envelope.fill(series[i], length, windowSize, uppers[i], lowers[i]);
+        }
+        for(int i = 0; i < series.length; i++) {
+            Arrays.fill(nearest, Double.POSITIVE_INFINITY);
+            // any distances already known at this window give a good limit to start with
+            for(int j = 0; j < series.length; j++) {
+                if(i != j) {
+                    final int index = index(i, j);
+                    if(validities[index] <= windowSize) {
+                        add(nearest, distances[index]);
+                    }
+                }
+            }
+            // then compute those which may beat the k-th nearest so far
+            for(int j = 0; j < series.length; j++) {
+                final int index = index(i, j);
+                if(i == j || validities[index] <= windowSize) {
+                    continue;
+                }
+                final double limit = nearest[k - 1];
+                // keep draws with the k-th nearest, hence strictly greater
+                if(lowerBounds[index] > limit) {
+                    continue;
+                }
+                // LB_Keogh is far cheaper than dtw. It bounds this window and so all smaller windows too.
+                final double bound = lowerBoundKeogh(series[i], uppers[j], lowers[j], limit);
+                if(bound > limit) {
+                    lowerBounds[index] = Math.max(lowerBounds[index], bound);
+                    continue;
+                }
+                computationCount++;
+                final double distance = distance(series[i], series[j], windowSize, limit, validities, index);
+                if(distance == Double.POSITIVE_INFINITY) {
+                    // abandoned, so the distance is above the limit at this window and all smaller
+                    validities[index] = Integer.MAX_VALUE;
+                    lowerBounds[index] = Math.max(lowerBounds[index], limit);
+                } else {
+                    distances[index] = distance;
+                    lowerBounds[index] = distance;
+                    add(nearest, distance);
+                }
+            }
+            // record the neighbours, including any drawing with the k-th nearest
+            final double limit = nearest[k - 1];
+            for(int j = 0; j < i; j++) {
+                final int index = index(i, j);
+                if(validities[index] <= windowSize && distances[index] <= limit) {
+                    neighbours.add(i, j, distances[index]);
+                }
+            }
+            for(int j = i + 1; j < series.length; j++) {
+                final int index = index(i, j);
+                if(validities[index] <= windowSize && distances[index] <= limit) {
+                    neighbours.add(i, j, distances[index]);
+                }
+            }
+        }
+        return neighbours;
+    }
+
+    // insert into the sorted k nearest distances
+    private static void add(double[] nearest, double distance) {
+        int i = nearest.length - 1;
+        if(distance >= nearest[i]) {
+            return;
+        }
+        while(i > 0 && nearest[i - 1] > distance) {
+            nearest[i] = nearest[i - 1];
+            i--;
+        }
+        nearest[i] = distance;
+    }
+
+    private int findWindowSize(int windowSize) {
+        // same as the warping parameter, negative or beyond the length is full window
+        if(windowSize < 0 || windowSize > length - 1) {
+            return length - 1;
+        }
+        return windowSize;
+    }
+
+    private static double lowerBoundKim(double[] a, double[] b) {
+        final double first = Math.pow(a[0] - b[0], 2);
+        if(a.length == 1) {
+            return first;
+        }
+        return first + Math.pow(a[a.length - 1] - b[b.length - 1], 2);
+    }
+
+    private static double lowerBoundKeogh(double[] a, double[] upper, double[] lower, double limit) {
+        double bound = 0;
+        for(int i = 0; i < a.length; i++) {
+            final double value = a[i];
+            if(value > upper[i]) {
+                bound += Math.pow(value - upper[i], 2);
+            } else if(value < lower[i]) {
+                bound += Math.pow(value - lower[i], 2);
+            }
+            if(bound > limit) {
+                break;
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * dtw as DTWDistance, additionally recording how far the warping path strays from the diagonal. Where several
+     * paths draw the one straying least is taken.
+     */
+    private static double distance(double[] a, double[] b, int windowSize, double limit, int[] validities,
+            int index) {
+        final int length = a.length;
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        double[] row = buffers.getDoubles(DistanceBuffers.ROW, length);
+        double[] prevRow = buffers.getDoubles(DistanceBuffers.PREV_ROW, length);
+        int[] extents = buffers.getInts(DistanceBuffers.INT_ROW, length);
+        int[] prevExtents = buffers.getInts(DistanceBuffers.INT_PREV_ROW, length);
+        double min = Math.pow(a[0] - b[0], 2);
+        row[0] = min;
+        extents[0] = 0;
+        int start = 1;
+        int end = Math.min(length - 1, windowSize);
+        if(end + 1 < length) {
+            row[end + 1] = Double.POSITIVE_INFINITY;
+        }
+        for(int j = start; j <= end; j++) {
+            double cost = row[j - 1] + Math.pow(a[0] - b[j], 2);
+            row[j] = cost;
+            extents[j] = j;
+            min = Math.min(min, cost);
+        }
+        if(min > limit) {
+            return Double.POSITIVE_INFINITY;
+        }
+        for(int i = 1; i < length; i++) {
+            {
+                double[] temp = prevRow;
+                prevRow = row;
+                row = temp;
+                int[] tempExtents = prevExtents;
+                prevExtents = extents;
+                extents = tempExtents;
+            }
+            min = Double.POSITIVE_INFINITY;
+            start = Math.max(0, i - windowSize);
+            end = Math.min(length - 1, i + windowSize);
+            if(start - 1 >= 0) {
+                row[start - 1] = Double.POSITIVE_INFINITY;
+            }
+            if(end + 1 < length) {
+                row[end + 1] = Double.POSITIVE_INFINITY;
+            }
+            if(start == 0) {
+                final double cost = prevRow[start] + Math.pow(a[i] - b[0], 2);
+                row[start] = cost;
+                extents[start] = i;
+                min = Math.min(min, cost);
+                start++;
+            }
+            for(int j = start; j <= end; j++) {
+                final double topLeft = prevRow[j - 1];
+                final double left = row[j - 1];
+                final double top = prevRow[j];
+                final double best = Math.min(top, Math.min(left, topLeft));
+                int extent = Integer.MAX_VALUE;
+                if(topLeft == best) {
+                    extent = prevExtents[j - 1];
+                }
+                if(left == best) {
+                    extent = Math.min(extent, extents[j - 1]);
+                }
+                if(top == best) {
+                    extent = Math.min(extent, prevExtents[j]);
+                }
+                final double cost = best + Math.pow(a[i] - b[j], 2);
+                row[j] = cost;
+                extents[j] = Math.max(extent, Math.abs(i - j));
+                min = Math.min(min, cost);
+            }
+            if(min > limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        validities[index] = extents[length - 1];
+        return row[length - 1];
+    }
+
+    /**
+     * the distances between each series and its nearest neighbours at the given window. Every other distance is
+     * abandoned (positive infinity), so this is only suitable for a knn with the same k.
+     *
+     * @param windowSize
+     * @return
+     */
+    public DistanceMatrix buildDistanceMatrix(int windowSize) {
+        final Neighbours neighbours = neighboursByWindowSize.get(findWindowSize(windowSize));
+        if(neighbours == null) {
+            throw new IllegalArgumentException("window size not searched: " + windowSize);
+        }
+        final DistanceMatrix matrix = DistanceMatrix.pairwise(series.length);
+        for(int i = 0; i < neighbours.size; i++) {
+            matrix.set(neighbours.rows[i], neighbours.columns[i], neighbours.distances[i]);
+        }
+        return matrix;
+    }
+
+    /**
+     * @return the number of dtw computations the last search needed, as opposed to one per pair per window
+     */
+    public long getComputationCount() {
+        return computationCount;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * pairs of series which are nearest neighbours, in parallel arrays.
+     */
+    private static class Neighbours implements Serializable {
+        private int[] rows = new int[16];
+        private int[] columns = new int[16];
+        private double[] distances = new double[16];
+        private int size = 0;
+
+        private void add(int row, int column, double distance) {
+            if(size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                columns = Arrays.copyOf(columns, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            rows[size] = row;
+            columns[size] = column;
+            distances[size] = distance;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.dtw;
+
+import experiments.data.DatasetLoading;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntFunction;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import tsml.classifiers.distance_based.distances.BaseDistanceMeasure;
+import tsml.classifiers.distance_based.distances.DistanceMatrix;
+import tsml.classifiers.distance_based.distances.transformed.BaseTransformDistanceMeasure;
+import tsml.classifiers.distance_based.knn.KNNLOOCV;
+import tsml.classifiers.distance_based.tuned.RLTunedClassifier;
+import tsml.transformers.Derivative;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import static tsml.classifiers.distance_based.distances.erp.ERPDistanceTest.buildRandomDataset;
+
+/**
+ * Purpose: test the window search finds the same neighbours as dtw / ddtw at each window
+ * <p>
+ * Contributors: goastler
+ */
+public class DTWWindowSearchTest {
+
+    private Instances instances;
+    private double[][] series;
+
+    @Before
+    public void before() {
+        instances = buildRandomDataset(new Random(0), -5, 5, 30, 40, 2);
+        series = new double[instances.size()][instances.numAttributes() - 1];
+        for(int i = 0; i < series.length; i++) {
+            for(int j = 0; j < series[i].length; j++) {
+                series[i][j] = instances.get(i).value(j);
+            }
+        }
+    }
+
+    private static double[][] derivativeSeries(Instances instances) {
+        final double[][] series = new double[instances.size()][];
+        for(int i = 0; i < series.length; i++) {
+            final Instance derivative = Derivative.getGlobalInstance().transform(instances.get(i));
+            series[i] = Arrays.copyOf(derivative.toDoubleArray(), derivative.numAttributes() - 1);
+        }
+        return series;
+    }
+
+    private static BaseDistanceMeasure buildDtw(int windowSize) {
+        final DTWDistance df = new DTWDistance();
+        df.setWindowSize(windowSize);
+        return df;
+    }
+
+    private static BaseDistanceMeasure buildDdtw(int windowSize) {
+        final BaseTransformDistanceMeasure df = (BaseTransformDistanceMeasure) DTWDistanceConfigs.newDDTWDistance();
+        ((DTWDistance) df.getDistanceFunction()).setWindowSize(windowSize);
+        return df;
+    }
+
+    private void assertNeighbours(int k) {
+        assertNeighbours(k, series, DTWWindowSearchTest::buildDtw);
+    }
+
+    private void assertNeighbours(int k, double[][] series, IntFunction<BaseDistanceMeasure> distanceMeasureBuilder) {
+        final DTWWindowSearch search = new DTWWindowSearch(series, k);
+        final int[] windowSizes = new int[series[0].length];
+        for(int i = 0; i < windowSizes.length; i++) {
+            windowSizes[i] = i;
+        }
+        search.search(windowSizes);
+        // must save work over computing every pair for every window
+        Assert.assertTrue(search.getComputationCount() < (long) series.length * (series.length - 1) / 2 * windowSizes.length);
+        for(int windowSize : windowSizes) {
+            final DistanceMatrix matrix = search.buildDistanceMatrix(windowSize);
+            final BaseDistanceMeasure df = distanceMeasureBuilder.apply(windowSize);
+            df.setInstances(instances);
+            for(int i = 0; i < series.length; i++) {
+                final double[] distances = new double[series.length];
+                for(int j = 0; j < series.length; j++) {
+                    distances[j] = i == j ? Double.POSITIVE_INFINITY : df.distance(instances.get(i), instances.get(j));
+                }
+                final double[] sorted = distances.clone();
+                Arrays.sort(sorted);
+                for(int j = 0; j < series.length; j++) {
+                    if(i == j) {
+                        continue;
+                    }
+                    final double distance = matrix.get(i, j);
+                    // the k nearest, including draws, must be exact
+                    if(distances[j] <= sorted[k - 1]) {
+                        Assert.assertEquals(distances[j], distance, 0);
+                    }
+                    // anything else may be abandoned
+                    if(distance != Double.POSITIVE_INFINITY) {
+                        Assert.assertEquals(distances[j], distance, 0);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNearestNeighbour() {
+        assertNeighbours(1);
+    }
+
+    @Test
+    public void testKNearestNeighbours() {
+        assertNeighbours(3);
+    }
+
+    @Test
+    public void testDerivativeNearestNeighbours() {
+        assertNeighbours(1, derivativeSeries(instances), DTWWindowSearchTest::buildDdtw);
+    }
+
+    @Test
+    public void testDerivativeTunedBuild() throws Exception {
+        // the derivative cache is shared by every ddtw measure, start from an unfitted one as in a fresh jvm
+        Derivative.getGlobalCachedTransformer().reset();
+        final Instances[] data = DatasetLoading.sampleGunPoint(0);
+        final RLTunedClassifier classifier = KNNLOOCV.TunedFactory.buildTunedDdtw1nnWindowSearch();
+        classifier.setSeed(0);
+        classifier.buildClassifier(data[0]);
+        Assert.assertEquals(data[0].size(), classifier.getTrainResults().numInstances());
+        for(Instance instance : data[1]) {
+            Assert.assertEquals(instance.numClasses(), classifier.distributionForInstance(instance).length);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsearchedWindow() {
+        final DTWWindowSearch search = new DTWWindowSearch(series, 1);
+        search.search(5, 10);
+        search.buildDistanceMatrix(3);
+    }
+}
@@ -17,12 +17,12 @@
  
 package tsml.classifiers.distance_based.distances.erp;
 
+import tsml.classifiers.distance_based.distances.DistanceBuffers;
 import tsml.classifiers.distance_based.distances.DoubleMatrixBasedDistanceMeasure;
 import tsml.classifiers.distance_based.distances.WarpingDistanceMeasure;
 import tsml.classifiers.distance_based.distances.WarpingParameter;
 import tsml.classifiers.distance_based.utils.collections.params.ParamHandlerUtils;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import weka.core.Instance;
 
 /**
  * ERP distance measure.
@@ -46,18 +46,17 @@ public class ERPDistance extends DoubleMatrixBasedDistanceMeasure implements War
     }
 
     @Override
-    public double findDistance(final Instance a, final Instance b, final double limit) {
-
-        int aLength = a.numAttributes() - 1;
-        int bLength = b.numAttributes() - 1;
+    public double findDistance(final double[] a, final int aLength, final double[] b, final int bLength,
+        final double limit) {
 
         final boolean generateDistanceMatrix = isGenerateDistanceMatrix();
         final double[][] matrix = generateDistanceMatrix ? new double[aLength][bLength] : null;
         setDistanceMatrix(matrix);
 
         // Current and previous columns of the matrix
-        double[] row = new double[bLength];
-        double[] prevRow = new double[bLength];
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        double[] row = buffers.getDoubles(DistanceBuffers.ROW, bLength);
+        double[] prevRow = buffers.getDoubles(DistanceBuffers.PREV_ROW, bLength);
         double min;
         // size of edit distance band
         // bandsize is the maximum allowed distance to the diagonal
@@ -71,13 +70,13 @@ public class ERPDistance extends DoubleMatrixBasedDistanceMeasure implements War
         row[0] = 0; // top left cell of matrix is always 0
         // populate first row
         for(int j = start; j <= end; j++) {
-            final double cost = row[j - 1] + Math.pow(b.value(j) - g, 2);
+            final double cost = row[j - 1] + Math.pow(b[j] - g, 2);
             row[j] = cost;
             // no need to update min as top left cell is already zero, can't get lower
         }
         // populate matrix
         if(generateDistanceMatrix) {
-            System.arraycopy(row, 0, matrix[0], 0, row.length);
+            System.arraycopy(row, 0, matrix[0], 0, bLength);
         }
         // no need to check for early abandon here as the min is zero because of the top left cell
         // populate remaining rows
@@ -102,15 +101,15 @@ public class ERPDistance extends DoubleMatrixBasedDistanceMeasure implements War
             }
             // when l == 0 neither left nor top left can be picked, therefore it must use top
             if(start == 0) {
-                final double cost = prevRow[start] + Math.pow(a.value(i) - g, 2);
+                final double cost = prevRow[start] + Math.pow(a[i] - g, 2);
                 row[start] = cost;
                 min = Math.min(min, cost);
                 start++;
             }
             for(int j = start; j <= end; j++) {
                 // compute squared distance of feature vectors
-                final double v1 = a.value(i);
-                final double v2 = b.value(j);
+                final double v1 = a[i];
+                final double v2 = b[j];
                 final double leftPenalty = Math.pow(v1 - g, 2);
                 final double topPenalty = Math.pow(v2 - g, 2);
                 final double topLeftPenalty = Math.pow(v1 - v2, 2);
@@ -134,7 +133,7 @@ public class ERPDistance extends DoubleMatrixBasedDistanceMeasure implements War
                 min = Math.min(min, cost);
             }
             if(generateDistanceMatrix) {
-                System.arraycopy(row, 0, matrix[i], 0, row.length);
+                System.arraycopy(row, 0, matrix[i], 0, bLength);
             }
             if(min > limit) {
                 return Double.POSITIVE_INFINITY;
@@ -17,11 +17,12 @@
  
 package tsml.classifiers.distance_based.distances.lcss;
 
+import tsml.classifiers.distance_based.distances.DistanceBuffers;
 import tsml.classifiers.distance_based.distances.IntMatrixBasedDistanceMeasure;
+import tsml.classifiers.distance_based.distances.LowerBound;
 import tsml.classifiers.distance_based.distances.WarpingParameter;
 import tsml.classifiers.distance_based.utils.collections.params.ParamHandlerUtils;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import weka.core.Instance;
 
 /**
  * LCSS distance measure.
@@ -34,6 +35,7 @@ public class LCSSDistance extends IntMatrixBasedDistanceMeasure {
     public static final String WINDOW_SIZE_PERCENTAGE_FLAG = WarpingParameter.WINDOW_SIZE_PERCENTAGE_FLAG;
 
     private final WarpingParameter warpingParameter = new WarpingParameter();
+    private final LCSSLowerBound lowerBound = new LCSSLowerBound(this);
     // delta === warp
     // epsilon === diff between two values before they're considered the same AKA tolerance
 
@@ -53,11 +55,13 @@ public class LCSSDistance extends IntMatrixBasedDistanceMeasure {
         this.epsilon = epsilon;
     }
 
-    @Override
-    public double findDistance(final Instance a, final Instance b, double limit) {
+    @Override public LowerBound getLowerBound() {
+        return lowerBound;
+    }
 
-        int aLength = a.numAttributes() - 1;
-        int bLength = b.numAttributes() - 1;
+    @Override
+    public double findDistance(final double[] a, final int aLength, final double[] b, final int bLength,
+        double limit) {
 
 
         final boolean generateDistanceMatrix = isGenerateDistanceMatrix();
@@ -76,10 +80,11 @@ public class LCSSDistance extends IntMatrixBasedDistanceMeasure {
             // is potentially slightly too low, causing *early* early abandon
         }
 
-        int[] row = new int[bLength];
-        int[] prevRow = new int[bLength];
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        int[] row = buffers.getInts(DistanceBuffers.INT_ROW, bLength);
+        int[] prevRow = buffers.getInts(DistanceBuffers.INT_PREV_ROW, bLength);
         // init min to top left cell
-        double min = approxEqual(a.value(0), b.value(0), epsilon) ? 1 : 0;
+        double min = approxEqual(a[0], b[0], epsilon) ? 1 : 0;
         // top left cell of matrix will simply be the sq diff
         row[0] = (int) min;
         // start and end of window
@@ -95,7 +100,7 @@ public class LCSSDistance extends IntMatrixBasedDistanceMeasure {
         // the first row is populated from the cell before
         for(int j = start; j <= end; j++) {
             final int cost;
-            if(approxEqual(a.value(0), b.value(j), epsilon)) {
+            if(approxEqual(a[0], b[j], epsilon)) {
                 cost = 1;
             } else {
                 cost = row[j - 1];
@@ -104,7 +109,7 @@ public class LCSSDistance extends IntMatrixBasedDistanceMeasure {
             min = Math.min(min, cost);
         }
         if(generateDistanceMatrix) {
-            System.arraycopy(row, 0, matrix[0], 0, row.length);
+            System.arraycopy(row, 0, matrix[0], 0, bLength);
         }
         // early abandon if work has been done populating the first row for >1 entry
         if(min > limit) {
@@ -133,7 +138,7 @@ public class LCSSDistance extends IntMatrixBasedDistanceMeasure {
             // if assessing the left most column then only top is the option - not left or left-top
             if(start == 0) {
                 final int cost;
-                if(approxEqual(a.value(i), b.value(start), epsilon)) {
+                if(approxEqual(a[i], b[start], epsilon)) {
                     cost = 1;
                 } else {
                     cost = prevRow[start];
@@ -146,7 +151,7 @@ public class LCSSDistance extends IntMatrixBasedDistanceMeasure {
             for(int j = start; j <= end; j++) {
                 final int cost;
                 final int topLeft = prevRow[j - 1];
-                if(approxEqual(a.value(i), b.value(j), epsilon)) {
+                if(approxEqual(a[i], b[j], epsilon)) {
                     cost = topLeft + 1;
                 } else {
                     final int top = prevRow[j];
@@ -158,7 +163,7 @@ public class LCSSDistance extends IntMatrixBasedDistanceMeasure {
                 min = Math.min(min, cost);
             }
             if(generateDistanceMatrix) {
-                System.arraycopy(row, 0, matrix[i], 0, row.length);
+                System.arraycopy(row, 0, matrix[i], 0, bLength);
             }
             if(min > limit) {
                 return Double.POSITIVE_INFINITY;
@@ -20,6 +20,7 @@ package tsml.classifiers.distance_based.distances.lcss;
 import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
+import tsml.classifiers.distance_based.distances.LowerBoundAssert;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceTest;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceTest.DistanceTester;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
@@ -53,6 +54,7 @@ public class LCSSDistanceTest {
                     df.setEpsilon(epsilon);
                     df.setWindowSize(window);
                     Assert.assertEquals(df.distance(ai, bi, limit), origLcss(ai, bi, limit, window, epsilon), 0);
+                    LowerBoundAssert.assertLowerBound(df, ai, bi, limit);
                 }
             }
         };
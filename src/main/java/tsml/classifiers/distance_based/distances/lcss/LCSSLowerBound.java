@@ -0,0 +1,60 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.lcss;
+
+import tsml.classifiers.distance_based.distances.Envelope;
+import tsml.classifiers.distance_based.distances.EnvelopeCache;
+import tsml.classifiers.distance_based.distances.LowerBound;
+import weka.core.Instance;
+
+/**
+ * Envelope lower bound for LCSS. A point of a can only be matched if it's within epsilon of the envelope of b, so the
+ * number of such points bounds the LCSS from above and therefore the distance from below. Only equal length series
+ * are bounded.
+ */
+public class LCSSLowerBound implements LowerBound {
+
+    private final LCSSDistance lcss;
+    private final EnvelopeCache envelopes = new EnvelopeCache();
+
+    public LCSSLowerBound(final LCSSDistance lcss) {
+        this.lcss = lcss;
+    }
+
+    @Override public double lowerBound(final Instance a, final Instance b, final double limit) {
+        final int length = a.numAttributes() - 1;
+        if(length != b.numAttributes() - 1) {
+            return 0;
+        }
+        final double epsilon = lcss.getEpsilon();
+        final Envelope envelope = envelopes.get(b, lcss.findWindowSize(length));
+        int unmatchable = 0;
+        for(int i = 0; i < length; i++) {
+            final double value = a.value(i);
+            if(value - envelope.getUpper(i) > epsilon || envelope.getLower(i) - value > epsilon) {
+                unmatchable++;
+                // same form as the distance, 1 - lcss / length, so rounding can't push the bound above it
+                final double bound = 1d - (double) (length - unmatchable) / length;
+                if(bound > limit) {
+                    return bound;
+                }
+            }
+        }
+        return 1d - (double) (length - unmatchable) / length;
+    }
+}
@@ -17,10 +17,11 @@
  
 package tsml.classifiers.distance_based.distances.msm;
 
+import tsml.classifiers.distance_based.distances.DistanceBuffers;
 import tsml.classifiers.distance_based.distances.DoubleMatrixBasedDistanceMeasure;
+import tsml.classifiers.distance_based.distances.LowerBound;
 import tsml.classifiers.distance_based.utils.collections.params.ParamHandlerUtils;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import weka.core.Instance;
 
 /**
  * MSM distance measure.
@@ -32,6 +33,7 @@ public class MSMDistance
 
 
     private double c = 1;
+    private final MSMLowerBound lowerBound = new MSMLowerBound(this);
 
     public MSMDistance() {
 
@@ -60,11 +62,13 @@ public class MSMDistance
         return dist;
     }
 
-    @Override
-    public double findDistance(Instance a, Instance b, final double limit) {
+    @Override public LowerBound getLowerBound() {
+        return lowerBound;
+    }
 
-        int aLength = a.numAttributes() - 1;
-        int bLength = b.numAttributes() - 1;
+    @Override
+    public double findDistance(final double[] a, final int aLength, final double[] b, final int bLength,
+        final double limit) {
 
         final boolean generateDistanceMatrix = isGenerateDistanceMatrix();
         final double[][] matrix = generateDistanceMatrix ? new double[aLength][bLength] : null;
@@ -72,10 +76,11 @@ public class MSMDistance
 
         final int windowSize = aLength;
 
-        double[] row = new double[bLength];
-        double[] prevRow = new double[bLength];
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        double[] row = buffers.getDoubles(DistanceBuffers.ROW, bLength);
+        double[] prevRow = buffers.getDoubles(DistanceBuffers.PREV_ROW, bLength);
         // top left cell of matrix will simply be the sq diff
-        double min = Math.abs(a.value(0) - b.value(0));
+        double min = Math.abs(a[0] - b[0]);
         row[0] = min;
         // start and end of window
         // start at the next cell of the first row
@@ -89,12 +94,12 @@ public class MSMDistance
         }
         // the first row is populated from the sq diff + the cell before
         for(int j = start; j <= end; j++) {
-            double cost = row[j - 1] + findCost(b.value(j), a.value(0), b.value(j - 1));
+            double cost = row[j - 1] + findCost(b[j], a[0], b[j - 1]);
             row[j] = cost;
             min = Math.min(min, cost);
         }
         if(generateDistanceMatrix) {
-            System.arraycopy(row, 0, matrix[0], 0, row.length);
+            System.arraycopy(row, 0, matrix[0], 0, bLength);
         }
         // early abandon if work has been done populating the first row for >1 entry
         if(min > limit) {
@@ -121,28 +126,28 @@ public class MSMDistance
                 row[end + 1] = Double.POSITIVE_INFINITY;
             }
             // if assessing the left most column then only top is the option - not left or left-top
-            final double ai = a.value(i);
-            final double aiPrev = a.value(i - 1);
+            final double ai = a[i];
+            final double aiPrev = a[i - 1];
             if(start == 0) {
-                final double cost = prevRow[start] + findCost(ai, aiPrev, b.value(start));
+                final double cost = prevRow[start] + findCost(ai, aiPrev, b[start]);
                 row[start] = cost;
                 min = Math.min(min, cost);
                 // shift to next cell
                 start++;
             }
             for(int j = start; j <= end; j++) {
-                final double bj = b.value(j);
+                final double bj = b[j];
                 // compute squared distance of feature vectors
                 final double topLeft = prevRow[j - 1] + Math.abs(ai - bj);
                 final double top = prevRow[j] + findCost(ai, aiPrev, bj);
-                final double left = row[j - 1] + findCost(bj, ai, b.value(j - 1));
+                final double left = row[j - 1] + findCost(bj, ai, b[j - 1]);
                 final double cost = Math.min(top, Math.min(left, topLeft));
 
                 row[j] = cost;
                 min = Math.min(min, cost);
             }
             if(generateDistanceMatrix) {
-                System.arraycopy(row, 0, matrix[i], 0, row.length);
+                System.arraycopy(row, 0, matrix[i], 0, bLength);
             }
             if(min > limit) {
                 return Double.POSITIVE_INFINITY;
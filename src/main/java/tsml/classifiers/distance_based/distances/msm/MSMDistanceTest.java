@@ -20,6 +20,7 @@ package tsml.classifiers.distance_based.distances.msm;
 import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
+import tsml.classifiers.distance_based.distances.LowerBoundAssert;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceTest;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceTest.DistanceTester;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
@@ -54,6 +55,7 @@ public class MSMDistanceTest {
                     final MSMDistance df = new MSMDistance();
                     df.setC(cost);
                     Assert.assertEquals(df.distance(ai, bi, limit), origMsm(ai, bi, limit, cost), 0);
+                    LowerBoundAssert.assertLowerBound(df, ai, bi, limit);
                 }
             }
         };
@@ -0,0 +1,44 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.msm;
+
+import tsml.classifiers.distance_based.distances.LowerBound;
+import weka.core.Instance;
+
+/**
+ * Kim style lower bound for MSM. Every alignment starts by matching the first points and ends with either a match of
+ * the last points or a split / merge costing at least c.
+ */
+public class MSMLowerBound implements LowerBound {
+
+    private final MSMDistance msm;
+
+    public MSMLowerBound(final MSMDistance msm) {
+        this.msm = msm;
+    }
+
+    @Override public double lowerBound(final Instance a, final Instance b, final double limit) {
+        final int aLength = a.numAttributes() - 1;
+        final int bLength = b.numAttributes() - 1;
+        double bound = Math.abs(a.value(0) - b.value(0));
+        if(aLength > 1 || bLength > 1) {
+            bound += Math.min(Math.abs(a.value(aLength - 1) - b.value(bLength - 1)), msm.getC());
+        }
+        return bound;
+    }
+}
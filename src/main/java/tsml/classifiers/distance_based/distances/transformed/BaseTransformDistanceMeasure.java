@@ -98,6 +98,12 @@ public class BaseTransformDistanceMeasure extends BaseDistanceMeasure implements
         this.distanceFunction = distanceFunction;
     }
 
+    @Override public void setLowerBounding(final boolean lowerBounding) {
+        super.setLowerBounding(lowerBounding);
+        // the bound is on the wrapped distance measure, applied to the transformed instances
+        DistanceMeasure.setLowerBounding(distanceFunction, lowerBounding);
+    }
+
     @Override public ParamSet getParams() {
         final ParamSet paramSet = super.getParams();
         paramSet.add(TRANSFORMER_FLAG, transformer);
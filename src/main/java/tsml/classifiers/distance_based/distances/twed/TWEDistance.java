@@ -17,10 +17,10 @@
  
 package tsml.classifiers.distance_based.distances.twed;
 
+import tsml.classifiers.distance_based.distances.DistanceBuffers;
 import tsml.classifiers.distance_based.distances.DoubleMatrixBasedDistanceMeasure;
 import tsml.classifiers.distance_based.utils.collections.params.ParamHandlerUtils;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import weka.core.Instance;
 
 /**
  * TWED distance measure.
@@ -37,25 +37,25 @@ public class TWEDistance
     public static final String LAMBDA_FLAG = "l";
 
     @Override
-    public double findDistance(final Instance a, final Instance b, final double limit) {
-
-        final int aLength = a.numAttributes() - 1;
-        final int bLength = b.numAttributes() - 1;
+    public double findDistance(final double[] a, final int aLength, final double[] b, final int bLength,
+        final double limit) {
 
         final boolean generateDistanceMatrix = isGenerateDistanceMatrix();
-        final double[][] matrix = generateDistanceMatrix ? new double[aLength][bLength] : null;
+        // the matrix has an extra row and column for the border
+        final double[][] matrix = generateDistanceMatrix ? new double[aLength + 1][bLength + 1] : null;
         setDistanceMatrix(matrix);
 
         final int windowSize = aLength + 1;
 
-        double[] jCosts = new double[bLength + 1];
-        double[] row = new double[bLength + 1];
-        double[] prevRow = new double[bLength + 1];
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        final double[] jCosts = buffers.getDoubles(DistanceBuffers.COSTS, bLength + 1);
+        double[] row = buffers.getDoubles(DistanceBuffers.ROW, bLength + 1);
+        double[] prevRow = buffers.getDoubles(DistanceBuffers.PREV_ROW, bLength + 1);
         double dist, htrans, top, left, topLeft, cost, iCost;
         // border of the cost matrix initialization
         // top left is already 0 so don't bother checking for early abandon
         row[0] = 0;
-        jCosts[1] = Math.pow(b.value(0), 2);
+        jCosts[1] = Math.pow(b[0], 2);
         row[1] = jCosts[1];
         // start at the next cell
         int start = 2;
@@ -68,12 +68,12 @@ public class TWEDistance
         }
         for(int j = start; j <= end; j++) {
             //CHANGE AJB 8/1/16: Only use power of 2 for speed up,
-            cost = Math.pow(b.value(j - 2) - b.value(j - 1), 2);
+            cost = Math.pow(b[j - 2] - b[j - 1], 2);
             jCosts[j] = cost;
             row[j] = row[j - 1] + jCosts[j];
         }
         if(generateDistanceMatrix) {
-            System.arraycopy(row, 0, matrix[0], 0, row.length);
+            System.arraycopy(row, 0, matrix[0], 0, bLength + 1);
         }
         {
             double[] tmp = row;
@@ -91,7 +91,7 @@ public class TWEDistance
         if(end + 1 < bLength + 1) {
             row[end + 1] = Double.POSITIVE_INFINITY;
         }
-        iCost = Math.pow(a.value(0), 2);
+        iCost = Math.pow(a[0], 2);
         double min = Double.POSITIVE_INFINITY;
         if(start == 0) {
             row[0] = prevRow[0] + iCost;
@@ -99,7 +99,7 @@ public class TWEDistance
             start++;
         }
         for(int j = start; j <= end; j++) {
-            dist = Math.pow(a.value(0) - b.value(j - 1), 2);
+            dist = Math.pow(a[0] - b[j - 1], 2);
             htrans = Math.abs((1 - j));
             left = prevRow[j - 1] + nu * htrans + dist;
             top = iCost + prevRow[j] + lambda + nu;
@@ -109,7 +109,7 @@ public class TWEDistance
             min = Math.min(min, cost);
         }
         if(generateDistanceMatrix) {
-            System.arraycopy(row, 0, matrix[1], 0, row.length);
+            System.arraycopy(row, 0, matrix[1], 0, bLength + 1);
         }
         if(end > start && min > limit) {
             return Double.POSITIVE_INFINITY;
@@ -132,7 +132,7 @@ public class TWEDistance
             if(end + 1 < bLength + 1) {
                 row[end + 1] = Double.POSITIVE_INFINITY;
             }
-            iCost = Math.pow(a.value(i - 2) - a.value(i - 1), 2);
+            iCost = Math.pow(a[i - 2] - a[i - 1], 2);
             if(start == 0) {
                 cost = prevRow[0] + iCost;
                 row[0] = cost;
@@ -140,7 +140,7 @@ public class TWEDistance
                 start++;
             }
             if(start == 1) {
-                dist = Math.pow(a.value(i - 1) - b.value(0), 2);
+                dist = Math.pow(a[i - 1] - b[0], 2);
                 htrans = i - 1;
                 left = prevRow[0] + nu * htrans + dist;
                 top = iCost + prevRow[1] + lambda + nu;
@@ -151,7 +151,7 @@ public class TWEDistance
                 start++;
             }
             for(int j = start; j <= end; j++) {
-                dist = Math.pow(a.value(i - 1) - b.value(j - 1), 2) + Math.pow(a.value(i - 2) - b.value(j - 2), 2);
+                dist = Math.pow(a[i - 1] - b[j - 1], 2) + Math.pow(a[i - 2] - b[j - 2], 2);
                 htrans = Math.abs(i - j) * 2;
                 left = prevRow[j - 1] + nu * htrans + dist;
                 top = iCost + prevRow[j] + lambda + nu;
@@ -161,7 +161,7 @@ public class TWEDistance
                 min = Math.min(min, cost);
             }
             if(generateDistanceMatrix) {
-                System.arraycopy(row, 0, matrix[i], 0, row.length);
+                System.arraycopy(row, 0, matrix[i], 0, bLength + 1);
             }
             if(min > limit) {
                 return Double.POSITIVE_INFINITY;
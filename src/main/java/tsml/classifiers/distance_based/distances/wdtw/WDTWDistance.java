@@ -17,11 +17,12 @@
  
 package tsml.classifiers.distance_based.distances.wdtw;
 
+import tsml.classifiers.distance_based.distances.DistanceBuffers;
 import tsml.classifiers.distance_based.distances.DoubleMatrixBasedDistanceMeasure;
+import tsml.classifiers.distance_based.distances.LowerBound;
 import tsml.classifiers.distance_based.distances.WarpingParameter;
 import tsml.classifiers.distance_based.utils.collections.params.ParamHandlerUtils;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import weka.core.Instance;
 
 /**
  * WDTW distance measure.
@@ -32,8 +33,9 @@ public class WDTWDistance
     extends DoubleMatrixBasedDistanceMeasure implements WDTW {
 
     private double g = 0.05;
-    private double[] weightVector = new double[0];
+    private volatile double[] weightVector = new double[0];
     private final WarpingParameter warpingParameter = new WarpingParameter();
+    private final WDTWLowerBound lowerBound = new WDTWLowerBound(this, warpingParameter);
 
     @Override
     public double getG() {
@@ -43,21 +45,28 @@ public class WDTWDistance
     @Override
     public void setG(double g) {
         this.g = g;
+        // the weights depend on g
+        weightVector = new double[0];
     }
 
-    @Override
-    public double findDistance(final Instance a, final Instance b, final double limit) {
+    @Override public LowerBound getLowerBound() {
+        return lowerBound;
+    }
 
-        int aLength = a.numAttributes() - 1;
-        int bLength = b.numAttributes() - 1;
+    @Override
+    public double findDistance(final double[] a, final int aLength, final double[] b, final int bLength,
+        final double limit) {
 
-        // generate weights
+        // generate weights. Swap in a new array rather than editing in place so concurrent callers never see a
+        // partially filled vector
+        double[] weightVector = this.weightVector;
         if(aLength != weightVector.length) {
             final double halfLength = (double) aLength / 2;
             weightVector = new double[aLength];
             for(int i = 0; i < aLength; i++) {
                 weightVector[i] = 1d / (1d + Math.exp(-g * (i - halfLength)));
             }
+            this.weightVector = weightVector;
         }
 
         final boolean generateDistanceMatrix = isGenerateDistanceMatrix();
@@ -68,10 +77,11 @@ public class WDTWDistance
         // Full DTW
         final int windowSize = findWindowSize(aLength);
 
-        double[] row = new double[bLength];
-        double[] prevRow = new double[bLength];
+        final DistanceBuffers buffers = DistanceBuffers.get();
+        double[] row = buffers.getDoubles(DistanceBuffers.ROW, bLength);
+        double[] prevRow = buffers.getDoubles(DistanceBuffers.PREV_ROW, bLength);
         // top left cell of matrix will simply be the sq diff
-        double min = weightVector[0] * Math.pow(a.value(0) - b.value(0), 2);
+        double min = weightVector[0] * Math.pow(a[0] - b[0], 2);
         row[0] = min;
         // start and end of window
         // start at the next cell of the first row
@@ -85,12 +95,12 @@ public class WDTWDistance
         }
         // the first row is populated from the sq diff + the cell before
         for(int j = start; j <= end; j++) {
-            double cost = row[j - 1] + weightVector[j] * Math.pow(a.value(0) - b.value(j), 2);
+            double cost = row[j - 1] + weightVector[j] * Math.pow(a[0] - b[j], 2);
             row[j] = cost;
             min = Math.min(min, cost);
         }
         if(generateDistanceMatrix) {
-            System.arraycopy(row, 0, matrix[0], 0, row.length);
+            System.arraycopy(row, 0, matrix[0], 0, bLength);
         }
         // early abandon if work has been done populating the first row for >1 entry
         if(min > limit) {
@@ -119,7 +129,7 @@ public class WDTWDistance
             // if assessing the left most column then only top is the option - not left or left-top
             if(start == 0) {
                 final double cost =
-                    prevRow[start] + weightVector[Math.abs(i - start)] * Math.pow(a.value(i) - b.value(start), 2);
+                    prevRow[start] + weightVector[Math.abs(i - start)] * Math.pow(a[i] - b[start], 2);
                 row[start] = cost;
                 min = Math.min(min, cost);
                 // shift to next cell
@@ -131,12 +141,12 @@ public class WDTWDistance
                 final double left = row[j - 1];
                 final double top = prevRow[j];
                 final double cost =
-                    Math.min(top, Math.min(left, topLeft)) + weightVector[Math.abs(i - j)] * Math.pow(a.value(i) - b.value(j), 2);
+                    Math.min(top, Math.min(left, topLeft)) + weightVector[Math.abs(i - j)] * Math.pow(a[i] - b[j], 2);
                 row[j] = cost;
                 min = Math.min(min, cost);
             }
             if(generateDistanceMatrix) {
-                System.arraycopy(row, 0, matrix[i], 0, row.length);
+                System.arraycopy(row, 0, matrix[i], 0, bLength);
             }
             if(min > limit) {
                 return Double.POSITIVE_INFINITY;
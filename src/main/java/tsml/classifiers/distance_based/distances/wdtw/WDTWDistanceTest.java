@@ -20,6 +20,7 @@ package tsml.classifiers.distance_based.distances.wdtw;
 import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
+import tsml.classifiers.distance_based.distances.LowerBoundAssert;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceTest;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceTest.DistanceTester;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
@@ -55,6 +56,7 @@ public class WDTWDistanceTest {
                     df.setG(g);
 //                    df.setKeepMatrix(true);
                     Assert.assertEquals(df.distance(ai, bi, limit), origWdtw(ai, bi, limit, g), 0);
+                    LowerBoundAssert.assertLowerBound(df, ai, bi, limit);
                 }
             }
         };
@@ -0,0 +1,46 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.distances.wdtw;
+
+import tsml.classifiers.distance_based.distances.WarpingDistanceMeasure;
+import tsml.classifiers.distance_based.distances.dtw.DTWLowerBound;
+
+/**
+ * Lower bounds for WDTW. Every cost in the WDTW matrix is a squared difference scaled by a weight no smaller than the
+ * smallest weight in the window, so the DTW bounds scaled by that weight are bounds for WDTW.
+ */
+public class WDTWLowerBound extends DTWLowerBound {
+
+    private final WDTW wdtw;
+
+    public WDTWLowerBound(final WDTW wdtw, final WarpingDistanceMeasure warpingParameter) {
+        super(warpingParameter);
+        this.wdtw = wdtw;
+    }
+
+    @Override protected double findMinWeight(final int length, final int windowSize) {
+        // the weights are logistic in the offset |i - j|, so monotonic. The smallest is at one end of the window.
+        final double halfLength = (double) length / 2;
+        final int maxOffset = Math.min(windowSize, length - 1);
+        final double g = wdtw.getG();
+        final double weight = Math.min(1d / (1d + Math.exp(g * halfLength)),
+                1d / (1d + Math.exp(-g * (maxOffset - halfLength))));
+        // scaling the sum rather than each term rounds differently, so give a little slack to stay below the distance
+        return weight * (1 - 1e-9);
+    }
+}
@@ -230,6 +230,10 @@ public class KNN extends BaseClassifier implements Rebuildable, Checkpointable,
         super.buildClassifier(trainData);
         // let the distance function know about the instances
         distanceFunction.setInstances(trainData);
+        // lower bounds can only prune when there's a limit to beat
+        if(earlyAbandon) {
+            DistanceMeasure.setLowerBounding(distanceFunction, true);
+        }
         // save our model data
         this.trainData = trainData;
         // we're fully built now
@@ -18,8 +18,10 @@
 package tsml.classifiers.distance_based.knn;
 
 import evaluation.storage.ClassifierResults;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import tsml.classifiers.distance_based.distances.BaseDistanceMeasure;
+import tsml.classifiers.distance_based.distances.DistanceMatrix;
 import tsml.classifiers.distance_based.distances.dtw.DTWDistanceConfigs;
 import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
 import tsml.classifiers.distance_based.distances.erp.ERPDistanceConfigs;
@@ -30,6 +32,7 @@ import tsml.classifiers.distance_based.distances.wdtw.WDTWDistanceConfigs;
 import tsml.classifiers.distance_based.knn.neighbour_iteration.LinearNeighbourIteratorBuilder;
 import tsml.classifiers.distance_based.knn.neighbour_iteration.RandomNeighbourIteratorBuilder;
 import tsml.classifiers.distance_based.knn.strategies.RLTunedKNNSetup;
+import tsml.classifiers.distance_based.knn.strategies.WindowSearchKNNSetup;
 import tsml.classifiers.distance_based.tuned.RLTunedClassifier;
 import tsml.classifiers.distance_based.utils.collections.iteration.RandomIterator;
 import tsml.classifiers.distance_based.utils.collections.params.*;
@@ -46,12 +49,14 @@ import weka.core.Instances;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class KNNLOOCV
-    extends KNN implements TrainTimeContractable {
+    extends KNN implements TrainTimeContractable, MultiThreadable {
 
     public static final Factory FACTORY = new Factory();
     public static final TunedFactory TUNED_FACTORY = new TunedFactory();
@@ -89,6 +94,10 @@ public class KNNLOOCV
             TunedFactory::buildTunedWdtw1nnV2));
         public final ClassifierBuilder<? extends RLTunedClassifier> TUNED_WDDTW_1NN_V2 = add(new SuppliedClassifierBuilder<>("TUNED_WDDTW_1NN_V2",
             TunedFactory::buildTunedWddtw1nnV2));
+        public final ClassifierBuilder<? extends RLTunedClassifier> TUNED_DTW_1NN_WINDOW_SEARCH = add(new SuppliedClassifierBuilder<>("TUNED_DTW_1NN_WINDOW_SEARCH",
+            TunedFactory::buildTunedDtw1nnWindowSearch));
+        public final ClassifierBuilder<? extends RLTunedClassifier> TUNED_DDTW_1NN_WINDOW_SEARCH = add(new SuppliedClassifierBuilder<>("TUNED_DDTW_1NN_WINDOW_SEARCH",
+            TunedFactory::buildTunedDdtw1nnWindowSearch));
 
 
         public static RLTunedClassifier buildTunedDtw1nnV1() {
@@ -123,6 +132,14 @@ public class KNNLOOCV
             return buildTuned1nnV2(i -> WDTWDistanceConfigs.buildWDDTWSpace());
         }
 
+        public static RLTunedClassifier buildTunedDtw1nnWindowSearch() {
+            return buildTuned1nnWindowSearch(DTWDistanceConfigs::buildDTWSpace);
+        }
+
+        public static RLTunedClassifier buildTunedDdtw1nnWindowSearch() {
+            return buildTuned1nnWindowSearch(DTWDistanceConfigs::buildDDTWSpace);
+        }
+
         public static RLTunedClassifier buildTunedMsm1nnV1() {
             return buildTuned1nnV1(i -> MSMDistanceConfigs.buildMSMSpace());
         }
@@ -186,6 +203,22 @@ public class KNNLOOCV
         public static RLTunedClassifier buildTuned1nnV2(ParamSpace paramSpace) {
             return buildTuned1nnV2(i -> paramSpace);
         }
+
+        /**
+         * tune the window of a dtw based 1nn, sharing the work between windows
+         * @param paramSpaceFunction must only vary the dtw window
+         * @return
+         */
+        public static RLTunedClassifier buildTuned1nnWindowSearch(RLTunedKNNSetup.ParamSpaceBuilder paramSpaceFunction) {
+            RLTunedClassifier incTunedClassifier = new RLTunedClassifier();
+            WindowSearchKNNSetup windowSearchKNNSetup = new WindowSearchKNNSetup();
+            windowSearchKNNSetup
+                .setRlTunedClassifier(incTunedClassifier)
+                .setParamSpace(paramSpaceFunction)
+                .setKnnSupplier(Factory::build1nnV1);
+            incTunedClassifier.setTrainSetupFunction(windowSearchKNNSetup);
+            return incTunedClassifier;
+        }
     }
 
     public static class Factory extends CompileTimeClassifierBuilderFactory<KNNLOOCV> {
@@ -281,6 +314,17 @@ public class KNNLOOCV
     protected NeighbourIteratorBuilder cvSearcherIteratorBuilder = new RandomNeighbourIteratorBuilder(this);
     protected boolean customCache = false;
     private boolean regenerateTrainEstimate = true;
+    // distances between every pair of train instances, computed up front when multithreading. Not checkpointed, any
+    // remaining distances are computed on demand after loading
+    protected transient DistanceMatrix distanceMatrix;
+    // whether the distance matrix was supplied rather than built from the train data
+    protected transient boolean customDistanceMatrix = false;
+    // the index of each train instance in the distance matrix
+    protected transient Map<Instance, Integer> trainIndices;
+    // the pairs of train instances already compared, by index, when the distances come from a distance matrix. This
+    // replaces the cache, which would otherwise hold distances that are never read
+    protected BitSet seenPairs;
+    protected int numThreads = 1;
 
     public KNNLOOCV() {
         setAbleToEstimateOwnPerformance(true);
@@ -347,7 +391,11 @@ public class KNNLOOCV
         final Instance leftOutInstance = leftOutSearcher.getInstance();
         if(!leftOutInstance.equals(instance)) {
             boolean seen;
-            if(customCache) {
+            if(seenPairs != null) {
+                final int pair = pairIndex(trainIndex(instance), trainIndex(leftOutInstance));
+                seen = seenPairs.get(pair);
+                seenPairs.set(pair);
+            } else if(customCache) {
                 seen = biCache.contains(leftOutInstance, instance);
             } else {
                 seen = biCache.remove(leftOutInstance, instance);
@@ -358,6 +406,9 @@ public class KNNLOOCV
             } else {
                 final long distanceMeasurementTimeStamp = System.nanoTime();
                 Double distance = customCache ? biCache.get(instance, leftOutInstance) : null;
+                if(distance == null && distanceMatrix != null) {
+                    distance = distanceMatrix.get(trainIndex(instance), trainIndex(leftOutInstance));
+                }
                 final long timeTakenInNanos = System.nanoTime() - distanceMeasurementTimeStamp;
                 if(distance == null) {
                     distance = searcher.add(leftOutInstance);
@@ -365,7 +416,9 @@ public class KNNLOOCV
                     searcher.add(leftOutInstance, distance, timeTakenInNanos);
                 }
                 leftOutSearcher.add(instance, distance, 0); // we get this for free!
-                biCache.put(instance, leftOutInstance, distance);
+                if(seenPairs == null) {
+                    biCache.put(instance, leftOutInstance, distance);
+                }
                 final Double finalDistance = distance;
                 logger.info(() -> comparisonCount + ") i" + instance.hashCode() + " and i" + leftOutInstance.hashCode() +
                                  ": " + finalDistance);
@@ -480,6 +533,14 @@ public class KNNLOOCV
                         biCache = new BiCache<>();
                     }
                 }
+                buildDistanceMatrix(trainData);
+                if(distanceMatrix != null && !customCache) {
+                    // only which pairs have been seen is needed, the distances are in the matrix
+                    seenPairs = new BitSet();
+                    biCache = null;
+                } else {
+                    seenPairs = null;
+                }
                 leftOutSearcherIterator = neighbourIteratorBuilder.build();
                 regenerateTrainEstimate = true; // build the first train estimate irrelevant of any progress made
                 cvSearcherIterator = cvSearcherIteratorBuilder.build();
@@ -535,6 +596,77 @@ public class KNNLOOCV
         checkpointIfIntervalExpired();
     }
 
+    /**
+     * compute the distances between every pair of train instances in parallel ahead of the LOOCV. This is only worth it
+     * if every neighbour is going to be examined, i.e. there's no neighbour limit, and multiple threads are available.
+     * @param trainData
+     */
+    protected void buildDistanceMatrix(Instances trainData) {
+        trainIndices = new IdentityHashMap<>(trainData.size());
+        for(int i = 0; i < trainData.size(); i++) {
+            trainIndices.put(trainData.get(i), i);
+        }
+        if(customDistanceMatrix) {
+            if(distanceMatrix.getNumRows() != trainData.size()) {
+                throw new IllegalArgumentException("distance matrix does not match the train data size");
+            }
+            return;
+        }
+        distanceMatrix = null;
+        if(numThreads <= 1 || customCache || hasNeighbourLimit()) {
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            distanceMatrix = DistanceMatrix.pairwise(getDistanceFunction(), trainData, isEarlyAbandon() ? getK() : -1,
+                    executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * the index of a train instance in the train data, found from the searchers so it also holds after loading a
+     * checkpoint
+     * @param instance
+     * @return
+     */
+    protected int trainIndex(Instance instance) {
+        if(trainIndices == null) {
+            trainIndices = new IdentityHashMap<>(searchers.size());
+            for(int i = 0; i < searchers.size(); i++) {
+                trainIndices.put(searchers.get(i).getInstance(), i);
+            }
+        }
+        return trainIndices.get(instance);
+    }
+
+    // the index of an unordered pair of train instances, as in the lower triangle of a distance matrix
+    private static int pairIndex(int i, int j) {
+        final int row = Math.max(i, j);
+        final int column = Math.min(i, j);
+        return (int) ((long) row * (row - 1) / 2 + column);
+    }
+
+    @Override public void enableMultiThreading(final int numThreads) {
+        this.numThreads = numThreads;
+    }
+
+    public DistanceMatrix getDistanceMatrix() {
+        return distanceMatrix;
+    }
+
+    /**
+     * supply the distances between every pair of train instances, e.g. to reuse across several builds with the same
+     * distance measure parameters. Note the matrix must have been computed on the same train data in the same order,
+     * and if early abandoned then with the same k.
+     * @param distanceMatrix the matrix, or null to compute the distances during the build
+     */
+    public void setDistanceMatrix(final DistanceMatrix distanceMatrix) {
+        this.distanceMatrix = distanceMatrix;
+        customDistanceMatrix = distanceMatrix != null;
+    }
+
     public long getTrainTime() {
         return trainEstimateTimer.getTime() + getTrainTimer().getTime();
     }
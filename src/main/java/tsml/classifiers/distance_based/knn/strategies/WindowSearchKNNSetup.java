@@ -0,0 +1,263 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.knn.strategies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import tsml.classifiers.EnhancedAbstractClassifier;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.dtw.DTWWindowSearch;
+import tsml.classifiers.distance_based.distances.transformed.BaseTransformDistanceMeasure;
+import tsml.classifiers.distance_based.knn.KNNLOOCV;
+import tsml.classifiers.distance_based.knn.strategies.RLTunedKNNSetup.ParamSpaceBuilder;
+import tsml.classifiers.distance_based.tuned.Agent;
+import tsml.classifiers.distance_based.tuned.Ensembler;
+import tsml.classifiers.distance_based.tuned.RLTunedClassifier;
+import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
+import tsml.classifiers.distance_based.utils.collections.params.ParamSpace;
+import tsml.classifiers.distance_based.utils.collections.params.iteration.GridSearchIterator;
+import tsml.classifiers.distance_based.utils.system.logging.Loggable;
+import tsml.transformers.Transformer;
+import weka.core.DistanceFunction;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import static tsml.classifiers.distance_based.utils.strings.StrUtils.extractNameAndParams;
+
+/**
+ * Purpose: tune the window of a DTW knn by a LOOCV of every window in the parameter space, sharing the work between
+ * windows using DTWWindowSearch. The neighbours for every window are found up front, then each benchmark knn is
+ * built from the distances to its neighbours rather than computing a distance per pair. The whole sweep costs little
+ * more than a single LOOCV.
+ * <p>
+ * The parameter space must only vary the window of a DTW distance measure, optionally applied to transformed data
+ * (e.g. DDTW). The best benchmark is the most accurate, with draws going to the smallest window.
+ * <p>
+ * Contributors: goastler
+ */
+public class WindowSearchKNNSetup implements RLTunedClassifier.TrainSetupFunction, Loggable {
+
+    // the rl tuner we're working on
+    private RLTunedClassifier rlTunedClassifier = new RLTunedClassifier();
+    private ParamSpaceBuilder paramSpaceBuilder;
+    // supplier for a classifier to apply params to
+    private Supplier<KNNLOOCV> knnSupplier;
+    private transient DTWWindowSearch windowSearch;
+
+    @Override
+    public Logger getLogger() {
+        return rlTunedClassifier.getLogger();
+    }
+
+    /**
+     * a knn and the window it uses
+     */
+    private static class Benchmark {
+        private final KNNLOOCV knn;
+        private final int windowSize;
+
+        private Benchmark(final KNNLOOCV knn, final int windowSize) {
+            this.knn = knn;
+            this.windowSize = windowSize;
+        }
+    }
+
+    /**
+     * find the dtw distance measure a knn is using
+     * @param distanceFunction
+     * @return
+     */
+    private static DTWDistance findDtw(DistanceFunction distanceFunction) {
+        if(distanceFunction instanceof BaseTransformDistanceMeasure) {
+            distanceFunction = ((BaseTransformDistanceMeasure) distanceFunction).getDistanceFunction();
+        }
+        if(distanceFunction instanceof DTWDistance) {
+            return (DTWDistance) distanceFunction;
+        }
+        throw new IllegalArgumentException("window search only applies to dtw: " + distanceFunction);
+    }
+
+    private static Transformer findTransformer(DistanceFunction distanceFunction) {
+        if(distanceFunction instanceof BaseTransformDistanceMeasure) {
+            return ((BaseTransformDistanceMeasure) distanceFunction).getTransformer();
+        }
+        return null;
+    }
+
+    @Override
+    public void accept(Instances trainData) {
+        final int length = trainData.numAttributes() - 1;
+        // build a benchmark for every param set
+        final ParamSpace paramSpace = paramSpaceBuilder.apply(trainData);
+        final GridSearchIterator iterator = new GridSearchIterator(paramSpace);
+        final List<Benchmark> benchmarks = new ArrayList<>();
+        Transformer transformer = null;
+        int k = -1;
+        while(iterator.hasNext()) {
+            final ParamSet paramSet = iterator.next();
+            final KNNLOOCV knn = knnSupplier.get();
+            try {
+                knn.setParams(paramSet);
+            } catch(Exception e) {
+                throw new IllegalStateException(e);
+            }
+            knn.setClassifierName(knn.getClassifierName() + "_" + benchmarks.size());
+            // the neighbours are found for every series so no need to limit them
+            knn.setNeighbourLimit(-1);
+            // the train estimate is the LOOCV
+            knn.setEstimatorMethod("CV");
+            final DistanceFunction distanceFunction = knn.getDistanceFunction();
+            final int windowSize = findDtw(distanceFunction).findWindowSize(length);
+            if(benchmarks.isEmpty()) {
+                // fit the distance measure as the knn build would, so any transformer (e.g. the derivative cache
+                // of ddtw) is ready to transform the train data
+                distanceFunction.setInstances(trainData);
+                transformer = findTransformer(distanceFunction);
+                k = knn.getK();
+            } else if(k != knn.getK()) {
+                throw new IllegalArgumentException("k must be the same for every benchmark");
+            }
+            benchmarks.add(new Benchmark(knn, windowSize));
+        }
+        if(benchmarks.isEmpty()) {
+            throw new IllegalArgumentException("empty param space");
+        }
+        // find the neighbours for every window in one go
+        final double[][] series = new double[trainData.size()][];
+        for(int i = 0; i < series.length; i++) {
+            final Instance instance = transformer == null ? trainData.get(i) : transformer.transform(trainData.get(i));
+            series[i] = new double[instance.numAttributes() - 1];
+            for(int j = 0; j < series[i].length; j++) {
+                series[i][j] = instance.value(j);
+            }
+        }
+        windowSearch = new DTWWindowSearch(series, k);
+        windowSearch.search(benchmarks.stream().mapToInt(benchmark -> benchmark.windowSize).toArray());
+        getLogger().info(() -> "window search took " + windowSearch.getComputationCount() + " dtw computations");
+        rlTunedClassifier.setAgent(new WindowSearchAgent(benchmarks));
+        rlTunedClassifier.setEnsembler(Ensembler.single());
+    }
+
+    /**
+     * examines each benchmark once, keeping the best
+     */
+    private class WindowSearchAgent implements Agent {
+
+        private final Iterator<Benchmark> iterator;
+        private final List<Benchmark> benchmarks;
+        private Benchmark best = null;
+
+        private WindowSearchAgent(List<Benchmark> benchmarks) {
+            this.benchmarks = benchmarks;
+            iterator = benchmarks.iterator();
+        }
+
+        @Override public Set<EnhancedAbstractClassifier> getFinalClassifiers() {
+            if(best == null) {
+                return new HashSet<>();
+            }
+            getLogger().info(() -> "picked final classifier to be: " + extractNameAndParams(best.knn));
+            return new HashSet<>(Collections.singletonList(best.knn));
+        }
+
+        @Override public boolean feedback(final EnhancedAbstractClassifier classifier) {
+            Benchmark benchmark = null;
+            for(Benchmark other : benchmarks) {
+                if(other.knn == classifier) {
+                    benchmark = other;
+                    break;
+                }
+            }
+            if(benchmark == null) {
+                throw new IllegalArgumentException("unknown benchmark: " + classifier);
+            }
+            // the distances are only needed for the build
+            benchmark.knn.setDistanceMatrix(null);
+            final double score = benchmark.knn.getTrainResults().getAcc();
+            getLogger().info(() -> "score of " + score + " for " + extractNameAndParams(classifier));
+            if(best == null) {
+                best = benchmark;
+            } else {
+                final double bestScore = best.knn.getTrainResults().getAcc();
+                if(score > bestScore || (score == bestScore && benchmark.windowSize < best.windowSize)) {
+                    best = benchmark;
+                }
+            }
+            // fully built, as every neighbour has been examined
+            return false;
+        }
+
+        @Override public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override public EnhancedAbstractClassifier next() {
+            final Benchmark benchmark = iterator.next();
+            benchmark.knn.setDistanceMatrix(windowSearch.buildDistanceMatrix(benchmark.windowSize));
+            getLogger().info(() -> "exploring: " + extractNameAndParams(benchmark.knn));
+            return benchmark.knn;
+        }
+    }
+
+    /**
+     * build the RL tuned classifier. This should already be set, all we're doing here is setting the classifier up
+     * with this class and returning it.
+     * @return
+     */
+    public RLTunedClassifier build() {
+        rlTunedClassifier.setTrainSetupFunction(this);
+        return rlTunedClassifier;
+    }
+
+    public RLTunedClassifier getRlTunedClassifier() {
+        return rlTunedClassifier;
+    }
+
+    public WindowSearchKNNSetup setRlTunedClassifier(final RLTunedClassifier rlTunedClassifier) {
+        this.rlTunedClassifier = rlTunedClassifier;
+        return this;
+    }
+
+    public ParamSpaceBuilder getParamSpaceBuilder() {
+        return paramSpaceBuilder;
+    }
+
+    public WindowSearchKNNSetup setParamSpace(final ParamSpaceBuilder paramSpaceBuilder) {
+        this.paramSpaceBuilder = paramSpaceBuilder;
+        return this;
+    }
+
+    public Supplier<KNNLOOCV> getKnnSupplier() {
+        return knnSupplier;
+    }
+
+    public WindowSearchKNNSetup setKnnSupplier(final Supplier<KNNLOOCV> knnSupplier) {
+        this.knnSupplier = knnSupplier;
+        return this;
+    }
+
+    public DTWWindowSearch getWindowSearch() {
+        return windowSearch;
+    }
+}
@@ -23,6 +23,7 @@ import evaluation.evaluators.OutOfBagEvaluator;
 import evaluation.storage.ClassifierResults;
 import experiments.data.DatasetLoading;
 import org.junit.Assert;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.distance_based.utils.classifiers.BaseClassifier;
 import tsml.classifiers.distance_based.utils.classifiers.Configurer;
 import tsml.classifiers.distance_based.utils.classifiers.EnumBasedConfigurer;
@@ -47,6 +48,10 @@ import weka.core.Instances;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -54,7 +59,7 @@ import java.util.logging.Logger;
  * <p>
  * Contributors: goastler
  */
-public class ProximityForest extends BaseClassifier implements ContractedTrain, ContractedTest, TimedTrain, TimedTrainEstimate, TimedTest, WatchedMemory, Checkpointed {
+public class ProximityForest extends BaseClassifier implements ContractedTrain, ContractedTest, TimedTrain, TimedTrainEstimate, TimedTest, WatchedMemory, Checkpointed, MultiThreadable {
 
     public static void main(String[] args) throws Exception {
         for(int i = 1; i < 2; i++) {
@@ -192,9 +197,6 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
     private final MemoryWatcher memoryWatcher = new MemoryWatcher();
     // test timer for contracting predictions
     private final StopWatch testTimer = new StopWatch();
-    // the train stage timer used to predict how long the next tree will take and whether there is enough contract
-    // remaining
-    private final StopWatch trainStageTimer = new StopWatch();
     // the test stage timer for checking whether there is enough time to do more prediction work
     private final StopWatch testStageTimer = new StopWatch();
     // the list of trees in this forest
@@ -217,6 +219,10 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
     private transient final Checkpointer checkpointer = new BaseCheckpointer(this);
     // whether to rebuild the tree after a train estimate has been produced. This is for evaluation methods like OOB where the evaluated tree may not need rebuilding
     private boolean rebuildConstituentAfterEvaluation;
+    // the number of trees to build / predict with at once
+    private int numThreads = 1;
+    // the threads to build / predict with, created on first use
+    private transient ExecutorService executor;
 
     @Override public Checkpointer getCheckpointer() {
         return checkpointer;
@@ -226,6 +232,10 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         private ProximityTree proximityTree;
         private Evaluator evaluator;
         private ClassifierResults evaluationResults;
+        // time taken to evaluate and build the tree
+        private long trainStageTimeNanos;
+        // time taken to evaluate the tree
+        private long trainEstimateTimeNanos;
 
         public Evaluator getEvaluator() {
             return evaluator;
@@ -283,46 +293,45 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
                 insideTrainTimeLimit(trainTimer.getTime() + longestTrainStageTimeNanos)
         ) {
             LogUtils.logTimeContract(trainTimer.getTime(), trainTimeLimitNanos, logger, "train");
-            // reset the tree build timer
-            trainStageTimer.resetAndStart();
-            final int treeIndex = constituents.size();
-            // setup a new tree
-            final ProximityTree tree = new ProximityTree();
+            // build a batch of trees, one per thread. The batch takes about as long as its slowest tree, so the
+            // contract check above holds for the batch as it would for a single tree
+            int batchSize = numThreads;
+            if(hasNumTreeLimit()) {
+                batchSize = Math.min(batchSize, numTreeLimit - constituents.size());
+            }
+            final List<Callable<Constituent>> tasks = new ArrayList<>(batchSize);
+            for(int i = 0; i < batchSize; i++) {
+                final int treeIndex = constituents.size();
+                // setup a new tree
+                final ProximityTree tree = new ProximityTree();
 //            tree.setLogger(logger);
-            final Constituent constituent = new Constituent();
-            constituent.setProximityTree(tree);
-            constituents.add(constituent);
-            proximityTreeConfig.configure(tree);
-            tree.setSeed(rand.nextInt());
-            // estimate the performance of the tree
-            if(!estimator.equals(EstimatorMethod.NONE)) {
-                trainEstimateTimer.start();
-                // build train estimate based on method
-                final Evaluator evaluator = buildEvaluator();
-                evaluator.setSeed(rand.nextInt());
-                constituent.setEvaluator(evaluator);
-                logger.info(() -> "evaluating tree " + treeIndex);
-                // evaluate the tree
-                final ClassifierResults results = evaluator.evaluate(tree, trainData);
-                constituent.setEvaluationResults(results);
-                // rebuild the train results as the train estimate has been changed
-                setRebuildTrainEstimateResults(true);
-                // set meta data
-                ResultUtils.setInfo(results, tree, trainData);
-                results.setErrorEstimateMethod(getEstimatorMethod());
-                trainEstimateTimer.stop();
-                results.setErrorEstimateTime(trainStageTimer.getTime());
+                final Constituent constituent = new Constituent();
+                constituent.setProximityTree(tree);
+                constituents.add(constituent);
+                proximityTreeConfig.configure(tree);
+                // seeds are drawn here in tree order, so the forest is the same no matter how many threads build it
+                tree.setSeed(rand.nextInt());
+                if(!estimator.equals(EstimatorMethod.NONE)) {
+                    // build train estimate based on method
+                    final Evaluator evaluator = buildEvaluator();
+                    evaluator.setSeed(rand.nextInt());
+                    constituent.setEvaluator(evaluator);
+                }
+                tasks.add(() -> buildConstituent(treeIndex, constituent, trainData));
             }
-            // build the tree if not producing train estimate OR rebuild after evaluation
-            if(estimator.equals(EstimatorMethod.NONE) || rebuildConstituentAfterEvaluation) {
-                logger.info(() -> "building tree " + treeIndex);
-                tree.setRebuild(true);
-                tree.buildClassifier(trainData);
+            // the trees in a batch are evaluated side by side, so the batch's estimate time is the longest of them
+            long longestTrainEstimateTimeNanos = 0;
+            for(Constituent constituent : run(tasks)) {
+                if(constituent.getEvaluator() != null) {
+                    longestTrainEstimateTimeNanos = Math.max(longestTrainEstimateTimeNanos,
+                            constituent.trainEstimateTimeNanos);
+                    // rebuild the train results as the train estimate has been changed
+                    setRebuildTrainEstimateResults(true);
+                }
+                // update longest tree build time
+                longestTrainStageTimeNanos = Math.max(longestTrainStageTimeNanos, constituent.trainStageTimeNanos);
             }
-            // tree fully built
-            trainStageTimer.stop();
-            // update longest tree build time
-            longestTrainStageTimeNanos = Math.max(longestTrainStageTimeNanos, trainStageTimer.getTime());
+            trainEstimateTimer.add(longestTrainEstimateTimeNanos);
             // optional checkpoint
             checkpointIfIntervalExpired();
             // update train timer
@@ -399,22 +408,114 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         testTimer.resetAndStart();
         long longestTestStageTimeNanos = 0;
         final double[] finalDistribution = new double[getNumClasses()];
-        for(int i = 0;
-            i < constituents.size()
+        int i = 0;
+        while(i < constituents.size()
             &&
-            (testTimeLimitNanos <= 0 || testTimer.lap() + longestTestStageTimeNanos < testTimeLimitNanos)
-                ; i++) {
+            (testTimeLimitNanos <= 0 || testTimer.lap() + longestTestStageTimeNanos < testTimeLimitNanos)) {
             testStageTimer.resetAndStart();
-            final double[] distribution = vote(constituents.get(i), instance);
-            ArrayUtilities.add(finalDistribution, distribution);
+            // predict with a batch of trees, one per thread
+            final int end = Math.min(constituents.size(), i + numThreads);
+            final List<Callable<double[]>> tasks = new ArrayList<>(end - i);
+            for(int j = i; j < end; j++) {
+                final ProximityTree tree = constituents.get(j).getProximityTree();
+                tasks.add(() -> tree.distributionForInstance(instance));
+            }
+            final List<double[]> distributions = run(tasks);
+            // vote in tree order as voting may break ties using the random source
+            for(int j = i; j < end; j++) {
+                final double[] distribution = vote(constituents.get(j), distributions.get(j - i));
+                ArrayUtilities.add(finalDistribution, distribution);
+            }
             testStageTimer.stop();
             longestTestStageTimeNanos = Math.max(longestTestStageTimeNanos, testStageTimer.getTime());
+            i = end;
         }
         ArrayUtilities.normalise(finalDistribution);
         testTimer.stop();
         return finalDistribution;
     }
 
+    /**
+     * evaluate and / or build a tree, recording the time taken in the constituent
+     * @param treeIndex
+     * @param constituent
+     * @param trainData
+     * @return the constituent
+     * @throws Exception
+     */
+    private Constituent buildConstituent(int treeIndex, Constituent constituent, Instances trainData) throws Exception {
+        final Logger logger = getLogger();
+        // time the tree locally as other trees may be building at the same time
+        final StopWatch stageTimer = new StopWatch();
+        stageTimer.start();
+        final ProximityTree tree = constituent.getProximityTree();
+        final Evaluator evaluator = constituent.getEvaluator();
+        // estimate the performance of the tree
+        if(evaluator != null) {
+            logger.info(() -> "evaluating tree " + treeIndex);
+            // evaluate the tree
+            final ClassifierResults results = evaluator.evaluate(tree, trainData);
+            constituent.setEvaluationResults(results);
+            // set meta data
+            ResultUtils.setInfo(results, tree, trainData);
+            results.setErrorEstimateMethod(getEstimatorMethod());
+            constituent.trainEstimateTimeNanos = stageTimer.getTime();
+            results.setErrorEstimateTime(constituent.trainEstimateTimeNanos);
+        }
+        // build the tree if not producing train estimate OR rebuild after evaluation
+        if(evaluator == null || rebuildConstituentAfterEvaluation) {
+            logger.info(() -> "building tree " + treeIndex);
+            tree.setRebuild(true);
+            tree.buildClassifier(trainData);
+        }
+        // tree fully built
+        stageTimer.stop();
+        constituent.trainStageTimeNanos = stageTimer.getTime();
+        return constituent;
+    }
+
+    /**
+     * run tasks on the threads available, returning the results in task order
+     * @param tasks
+     * @param <A>
+     * @return
+     * @throws Exception
+     */
+    private <A> List<A> run(List<Callable<A>> tasks) throws Exception {
+        final List<A> results = new ArrayList<>(tasks.size());
+        if(numThreads <= 1 || tasks.size() <= 1) {
+            for(Callable<A> task : tasks) {
+                results.add(task.call());
+            }
+        } else {
+            if(executor == null) {
+                // daemon threads so an unused forest never holds the jvm open
+                executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+                    final Thread thread = new Thread(runnable);
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            final List<Future<A>> futures = new ArrayList<>(tasks.size());
+            for(Callable<A> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for(Future<A> future : futures) {
+                results.add(future.get());
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public void enableMultiThreading(final int numThreads) {
+        if(executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        this.numThreads = Math.max(1, numThreads);
+    }
+
     /**
      * make a consistuent vote given distributionForInstance (can be precomputed elsewhere, therefore). This is mostly required for processing the train estimate.
      * @param constituent
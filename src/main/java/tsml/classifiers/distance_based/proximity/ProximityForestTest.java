@@ -0,0 +1,73 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.distance_based.proximity;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.distance_based.utils.classifiers.CopierUtils;
+import weka.core.Instances;
+
+/**
+ * Purpose: test the proximity forest is the same however many threads build it and after serialisation
+ * <p>
+ * Contributors: goastler
+ */
+public class ProximityForestTest {
+
+    private static double[][] buildAndPredict(Instances[] data, int numThreads) throws Exception {
+        final ProximityForest classifier = new ProximityForest();
+        ProximityForest.Config.PF_R5_OOB.configure(classifier);
+        classifier.setNumTreeLimit(5);
+        classifier.setSeed(0);
+        classifier.enableMultiThreading(numThreads);
+        classifier.buildClassifier(data[0]);
+        final double[][] distributions = new double[data[1].size() + data[0].size()][];
+        for(int i = 0; i < data[1].size(); i++) {
+            distributions[i] = classifier.distributionForInstance(data[1].get(i));
+        }
+        for(int i = 0; i < data[0].size(); i++) {
+            distributions[data[1].size() + i] = classifier.getTrainResults().getProbabilityDistribution(i);
+        }
+        return distributions;
+    }
+
+    @Test
+    public void testMultiThreadingIsDeterministic() throws Exception {
+        final Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        final double[][] single = buildAndPredict(data, 1);
+        final double[][] multi = buildAndPredict(data, 3);
+        Assert.assertArrayEquals(single, multi);
+    }
+
+    @Test
+    public void testPredictAfterDeserialisation() throws Exception {
+        final Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        final ProximityForest classifier = new ProximityForest();
+        ProximityForest.Config.PF_R5_OOB.configure(classifier);
+        classifier.setNumTreeLimit(5);
+        classifier.setSeed(0);
+        classifier.enableMultiThreading(3);
+        classifier.buildClassifier(data[0]);
+        final ProximityForest copy = (ProximityForest) CopierUtils.deserialise(CopierUtils.serialise(classifier));
+        for(int i = 0; i < data[1].size(); i++) {
+            Assert.assertArrayEquals(classifier.distributionForInstance(data[1].get(i)),
+                    copy.distributionForInstance(data[1].get(i)), 0);
+        }
+    }
+}
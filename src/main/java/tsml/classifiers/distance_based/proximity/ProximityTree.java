@@ -64,6 +64,7 @@ import weka.core.DistanceFunction;
 import weka.core.Instance;
 import weka.core.Instances;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -561,7 +562,7 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
         this.rPatience = rPatience;
     }
 
-    private static class Partition {
+    private static class Partition implements Serializable {
 
         private Partition(final Instances data, final List<Instance> exemplars) {
             this.data = data;
@@ -603,7 +604,7 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
 
     }
 
-    private class Split {
+    private class Split implements Serializable {
 
         public Split() {}
 
@@ -723,6 +724,10 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
             setupExemplarsAndPartitions();
             // setup the distance function
             distanceFunction.setInstances(data);
+            // lower bounds can only prune when there's a limit to beat
+            if(earlyAbandonDistances) {
+                DistanceMeasure.setLowerBounding(distanceFunction, true);
+            }
             // go through every instance and find which partition it should go into. This should be the partition
             // with the closest exemplar associate
             for(int i = 0; i < data.size(); i++) {
@@ -19,6 +19,7 @@ package tsml.classifiers.hybrids;
 
 import experiments.data.DatasetLoading;
 import tsml.classifiers.EnhancedAbstractClassifier;
+import tsml.classifiers.MultiThreadable;
 import tsml.transformers.Catch22;
 import utilities.ClassifierTools;
 import weka.classifiers.Classifier;
@@ -29,6 +30,7 @@ import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 import static utilities.InstanceTools.resampleTrainAndTestInstances;
+import static utilities.Utilities.extractTimeSeries;
 import static utilities.multivariate_tools.MultivariateInstanceTools.*;
 
 /**
@@ -43,7 +45,7 @@ import static utilities.multivariate_tools.MultivariateInstanceTools.*;
  *
  * @author Matthew Middlehurst
  */
-public class Catch22Classifier extends EnhancedAbstractClassifier {
+public class Catch22Classifier extends EnhancedAbstractClassifier implements MultiThreadable {
 
     //z-norm before transform
     private boolean norm = false;
@@ -54,6 +56,7 @@ public class Catch22Classifier extends EnhancedAbstractClassifier {
     private Catch22 c22;
     private Instances header;
     private int numColumns;
+    private int numThreads = 1;
 
     public Catch22Classifier(){
         super(CANNOT_ESTIMATE_OWN_PERFORMANCE);
@@ -85,6 +88,17 @@ public class Catch22Classifier extends EnhancedAbstractClassifier {
 
     public void setOutlierNormalise(boolean b) { this.outlierNorm = b; }
 
+    /**
+     * Transform the series using multiple threads, the classifier is not affected.
+     *
+     * @param numThreads number of threads available for the catch22 transform
+     */
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+        if (c22 != null) c22.enableMultiThreading(this.numThreads);
+    }
+
     @Override
     public void buildClassifier(Instances data) throws Exception {
         super.buildClassifier(data);
@@ -106,6 +120,7 @@ public class Catch22Classifier extends EnhancedAbstractClassifier {
         c22 = new Catch22();
         c22.setNormalise(norm);
         c22.setOutlierNormalise(outlierNorm);
+        c22.enableMultiThreading(numThreads);
 
         ArrayList<Attribute> atts = new ArrayList<>();
         for (int i = 1; i <= 22*numColumns; i++){
@@ -116,14 +131,19 @@ public class Catch22Classifier extends EnhancedAbstractClassifier {
         transformedData.setClassIndex(transformedData.numAttributes()-1);
         header = new Instances(transformedData,0);
 
-        //transform each dimension using the catch22 transformer into a sincle vector
+        //transform each dimension using the catch22 transformer into a sincle vector, all series in one batch
+        double[][] series = new double[data.numInstances() * numColumns][];
+        for (int i = 0 ; i < data.numInstances(); i++){
+            for (int n = 0 ; n < numColumns; n++){
+                series[i * numColumns + n] = extractTimeSeries(columns[n].get(i));
+            }
+        }
+        double[][] features = c22.transform(series);
+
         for (int i = 0 ; i < data.numInstances(); i++){
             double[] d = new double[transformedData.numAttributes()];
             for (int n = 0 ; n < numColumns; n++){
-                Instance inst = (c22.transform(columns[n].get(i)));
-                for (int j = 0; j < 22; j++){
-                    d[n * 22 + j] = inst.value(j);
-                }
+                System.arraycopy(features[i * numColumns + n], 0, d, n * 22, 22);
             }
             d[transformedData.numAttributes()-1] = data.get(i).classValue();
             transformedData.add(new DenseInstance(1, d));
@@ -160,12 +180,15 @@ public class Catch22Classifier extends EnhancedAbstractClassifier {
         }
 
         //transform each dimension using the catch22 transformer into a sincle vector
+        double[][] series = new double[numColumns][];
+        for (int n = 0 ; n < numColumns; n++){
+            series[n] = extractTimeSeries(columns[n]);
+        }
+        double[][] features = c22.transform(series);
+
         double[] d = new double[header.numAttributes()];
         for (int n = 0 ; n < numColumns; n++){
-            Instance inst = (c22.transform(columns[n]));
-            for (int j = 0; j < 22; j++){
-                d[n * 22 + j] = inst.value(j);
-            }
+            System.arraycopy(features[n], 0, d, n * 22, 22);
         }
         d[header.numAttributes()-1] = instance.classValue();
         Instance transformedInst = new DenseInstance(1, d);
@@ -588,19 +588,20 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                     instIdx = k;
                 }
 
+                double[][] c22Features = catch22Features(c22, dimensions[instIdx], interval,
+                        intervalDimensions.get(i), subsampleAtts.get(i), null);
+
                 for (int j = 0; j < numIntervals; j++) {
                     //extract the interval
                     double[] series = dimensions[instIdx][intervalDimensions.get(i).get(j)];
 
                     FeatureSet f = new FeatureSet();
-                    double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
 
                     //process features
 
                     for (int g = 0; g < numAttributes; g++) {
                         if (subsampleAtts.get(i).get(g) < 22) {
-                            result.instance(k).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts.get(i).get(g), j, intervalArray));
+                            result.instance(k).setValue(j * numAttributes + g, c22Features[j][g]);
                         } else {
                             if (!f.calculatedFeatures) {
                                 f.setFeatures(series, interval[j][0], interval[j][1]);
@@ -652,11 +653,13 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                     if (inBag[n])
                         continue;
 
+                    double[][] c22Features = catch22Features(c22, dimensions[n], interval,
+                            intervalDimensions.get(i), subsampleAtts.get(i), usedAtts);
+
                     for (int j = 0; j < numIntervals; j++) {
                         double[] series = dimensions[n][intervalDimensions.get(i).get(j)];
 
                         FeatureSet f = new FeatureSet();
-                        double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
 
                         for (int g = 0; g < numAttributes; g++) {
                             if (!usedAtts[j * numAttributes + g]) {
@@ -665,8 +668,7 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                             }
 
                             if (subsampleAtts.get(i).get(g) < 22) {
-                                testHolder.instance(0).setValue(j * numAttributes + g,
-                                        c22.getSummaryStatByIndex(subsampleAtts.get(i).get(g), j, intervalArray));
+                                testHolder.instance(0).setValue(j * numAttributes + g, c22Features[j][g]);
                             } else {
                                 if (!f.calculatedFeatures) {
                                     f.setFeatures(series, interval[j][0], interval[j][1]);
@@ -708,6 +710,53 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         }
     }
 
+    /**
+     * Find the catch22 features of every interval of a series in a single batch.
+     *
+     * @param c22 catch22 transformer
+     * @param dimensions series dimensions
+     * @param interval start and end of each interval
+     * @param dims dimension of each interval
+     * @param atts subsampled attributes, only those below 22 are found
+     * @param usedAtts attributes used by the tree, all are found if null
+     * @return feature of attribute g for interval j at [j][g]
+     * @throws Exception unable to transform
+     */
+    private double[][] catch22Features(Catch22 c22, double[][] dimensions, int[][] interval, ArrayList<Integer> dims,
+                                       ArrayList<Integer> atts, boolean[] usedAtts) throws Exception {
+        double[][] intervalArrays = new double[numIntervals][];
+        int[][] features = new int[numIntervals][];
+        int[] featureAtts = new int[numAttributes];
+        for (int j = 0; j < numIntervals; j++) {
+            int numFeatures = 0;
+            for (int g = 0; g < numAttributes; g++) {
+                if (atts.get(g) < 22 && (usedAtts == null || usedAtts[j * numAttributes + g])) {
+                    featureAtts[numFeatures++] = g;
+                }
+            }
+
+            features[j] = new int[numFeatures];
+            for (int n = 0; n < numFeatures; n++) {
+                features[j][n] = atts.get(featureAtts[n]);
+            }
+            if (numFeatures > 0) {
+                intervalArrays[j] = Arrays.copyOfRange(dimensions[dims.get(j)], interval[j][0], interval[j][1] + 1);
+            }
+        }
+
+        double[][] stats = c22.getSummaryStats(intervalArrays, features);
+        double[][] c22Features = new double[numIntervals][numAttributes];
+        for (int j = 0; j < numIntervals; j++) {
+            int n = 0;
+            for (int g = 0; g < numAttributes; g++) {
+                if (atts.get(g) < 22 && (usedAtts == null || usedAtts[j * numAttributes + g])) {
+                    c22Features[j][g] = stats[j][n++];
+                }
+            }
+        }
+        return c22Features;
+    }
+
     /**
      * Build the CIF classifier using multiple threads.
      * Unable to checkpoint until after the build process while using multiple threads.
@@ -891,17 +940,18 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         }
         else {
             //Build transformed instance
+            Catch22 c22 = new Catch22();
+            c22.setOutlierNormalise(outlierNorm);
             for (int i = 0; i < trees.size(); i++) {
-                Catch22 c22 = new Catch22();
-                c22.setOutlierNormalise(outlierNorm);
                 boolean[] usedAtts = attUsage.get(i);
 
+                double[][] c22Features = catch22Features(c22, dimensions, intervals.get(i),
+                        intervalDimensions.get(i), subsampleAtts.get(i), usedAtts);
+
                 for (int j = 0; j < numIntervals; j++) {
                     double[] series = dimensions[intervalDimensions.get(i).get(j)];
 
                     FeatureSet f = new FeatureSet();
-                    double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[j][0],
-                            intervals.get(i)[j][1] + 1);
 
                     for (int g = 0; g < numAttributes; g++) {
                         if (!usedAtts[j * numAttributes + g]) {
@@ -910,8 +960,7 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                         }
 
                         if (subsampleAtts.get(i).get(g) < 22) {
-                            testHolder.instance(0).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts.get(i).get(g), j, intervalArray));
+                            testHolder.instance(0).setValue(j * numAttributes + g, c22Features[j][g]);
                         } else {
                             if (!f.calculatedFeatures) {
                                 f.setFeatures(series, intervals.get(i)[j][0], intervals.get(i)[j][1]);
@@ -1496,6 +1545,8 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         public MultiThreadBuildHolder call() throws Exception{
             MultiThreadBuildHolder h = new MultiThreadBuildHolder();
             Random rand = new Random(seed + i * numClassifiers);
+            Catch22 c22 = new Catch22();
+            c22.setOutlierNormalise(outlierNorm);
 
             //1. Select random intervals for tree i
 
@@ -1594,20 +1645,20 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                     instIdx = k;
                 }
 
+                double[][] c22Features = catch22Features(c22, dimensions[instIdx], interval,
+                        intervalDimensions, subsampleAtts, null);
+
                 for (int j = 0; j < numIntervals; j++) {
                     //extract the interval
                     double[] series = dimensions[instIdx][intervalDimensions.get(j)];
 
                     FeatureSet f = new FeatureSet();
-                    double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
 
                     //process features
-                    Catch22 c22 = new Catch22();
 
                     for (int g = 0; g < numAttributes; g++) {
                         if (subsampleAtts.get(g) < 22) {
-                            result.instance(k).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts.get(g), j, intervalArray));
+                            result.instance(k).setValue(j * numAttributes + g, c22Features[j][g]);
                         } else {
                             if (!f.calculatedFeatures) {
                                 f.setFeatures(series, interval[j][0], interval[j][1]);
@@ -1662,11 +1713,13 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                     if (inBag[n])
                         continue;
 
+                    double[][] c22Features = catch22Features(c22, dimensions[n], interval,
+                            intervalDimensions, subsampleAtts, attUsage);
+
                     for (int j = 0; j < numIntervals; j++) {
                         double[] series = dimensions[n][intervalDimensions.get(j)];
 
                         FeatureSet f = new FeatureSet();
-                        double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
 
                         for (int g = 0; g < numAttributes; g++) {
                             if (!attUsage[j * numAttributes + g]) {
@@ -1675,8 +1728,7 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                             }
 
                             if (subsampleAtts.get(g) < 22) {
-                                testHolder.instance(0).setValue(j * numAttributes + g,
-                                        c22.getSummaryStatByIndex(subsampleAtts.get(g), j, intervalArray));
+                                testHolder.instance(0).setValue(j * numAttributes + g, c22Features[j][g]);
                             } else {
                                 if (!f.calculatedFeatures) {
                                     f.setFeatures(series, interval[j][0], interval[j][1]);
@@ -1752,12 +1804,13 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
             c22.setOutlierNormalise(outlierNorm);
             boolean[] usedAtts = attUsage.get(i);
 
+            double[][] c22Features = catch22Features(c22, dimensions, intervals.get(i),
+                    intervalDimensions.get(i), subsampleAtts.get(i), usedAtts);
+
             for (int j = 0; j < numIntervals; j++) {
                 double[] series = dimensions[intervalDimensions.get(i).get(j)];
 
                 FeatureSet f = new FeatureSet();
-                double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[j][0],
-                        intervals.get(i)[j][1] + 1);
 
                 for (int g = 0; g < numAttributes; g++) {
                     if (!usedAtts[j * numAttributes + g]) {
@@ -1766,8 +1819,7 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                     }
 
                     if (subsampleAtts.get(i).get(g) < 22) {
-                        testHolder.instance(0).setValue(j * numAttributes + g,
-                                c22.getSummaryStatByIndex(subsampleAtts.get(i).get(g), j, intervalArray));
+                        testHolder.instance(0).setValue(j * numAttributes + g, c22Features[j][g]);
                     } else {
                         if (!f.calculatedFeatures) {
                             f.setFeatures(series, intervals.get(i)[j][0], intervals.get(i)[j][1]);
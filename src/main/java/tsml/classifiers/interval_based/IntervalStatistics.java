@@ -0,0 +1,83 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.interval_based;
+
+/**
+ * Prefix sums of a series from which the TSF interval features of any interval are found in constant time, see
+ * TSF.FeatureSet.setFeatures(IntervalStatistics, int, int).
+ *
+ * The sums are taken over the series centred on its mean. This leaves the standard deviation and slope unchanged
+ * but keeps the sums small, so little precision is lost when two of them are subtracted. A count of the points that
+ * differ from their predecessor identifies flat intervals exactly.
+ */
+public class IntervalStatistics {
+
+    final double[] series;
+    final double seriesMean;
+
+    // element k holds the sum over the first k points of y, y^2 and i*y for the centred values y
+    final double[] sumY;
+    final double[] sumYY;
+    final double[] sumXY;
+    // as above for y^3 and y^4, only found when TSF.FeatureSet needs the skew or kurtosis
+    final double[] sumY3;
+    final double[] sumY4;
+    // element k holds the number of points before k that differ from the point before them
+    final int[] changes;
+
+    /**
+     * @param series the series, which is kept rather than copied
+     * @param length the number of points to use from the start of the series, e.g. excluding a class value
+     */
+    public IntervalStatistics(double[] series, int length) {
+        this.series = series;
+
+        double total = 0;
+        for (int i = 0; i < length; i++) {
+            total += series[i];
+        }
+        seriesMean = length > 0 ? total / length : 0;
+
+        boolean moments = TSF.FeatureSet.findSkew || TSF.FeatureSet.findKurtosis;
+        sumY = new double[length + 1];
+        sumYY = new double[length + 1];
+        sumXY = new double[length + 1];
+        sumY3 = moments ? new double[length + 1] : null;
+        sumY4 = moments ? new double[length + 1] : null;
+        changes = new int[length + 1];
+
+        for (int i = 0; i < length; i++) {
+            double y = series[i] - seriesMean;
+            sumY[i + 1] = sumY[i] + y;
+            sumYY[i + 1] = sumYY[i] + y * y;
+            sumXY[i + 1] = sumXY[i] + i * y;
+            if (moments) {
+                sumY3[i + 1] = sumY3[i] + y * y * y;
+                sumY4[i + 1] = sumY4[i] + y * y * y * y;
+            }
+            changes[i + 1] = changes[i] + (i > 0 && series[i] != series[i - 1] ? 1 : 0);
+        }
+    }
+
+    /**
+     * @return the number of points the statistics cover
+     */
+    public int length() {
+        return sumY.length - 1;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.interval_based;
+
+import experiments.data.RandomWalks;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class IntervalStatisticsTest {
+
+    // a constant stretch in the middle
+    private static double[] series(int length, long seed) {
+        double[] series = RandomWalks.randomWalk(new Random(seed), length, 100);
+        RandomWalks.flatten(series, length / 2, length / 2 + 10);
+        return series;
+    }
+
+    @Test
+    public void testMatchesScan() {
+        double[] series = series(120, 0);
+        IntervalStatistics stats = new IntervalStatistics(series, series.length);
+        TSF.FeatureSet expected = new TSF.FeatureSet();
+        TSF.FeatureSet actual = new TSF.FeatureSet();
+        Random random = new Random(1);
+        for (int n = 0; n < 500; n++) {
+            int start = random.nextInt(series.length - 3);
+            int end = start + 3 + random.nextInt(series.length - start - 3);
+            expected.setFeatures(series, start, end);
+            actual.setFeatures(stats, start, end);
+            assertEquals(expected.mean, actual.mean, 1e-9);
+            assertEquals(expected.stDev, actual.stDev, 1e-7);
+            assertEquals(expected.slope, actual.slope, 1e-9);
+        }
+    }
+
+    @Test
+    public void testFlatInterval() {
+        double[] series = series(120, 2);
+        IntervalStatistics stats = new IntervalStatistics(series, series.length);
+        TSF.FeatureSet f = new TSF.FeatureSet();
+        f.setFeatures(stats, series.length / 2 - 1, series.length / 2 + 9);
+        assertEquals(series[series.length / 2], f.mean, 0);
+        assertEquals(0, f.stDev, 0);
+        assertEquals(0, f.slope, 0);
+    }
+}
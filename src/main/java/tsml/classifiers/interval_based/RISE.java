@@ -25,7 +25,10 @@ import experiments.ClassifierLists;
 import experiments.data.DatasetLists;
 import fileIO.FullAccessOutFile;
 import tsml.classifiers.EnhancedAbstractClassifier;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.Tuneable;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
 import tsml.transformers.*;
 import tsml.transformers.FFT;
 import weka.classifiers.AbstractClassifier;
@@ -35,8 +38,13 @@ import weka.core.*;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import tsml.classifiers.Checkpointable;
 import tsml.classifiers.TrainTimeContractable;
@@ -81,9 +89,13 @@ import static experiments.data.DatasetLoading.loadDataNullable;
  * @date 19/02/19
  * updated 4/3/20 to conform to tsml standards
  * updated 10/3/20 to allow for internal CV estimate of train acc, same structure as TSF
+ * The ACF, FFT and ACF_FFT features of an interval are found from primitive arrays (SpectralIntervals). When
+ * predicting, each test series is summarised once and trees with the same interval share its features. With
+ * enableMultiThreading trees are built, and test instances or trees predicted, in parallel. The intervals are still
+ * drawn in order from one Random, so without a contract the forest is the same for any number of threads.
  **/
 
-public class RISE extends EnhancedAbstractClassifier implements TrainTimeContractable, TechnicalInformationHandler, Checkpointable, Tuneable {
+public class RISE extends EnhancedAbstractClassifier implements TrainTimeContractable, TechnicalInformationHandler, Checkpointable, Tuneable, MultiThreadable {
 
     boolean tune = false;
     TransformType[] transforms = {TransformType.ACF_FFT};
@@ -123,6 +135,13 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
     private PowerSpectrum PS;
     private TransformType transformType = TransformType.ACF_FFT;
     private Instances data = null;
+    //Headers of the transformed interval instances, by number of features.
+    private transient ConcurrentHashMap<Integer, Instances> featureHeaders = null;
+
+    /** Multi threading variables */
+    private int numThreads = 1;
+    private boolean multiThread = false;
+    private transient ExecutorService ex;
 
 
 /**** Checkpointing variables *****/
@@ -639,7 +658,7 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
         }
         //If not loaded from file e.g. Starting fresh experiment.
         if (!loadedFromFile) {
-            //Just used for getParameters.
+            //Used for getParameters and the headers of transformed intervals.
             data = trainingData;
             //(re)Initialise all variables to account for multiple calls of buildClassifier.
             initialise();
@@ -656,6 +675,8 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
 
         }
 
+        featureHeaders = new ConcurrentHashMap<>();
+
         if(getTuneTransform()){
             tuneTransform(data);
         }
@@ -672,57 +693,52 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
                 this.setTrainTimeLimit(TimeUnit.NANOSECONDS, (long) ((timer.forestTimeLimit * (1.0 / perForBag))));
         }
 
-        for (; classifiersBuilt < numClassifiers && ((classifiersBuilt==0)||(System.nanoTime() - timer.forestStartTime) < (timer.forestTimeLimit - getTime())); classifiersBuilt++) {
-            if(debug && classifiersBuilt%100==0)
-                printLineDebug("Building RISE tree "+classifiersBuilt+" time taken = "+(System.nanoTime()-startTime)+" contract ="+trainContractTimeNanos+" nanos");
+        if (multiThread) {
+            multiThreadBuildRISE(trainingData);
+        }
+        else {
+            for (; classifiersBuilt < numClassifiers && ((classifiersBuilt==0)||(System.nanoTime() - timer.forestStartTime) < (timer.forestTimeLimit - getTime())); classifiersBuilt++) {
+                if(debug && classifiersBuilt%100==0)
+                    printLineDebug("Building RISE tree "+classifiersBuilt+" time taken = "+(System.nanoTime()-startTime)+" contract ="+trainContractTimeNanos+" nanos");
 
 
-            //Start tree timer.
-            timer.treeStartTime = System.nanoTime();
+                //Start tree timer.
+                timer.treeStartTime = System.nanoTime();
 
-            //Compute maximum interval length given time remaining.
-            if(trainTimeContract) {
-                timer.buildModel();
-                maxIntervalLength = (int) timer.getFeatureSpace((timer.forestTimeLimit) - (System.nanoTime() - (timer.forestStartTime - getTime())));
-            }
+                //Compute maximum interval length given time remaining.
+                if(trainTimeContract) {
+                    timer.buildModel();
+                    maxIntervalLength = (int) timer.getFeatureSpace((timer.forestTimeLimit) - (System.nanoTime() - (timer.forestStartTime - getTime())));
+                }
 
-            //Produce intervalInstances from trainingData using interval attributes.
-            Instances intervalInstances;
-            //intervalInstances = produceIntervalInstances(maxIntervalLength, trainingData);
-            intervalInstances = produceIntervalInstances(maxIntervalLength, trainingData);
+                //Produce intervalInstances from trainingData using interval attributes, and transform them.
+                startEndPoints = selectStartEndPoints(startEndPoints, intervalMethod);
+                Instances intervalInstances = transformInterval(trainingData, startEndPoints.get(startEndPoints.size() - 1));
 
-            //Transform instances.
-            if (transformType != null) {
-                intervalInstances = transformInstances(intervalInstances, transformType);
-            }
+                //Add independent variable to model (length of interval).
+                timer.makePrediciton(intervalInstances.numAttributes() - 1);
+                timer.independantVariables.add(intervalInstances.numAttributes() - 1);
 
-            //Add independent variable to model (length of interval).
-            timer.makePrediciton(intervalInstances.numAttributes() - 1);
-            timer.independantVariables.add(intervalInstances.numAttributes() - 1);
+                //Build classifier with intervalInstances.
+                baseClassifiers.add(buildTree(intervalInstances));
 
-            //Build classifier with intervalInstances.
-            if(classifier instanceof RandomTree){
-                ((RandomTree)classifier).setKValue(intervalInstances.numAttributes() - 1);
-            }
-            baseClassifiers.add(AbstractClassifier.makeCopy(classifier));
-            baseClassifiers.get(baseClassifiers.size()-1).buildClassifier(intervalInstances);
-
-            //Add dependant variable to model (time taken).
-            timer.dependantVariables.add(System.nanoTime() - timer.treeStartTime);
-
-            //Serialise every 100 trees by default (if set to checkpoint).
-            if (checkpoint){
-                if(checkpointTime>0)    //Timed checkpointing
-                {
-                    if(System.nanoTime()-lastCheckpointTime>checkpointTime){
-                        saveToFile(checkpointPath);
+                //Add dependant variable to model (time taken).
+                timer.dependantVariables.add(System.nanoTime() - timer.treeStartTime);
+
+                //Serialise every 100 trees by default (if set to checkpoint).
+                if (checkpoint){
+                    if(checkpointTime>0)    //Timed checkpointing
+                    {
+                        if(System.nanoTime()-lastCheckpointTime>checkpointTime){
+                            saveToFile(checkpointPath);
 //                        checkpoint(startTime);
-                        lastCheckpointTime=System.nanoTime();
+                            lastCheckpointTime=System.nanoTime();
+                        }
+                    }
+                    else {    //Default checkpoint every 100 trees
+                        if(classifiersBuilt %100 == 0 && classifiersBuilt >0)
+                            saveToFile(checkpointPath);
                     }
-                }
-                else {    //Default checkpoint every 100 trees
-                    if(classifiersBuilt %100 == 0 && classifiersBuilt >0)
-                        saveToFile(checkpointPath);
                 }
             }
         }
@@ -786,9 +802,8 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
                 timer.buildModel();
                 maxIntervalLength = (int) timer.getFeatureSpace((timer.forestTimeLimit) - (System.nanoTime() - (timer.forestStartTime - getTime())));
 
-                Instances intervalInstances = produceIntervalInstances(maxIntervalLength, data);
-
-                intervalInstances = transformInstances(intervalInstances, transformType);
+                startEndPoints = selectStartEndPoints(startEndPoints, intervalMethod);
+                Instances intervalInstances = transformInterval(data, startEndPoints.get(startEndPoints.size() - 1));
 
                 //Add independent variable to model (length of interval).
                 timer.makePrediciton(intervalInstances.numAttributes() - 1);
@@ -883,6 +898,130 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
         this.timer.forestElapsedTime = System.nanoTime() - this.timer.forestStartTime;
     }
 
+    /**
+     * Build the trees in batches on the thread pool. The intervals are drawn in order on this thread, so without a
+     * contract the forest is the same as a single threaded build. When contracted the batches are the size of the
+     * pool, so the contract and the timing model are checked between them.
+     */
+    private void multiThreadBuildRISE(Instances trainingData) throws Exception {
+        if (ex == null)
+            ex = newThreadPool();
+        if (checkpoint)
+            System.out.println("Unable to checkpoint until end of build when multi threading.");
+        int buildStep = trainTimeContract ? numThreads : numClassifiers;
+
+        while (classifiersBuilt < numClassifiers && ((classifiersBuilt==0)||(System.nanoTime() - timer.forestStartTime) < (timer.forestTimeLimit - getTime()))) {
+            int end = Math.min(classifiersBuilt + buildStep, numClassifiers);
+            ArrayList<Future<TreeBuildHolder>> futures = new ArrayList<>(end - classifiersBuilt);
+            for (int i = classifiersBuilt; i < end; i++) {
+                //Compute maximum interval length given time remaining.
+                if(trainTimeContract) {
+                    timer.buildModel();
+                    maxIntervalLength = (int) timer.getFeatureSpace((timer.forestTimeLimit) - (System.nanoTime() - (timer.forestStartTime - getTime())));
+                }
+                startEndPoints = selectStartEndPoints(startEndPoints, intervalMethod);
+                int[] interval = startEndPoints.get(startEndPoints.size() - 1);
+                futures.add(ex.submit(() -> {
+                    TreeBuildHolder h = new TreeBuildHolder();
+                    long treeStartTime = System.nanoTime();
+                    Instances intervalInstances = transformInterval(trainingData, interval);
+                    h.numFeatures = intervalInstances.numAttributes() - 1;
+                    h.tree = buildTree(intervalInstances);
+                    h.buildTime = System.nanoTime() - treeStartTime;
+                    return h;
+                }));
+            }
+            for (Future<TreeBuildHolder> f : futures) {
+                TreeBuildHolder h = f.get();
+                //Add the interval length and time taken to the timing model.
+                timer.makePrediciton(h.numFeatures);
+                timer.independantVariables.add(h.numFeatures);
+                timer.dependantVariables.add(h.buildTime);
+                baseClassifiers.add(h.tree);
+                classifiersBuilt++;
+            }
+        }
+    }
+
+    private ExecutorService newThreadPool() {
+        // daemon threads so an unused classifier never holds the jvm open
+        return Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** A tree built on a thread, with the number of features and time taken for the timing model */
+    private static class TreeBuildHolder {
+        Classifier tree;
+        int numFeatures;
+        long buildTime;
+    }
+
+    /**
+     * Build a copy of the base classifier on the transformed interval instances.
+     */
+    private Classifier buildTree(Instances intervalInstances) throws Exception {
+        Classifier tree = AbstractClassifier.makeCopy(classifier);
+        if(tree instanceof RandomTree){
+            ((RandomTree)tree).setKValue(intervalInstances.numAttributes() - 1);
+        }
+        tree.buildClassifier(intervalInstances);
+        return tree;
+    }
+
+    /**
+     * The training data over an interval, transformed by transformType. The ACF, FFT and ACF_FFT features are found
+     * from primitive arrays, other transforms go through transformInstances.
+     * @param interval start and end index of the interval.
+     */
+    private Instances transformInterval(Instances trainingData, int[] interval) {
+        if (!SpectralIntervals.supports(transformType)) {
+            Instances intervalInstances = produceIntervalInstances(trainingData, interval);
+            return transformType != null ? transformInstances(intervalInstances, transformType) : intervalInstances;
+        }
+
+        int length = interval[1] - interval[0];
+        double[] values = new double[length];
+        Instances transformed = null;
+        for (Instance inst : trainingData) {
+            for (int j = 0; j < length; j++) {
+                values[j] = j + interval[0] < trainingData.numAttributes() - 1 ? inst.value(j + interval[0]) : 0.0;
+            }
+            double[] features = SpectralIntervals.features(values, length, transformType);
+            if (transformed == null)
+                transformed = new Instances(featureHeader(features.length), trainingData.numInstances());
+            transformed.add(featureInstance(features, inst.classValue(), transformed));
+        }
+        return transformed;
+    }
+
+    /**
+     * Header of the instances of transformed intervals with the given number of features, shared by every interval
+     * with that number.
+     */
+    private Instances featureHeader(int numFeatures) {
+        return featureHeaders.computeIfAbsent(numFeatures, n -> {
+            ArrayList<Attribute> attributes = new ArrayList<>(n + 1);
+            for (int i = 0; i < n; i++) {
+                attributes.add(new Attribute("att" + (i + 1)));
+            }
+            attributes.add((Attribute) data.classAttribute().copy());
+            Instances header = new Instances(data.relationName(), attributes, 0);
+            header.setClassIndex(n);
+            return header;
+        });
+    }
+
+    private static Instance featureInstance(double[] features, double classValue, Instances header) {
+        double[] values = Arrays.copyOf(features, features.length + 1);
+        values[features.length] = classValue;
+        Instance instance = new DenseInstance(1, values);
+        instance.setDataset(header);
+        return instance;
+    }
+
     private int[][] generateBags(int numBags, int bagProp, Instances data){
         int[][] bags = new int[numBags][data.size()];
 
@@ -895,17 +1034,14 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
         return bags;
     }
 
-    private Instances produceIntervalInstances(int maxIntervalLength, Instances trainingData) {
+    private Instances produceIntervalInstances(Instances trainingData, int[] interval) {
         Instances intervalInstances;
         ArrayList<Attribute>attributes = new ArrayList<>();
-        ArrayList<Integer> intervalAttIndexes = new ArrayList<>();
 
-        startEndPoints = selectStartEndPoints(startEndPoints, intervalMethod);
-
-        int nearestPowerOfTwo = startEndPoints.get(startEndPoints.size() - 1)[1] - startEndPoints.get(startEndPoints.size() - 1)[0];
+        int nearestPowerOfTwo = interval[1] - interval[0];
 
         for (int i = 0; i < nearestPowerOfTwo; i ++) {
-            Attribute att = i + startEndPoints.get(startEndPoints.size() - 1)[0] < trainingData.numAttributes() - 1 ? trainingData.attribute(i + startEndPoints.get(startEndPoints.size() - 1)[0]) : new Attribute("att" + (i + 1 + startEndPoints.get(startEndPoints.size() - 1)[0]));
+            Attribute att = i + interval[0] < trainingData.numAttributes() - 1 ? trainingData.attribute(i + interval[0]) : new Attribute("att" + (i + 1 + interval[0]));
             attributes.add(att);
         }
 
@@ -915,7 +1051,7 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
 
         for (int i = 0; i < trainingData.size(); i++) {
             for (int j = 0; j < nearestPowerOfTwo; j++) {
-                double value = j + startEndPoints.get(startEndPoints.size() - 1)[0] < trainingData.numAttributes() - 1 ? trainingData.get(i).value(j + startEndPoints.get(startEndPoints.size() - 1)[0]) : 0.0;
+                double value = j + interval[0] < trainingData.numAttributes() - 1 ? trainingData.get(i).value(j + interval[0]) : 0.0;
                 intervalInstanceValues[j] = value;
             }
 
@@ -1101,29 +1237,120 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
     @Override
     public double[] distributionForInstance(Instance testInstance) throws Exception {
         double[]distribution = new double[testInstance.numClasses()];
+        if (featureHeaders == null)
+            featureHeaders = new ConcurrentHashMap<>();
+
+        if (multiThread && baseClassifiers.size() > 1) {
+            //Each thread predicts with a block of trees, finding the intervals of the series it needs itself.
+            if (ex == null)
+                ex = newThreadPool();
+            int threads = Math.min(numThreads, baseClassifiers.size());
+            ArrayList<Future<double[]>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                int start = baseClassifiers.size() * t / threads;
+                int end = baseClassifiers.size() * (t + 1) / threads;
+                futures.add(ex.submit(() -> {
+                    double[] votes = new double[distribution.length];
+                    addVotes(testInstance, start, end, votes);
+                    return votes;
+                }));
+            }
+            for (Future<double[]> f : futures) {
+                double[] votes = f.get();
+                for (int j = 0; j < distribution.length; j++)
+                    distribution[j] += votes[j];
+            }
+        }
+        else {
+            addVotes(testInstance, 0, baseClassifiers.size(), distribution);
+        }
 
-        //For every base classifier.
-        for (int i = 0; i < baseClassifiers.size(); i++) {
+        if(baseClassifiers.size()>0) {
+            for (int j = 0; j < testInstance.numClasses(); j++) {
+                distribution[j] /= baseClassifiers.size();
+            }
+        }
+        return distribution;
+    }
 
-            Instance intervalInstance = null;
-            //Transform interval instance into PS, ACF, ACF_PS or ACF_PS_AR
-            if (transformType != null) {
-                try{
-                    intervalInstance = transformInstances(produceIntervalInstance(testInstance, i), transformType).firstInstance();
-                }catch(Exception e){
-                    intervalInstance = transformInstances(produceIntervalInstance(testInstance, i), transformType).firstInstance();
-                }
+    /**
+     * Distributions over classes for a batch of test instances. The features of each test series are found once
+     * for all the trees that share an interval. With enableMultiThreading the instances are split between threads.
+     * @param testInstances
+     * @return an array of size numInstances of arrays of size numClasses, as distributionForInstance.
+     * @throws Exception
+     */
+    public double[][] distributionForInstances(Instances testInstances) throws Exception {
+        double[][] distributions = new double[testInstances.numInstances()][];
+        if (featureHeaders == null)
+            featureHeaders = new ConcurrentHashMap<>();
+
+        if (multiThread && testInstances.numInstances() > 1) {
+            if (ex == null)
+                ex = newThreadPool();
+            int threads = Math.min(numThreads, testInstances.numInstances());
+            ArrayList<Future<?>> futures = new ArrayList<>(threads);
+            for (int t = 0; t < threads; t++) {
+                int start = testInstances.numInstances() * t / threads;
+                int end = testInstances.numInstances() * (t + 1) / threads;
+                futures.add(ex.submit(() -> {
+                    for (int i = start; i < end; i++)
+                        distributions[i] = votesForInstance(testInstances.get(i));
+                    return null;
+                }));
             }
-            distribution[(int)baseClassifiers.get(i).classifyInstance((intervalInstance))]++;
+            for (Future<?> f : futures)
+                f.get();
         }
+        else {
+            for (int i = 0; i < distributions.length; i++)
+                distributions[i] = votesForInstance(testInstances.get(i));
+        }
+        return distributions;
+    }
+
+    @Override
+    public double[][] distributionForInstances(TimeSeriesInstances data) throws Exception {
+        return distributionForInstances(Converter.toArff(data));
+    }
+
+    // The distribution of a test instance found on the calling thread.
+    private double[] votesForInstance(Instance testInstance) throws Exception {
+        double[] distribution = new double[testInstance.numClasses()];
+        addVotes(testInstance, 0, baseClassifiers.size(), distribution);
         if(baseClassifiers.size()>0) {
-            for (int j = 0; j < testInstance.numClasses(); j++) {
+            for (int j = 0; j < distribution.length; j++) {
                 distribution[j] /= baseClassifiers.size();
             }
         }
         return distribution;
     }
 
+    /**
+     * Add the votes of base classifiers start to end-1 for the test instance to votes.
+     */
+    private void addVotes(Instance testInstance, int start, int end, double[] votes) throws Exception {
+        //The features of every interval of the series for ACF, FFT or ACF_FFT, kept for trees with the same interval.
+        SpectralIntervals series = SpectralIntervals.supports(transformType)
+                ? new SpectralIntervals(testInstance.toDoubleArray(), testInstance.numAttributes() - 1, transformType)
+                : null;
+
+        for (int i = start; i < end; i++) {
+            Instance intervalInstance;
+            if (series != null) {
+                double[] features = series.features(startEndPoints.get(i)[0], startEndPoints.get(i)[1]);
+                intervalInstance = featureInstance(features, testInstance.classValue(), featureHeader(features.length));
+            }
+            else {
+                Instances intervalInstances = produceIntervalInstance(testInstance, i);
+                if (transformType != null)
+                    intervalInstances = transformInstances(intervalInstances, transformType);
+                intervalInstance = intervalInstances.firstInstance();
+            }
+            votes[(int)baseClassifiers.get(i).classifyInstance(intervalInstance)]++;
+        }
+    }
+
     /**
      * Method returning all classifier parameters as a string.
      * for EnhancedAbstractClassifier. General format:
@@ -1163,6 +1390,28 @@ public class RISE extends EnhancedAbstractClassifier implements TrainTimeContrac
         return result;
     }
 
+    /**
+     * Enables multi threading with a set number of threads to use. Without a contract the forest built is the same
+     * for any number of threads.
+     *
+     * @param numThreads number of threads available for multi threading
+     */
+    @Override//MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        if (ex != null) {
+            ex.shutdown();
+            ex = null;
+        }
+        if (numThreads > 1) {
+            this.numThreads = numThreads;
+            multiThread = true;
+        }
+        else{
+            this.numThreads = 1;
+            multiThread = false;
+        }
+    }
+
     /**
      * for interface TrainTimeEstimate
      * @param amount: time in nanoseconds
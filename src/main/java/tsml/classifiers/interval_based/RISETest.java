@@ -0,0 +1,62 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package tsml.classifiers.interval_based;
+
+import experiments.data.DatasetLoading;
+import org.junit.Test;
+import weka.core.Instances;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class RISETest {
+
+    private static RISE build(Instances train, int numThreads) throws Exception {
+        RISE rise = new RISE(0);
+        rise.setNumClassifiers(50);
+        rise.enableMultiThreading(numThreads);
+        rise.buildClassifier(train);
+        return rise;
+    }
+
+    private static double[][] distributions(RISE rise, Instances test) throws Exception {
+        double[][] distributions = new double[test.numInstances()][];
+        for (int i = 0; i < distributions.length; i++) {
+            distributions[i] = rise.distributionForInstance(test.instance(i));
+        }
+        return distributions;
+    }
+
+    // without a contract the forest is the same for any number of threads, and batched predictions match single ones
+    private static void assertSamePredictions(Instances[] data) throws Exception {
+        RISE single = build(data[0], 1);
+        RISE threaded = build(data[0], 3);
+        double[][] expected = distributions(single, data[1]);
+        assertArrayEquals(expected, single.distributionForInstances(data[1]));
+        assertArrayEquals(expected, distributions(threaded, data[1]));
+        assertArrayEquals(expected, threaded.distributionForInstances(data[1]));
+    }
+
+    @Test
+    public void testItalyPowerDemand() throws Exception {
+        assertSamePredictions(DatasetLoading.sampleItalyPowerDemand(0));
+    }
+
+    @Test
+    public void testGunPoint() throws Exception {
+        assertSamePredictions(DatasetLoading.sampleGunPoint(0));
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.interval_based;
+
+import tsml.transformers.ACF;
+import tsml.transformers.FFT;
+
+import java.util.HashMap;
+
+/**
+ * The RISE features of intervals of one series, the magnitudes of the Fourier terms found by Fast_FFT and the
+ * autocorrelations found by ACF, for the transforms FFT, ACF and ACF_FFT.
+ *
+ * The features of each interval are kept, so trees with the same interval share them. The autocorrelations come
+ * from prefix sums of the series centred on its mean and of its lagged products, so the work is shared by all
+ * overlapping intervals and each lag of an interval takes constant time. A count of the points that differ from
+ * their predecessor identifies flat stretches exactly, as in IntervalStatistics.
+ *
+ * Not thread safe, the kept features and lagged sums are filled in as they are needed.
+ */
+public class SpectralIntervals {
+
+    final double[] series;
+    final int length;
+    final double seriesMean;
+    final RISE.TransformType transformType;
+
+    // element k holds the sum over the first k points of y and y^2 for the centred values y
+    final double[] sumY;
+    final double[] sumYY;
+    // element k holds the number of points before k that differ from the point before them
+    final int[] changes;
+    // sumLag[lag][k] holds the sum over the first k points of y_j*y_(j+lag), found when a lag is first used
+    private final double[][] sumLag;
+
+    private final HashMap<Long, double[]> features = new HashMap<>();
+
+    /**
+     * @param series the series, which is kept rather than copied
+     * @param length the number of points to use from the start of the series, e.g. excluding a class value
+     * @param transformType one of the transforms for which supports is true
+     */
+    public SpectralIntervals(double[] series, int length, RISE.TransformType transformType) {
+        if (!supports(transformType))
+            throw new IllegalArgumentException("No primitive features for the " + transformType + " transform");
+        this.series = series;
+        this.length = length;
+        this.transformType = transformType;
+
+        double total = 0;
+        for (int i = 0; i < length; i++) {
+            total += series[i];
+        }
+        seriesMean = length > 0 ? total / length : 0;
+
+        sumY = new double[length + 1];
+        sumYY = new double[length + 1];
+        changes = new int[length + 1];
+        for (int i = 0; i < length; i++) {
+            double y = series[i] - seriesMean;
+            sumY[i + 1] = sumY[i] + y;
+            sumYY[i + 1] = sumYY[i] + y * y;
+            changes[i + 1] = changes[i] + (i > 0 && series[i] != series[i - 1] ? 1 : 0);
+        }
+        sumLag = new double[ACF.DEFAULT_MAXLAG + 1][];
+    }
+
+    /**
+     * @return whether features of the transform can be found from primitive arrays
+     */
+    public static boolean supports(RISE.TransformType transformType) {
+        return transformType == RISE.TransformType.ACF || transformType == RISE.TransformType.FFT
+                || transformType == RISE.TransformType.ACF_FFT;
+    }
+
+    /**
+     * The features of the interval from start to end-1, with values past the end of the series taken as 0. The
+     * array is shared by every call for the same interval and must not be changed.
+     */
+    public double[] features(int start, int end) {
+        long key = ((long) start << 32) | (end & 0xFFFFFFFFL);
+        double[] f = features.get(key);
+        if (f == null) {
+            f = findFeatures(start, end);
+            features.put(key, f);
+        }
+        return f;
+    }
+
+    /**
+     * The features of the first length values, as features(0, length) of a SpectralIntervals over them. RISE finds
+     * the features of its training intervals this way, so they come from the same arithmetic as those of the test
+     * series, including the handling of flat stretches.
+     */
+    public static double[] features(double[] values, int length, RISE.TransformType transformType) {
+        return new SpectralIntervals(values, length, transformType).findFeatures(0, length);
+    }
+
+    private double[] findFeatures(int start, int end) {
+        switch (transformType) {
+            case FFT:
+                return fftMagnitudes(intervalValues(start, end), end - start);
+            case ACF:
+                return autoCorrelations(start, end);
+            default:
+                return concatenate(fftMagnitudes(intervalValues(start, end), end - start),
+                        autoCorrelations(start, end));
+        }
+    }
+
+    private double[] intervalValues(int start, int end) {
+        double[] values = new double[end - start];
+        System.arraycopy(series, start, values, 0, Math.min(end, length) - start);
+        return values;
+    }
+
+    private static double[] concatenate(double[] first, double[] second) {
+        double[] both = new double[first.length + second.length];
+        System.arraycopy(first, 0, both, 0, first.length);
+        System.arraycopy(second, 0, both, first.length, second.length);
+        return both;
+    }
+
+    /**
+     * The number of lags ACF finds for a series of the given length.
+     */
+    static int maxLag(int length) {
+        int maxLag = ACF.DEFAULT_MAXLAG;
+        if (maxLag > length - 4)
+            maxLag = length - 4;
+        if (maxLag < 0)
+            maxLag = length;
+        return maxLag;
+    }
+
+    // Magnitudes of the first half of the Fourier terms, the series padded with its mean to twice the nearest power
+    // of 2 to its length as RISE sets up Fast_FFT
+    static double[] fftMagnitudes(double[] values, int length) {
+        int nfft = (int) FFT.MathsPower2.roundPow2(length) * 2;
+        double mean = 0;
+        for (int j = 0; j < length; j++) {
+            mean += values[j];
+        }
+        mean /= length;
+
+        double[] padded = new double[nfft];
+        for (int j = 0; j < nfft; j++) {
+            padded[j] = j < length ? values[j] : mean;
+        }
+        double[] spectrum = new double[nfft + 2];
+        FFT.Plan.forLength(nfft).realForward(padded, spectrum);
+
+        double[] magnitudes = new double[nfft / 2];
+        for (int j = 0; j < magnitudes.length; j++) {
+            magnitudes[j] = Math.sqrt(spectrum[2 * j] * spectrum[2 * j] + spectrum[2 * j + 1] * spectrum[2 * j + 1]);
+        }
+        return magnitudes;
+    }
+
+    // The autocorrelations of ACF for the interval from the prefix sums. As in ACF a pair of flat stretches is fully
+    // correlated and a flat stretch against a varying one is not, but flat stretches are found exactly rather than
+    // from a variance which may be left with rounding residue. Intervals which run past the end of the series are
+    // found from a SpectralIntervals over their values padded with 0, as RISE pads its training intervals.
+    private double[] autoCorrelations(int start, int end) {
+        int n = end - start;
+        if (end > length)
+            return new SpectralIntervals(intervalValues(start, end), n, transformType).autoCorrelations(0, n);
+
+        int maxLag = maxLag(n);
+        double[] a = new double[maxLag];
+        for (int lag = 1; lag <= maxLag; lag++) {
+            int m = n - lag;
+            // the values start to end-lag-1 against the values start+lag to end-1, a stretch of at most one value is flat
+            boolean flat1 = m <= 1 || changes[end - lag] == changes[start + 1];
+            boolean flat2 = m <= 1 || changes[end] == changes[start + lag + 1];
+            if (flat1 && flat2) {// Both zero variance, both must be 100% corr
+                a[lag - 1] = 1;
+                continue;
+            } else if (flat1 || flat2) {// One zero variance the other not
+                a[lag - 1] = 0;
+                continue;
+            }
+
+            double[] lagged = laggedSums(lag);
+            double s1 = (sumY[end - lag] - sumY[start]) / m;
+            double s2 = (sumY[end] - sumY[start + lag]) / m;
+            double v1 = (sumYY[end - lag] - sumYY[start]) / m - s1 * s1;
+            double v2 = (sumYY[end] - sumYY[start + lag]) / m - s2 * s2;
+            double c = (lagged[end - lag] - lagged[start]) / m - s1 * s2;
+            a[lag - 1] = v1 > 0 && v2 > 0 ? c / (Math.sqrt(v1) * Math.sqrt(v2)) : 0;
+        }
+        return a;
+    }
+
+    private double[] laggedSums(int lag) {
+        double[] lagged = sumLag[lag];
+        if (lagged == null) {
+            lagged = new double[length - lag + 1];
+            for (int j = 0; j < length - lag; j++) {
+                lagged[j + 1] = lagged[j] + (series[j] - seriesMean) * (series[j + lag] - seriesMean);
+            }
+            sumLag[lag] = lagged;
+        }
+        return lagged;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.classifiers.interval_based;
+
+import experiments.data.RandomWalks;
+import org.junit.Test;
+import tsml.transformers.ACF;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class SpectralIntervalsTest {
+
+    // with a constant stretch in the middle if flat
+    private static double[] series(int length, long seed, boolean flat) {
+        double[] series = RandomWalks.randomWalk(new Random(seed), length, 100);
+        if (flat)
+            RandomWalks.flatten(series, length / 2, length / 2 + 10);
+        return series;
+    }
+
+    // a series without flat stretches, for which ACF's variances are not rounding residues
+    @Test
+    public void testMatchesACF() {
+        double[] series = series(150, 0, false);
+        SpectralIntervals intervals = new SpectralIntervals(series, series.length, RISE.TransformType.ACF);
+        Random random = new Random(1);
+        for (int n = 0; n < 300; n++) {
+            int start = random.nextInt(series.length - 8);
+            int end = start + 8 + random.nextInt(series.length - start - 8);
+            ACF acf = new ACF();
+            acf.setNormalized(false);
+            acf.setMaxLag(SpectralIntervals.maxLag(end - start));
+            double[] expected = acf.fitAutoCorrelations(Arrays.copyOfRange(series, start, end));
+            assertArrayEquals(expected, intervals.features(start, end), 1e-7);
+        }
+    }
+
+    // RISE finds training features from the interval values and test features from the whole series
+    @Test
+    public void testTrainMatchesPredict() {
+        double[] series = series(150, 4, true);
+        SpectralIntervals intervals = new SpectralIntervals(series, series.length, RISE.TransformType.ACF_FFT);
+        int[][] bounds = {{series.length / 2 - 1, series.length / 2 + 9}, {series.length / 2 - 20, series.length / 2 + 20},
+                {series.length / 2 + 5, series.length}, {series.length - 10, series.length + 6}, {0, 3}};
+        for (int[] bound : bounds) {
+            double[] values = new double[bound[1] - bound[0]];
+            System.arraycopy(series, bound[0], values, 0, Math.min(bound[1], series.length) - bound[0]);
+            double[] train = SpectralIntervals.features(values, values.length, RISE.TransformType.ACF_FFT);
+            double[] test = intervals.features(bound[0], bound[1]);
+            assertArrayEquals(train, test, 1e-9);
+            for (double f : test) {
+                assertFalse(Double.isNaN(f));
+            }
+        }
+    }
+
+    @Test
+    public void testFlatInterval() {
+        double[] series = series(150, 2, true);
+        SpectralIntervals intervals = new SpectralIntervals(series, series.length, RISE.TransformType.ACF);
+        double[] acf = intervals.features(series.length / 2 - 1, series.length / 2 + 9);
+        assertEquals(6, acf.length);
+        for (double a : acf) {
+            assertEquals(1, a, 0);
+        }
+    }
+
+    @Test
+    public void testPastEndOfSeries() {
+        double[] series = series(40, 3, false);
+        SpectralIntervals intervals = new SpectralIntervals(series, series.length, RISE.TransformType.FFT);
+        double[] values = new double[16];
+        System.arraycopy(series, 30, values, 0, 10);
+        assertArrayEquals(SpectralIntervals.features(values, 16, RISE.TransformType.FFT), intervals.features(30, 46), 0);
+        assertEquals(intervals.features(30, 46), intervals.features(30, 46));
+    }
+}
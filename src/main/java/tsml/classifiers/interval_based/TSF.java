@@ -36,6 +36,11 @@ import evaluation.tuning.ParameterSpace;
 import experiments.data.DatasetLoading;
 
 import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -111,10 +116,14 @@ import weka.core.Utils;
  *  timeseriesclassification.com/results/ResultsByClassifier/TSF/Predictions
  * update 1/7/2020: Tony Bagnall. Sort out correct recording of timing, and tidy up comments. The storage option for
  * either CV or OOB
+ * The interval features are found in constant time from prefix sums of each series (IntervalStatistics). With
+ * enableMultiThreading trees are built and used for prediction in parallel, as in CIF. Each tree then draws its
+ * intervals and bag from its own seeded Random, so the result does not depend on the number of threads, but differs
+ * from a single threaded build.
 */
  
 public class TSF extends EnhancedAbstractClassifier implements TechnicalInformationHandler,
-        TrainTimeContractable, Checkpointable, Tuneable, Visualisable {
+        TrainTimeContractable, Checkpointable, Tuneable, Visualisable, MultiThreadable {
 //Static defaults
     private final static int DEFAULT_NUM_CLASSIFIERS=500;
  
@@ -160,6 +169,12 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
 
 
     private long checkpointTimeElapsed= 0;
+
+    /** Multi threading variables */
+    private int numThreads = 1;
+    private boolean multiThread = false;
+    private transient ExecutorService ex;
+
     private boolean trainTimeContract = false;
     transient private long trainContractTimeNanos = 0;
     transient private long finalBuildtrainContractTimeNanos = 0;
@@ -415,9 +430,13 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         testHolder =new Instances(transformedData,0);
         DenseInstance in=new DenseInstance(transformedData.numAttributes());
         testHolder.add(in);
-        int classifiersBuilt = trees.size();
-
 
+        //The prefix sums of each series give the features of any interval in constant time
+        IntervalStatistics[] series=new IntervalStatistics[data.numInstances()];
+        for(int k=0;k<data.numInstances();k++)
+            series[k]=new IntervalStatistics(data.instance(k).toDoubleArray(),seriesLength);
+        if (data.numAttributes() - 1 < minIntervalLength)
+            minIntervalLength = data.numAttributes() - 1;
 
         /** MAIN BUILD LOOP
          *  For each base classifier
@@ -425,81 +444,32 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
          *      do the transforms
          *      build the classifier
          * */
-        while(withinTrainContract(startTime) && (classifiersBuilt < numClassifiers)){
-            if(classifiersBuilt%100==0)
-                printLineDebug("\t\t\t\t\tBuilding TSF tree "+classifiersBuilt+" time taken = "+(System.nanoTime()-startTime)+" contract ="+finalBuildtrainContractTimeNanos+" nanos");
-
-            //1. Select random intervals for tree i
-            int[][] interval =new int[numIntervals][2];  //Start and end
-
-            if (data.numAttributes() - 1 < minIntervalLength)
-                minIntervalLength = data.numAttributes() - 1;
-            for (int j = 0; j < numIntervals; j++) {
-                interval[j][0] = rand.nextInt(data.numAttributes() - 1 - minIntervalLength);       //Start point
-                int length = rand.nextInt(data.numAttributes() - 1 - interval[j][0]);//Min length 3
-                if (length < minIntervalLength)
-                    length = minIntervalLength;
-                interval[j][1] = interval[j][0] + length;
-            }
+        if(multiThread){
+            multiThreadBuildTSF(series, transformedData, startTime);
+        }
+        else{
+            while(withinTrainContract(startTime) && (trees.size() < numClassifiers)){
+                if(trees.size()%100==0)
+                    printLineDebug("\t\t\t\t\tBuilding TSF tree "+trees.size()+" time taken = "+(System.nanoTime()-startTime)+" contract ="+finalBuildtrainContractTimeNanos+" nanos");
 
-            //2. Generate and store attributes
-            for(int j=0;j<numIntervals;j++){
-                for(int k=0;k<data.numInstances();k++){
-                    //extract the interval, work out the features
-                    double[] series=data.instance(k).toDoubleArray();
-                    FeatureSet f= new FeatureSet();
-                    f.setFeatures(series, interval[j][0], interval[j][1]);
-                    transformedData.instance(k).setValue(j*3, f.mean);
-                    transformedData.instance(k).setValue(j*3+1, f.stDev);
-                    transformedData.instance(k).setValue(j*3+2, f.slope);
-                }
-            }
-            //3. Create and build tree using all the features.
-            Classifier tree = AbstractClassifier.makeCopy(classifier);
-            if(seedClassifier && tree instanceof Randomizable)
-                ((Randomizable)tree).setSeed(seed*(classifiersBuilt+1));
+                addTree(buildTree(trees.size(), rand, series, transformedData));
 
-            if(bagging){
-                long t1=System.nanoTime();
-                boolean[] bag = new boolean[transformedData.numInstances()];
-                Instances bagData = transformedData.resampleWithWeights(rand, bag);
-                tree.buildClassifier(bagData);
-                inBag.add(bag);
-                if(getEstimateOwnPerformance()){
-                    for(int j=0;j<transformedData.numInstances();j++){
-                        if(bag[j])
-                            continue;
-                        double[] newProbs = tree.distributionForInstance(transformedData.instance(j));
-                        oobCounts[j]++;
-                        for(int k=0;k<newProbs.length;k++)
-                            trainDistributions[j][k]+=newProbs[k];
+                if (checkpoint){
+                    if(checkpointTime>0)    //Timed checkpointing
+                    {
+                        if(System.nanoTime()-lastCheckpointTime>checkpointTime){
+                            saveToFile(checkpointPath);
+                            lastCheckpointTime=System.nanoTime();
+                        }
                     }
-                }
-                long t2=System.nanoTime();
-                if(getEstimateOwnPerformance())
-                    trainResults.setErrorEstimateTime(t2-t1+trainResults.getErrorEstimateTime());
-            }
-            else
-                tree.buildClassifier(transformedData);
-
-            intervals.add(interval);
-            trees.add(tree);
-            classifiersBuilt++;
-
-            if (checkpoint){
-                if(checkpointTime>0)    //Timed checkpointing
-                {
-                    if(System.nanoTime()-lastCheckpointTime>checkpointTime){
-                        saveToFile(checkpointPath);
-                        lastCheckpointTime=System.nanoTime();
+                    else {    //Default checkpoint every 100 trees
+                        if(trees.size()%100 == 0 && trees.size()>0)
+                            saveToFile(checkpointPath);
                     }
                 }
-                else {    //Default checkpoint every 100 trees
-                    if(classifiersBuilt%100 == 0 && classifiersBuilt>0)
-                        saveToFile(checkpointPath);
-                }
             }
         }
+        int classifiersBuilt = trees.size();
         if(classifiersBuilt==0){//Not enough time to build a single classifier
             throw new Exception((" ERROR in TSF, no trees built, contract time probably too low. Contract time ="+trainContractTimeNanos));
         }
@@ -527,6 +497,142 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         printLineDebug("*************** Finished TSF Build with "+classifiersBuilt+" Trees built in "+(System.nanoTime()-startTime)/1000000000+" Seconds  ***************");
     }
 
+    /**
+     * Build the trees in batches on the thread pool, one seeded Random per tree. When contracted the batches are the
+     * size of the pool so the contract is checked between them.
+     */
+    private void multiThreadBuildTSF(IntervalStatistics[] series, Instances transformedData, long startTime)
+            throws Exception {
+        if (ex == null)
+            ex = newThreadPool();
+        if (checkpoint)
+            System.out.println("Unable to checkpoint until end of build when multi threading.");
+        int buildStep = trainTimeContract ? numThreads : numClassifiers;
+
+        while (withinTrainContract(startTime) && trees.size() < numClassifiers) {
+            int end = Math.min(trees.size() + buildStep, numClassifiers);
+            ArrayList<Future<TreeBuildHolder>> futures = new ArrayList<>(end - trees.size());
+            for (int i = trees.size(); i < end; i++) {
+                Instances dataCopy = new Instances(transformedData, transformedData.numInstances());
+                for (Instance inst : transformedData) {
+                    DenseInstance copy = new DenseInstance(transformedData.numAttributes());
+                    copy.setValue(transformedData.numAttributes() - 1, inst.classValue());
+                    dataCopy.add(copy);
+                }
+                final int tree = i;
+                futures.add(ex.submit(() -> buildTree(tree, new Random(seed + tree * numClassifiers), series,
+                        dataCopy)));
+            }
+            for (Future<TreeBuildHolder> f : futures)
+                addTree(f.get());
+        }
+    }
+
+    private ExecutorService newThreadPool() {
+        // daemon threads so an unused classifier never holds the jvm open
+        return Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Select the random intervals for a tree, the start and end of interval j are interval[j][0] and interval[j][1]
+     */
+    private int[][] selectIntervals(Random rand) {
+        int[][] interval =new int[numIntervals][2];  //Start and end
+        for (int j = 0; j < numIntervals; j++) {
+            interval[j][0] = rand.nextInt(seriesLength - minIntervalLength);       //Start point
+            int length = rand.nextInt(seriesLength - interval[j][0]);//Min length 3
+            if (length < minIntervalLength)
+                length = minIntervalLength;
+            interval[j][1] = interval[j][0] + length;
+        }
+        return interval;
+    }
+
+    /**
+     * Set the mean, standard deviation and slope of each interval of the series as the attributes of out
+     */
+    private void setIntervalFeatures(IntervalStatistics series, int[][] interval, Instance out, FeatureSet f) {
+        for(int j=0;j<interval.length;j++){
+            f.setFeatures(series, interval[j][0], interval[j][1]);
+            out.setValue(j*3, f.mean);
+            out.setValue(j*3+1, f.stDev);
+            out.setValue(j*3+2, f.slope);
+        }
+    }
+
+    /** A tree with its intervals, and its OOB distributions if bagging and estimating */
+    private static class TreeBuildHolder {
+        Classifier tree;
+        int[][] interval;
+        boolean[] inBag;
+        double[][] trainDistribution;
+        int[] oobCounts;
+        long errorTime;
+    }
+
+    /**
+     * Build tree i on the data transformed with intervals drawn from rand
+     */
+    private TreeBuildHolder buildTree(int i, Random rand, IntervalStatistics[] series, Instances transformedData)
+            throws Exception {
+        TreeBuildHolder h = new TreeBuildHolder();
+        //1. Select random intervals for tree i
+        h.interval = selectIntervals(rand);
+
+        //2. Generate and store attributes
+        FeatureSet f = new FeatureSet();
+        for(int k=0;k<transformedData.numInstances();k++)
+            setIntervalFeatures(series[k], h.interval, transformedData.instance(k), f);
+
+        //3. Create and build tree using all the features.
+        h.tree = AbstractClassifier.makeCopy(classifier);
+        if(seedClassifier && h.tree instanceof Randomizable)
+            ((Randomizable)h.tree).setSeed(seed*(i+1));
+
+        if(bagging){
+            long t1=System.nanoTime();
+            h.inBag = new boolean[transformedData.numInstances()];
+            Instances bagData = transformedData.resampleWithWeights(rand, h.inBag);
+            h.tree.buildClassifier(bagData);
+            if(getEstimateOwnPerformance()){
+                h.trainDistribution = new double[transformedData.numInstances()][];
+                h.oobCounts = new int[transformedData.numInstances()];
+                for(int j=0;j<transformedData.numInstances();j++){
+                    if(h.inBag[j])
+                        continue;
+                    h.trainDistribution[j] = h.tree.distributionForInstance(transformedData.instance(j));
+                    h.oobCounts[j]++;
+                }
+            }
+            h.errorTime = System.nanoTime()-t1;
+        }
+        else
+            h.tree.buildClassifier(transformedData);
+        return h;
+    }
+
+    private void addTree(TreeBuildHolder h) {
+        if(bagging){
+            inBag.add(h.inBag);
+            if(getEstimateOwnPerformance()){
+                for(int j=0;j<oobCounts.length;j++){
+                    if(h.oobCounts[j]==0)
+                        continue;
+                    oobCounts[j]+=h.oobCounts[j];
+                    for(int k=0;k<h.trainDistribution[j].length;k++)
+                        trainDistributions[j][k]+=h.trainDistribution[j][k];
+                }
+                trainResults.setErrorEstimateTime(h.errorTime+trainResults.getErrorEstimateTime());
+            }
+        }
+        intervals.add(h.interval);
+        trees.add(h.tree);
+    }
+
     /**
      * estimating own performance
      *  Three scenarios
@@ -622,26 +728,32 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
     @Override
     public double[] distributionForInstance(Instance ins) throws Exception {
         double[] d=new double[ins.numClasses()];
-        //Build transformed instance
-        double[] series=ins.toDoubleArray();
-        for(int i=0;i<trees.size();i++){
-            for(int j=0;j<numIntervals;j++){
-                //extract all intervals
-                FeatureSet f= new FeatureSet();
-                f.setFeatures(series, intervals.get(i)[j][0], intervals.get(i)[j][1]);
-                testHolder.instance(0).setValue(j*3, f.mean);
-                testHolder.instance(0).setValue(j*3+1, f.stDev);
-                testHolder.instance(0).setValue(j*3+2, f.slope);
+        IntervalStatistics series=new IntervalStatistics(ins.toDoubleArray(),seriesLength);
+        if(multiThread && trees.size()>1){
+            //Each thread predicts with a block of trees on its own copy of the transformed instance
+            if (ex == null)
+                ex = newThreadPool();
+            int threads=Math.min(numThreads,trees.size());
+            ArrayList<Future<double[]>> futures=new ArrayList<>(threads);
+            for(int t=0;t<threads;t++){
+                int start=trees.size()*t/threads;
+                int end=trees.size()*(t+1)/threads;
+                Instances holder=new Instances(testHolder,1);
+                holder.add(new DenseInstance(testHolder.numAttributes()));
+                futures.add(ex.submit(() -> {
+                    double[] votes=new double[d.length];
+                    addTreePredictions(series,start,end,holder.instance(0),votes);
+                    return votes;
+                }));
             }
-            if(voteEnsemble){
-                int c=(int)trees.get(i).classifyInstance(testHolder.instance(0));
-                d[c]++;
-            }else{
-                double[] temp=trees.get(i).distributionForInstance(testHolder.instance(0));
-                for(int j=0;j<temp.length;j++)
-                    d[j]+=temp[j];
+            for(Future<double[]> f:futures){
+                double[] votes=f.get();
+                for(int j=0;j<d.length;j++)
+                    d[j]+=votes[j];
             }
         }
+        else
+            addTreePredictions(series,0,trees.size(),testHolder.instance(0),d);
         double sum=0;
         for(double x:d)
             sum+=x;
@@ -650,6 +762,25 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
                 d[i]=d[i]/sum;
         return d;
     }
+    /**
+     * Add the votes, or distributions, of trees start to end-1 for the series to d
+     */
+    private void addTreePredictions(IntervalStatistics series, int start, int end, Instance holder, double[] d)
+            throws Exception {
+        FeatureSet f=new FeatureSet();
+        for(int i=start;i<end;i++){
+            //Build transformed instance
+            setIntervalFeatures(series, intervals.get(i), holder, f);
+            if(voteEnsemble){
+                int c=(int)trees.get(i).classifyInstance(holder);
+                d[c]++;
+            }else{
+                double[] temp=trees.get(i).distributionForInstance(holder);
+                for(int j=0;j<temp.length;j++)
+                    d[j]+=temp[j];
+            }
+        }
+    }
 /**
  * @param ins
  * @return
@@ -775,6 +906,28 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
     }
 
 
+    /**
+     * Enables multi threading with a set number of threads to use. Seeded builds are reproducible for any number of
+     * threads above one.
+     *
+     * @param numThreads number of threads available for multi threading
+     */
+    @Override//MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        if (ex != null) {
+            ex.shutdown();
+            ex = null;
+        }
+        if (numThreads > 1) {
+            this.numThreads = numThreads;
+            multiThread = true;
+        }
+        else{
+            this.numThreads = 1;
+            multiThread = false;
+        }
+    }
+
     @Override//TrainTimeContractable
     public void setTrainTimeLimit(long amount) {
         printLineDebug(" TSF setting contract to "+amount);
@@ -862,6 +1015,81 @@ public class TSF extends EnhancedAbstractClassifier implements TechnicalInformat
         public void setFeatures(double[] data){
             setFeatures(data,0,data.length-1);
         }
+        /**
+         * As setFeatures(double[], int, int) for the series the statistics were found from, in constant time.
+         * The features are the same up to rounding, except that an interval of equal values always has a zero
+         * standard deviation and slope.
+         */
+        public void setFeatures(IntervalStatistics series, int start, int end){
+            int length=end-start+1;
+            if(series.changes[end+1]-series.changes[start+1]==0){ //Flat line
+                mean=series.series[start];
+                stDev=0;
+                slope=0;
+                if(findSkew)
+                    skew=1;
+                if(findKurtosis)
+                    kurtosis=1;
+                return;
+            }
+            double sumY=series.sumY[end+1]-series.sumY[start];
+            double sumYY=series.sumYY[end+1]-series.sumYY[start];
+            //x is measured from the start of the interval
+            double sumXY=series.sumXY[end+1]-series.sumXY[start]-start*sumY;
+            double sumX=(double)length*(length-1)/2;
+            double sumXX=(double)((long)(length-1)*length*(2*length-1)/6);
+            mean=sumY/length+series.seriesMean;
+            stDev=sumYY-(sumY*sumY)/length;
+            slope=(sumXY-(sumX*sumY)/length);
+            double denom=sumXX-(sumX*sumX)/length;
+            if(denom!=0)
+                slope/=denom;
+            else
+                slope=0;
+            stDev/=length;
+            if(stDev==0)    //Flat line
+                slope=0;
+            if(slope==0)
+                stDev=0;
+            if(findSkew||findKurtosis){
+                //The moments are of the original values, so shift the centred sums back
+                double m=series.seriesMean;
+                double sumY3=0,sumY4=0;
+                if(series.sumY3!=null){
+                    sumY3=series.sumY3[end+1]-series.sumY3[start];
+                    sumY4=series.sumY4[end+1]-series.sumY4[start];
+                }
+                else{
+                    for(int i=start;i<=end;i++){
+                        double y=series.series[i]-m;
+                        sumY3+=y*y*y;
+                        sumY4+=y*y*y*y;
+                    }
+                }
+                sumY4+=4*m*sumY3+6*m*m*sumYY+4*m*m*m*sumY+length*m*m*m*m;
+                sumY3+=3*m*sumYY+3*m*m*sumY+length*m*m*m;
+                sumYY+=2*m*sumY+length*m*m;
+                sumY+=length*m;
+                if(findSkew){
+                    if(stDev==0)
+                        skew=1;
+                    else{
+                        skew=sumY3-3*sumY*sumYY+2*sumY*sumY;
+                        skew/=length*stDev*stDev*stDev;
+                    }
+                }
+                else
+                    sumY3=0;
+                if(findKurtosis){
+                    if(stDev==0)
+                        kurtosis=1;
+                    else{
+                        kurtosis=sumY4-4*sumY*sumY3+6*sumY*sumY*sumYY-3*sumY*sumY*sumY*sumY;
+                        skew/=length*stDev*stDev*stDev*stDev;
+                    }
+                }
+            }
+        }
         @Override
         public String toString(){
             return "mean="+mean+" stdev = "+stDev+" slope ="+slope;
@@ -0,0 +1,82 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package tsml.classifiers.interval_based;
+
+import experiments.data.DatasetLoading;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TSFTest {
+
+    private static TSF build(Instances train, int numThreads, boolean contracted) throws Exception {
+        TSF tsf = new TSF(0);
+        tsf.setNumTrees(50);
+        tsf.setEstimateOwnPerformance(true);
+        tsf.setEstimatorMethod("OOB");
+        // a contract long enough to build every tree, in batches of numThreads
+        if (contracted)
+            tsf.setTrainTimeLimit(TimeUnit.HOURS, 1);
+        tsf.enableMultiThreading(numThreads);
+        tsf.buildClassifier(train);
+        return tsf;
+    }
+
+    private static double[][] distributions(TSF tsf, Instances test) throws Exception {
+        double[][] distributions = new double[test.numInstances()][];
+        for (int i = 0; i < distributions.length; i++) {
+            distributions[i] = tsf.distributionForInstance(test.instance(i));
+        }
+        return distributions;
+    }
+
+    private static double[][] trainDistributions(TSF tsf) {
+        double[][] distributions = new double[tsf.getTrainResults().numInstances()][];
+        for (int i = 0; i < distributions.length; i++) {
+            distributions[i] = tsf.getTrainResults().getProbabilityDistribution(i);
+        }
+        return distributions;
+    }
+
+    // seeded threaded builds are the same for any number of threads, the OOB estimate is built single threaded
+    @Test
+    public void testThreadsGiveSameForest() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        TSF single = build(data[0], 1, false);
+        TSF two = build(data[0], 2, false);
+        TSF three = build(data[0], 3, false);
+        assertArrayEquals(distributions(two, data[1]), distributions(three, data[1]));
+        assertArrayEquals(trainDistributions(single), trainDistributions(two));
+        assertArrayEquals(trainDistributions(single), trainDistributions(three));
+        assertEquals(single.getTrainResults().getAcc(), three.getTrainResults().getAcc(), 0);
+    }
+
+    @Test
+    public void testContractedThreadsGiveSameForest() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        TSF two = build(data[0], 2, true);
+        TSF three = build(data[0], 3, true);
+        TSF uncontracted = build(data[0], 3, false);
+        assertArrayEquals(distributions(uncontracted, data[1]), distributions(two, data[1]));
+        assertArrayEquals(distributions(uncontracted, data[1]), distributions(three, data[1]));
+        assertArrayEquals(trainDistributions(two), trainDistributions(three));
+    }
+}
@@ -45,6 +45,7 @@ import tsml.transformers.shapelet_tools.search_functions.ShapeletSearch;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearch.SearchType;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearchOptions;
 import tsml.classifiers.EnhancedAbstractClassifier;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import fileIO.FullAccessOutFile;
 import fileIO.OutFile;
@@ -69,7 +70,7 @@ import fileIO.OutFile;
  *
  */
 public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
-        implements TrainTimeContractable, Tuneable {
+        implements TrainTimeContractable, Tuneable, MultiThreadable {
     private ShapeletTransform transform;    //Configurable ST
     private Instances shapeletData;         //Transformed shapelets header info stored here
     private Classifier classifier;          //Final classifier built on transformed shapelet data
@@ -106,6 +107,7 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
     private double proportionToEvaluate=1;// Proportion of total num shapelets to evaluate based on time contract
     private long numShapeletsToEvaluate = 0; //Total num shapelets to evaluate over all cases (NOT per case)
     private long transformBuildTime=0;
+    private int numThreads=1;   //Threads used to evaluate shapelet candidates in the transform
     public void setTransformTime(long t){
         transformContractTime=t;
     }
@@ -200,6 +202,8 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
         //This is hacked to build a cShapeletTransform
         transform= constructShapeletTransform(data);
         transform.setSuppressOutput(debug);
+        if(numThreads>1)
+            transform.enableMultiThreading(numThreads);
 
 //The cConfig CONTRACT option is currently hacked into buildTransfom. here for now
 //        if(transform instanceof cShapeletFilter)
@@ -593,6 +597,10 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
         return transform.getCount();
     }
 
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = numThreads;
+    }
 
     public void setTrainTimeLimit(long amount) {
         trainTimeContract=true;
@@ -19,13 +19,11 @@ package tsml.clusterers;
 
 import experiments.data.DatasetLoading;
 import tsml.classifiers.dictionary_based.IndividualBOSS;
-import tsml.classifiers.dictionary_based.bitword.BitWordInt;
 import weka.core.Instances;
 import machine_learning.clusterers.PAM;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Map;
 
 import static utilities.ClusteringUtilities.randIndex;
 import static utilities.ClusteringUtilities.zNormalise;
@@ -168,30 +166,11 @@ public class DictClusterer extends AbstractTimeSeriesClusterer {
 
             for (int n = 0; n < i; n++){
                 IndividualBOSS.Bag second = bags.get(n);
-                double dist = 0;
+                double dist = first.distance(second, 0, Double.MAX_VALUE);
 
-                ArrayList<Integer> secondSet = new ArrayList();
-
-                for (Map.Entry<BitWordInt, Integer> entry : first.entrySet()) {
-                    Integer valA = entry.getValue();
-                    Integer valB = second.get(entry.getKey());
-
-                    if (valB == null) {
-                        valB = 0;
-                    }
-                    else{
-                        secondSet.add(valB);
-                    }
-
-                    dist += (valA-valB)*(valA-valB);
-                }
-
-                for (Map.Entry<BitWordInt, Integer> entry : second.entrySet()) {
-                    if (secondSet.remove(entry.getKey())){
-                        continue;
-                    }
-
-                    Integer valB = entry.getValue();
+                //counts of all words in second are added, including those shared with first
+                for (int j = 0; j < second.size(); j++) {
+                    int valB = second.getCount(j);
                     dist += -valB*-valB;
                 }
 
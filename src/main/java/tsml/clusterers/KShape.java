@@ -19,14 +19,17 @@ package tsml.clusterers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import experiments.data.DatasetLoading;
+import tsml.classifiers.MultiThreadable;
+import tsml.transformers.FFT;
 import weka.core.Instance;
 import weka.core.Instances;
-import tsml.transformers.FFT;
-import tsml.transformers.FFT.Complex;
-import static tsml.transformers.FFT.MathsPower2;
 
 import static utilities.ClusteringUtilities.randIndex;
 import static utilities.ClusteringUtilities.zNormalise;
@@ -39,9 +42,13 @@ import weka.core.matrix.Matrix;
 /**
  * Class for the KShape clustering algorithm.
  *
+ * The spectrum and norm of each series are found once per build, and those of each centroid once per iteration, so
+ * a shape based distance is a single inverse FFT. With enableMultiThreading the series are assigned to clusters in
+ * parallel.
+ *
  * @author Matthew Middlehurst
  */
-public class KShape extends AbstractTimeSeriesClusterer {
+public class KShape extends AbstractTimeSeriesClusterer implements MultiThreadable {
 
     //Paparrizos, John, and Luis Gravano.
     //"k-shape: Efficient and accurate clustering of time series."
@@ -52,6 +59,9 @@ public class KShape extends AbstractTimeSeriesClusterer {
 
     private Instances centroids;
 
+    private int numThreads = 1;
+    private transient ExecutorService executor;
+
     public KShape(){}
 
     @Override
@@ -61,6 +71,15 @@ public class KShape extends AbstractTimeSeriesClusterer {
 
     public void setNumberOfClusters(int n){ k = n; }
 
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        this.numThreads = Math.max(1, numThreads);
+    }
+
     @Override
     public void buildClusterer(Instances data) throws Exception {
         if (copyInstances){
@@ -102,28 +121,47 @@ public class KShape extends AbstractTimeSeriesClusterer {
         int[] prevCluster = new int[data.numInstances()];
         prevCluster[0] = -1;
 
+        //The spectra of the series do not change between iterations
+        SBD sbd = new SBD(data.numAttributes());
+        double[][] spectra = new double[data.numInstances()][];
+        double[] norms = new double[data.numInstances()];
+        final Instances series = data;
+        forBlocks(data.numInstances(), data.numAttributes(), (blockSBD, start, end) -> {
+            for (int i = start; i < end; i++){
+                spectra[i] = blockSBD.spectrum(series.get(i));
+                norms[i] = sumSquare(series.get(i));
+            }
+        });
+
+        double[][] centroidSpectra = new double[k][];
+        double[] centroidNorms = new double[k];
+
         //While clusters change and less than max iterations
         while (!Arrays.equals(assignments, prevCluster) && iterations < 100){
             prevCluster = Arrays.copyOf(assignments, assignments.length);
 
             //Select centroids
             for (int i = 0; i < k; i ++){
-                centroids.set(i, shapeExtraction(data, centroids.get(i), i));
+                centroids.set(i, shapeExtraction(data, centroids.get(i), i, sbd, spectra, norms));
+                centroidSpectra[i] = sbd.spectrum(centroids.get(i));
+                centroidNorms[i] = sumSquare(centroids.get(i));
             }
 
             //Set each instance to the cluster of its closest centroid using shape based distance
-            for (int i = 0; i < data.numInstances(); i++){
-                double minDist = Double.MAX_VALUE;
+            forBlocks(data.numInstances(), data.numAttributes(), (blockSBD, start, end) -> {
+                for (int i = start; i < end; i++){
+                    double minDist = Double.MAX_VALUE;
 
-                for (int n = 0; n < k; n++){
-                    SBD sbd = new SBD(centroids.get(n), data.get(i), false);
+                    for (int n = 0; n < k; n++){
+                        blockSBD.calculateDistance(centroidSpectra[n], centroidNorms[n], spectra[i], norms[i]);
 
-                    if (sbd.dist < minDist){
-                        minDist = sbd.dist;
-                        assignments[i] = n;
+                        if (blockSBD.dist < minDist){
+                            minDist = blockSBD.dist;
+                            assignments[i] = n;
+                        }
                     }
                 }
-            }
+            });
 
             iterations++;
         }
@@ -146,7 +184,39 @@ public class KShape extends AbstractTimeSeriesClusterer {
         }
     }
 
-    private Instance shapeExtraction(Instances data, Instance centroid, int centroidNum) throws Exception {
+    //Split [0, size) into a block per thread, each with its own SBD
+    private void forBlocks(int size, int numAttributes, Block block) throws Exception {
+        int threads = Math.min(numThreads, Math.max(1, size));
+        if (threads == 1){
+            block.run(new SBD(numAttributes), 0, size);
+            return;
+        }
+
+        if (executor == null) {
+            // daemon threads so an unused clusterer never holds the jvm open
+            executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++){
+            int start = (int) ((long) size * t / threads);
+            int end = (int) ((long) size * (t + 1) / threads);
+            futures.add(executor.submit(() -> block.run(new SBD(numAttributes), start, end)));
+        }
+        for (Future<?> future : futures){
+            future.get();
+        }
+    }
+
+    private interface Block {
+        void run(SBD sbd, int start, int end);
+    }
+
+    private Instance shapeExtraction(Instances data, Instance centroid, int centroidNum, SBD sbd, double[][] spectra,
+                                     double[] norms) throws Exception {
         Instances subsample = new Instances(data, 0);
         int seriesSize = centroid.numAttributes();
 
@@ -155,6 +225,8 @@ public class KShape extends AbstractTimeSeriesClusterer {
             sum += centroid.value(i);
         }
         boolean sumZero = sum == 0;
+        double[] centroidSpectrum = sumZero ? null : sbd.spectrum(centroid);
+        double centroidNorm = sumSquare(centroid);
 
         //Take subsample of instances in centroids cluster
         for (int i = 0; i < data.numInstances(); i++){
@@ -164,8 +236,8 @@ public class KShape extends AbstractTimeSeriesClusterer {
                     subsample.add(data.get(i));
                 }
                 else{
-                    SBD sbd = new SBD(centroid, data.get(i), true);
-                    subsample.add(sbd.yShift);
+                    sbd.calculateDistance(centroidSpectrum, centroidNorm, spectra[i], norms[i]);
+                    subsample.add(sbd.shift(data.get(i)));
                 }
             }
         }
@@ -281,129 +353,100 @@ public class KShape extends AbstractTimeSeriesClusterer {
         System.out.println(randIndex(k.assignments, inst));
     }
 
-    //Class for calculating Shape Based Distance
-    private class SBD {
-
-        public double dist;
-        public Instance yShift;
-
-        private FFT fft;
-
-        public SBD(){}
-
-        public SBD(Instance first, Instance second, boolean calcShift){
-            calculateDistance(first, second, calcShift);
-        }
+    private static double sumSquare(Instance inst){
+        double sum = 0;
 
-        public double calculateDistance(Instance first, Instance second){
-            calculateDistance(first, second, false);
-            return dist;
+        for (int i = 0; i < inst.numAttributes(); i++){
+            sum += inst.value(i)*inst.value(i);
         }
 
-        public void calculateDistance(Instance first, Instance second, boolean calcShift){
-            int oldLength = first.numAttributes()-1;
-            int oldLengthY = second.numAttributes()-1;
+        return sum;
+    }
 
-            int length = paddedLength(oldLength);
+    //Class for calculating Shape Based Distance from the spectra of the series, not thread safe
+    private static class SBD {
 
-            //FFT and IFFT
-            fft = new FFT();
+        public double dist;
 
-            Complex[] firstC = fft(first, oldLength, length);
-            Complex[] secondC = fft(second, oldLengthY, length);
+        private int shift;
+        private final int oldLength;
+        private final int length;
+        private final FFT.Plan fft;
+        private final double[] product;
+        private final double[] cc;
+
+        public SBD(int numAttributes){
+            oldLength = numAttributes-1;
+            length = FFT.Plan.paddedLength(oldLength);
+            fft = FFT.Plan.forLength(length);
+            product = new double[length == 1 ? 2 : length + 2];
+            cc = new double[length];
+        }
 
-            for (int i = 0; i < length; i++){
-                secondC[i].conjugate();
-                firstC[i].multiply(secondC[i]);
+        //FFT of the series padded with 0s, the interleaved real and imaginary parts of terms 0 to length/2
+        public double[] spectrum(Instance inst){
+            double[] series = new double[oldLength];
+            for (int i = 0; i < oldLength; i++){
+                series[i] = inst.value(i);
             }
 
-            fft.inverseFFT(firstC, length);
-
-            //Calculate NCCc values
-            double firstNorm = sumSquare(first);
-            double secondNorm = sumSquare(second);
-            double norm = Math.sqrt(firstNorm * secondNorm);
+            double[] spectrum = new double[product.length];
+            fft.realForward(series, spectrum);
 
-            double[] ncc = new double[oldLength*2-1];
-            int idx = 0;
+            return spectrum;
+        }
 
-            for (int i = length-oldLength+1; i < length; i++){
-                ncc[idx++] = firstC[i].getReal()/norm;
+        public void calculateDistance(double[] first, double firstNorm, double[] second, double secondNorm){
+            //Cross-correlation from the product of the first spectrum and the conjugate of the second
+            for (int i = 0; i < product.length; i += 2){
+                product[i] = first[i] * second[i] + first[i+1] * second[i+1];
+                product[i+1] = first[i+1] * second[i] - first[i] * second[i+1];
             }
 
-            for (int i = 0; i < oldLength; i++){
-                ncc[idx++] = firstC[i].getReal()/norm;
-            }
+            fft.realInverse(product, cc);
 
+            //Largest NCCc value and index, the values for negative shifts first
+            double norm = Math.sqrt(firstNorm * secondNorm);
             double maxValue = 0;
-            int shift = -1;
+            shift = -1;
+            int idx = 0;
 
-            //Largest NCCc value and index
-            for (int i = 0; i < ncc.length; i++){
-                if (ncc[i] > maxValue){
-                    maxValue = ncc[i];
-                    shift = i;
+            for (int i = length-oldLength+1; i < length; i++, idx++){
+                if (cc[i]/norm > maxValue){
+                    maxValue = cc[i]/norm;
+                    shift = idx;
                 }
             }
 
-            dist = 1 - maxValue;
-
-            //Create y', shifting the second instance in a direction and padding with 0s
-            if (calcShift){
-                if (oldLength > oldLengthY){
-                    shift -= oldLength-1;
-                }
-                else {
-                    shift -= oldLengthY-1;
-                }
-
-                yShift = new DenseInstance(1, new double[second.numAttributes()]);
-
-                if (shift >= 0){
-                    for (int i = 0; i < oldLengthY-shift; i++){
-                        yShift.setValue(i + shift, second.value(i));
-                    }
-                }
-                else {
-                    for (int i = 0; i < oldLengthY+shift; i++){
-                        yShift.setValue(i, second.value(i-shift));
-                    }
+            for (int i = 0; i < oldLength; i++, idx++){
+                if (cc[i]/norm > maxValue){
+                    maxValue = cc[i]/norm;
+                    shift = idx;
                 }
             }
-        }
 
-        //Amount of padding required for FFT
-        private int paddedLength(int oldLength){
-            int length = (int)MathsPower2.roundPow2((float)oldLength);
-            if (length < oldLength) length *= 2;
-            return length;
+            dist = 1 - maxValue;
         }
 
-        //Run FFT and return array of complex numbers
-        private Complex[] fft(Instance inst, int oldLength, int length){
-            Complex[] complex = new Complex[length];
+        //Create y' for the last distance, shifting the second instance in a direction and padding with 0s
+        public Instance shift(Instance second){
+            int oldLengthY = second.numAttributes()-1;
+            int shift = this.shift - (Math.max(oldLength, oldLengthY)-1);
 
-            for (int i = 0; i < oldLength; i++){
-                complex[i] = new Complex(inst.value(i), 0);
-            }
+            Instance yShift = new DenseInstance(1, new double[second.numAttributes()]);
 
-            for (int i = oldLength; i < length; i++){
-                complex[i] = new Complex(0,0);
+            if (shift >= 0){
+                for (int i = 0; i < oldLengthY-shift; i++){
+                    yShift.setValue(i + shift, second.value(i));
+                }
             }
-
-            fft.fft(complex, length);
-
-            return complex;
-        }
-
-        private double sumSquare(Instance inst){
-            double sum = 0;
-
-            for (int i = 0; i < inst.numAttributes(); i++){
-                sum += inst.value(i)*inst.value(i);
+            else {
+                for (int i = 0; i < oldLengthY+shift; i++){
+                    yShift.setValue(i, second.value(i-shift));
+                }
             }
 
-            return sum;
+            return yShift;
         }
     }
 }
@@ -28,6 +28,9 @@ import java.util.stream.Stream;
  * The model for the indexes is the first is always zero the other indexes are in units of md.increment
  * Hopefully most of this can be encapsulated, so if the data has equal increments then indices is null and the user
 
+ * Values are held in a primitive double[] rather than a boxed list. A series may be a view onto a region of a
+ * larger array (i.e. a slice or window of another series), in which case the array is shared rather than copied.
+ * Series are never modified after construction, so sharing the backing array is safe.
 
  @author Aaron Bostrom, 2020
  * */
@@ -36,33 +39,64 @@ public class TimeSeries implements Iterable<Double> {
     public final static double DEFAULT_VALUE = Double.NaN;
     private final static List<Double> EMPTY_INDICES = Collections.emptyList(); 
 
-    private List<Double> series;
+    // the values of this series are data[offset] to data[offset + length - 1] inclusive
+    private double[] data;
+    private int offset;
+    private int length;
     private List<Double> indices = EMPTY_INDICES;
 
-    private TimeSeries() {
-        // just for internal use
+    private TimeSeries(double[] data, int offset, int length) {
+        // just for internal use, does not copy the data
+        if(offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("region [" + offset + ", " + (offset + length) + ") out of bounds for length " + data.length);
+        }
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
     }
     
     public TimeSeries(double[] d){
-        series = new ArrayList<Double>();
-        for(double dd : d)
-            series.add(dd);
+        this(Arrays.copyOf(d, d.length), 0, d.length);
     }
     
     public TimeSeries(List<Double> d) {
-        series = new ArrayList<>(d);
+        this(new double[d.size()], 0, d.size());
+        int i = 0;
+        for(Double value : d) {
+            data[i++] = value;
+        }
     }
     
     public TimeSeries(TimeSeries other) {
-        this(other.series);
+        // series are immutable so share the other's data rather than copying
+        this(other.data, other.offset, other.length);
+    }
+
+    /**
+     * Wrap an array as a time series without copying it. The array must not be modified afterwards.
+     * @param d
+     * @return TimeSeries
+     */
+    public static TimeSeries wrap(double[] d) {
+        return new TimeSeries(d, 0, d.length);
+    }
+
+    /**
+     * Wrap a region of an array as a time series without copying it. The region must not be modified afterwards.
+     * @param d
+     * @param offset
+     * @param length
+     * @return TimeSeries
+     */
+    public static TimeSeries wrap(double[] d, int offset, int length) {
+        return new TimeSeries(d, offset, length);
     }
 
-    
     /** 
      * @return int
      */
     public int getSeriesLength(){
-        return series.size();
+        return length;
     }
 
     
@@ -72,8 +106,8 @@ public class TimeSeries implements Iterable<Double> {
      */
     public boolean hasValidValueAt(int i){
         //test whether its out of range, or NaN
-        boolean output = i < series.size() &&
-                         Double.isFinite(series.get(i));
+        boolean output = i < length &&
+                         Double.isFinite(getValue(i));
         return output;
     }
 
@@ -83,7 +117,7 @@ public class TimeSeries implements Iterable<Double> {
      * @return double
      */
     public double getValue(int i){
-        return series.get(i);
+        return data[offset + checkIndex(i)];
     }
 
     /**
@@ -92,7 +126,14 @@ public class TimeSeries implements Iterable<Double> {
      * @return
      */
     public Double get(int i) {
-        return series.get(i);
+        return getValue(i);
+    }
+
+    private int checkIndex(int i) {
+        if(i < 0 || i >= length) {
+            throw new IndexOutOfBoundsException("index " + i + " out of bounds for length " + length);
+        }
+        return i;
     }
     
     /** 
@@ -108,11 +149,11 @@ public class TimeSeries implements Iterable<Double> {
      * @return DoubleStream
      */
     public DoubleStream streamValues(){
-        return series.stream().mapToDouble(Double::doubleValue);
+        return Arrays.stream(data, offset, offset + length);
     }
     
     public Stream<Double> stream() {
-        return series.stream();
+        return streamValues().boxed();
     }
     
     /** 
@@ -121,7 +162,7 @@ public class TimeSeries implements Iterable<Double> {
      * @return List<Double>
      */
     public List<Double> getSlidingWindow(int start, int end){
-        return series.subList(start, end);
+        return getVSliceList(start, end);
     }
 
     
@@ -131,14 +172,33 @@ public class TimeSeries implements Iterable<Double> {
      * @return double[]
      */
     public double[] getSlidingWindowArray(int start, int end){
-        return series.subList(start, end).stream().mapToDouble(Double::doubleValue).toArray();
+        return getVSliceArray(start, end);
+    }
+
+    /**
+     * @param data
+     * @param offset
+     * @return boolean whether this series is a view onto the given array starting at the given offset
+     */
+    boolean isViewOf(double[] data, int offset) {
+        return this.data == data && this.offset == offset;
+    }
+
+    /**
+     * Copy the values of this series into the given array.
+     * @param dest
+     * @param destPos
+     */
+    public void copyTo(double[] dest, int destPos) {
+        System.arraycopy(data, offset, dest, destPos, length);
     }
 
     
     /** 
+     * Boxed, read-only view of the values. Use getValue or toValueArray if you care about performance.
      * @return List<Double>
      */
-    public List<Double> getSeries(){ return series;}
+    public List<Double> getSeries(){ return new ValueList(offset, length);}
     
     /** 
      * @return List<Double>
@@ -153,8 +213,8 @@ public class TimeSeries implements Iterable<Double> {
     public String toString(){
         StringBuilder sb = new StringBuilder();
 
-        for(double val : series){
-            sb.append(val).append(',');
+        for(int i = offset; i < offset + length; i++){
+            sb.append(data[i]).append(',');
         }
 
         return sb.toString();
@@ -164,7 +224,7 @@ public class TimeSeries implements Iterable<Double> {
      * @return double[]
      */
 	public double[] toValueArray() {
-		return getSeries().stream().mapToDouble(Double::doubleValue).toArray();
+		return Arrays.copyOfRange(data, offset, offset + length);
     }
 
     public TimeSeries getVSlice(int[] indices) {
@@ -289,21 +349,34 @@ public class TimeSeries implements Iterable<Double> {
     }
 
     @Override public Iterator<Double> iterator() {
-        return series.iterator();
+        return getSeries().iterator();
     }
     
     public List<Double> getVSliceList(int startInclusive, int endExclusive) {
-        return series.subList(startInclusive, endExclusive);
+        checkRange(startInclusive, endExclusive);
+        return new ValueList(offset + startInclusive, endExclusive - startInclusive);
     }
     
     public double[] getVSliceArray(int startInclusive, int endExclusive) {
-        return getVSliceList(startInclusive, endExclusive).stream().mapToDouble(d -> d).toArray();
+        checkRange(startInclusive, endExclusive);
+        return Arrays.copyOfRange(data, offset + startInclusive, offset + endExclusive);
     }
     
+    /**
+     * Get a contiguous region of this series. The region shares this series' data rather than copying it.
+     * @param startInclusive
+     * @param endExclusive
+     * @return TimeSeries
+     */
     public TimeSeries getVSlice(int startInclusive, int endExclusive) {
-        final TimeSeries ts = new TimeSeries();
-        ts.series = getVSliceList(startInclusive, endExclusive);
-        return ts;
+        checkRange(startInclusive, endExclusive);
+        return new TimeSeries(data, offset + startInclusive, endExclusive - startInclusive);
+    }
+
+    private void checkRange(int startInclusive, int endExclusive) {
+        if(startInclusive < 0 || endExclusive > length || startInclusive > endExclusive) {
+            throw new IndexOutOfBoundsException("range [" + startInclusive + ", " + endExclusive + ") out of bounds for length " + length);
+        }
     }
 
     @Override public boolean equals(final Object o) {
@@ -311,10 +384,48 @@ public class TimeSeries implements Iterable<Double> {
             return false;
         }
         final TimeSeries that = (TimeSeries) o;
-        return Objects.equals(series, that.series);
+        if(length != that.length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            // compare as Double.equals would, i.e. NaN equals NaN
+            if(Double.doubleToLongBits(data[offset + i]) != Double.doubleToLongBits(that.data[that.offset + i])) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override public int hashCode() {
-        return Objects.hash(series);
+        // same as hashing a List<Double> of the values
+        int hash = 1;
+        for(int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + Double.hashCode(data[i]);
+        }
+        return 31 + hash;
+    }
+
+    /**
+     * Read-only boxed view over a region of the backing array.
+     */
+    private class ValueList extends AbstractList<Double> implements RandomAccess {
+        private final int start;
+        private final int size;
+
+        private ValueList(int start, int size) {
+            this.start = start;
+            this.size = size;
+        }
+
+        @Override public Double get(final int index) {
+            if(index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + size);
+            }
+            return data[start + index];
+        }
+
+        @Override public int size() {
+            return size;
+        }
     }
 }
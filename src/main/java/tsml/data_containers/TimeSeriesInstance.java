@@ -217,6 +217,20 @@ public class TimeSeriesInstance implements Iterable<TimeSeries> {
         dataChecks();
     }
     
+    /**
+     * Construct an instance from existing series, copying over regression target / labelling variables. The series
+     * are not copied. This is only intended for internal use in re-pointing an instance at different storage.
+     * @param series
+     * @param other
+     */
+    TimeSeriesInstance(List<? extends TimeSeries> series, TimeSeriesInstance other) {
+        this.seriesDimensions = new ArrayList<>(series);
+        labelIndex = other.labelIndex;
+        targetValue = other.targetValue;
+
+        dataChecks();
+    }
+    
     public TimeSeriesInstance(double[][] data) {
         this(data, Double.NaN);
     }
@@ -238,6 +252,21 @@ public class TimeSeriesInstance implements Iterable<TimeSeries> {
         return inst;
     }
     
+    /**
+     * Construct an instance from existing series with both a label index and a target value, e.g. when restoring a
+     * previously written instance. The series are not copied.
+     * @param series
+     * @param labelIndex
+     * @param targetValue
+     */
+    public TimeSeriesInstance(List<? extends TimeSeries> series, int labelIndex, double targetValue) {
+        this.seriesDimensions = new ArrayList<>(series);
+        this.labelIndex = labelIndex;
+        this.targetValue = targetValue;
+
+        dataChecks();
+    }
+    
     public TimeSeriesInstance(double targetValue, TimeSeries[] data) {
         this(targetValue, Arrays.asList(data));
     }
@@ -165,6 +165,14 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance> {
 
     private int[] classCounts;
 
+    // contiguous storage of every series' values when in columnar mode, null otherwise. The value at time point t of
+    // dimension d of instance i lives at columnarOffset + i * instanceStride + d * dimensionStride + t. Each
+    // TimeSeries in seriesCollection is a view onto this array.
+    private double[] columnarData;
+    private int columnarOffset;
+    private int instanceStride;
+    private int dimensionStride;
+
     public TimeSeriesInstances(final String[] classLabels) {        
         this.classLabels = classLabels;
         
@@ -275,13 +283,14 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance> {
     }
 
     private void calculateLengthBounds() {
-        minLength = seriesCollection.stream().mapToInt(TimeSeriesInstance::getMinLength).min().getAsInt();
-        maxLength = seriesCollection.stream().mapToInt(TimeSeriesInstance::getMaxLength).max().getAsInt();
+        // an empty collection has bounds which any added instance will replace
+        minLength = seriesCollection.stream().mapToInt(TimeSeriesInstance::getMinLength).min().orElse(Integer.MAX_VALUE);
+        maxLength = seriesCollection.stream().mapToInt(TimeSeriesInstance::getMaxLength).max().orElse(0);
         isEqualLength = minLength == maxLength;
     }
 
     private void calculateNumDimensions(){
-        maxNumDimensions = seriesCollection.stream().mapToInt(e -> e.getNumDimensions()).max().getAsInt();
+        maxNumDimensions = seriesCollection.stream().mapToInt(e -> e.getNumDimensions()).max().orElse(0);
     }
     
     private void calculateIfMultivariate(){
@@ -323,10 +332,13 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance> {
 
     
     /** 
+     * Adding an instance to a columnar collection drops the columnar layout, as the new instance's values are not in
+     * the contiguous storage.
      * @param newSeries
      */
     public void add(final TimeSeriesInstance newSeries) {
         seriesCollection.add(newSeries);
+        columnarData = null;
 
         //guard for if we're going to force update classCounts after.
         if(classCounts != null && newSeries.getLabelIndex() < classCounts.length)
@@ -364,6 +376,148 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance> {
         return sb.toString();
     }
     
+    /**
+     * Produce a copy of this collection with every series' values packed into a single contiguous array, i.e. a
+     * columnar layout. Slices of the columnar collection (getHSlice / getVSlice by range) are views onto the same
+     * array rather than copies. Only equal length data with the same number of dimensions per instance can be packed.
+     * @return TimeSeriesInstances
+     */
+    public TimeSeriesInstances toColumnar() {
+        if(isColumnar()) {
+            return this;
+        }
+        if(!isEqualLength) {
+            throw new IllegalStateException("columnar layout requires equal length series");
+        }
+        for(TimeSeriesInstance inst : seriesCollection) {
+            if(inst.getNumDimensions() != maxNumDimensions) {
+                throw new IllegalStateException("columnar layout requires the same number of dimensions in every instance");
+            }
+        }
+        final long size = (long) numInstances() * maxNumDimensions * maxLength;
+        if(size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many values for columnar layout: " + size);
+        }
+        final double[] data = new double[(int) size];
+        int i = 0;
+        for(TimeSeriesInstance inst : seriesCollection) {
+            for(TimeSeries ts : inst) {
+                ts.copyTo(data, i);
+                i += maxLength;
+            }
+        }
+        return columnarView(data, 0, maxNumDimensions * maxLength, maxLength, maxNumDimensions, maxLength);
+    }
+
+    /**
+     * Build a columnar collection from instances whose series are already views (see TimeSeries.wrap) onto the given
+     * contiguous storage, laid out as toColumnar would, i.e. instance by instance, dimension by dimension. This avoids
+     * copying data which has been read straight into contiguous storage.
+     * @param data
+     * @param instances
+     * @param classLabels
+     * @return TimeSeriesInstances
+     */
+    public static TimeSeriesInstances ofColumnar(double[] data, List<? extends TimeSeriesInstance> instances, String[] classLabels) {
+        final TimeSeriesInstances tsi = new TimeSeriesInstances(instances, classLabels);
+        final int numDimensions = tsi.maxNumDimensions;
+        final int length = tsi.maxLength;
+        if(!tsi.isEqualLength || (long) tsi.numInstances() * numDimensions * length != data.length) {
+            throw new IllegalArgumentException("instances do not cover the columnar storage");
+        }
+        int offset = 0;
+        for(TimeSeriesInstance inst : instances) {
+            if(inst.getNumDimensions() != numDimensions) {
+                throw new IllegalArgumentException("columnar layout requires the same number of dimensions in every instance");
+            }
+            for(TimeSeries ts : inst) {
+                if(!ts.isViewOf(data, offset)) {
+                    throw new IllegalArgumentException("series is not a view onto the columnar storage at " + offset);
+                }
+                offset += length;
+            }
+        }
+        tsi.columnarData = data;
+        tsi.columnarOffset = 0;
+        tsi.instanceStride = numDimensions * length;
+        tsi.dimensionStride = length;
+        return tsi;
+    }
+
+    /**
+     * Build a columnar collection over a region of the given contiguous storage. Metadata and labels are copied from
+     * this collection.
+     */
+    private TimeSeriesInstances columnarView(double[] data, int offset, int instanceStride, int dimensionStride,
+                                             int numDimensions, int length) {
+        final TimeSeriesInstances tsi = new TimeSeriesInstances(classLabels);
+        tsi.problemName = problemName;
+        tsi.description = description;
+        tsi.seriesCollection = new ArrayList<>(numInstances());
+        for(int i = 0; i < numInstances(); i++) {
+            final List<TimeSeries> dimensions = new ArrayList<>(numDimensions);
+            for(int d = 0; d < numDimensions; d++) {
+                dimensions.add(TimeSeries.wrap(data, offset + i * instanceStride + d * dimensionStride, length));
+            }
+            tsi.seriesCollection.add(new TimeSeriesInstance(dimensions, seriesCollection.get(i)));
+        }
+        tsi.dataChecks();
+        tsi.columnarData = data;
+        tsi.columnarOffset = offset;
+        tsi.instanceStride = instanceStride;
+        tsi.dimensionStride = dimensionStride;
+        return tsi;
+    }
+
+    /**
+     * @return boolean whether the values are held in contiguous storage, see toColumnar
+     */
+    public boolean isColumnar() {
+        return columnarData != null;
+    }
+
+    /**
+     * The contiguous storage backing a columnar collection. This is shared, not copied, so must not be modified.
+     * Use getColumnarIndex to locate values within it.
+     * @return double[]
+     */
+    public double[] getColumnarData() {
+        checkColumnar();
+        return columnarData;
+    }
+
+    /**
+     * @param instIndex
+     * @param dim
+     * @return int the index of the first value of the given instance's dimension in getColumnarData
+     */
+    public int getColumnarIndex(int instIndex, int dim) {
+        checkColumnar();
+        return columnarOffset + instIndex * instanceStride + dim * dimensionStride;
+    }
+
+    /**
+     * @return int the distance between consecutive instances in getColumnarData
+     */
+    public int getInstanceStride() {
+        checkColumnar();
+        return instanceStride;
+    }
+
+    /**
+     * @return int the distance between consecutive dimensions of an instance in getColumnarData
+     */
+    public int getDimensionStride() {
+        checkColumnar();
+        return dimensionStride;
+    }
+
+    private void checkColumnar() {
+        if(!isColumnar()) {
+            throw new IllegalStateException("not in columnar layout, see toColumnar");
+        }
+    }
+    
     /** 
      * @return double[][][]
      */
@@ -398,6 +552,15 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance> {
     public double[] getVSliceArray(int index){
         double[] out = new double[numInstances() * seriesCollection.get(0).getNumDimensions()];
         int i=0;
+        if(isColumnar() && index >= 0 && index < maxLength) {
+            // read straight from the contiguous storage
+            for(int j = 0; j < numInstances(); j++) {
+                for(int d = 0; d < maxNumDimensions; d++) {
+                    out[i++] = columnarData[getColumnarIndex(j, d) + index];
+                }
+            }
+            return out;
+        }
         for(TimeSeriesInstance inst : seriesCollection){
             for(TimeSeries ts : inst)
                 // if the index isn't always valid, populate with NaN values.
@@ -566,6 +729,14 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance> {
     }
 
     public TimeSeriesInstances getVSlice(int startInclusive, int endExclusive) {
+        if(isColumnar()) {
+            if(startInclusive < 0 || endExclusive > maxLength || startInclusive > endExclusive) {
+                throw new IndexOutOfBoundsException("range [" + startInclusive + ", " + endExclusive + ") out of bounds for length " + maxLength);
+            }
+            // view onto the same storage, shifted along the time axis
+            return columnarView(columnarData, columnarOffset + startInclusive, instanceStride, dimensionStride,
+                    maxNumDimensions, endExclusive - startInclusive);
+        }
         final TimeSeriesInstances tsi = new TimeSeriesInstances(classLabels);
         tsi.seriesCollection = seriesCollection.stream().map(inst -> inst.getVSlice(startInclusive, endExclusive)).collect(Collectors.toList());
         tsi.dataChecks();
@@ -585,6 +756,14 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance> {
     }
     
     public TimeSeriesInstances getHSlice(int startInclusive, int endExclusive) {
+        if(isColumnar()) {
+            if(startInclusive < 0 || endExclusive > maxNumDimensions || startInclusive > endExclusive) {
+                throw new IndexOutOfBoundsException("range [" + startInclusive + ", " + endExclusive + ") out of bounds for " + maxNumDimensions + " dimensions");
+            }
+            // view onto the same storage, shifted along the dimension axis
+            return columnarView(columnarData, columnarOffset + startInclusive * dimensionStride, instanceStride,
+                    dimensionStride, endExclusive - startInclusive, maxLength);
+        }
         final TimeSeriesInstances tsi = new TimeSeriesInstances(classLabels);
         tsi.seriesCollection = seriesCollection.stream().map(inst -> inst.getHSlice(startInclusive, endExclusive)).collect(Collectors.toList());
         tsi.dataChecks();
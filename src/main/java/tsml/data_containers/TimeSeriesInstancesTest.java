@@ -17,5 +17,93 @@
  
 package tsml.data_containers;
 
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
 public class TimeSeriesInstancesTest {
+
+    private double[][][] array;
+    private int[] labelIndexes;
+    private String[] classLabels;
+    private TimeSeriesInstances insts;
+
+    @Before
+    public void before() {
+        array = new double[][][] {
+                {
+                        {1,2,3,4},
+                        {5,6,7,8}
+                },
+                {
+                        {9,10,11,12},
+                        {13,14,15,16}
+                },
+                {
+                        {17,18,19,20},
+                        {21,22,23,24}
+                }
+        };
+        labelIndexes = new int[] {0, 1, 0};
+        classLabels = new String[] {"A", "B"};
+        insts = new TimeSeriesInstances(array, labelIndexes, classLabels);
+    }
+
+    @Test
+    public void testColumnar() {
+        final TimeSeriesInstances columnar = insts.toColumnar();
+        assertFalse(insts.isColumnar());
+        assertTrue(columnar.isColumnar());
+        assertEquals(insts, columnar);
+        assertArrayEquals(labelIndexes, columnar.getClassIndexes());
+        final double[] data = columnar.getColumnarData();
+        assertEquals(24, data.length);
+        assertEquals(8, columnar.getInstanceStride());
+        assertEquals(4, columnar.getDimensionStride());
+        for(int i = 0; i < array.length; i++) {
+            for(int d = 0; d < array[i].length; d++) {
+                for(int t = 0; t < array[i][d].length; t++) {
+                    assertEquals(array[i][d][t], data[columnar.getColumnarIndex(i, d) + t], 0d);
+                }
+            }
+        }
+        assertSame(columnar, columnar.toColumnar());
+    }
+
+    @Test
+    public void testColumnarVSlice() {
+        final TimeSeriesInstances columnar = insts.toColumnar();
+        final TimeSeriesInstances slice = columnar.getVSlice(1, 3);
+        assertTrue(slice.isColumnar());
+        assertSame(columnar.getColumnarData(), slice.getColumnarData());
+        assertEquals(insts.getVSlice(1, 3), slice);
+        assertArrayEquals(insts.getVSliceArray(1, 3), slice.toValueArray());
+        assertArrayEquals(insts.getVSliceArray(2), columnar.getVSliceArray(2), 0d);
+    }
+
+    @Test
+    public void testColumnarHSlice() {
+        final TimeSeriesInstances columnar = insts.toColumnar();
+        final TimeSeriesInstances slice = columnar.getHSlice(1, 2);
+        assertTrue(slice.isColumnar());
+        assertSame(columnar.getColumnarData(), slice.getColumnarData());
+        assertEquals(insts.getHSlice(1, 2), slice);
+        assertEquals(21, slice.getColumnarData()[slice.getColumnarIndex(2, 0)], 0d);
+        assertEquals(insts.getHSlice(1, 2).getVSlice(1, 3), slice.getVSlice(1, 3));
+    }
+
+    @Test
+    public void testAddDropsColumnar() {
+        final TimeSeriesInstances columnar = insts.toColumnar();
+        columnar.add(new TimeSeriesInstance(array[0], 1, classLabels));
+        assertFalse(columnar.isColumnar());
+        assertEquals(4, columnar.numInstances());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testColumnarUnequalLength() {
+        array[1][0] = new double[] {1, 2, 3};
+        new TimeSeriesInstances(array, labelIndexes, classLabels).toColumnar();
+    }
 }
@@ -23,6 +23,7 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
@@ -89,8 +90,47 @@ public class TimeSeriesTest {
         }
     }
     
+    @Test
+    public void testVSliceRange() {
+        final TimeSeries slice = ts.getVSlice(1, 3);
+        assertEquals(2, slice.getSeriesLength());
+        assertArrayEquals(new double[] {second, third}, slice.toValueArray(), 0d);
+        assertEquals(list.subList(1, 3), slice.getSeries());
+        assertEquals(new TimeSeries(list.subList(1, 3)), slice);
+        assertEquals(new TimeSeries(list.subList(1, 3)).hashCode(), slice.hashCode());
+    }
+
+    @Test
+    public void testVSliceOfSlice() {
+        final TimeSeries slice = ts.getVSlice(1, 4).getVSlice(1, 3);
+        assertArrayEquals(new double[] {third, fourth}, slice.toValueArray(), 0d);
+        assertEquals(fourth, slice.getValue(1), 0d);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testVSliceValueOutOfRange() {
+        ts.getVSlice(1, 3).getValue(2);
+    }
+
+    @Test
+    public void testSlidingWindowArray() {
+        assertArrayEquals(new double[] {first, second}, ts.getSlidingWindowArray(0, 2), 0d);
+        assertEquals(list.subList(2, 4), ts.getSlidingWindow(2, 4));
+    }
+
+    @Test
+    public void testCtorArrayCopies() {
+        array[0] = 100;
+        assertEquals(first, ts.getValue(0), 0d);
+    }
+
+    @Test
+    public void testHashCodeMatchesList() {
+        assertEquals(new TimeSeries(list).hashCode(), ts.hashCode());
+        assertEquals(Objects.hash(list), ts.hashCode());
+    }
+
     // todo test hslice
-    // todo test vslice
     // todo test metadata / stats
     
 }
@@ -0,0 +1,99 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import experiments.data.DatasetLoading;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
+
+/**
+ * One-off conversion of .ts / .arff files to the binary format read by TSBinaryReader.
+ *
+ * Usage: TSBinaryConverter input [output]
+ * If no output is given the input path is used with the extension replaced by .tsb. If the input is a directory then
+ * every .ts / .arff file beneath it is converted in place.
+ */
+public class TSBinaryConverter {
+
+    /**
+     * @param input a .ts or .arff file
+     * @return TimeSeriesInstances
+     * @throws IOException
+     */
+    public static TimeSeriesInstances load(File input) throws IOException {
+        final String name = input.getName().toLowerCase();
+        if(name.endsWith(".ts")) {
+            try(BufferedReader reader = new BufferedReader(new FileReader(input))) {
+                return new TSReader(reader).GetInstances();
+            }
+        } else if(name.endsWith(".arff")) {
+            return Converter.fromArff(DatasetLoading.loadDataThrowable(input));
+        }
+        throw new IOException("unsupported file type, expected .ts or .arff: " + input);
+    }
+
+    /**
+     * @param input a .ts or .arff file
+     * @param output the binary file to write
+     * @throws IOException
+     */
+    public static void convert(File input, File output) throws IOException {
+        final TSWriter writer = new TSWriter(output);
+        writer.setData(load(input));
+        writer.writeBinaryBatch();
+    }
+
+    private static File toBinaryFile(File input) {
+        final String name = input.getName();
+        return new File(input.getParentFile(), name.substring(0, name.lastIndexOf('.')) + TSBinaryReader.EXTENSION);
+    }
+
+    private static void convertAll(File dir) throws IOException {
+        final File[] files = dir.listFiles();
+        if(files == null) {
+            return;
+        }
+        for(File file : files) {
+            final String name = file.getName().toLowerCase();
+            if(file.isDirectory()) {
+                convertAll(file);
+            } else if(name.endsWith(".ts") || name.endsWith(".arff")) {
+                System.out.println("converting " + file);
+                convert(file, toBinaryFile(file));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("usage: TSBinaryConverter input [output]");
+            return;
+        }
+        final File input = new File(args[0]);
+        if(input.isDirectory()) {
+            convertAll(input);
+        } else {
+            convert(input, args.length > 1 ? new File(args[1]) : toBinaryFile(input));
+        }
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import tsml.data_containers.TimeSeries;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+/**
+ * Reads the binary format written by TSWriter.writeBinaryBatch. The file is memory mapped and only the small
+ * per-instance header is read on opening; values are pulled from the mapping on demand, either per series or in bulk
+ * through GetInstances.
+ *
+ * Equal length data is read into a columnar TimeSeriesInstances (see TimeSeriesInstances.toColumnar) with a single
+ * bulk copy out of the mapping.
+ */
+public class TSBinaryReader implements Closeable {
+
+    // "TSML" in ascii
+    public static final int MAGIC = 0x54534D4C;
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".tsb";
+
+    // a single mapping can be at most 2GB, so larger files are mapped in chunks. Chunks are a multiple of 8 bytes so
+    // a double never straddles two chunks.
+    private static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE - (Integer.MAX_VALUE % Double.BYTES);
+
+    private final FileChannel channel;
+    private final DoubleBuffer[] chunks;
+    private final long valuesPerChunk = MAX_CHUNK_BYTES / Double.BYTES;
+
+    private final String problemName;
+    private final String description;
+    private final String[] classLabels;
+    private final int[] labelIndexes;
+    private final double[] targetValues;
+    private final int[][] lengths;
+    // position of each instance's first value, in values from the start of the data section
+    private final long[] instanceOffsets;
+    private final long numValues;
+
+    private TimeSeriesInstances instances;
+
+    public TSBinaryReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // the header is small so map it in one go, bounded by the file size / max mapping size
+            final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), MAX_CHUNK_BYTES));
+            if(header.remaining() < 2 * Integer.BYTES || header.getInt() != MAGIC) {
+                throw new IOException("not a binary time series file: " + file);
+            }
+            final int version = header.getInt();
+            if(version != VERSION) {
+                throw new IOException("unsupported binary time series version " + version + " in " + file);
+            }
+            problemName = readString(header);
+            description = readString(header);
+            classLabels = new String[header.getInt()];
+            for(int i = 0; i < classLabels.length; i++) {
+                classLabels[i] = readString(header);
+            }
+            final int numInstances = header.getInt();
+            labelIndexes = new int[numInstances];
+            targetValues = new double[numInstances];
+            lengths = new int[numInstances][];
+            instanceOffsets = new long[numInstances];
+            long offset = 0;
+            for(int i = 0; i < numInstances; i++) {
+                labelIndexes[i] = header.getInt();
+                targetValues[i] = header.getDouble();
+                lengths[i] = new int[header.getInt()];
+                instanceOffsets[i] = offset;
+                for(int j = 0; j < lengths[i].length; j++) {
+                    lengths[i][j] = header.getInt();
+                    offset += lengths[i][j];
+                }
+            }
+            numValues = offset;
+            // values start on the next 8 byte boundary
+            final long dataStart = (header.position() + Double.BYTES - 1) / Double.BYTES * Double.BYTES;
+            if(dataStart + numValues * Double.BYTES > channel.size()) {
+                throw new IOException("truncated binary time series file: " + file);
+            }
+            final int numChunks = (int) ((numValues + valuesPerChunk - 1) / valuesPerChunk);
+            chunks = new DoubleBuffer[numChunks];
+            for(int i = 0; i < numChunks; i++) {
+                final long start = i * valuesPerChunk;
+                final long size = Math.min(valuesPerChunk, numValues - start);
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + start * Double.BYTES,
+                        size * Double.BYTES).asDoubleBuffer();
+            }
+        } catch(IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copy values out of the mapping, crossing chunk boundaries where necessary.
+     */
+    private void read(long position, double[] dest, int destPos, int length) {
+        while(length > 0) {
+            final int chunk = (int) (position / valuesPerChunk);
+            final int chunkPos = (int) (position % valuesPerChunk);
+            final int count = (int) Math.min(length, valuesPerChunk - chunkPos);
+            // duplicate so concurrent readers don't share a position
+            final DoubleBuffer buffer = chunks[chunk].duplicate();
+            buffer.position(chunkPos);
+            buffer.get(dest, destPos, count);
+            position += count;
+            destPos += count;
+            length -= count;
+        }
+    }
+
+    public int numInstances() {
+        return labelIndexes.length;
+    }
+
+    public int getNumDimensions(int instIndex) {
+        return lengths[instIndex].length;
+    }
+
+    public int getSeriesLength(int instIndex, int dim) {
+        return lengths[instIndex][dim];
+    }
+
+    public String getProblemName() {
+        return problemName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String[] getClassLabels() {
+        return classLabels;
+    }
+
+    /**
+     * Read a single dimension of a single instance from the mapping.
+     * @param instIndex
+     * @param dim
+     * @return TimeSeries
+     */
+    public TimeSeries getSeries(int instIndex, int dim) {
+        long position = instanceOffsets[instIndex];
+        for(int j = 0; j < dim; j++) {
+            position += lengths[instIndex][j];
+        }
+        final double[] values = new double[lengths[instIndex][dim]];
+        read(position, values, 0, values.length);
+        return TimeSeries.wrap(values);
+    }
+
+    /**
+     * Read a single instance from the mapping.
+     * @param instIndex
+     * @return TimeSeriesInstance
+     */
+    public TimeSeriesInstance getInstance(int instIndex) {
+        final List<TimeSeries> dimensions = new ArrayList<>(getNumDimensions(instIndex));
+        for(int j = 0; j < getNumDimensions(instIndex); j++) {
+            dimensions.add(getSeries(instIndex, j));
+        }
+        return new TimeSeriesInstance(dimensions, labelIndexes[instIndex], targetValues[instIndex]);
+    }
+
+    /**
+     * Read every instance. All values are bulk copied out of the mapping into a single array which backs every series.
+     * @return TimeSeriesInstances
+     */
+    public TimeSeriesInstances GetInstances() {
+        if(instances != null) {
+            return instances;
+        }
+        if(numValues > Integer.MAX_VALUE) {
+            throw new IllegalStateException("too many values to read at once: " + numValues + ", use getInstance");
+        }
+        final double[] values = new double[(int) numValues];
+        read(0, values, 0, values.length);
+        final List<TimeSeriesInstance> insts = new ArrayList<>(numInstances());
+        boolean columnar = numInstances() > 0;
+        for(int i = 0; i < numInstances(); i++) {
+            final List<TimeSeries> dimensions = new ArrayList<>(lengths[i].length);
+            int offset = (int) instanceOffsets[i];
+            for(int length : lengths[i]) {
+                dimensions.add(TimeSeries.wrap(values, offset, length));
+                offset += length;
+                columnar &= length == lengths[0][0];
+            }
+            columnar &= lengths[i].length == lengths[0].length;
+            insts.add(new TimeSeriesInstance(dimensions, labelIndexes[i], targetValues[i]));
+        }
+        instances = columnar ? TimeSeriesInstances.ofColumnar(values, insts, classLabels)
+                            : new TimeSeriesInstances(insts, classLabels);
+        instances.setProblemName(problemName);
+        instances.setDescription(description);
+        return instances;
+    }
+
+    /**
+     * Release the file. Values already read remain valid.
+     * @throws IOException
+     */
+    @Override public void close() throws IOException {
+        channel.close();
+    }
+}
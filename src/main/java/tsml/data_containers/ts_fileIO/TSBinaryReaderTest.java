@@ -0,0 +1,107 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TSBinaryReaderTest {
+
+    private File file;
+    private String[] classLabels;
+
+    @Before
+    public void before() throws IOException {
+        file = File.createTempFile("tsml", TSBinaryReader.EXTENSION);
+        classLabels = new String[] {"A", "B"};
+    }
+
+    @After
+    public void after() {
+        file.delete();
+    }
+
+    private TimeSeriesInstances roundTrip(TimeSeriesInstances data) throws IOException {
+        final TSWriter writer = new TSWriter(file);
+        writer.setData(data);
+        writer.writeBinaryBatch();
+        try(TSBinaryReader reader = new TSBinaryReader(file)) {
+            return reader.GetInstances();
+        }
+    }
+
+    @Test
+    public void testEqualLength() throws IOException {
+        final TimeSeriesInstances data = new TimeSeriesInstances(new double[][][] {
+                {{1, 2, 3}, {4, 5, Double.NaN}},
+                {{7, 8, 9}, {10, 11, 12}}
+        }, new int[] {1, 0}, classLabels);
+        data.setProblemName("equal");
+        final TimeSeriesInstances read = roundTrip(data);
+        assertEquals(data, read);
+        assertTrue(read.isColumnar());
+        assertEquals("equal", read.getProblemName());
+        assertArrayEquals(classLabels, read.getClassLabels());
+        assertTrue(read.hasMissing());
+    }
+
+    @Test
+    public void testUnequalLength() throws IOException {
+        final TimeSeriesInstances data = new TimeSeriesInstances(new double[][][] {
+                {{1, 2, 3}},
+                {{7, 8}}
+        }, new int[] {0, 1}, classLabels);
+        final TimeSeriesInstances read = roundTrip(data);
+        assertEquals(data, read);
+        assertFalse(read.isColumnar());
+    }
+
+    @Test
+    public void testSingleInstance() throws IOException {
+        final TimeSeriesInstances data = new TimeSeriesInstances(new double[][][] {
+                {{1, 2, 3}, {4, 5}},
+                {{7, 8, 9}, {10}}
+        }, new int[] {0, 1}, classLabels);
+        final TSWriter writer = new TSWriter(file);
+        writer.setData(data);
+        writer.writeBinaryBatch();
+        try(TSBinaryReader reader = new TSBinaryReader(file)) {
+            assertEquals(2, reader.numInstances());
+            assertEquals(1, reader.getSeriesLength(1, 1));
+            final TimeSeriesInstance inst = reader.getInstance(1);
+            assertEquals(data.get(1), inst);
+            assertArrayEquals(new double[] {10}, reader.getSeries(1, 1).toValueArray(), 0d);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotBinary() throws IOException {
+        Files.write(file.toPath(), Arrays.asList("@problemName x", "@data"));
+        new TSBinaryReader(file);
+    }
+}
@@ -22,15 +22,26 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StreamTokenizer;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import utilities.generic_storage.Pair;
 
 /**
  * File for reading sktime format data into TimeSeriesInstances object
+ *
+ * The whole file is read on construction. Alternatively, use TSReader.streaming to read only the header up front and
+ * then stream / iterate / batch the instances as they are parsed, so files larger than the heap can be processed.
  * 
  * @author Aaron Bostrom, pushed 22/4/2020
  */
@@ -63,16 +74,37 @@ public class TSReader {
 
     private List<Double> raw_labels;
 
+    // whether any instances have been read from the data section, which can only be done once
+    private boolean consumed = false;
+
     public TSReader(Reader reader) throws IOException {
+        this(reader, true);
+    }
+
+    private TSReader(Reader reader, boolean readAll) throws IOException {
         m_Tokenizer = new StreamTokenizer(reader);
         initTokenizer();
 
         readHeader();
 
-        CreateTimeSeriesInstances();
+        if(readAll) {
+            CreateTimeSeriesInstances();
+        }
+    }
+
+    /**
+     * Create a reader which only reads the header. Instances are then read on demand through iterator, stream or
+     * batches, rather than all being held in memory at once. GetInstances can still be used to read everything.
+     * @param reader
+     * @return TSReader
+     * @throws IOException
+     */
+    public static TSReader streaming(Reader reader) throws IOException {
+        return new TSReader(reader, false);
     }
 
     private void CreateTimeSeriesInstances() throws IOException {
+        checkNotConsumed();
         raw_data = new ArrayList<>();
         raw_labels = new ArrayList<>();
 
@@ -92,9 +124,119 @@ public class TSReader {
     }
 
     public TimeSeriesInstances GetInstances() {
+        if(m_data == null) {
+            try {
+                CreateTimeSeriesInstances();
+            } catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
         return m_data;
     }
 
+    public String getProblemName() {
+        return problemName;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return String[] the class labels declared in the header
+     */
+    public String[] getClassLabels() {
+        return classLabels == null ? TimeSeriesInstances.EMPTY_CLASS_LABELS : classLabels.toArray(new String[0]);
+    }
+
+    private void checkNotConsumed() {
+        if(consumed) {
+            throw new IllegalStateException("instances have already been read");
+        }
+        consumed = true;
+    }
+
+    /**
+     * Iterate over the instances, parsing each one as it is requested. Only one pass over the data can be made.
+     * Parse errors are thrown as UncheckedIOException.
+     * @return Iterator<TimeSeriesInstance>
+     */
+    public Iterator<TimeSeriesInstance> iterator() {
+        checkNotConsumed();
+        return new Iterator<TimeSeriesInstance>() {
+            private TimeSeriesInstance next = read();
+
+            private TimeSeriesInstance read() {
+                try {
+                    final Pair<List<List<Double>>, Double> multi_series_and_label = readMultivariateInstance();
+                    if(multi_series_and_label == null) {
+                        return null;
+                    }
+                    // same as how TimeSeriesInstances builds each instance from raw data
+                    return new TimeSeriesInstance(multi_series_and_label.var1,
+                            TimeSeriesInstance.discretiseLabelIndex(multi_series_and_label.var2));
+                } catch(IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override public TimeSeriesInstance next() {
+                if(next == null) {
+                    throw new NoSuchElementException();
+                }
+                final TimeSeriesInstance current = next;
+                next = read();
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Stream the instances, parsing each one as it is consumed. Only one pass over the data can be made.
+     * @return Stream<TimeSeriesInstance>
+     */
+    public Stream<TimeSeriesInstance> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Iterate over the instances in fixed size batches (the last may be smaller), parsing each batch as it is
+     * requested. Each batch carries the class labels, problem name and description from the header.
+     * @param batchSize
+     * @return Iterator<TimeSeriesInstances>
+     */
+    public Iterator<TimeSeriesInstances> batches(int batchSize) {
+        if(batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        final Iterator<TimeSeriesInstance> iterator = iterator();
+        final String[] labels = getClassLabels();
+        return new Iterator<TimeSeriesInstances>() {
+            @Override public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override public TimeSeriesInstances next() {
+                final List<TimeSeriesInstance> batch = new ArrayList<>(batchSize);
+                while(batch.size() < batchSize && iterator.hasNext()) {
+                    batch.add(iterator.next());
+                }
+                if(batch.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                final TimeSeriesInstances insts = new TimeSeriesInstances(batch, labels);
+                insts.setProblemName(problemName);
+                insts.setDescription(description);
+                return insts;
+            }
+        };
+    }
+
     private Pair<List<List<Double>>, Double> readMultivariateInstance() throws IOException {
         getFirstToken();
         if (m_Tokenizer.ttype == StreamTokenizer.TT_EOF) {
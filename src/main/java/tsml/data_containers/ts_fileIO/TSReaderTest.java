@@ -0,0 +1,82 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TSReaderTest {
+
+    private static final String DATA = "@problemName test\n" +
+                                       "@timeStamps false\n" +
+                                       "@univariate false\n" +
+                                       "@classLabel true a b\n" +
+                                       "@data\n" +
+                                       "1,2,3:4,5,6:a\n" +
+                                       "7,8,9:10,11,12:b\n" +
+                                       "13,14,15:16,17,18:b\n";
+
+    private TimeSeriesInstances readAll() throws IOException {
+        return new TSReader(new StringReader(DATA)).GetInstances();
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        final TSReader reader = TSReader.streaming(new StringReader(DATA));
+        assertEquals("test", reader.getProblemName());
+        assertArrayEquals(new String[] {"a", "b"}, reader.getClassLabels());
+        final List<TimeSeriesInstance> insts = reader.stream().collect(Collectors.toList());
+        assertEquals(readAll().getAll(), insts);
+    }
+
+    @Test
+    public void testBatches() throws IOException {
+        final Iterator<TimeSeriesInstances> batches = TSReader.streaming(new StringReader(DATA)).batches(2);
+        final List<TimeSeriesInstances> read = new ArrayList<>();
+        batches.forEachRemaining(read::add);
+        assertEquals(2, read.size());
+        assertEquals(2, read.get(0).numInstances());
+        assertEquals(1, read.get(1).numInstances());
+        assertArrayEquals(new String[] {"a", "b"}, read.get(1).getClassLabels());
+        final TimeSeriesInstances all = readAll();
+        assertEquals(all.get(2), read.get(1).get(0));
+        assertEquals(1, read.get(1).get(0).getLabelIndex());
+    }
+
+    @Test
+    public void testStreamingGetInstances() throws IOException {
+        assertEquals(readAll(), TSReader.streaming(new StringReader(DATA)).GetInstances());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSinglePass() throws IOException {
+        final TSReader reader = TSReader.streaming(new StringReader(DATA));
+        reader.iterator();
+        reader.iterator();
+    }
+}
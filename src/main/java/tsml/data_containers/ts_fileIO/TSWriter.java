@@ -27,6 +27,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.Arrays;
 
@@ -38,6 +39,7 @@ public class TSWriter {
 
     TimeSeriesInstances data;
     BufferedWriter writer;
+    OutputStream output;
 
     public void setData(TimeSeriesInstances dat){
         data = dat;
@@ -46,6 +48,7 @@ public class TSWriter {
     DecimalFormat df = new DecimalFormat();
 
     public void setDestination(OutputStream output) {
+        this.output = output;
         writer = new BufferedWriter(new OutputStreamWriter(output));
     }
 
@@ -101,4 +104,55 @@ public class TSWriter {
         outW.print(sb.toString());
         outW.close();
     }
+
+    /**
+     * Write the data in the binary format read by TSBinaryReader. Values are written as raw doubles so they can be
+     * memory mapped back in without any parsing.
+     *
+     * Layout (big endian):
+     * magic, version, problem name, description, class labels, number of instances, then per instance its label
+     * index, target value, number of dimensions and the length of each dimension. The values follow, starting on an 8
+     * byte boundary, instance by instance, dimension by dimension. Strings are written as an int byte count followed
+     * by UTF-8 bytes.
+     * @throws IOException
+     */
+    public void writeBinaryBatch() throws IOException {
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output))) {
+            out.writeInt(TSBinaryReader.MAGIC);
+            out.writeInt(TSBinaryReader.VERSION);
+            writeBinaryString(out, data.getProblemName());
+            writeBinaryString(out, data.getDescription());
+            final String[] classLabels = data.getClassLabels();
+            out.writeInt(classLabels.length);
+            for(String classLabel : classLabels) {
+                writeBinaryString(out, classLabel);
+            }
+            out.writeInt(data.numInstances());
+            for(TimeSeriesInstance inst : data) {
+                out.writeInt(inst.getLabelIndex());
+                out.writeDouble(inst.getTargetValue());
+                out.writeInt(inst.getNumDimensions());
+                for(TimeSeries ts : inst) {
+                    out.writeInt(ts.getSeriesLength());
+                }
+            }
+            // pad so the values can be mapped as aligned doubles
+            while(out.size() % Double.BYTES != 0) {
+                out.writeByte(0);
+            }
+            for(TimeSeriesInstance inst : data) {
+                for(TimeSeries ts : inst) {
+                    for(int i = 0; i < ts.getSeriesLength(); i++) {
+                        out.writeDouble(ts.getValue(i));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeBinaryString(DataOutputStream out, String str) throws IOException {
+        final byte[] bytes = (str == null ? "" : str).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
 }
\ No newline at end of file
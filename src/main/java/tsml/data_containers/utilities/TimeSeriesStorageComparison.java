@@ -0,0 +1,117 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.utilities;
+
+import com.google.common.testing.GcFinalization;
+import tsml.data_containers.TimeSeries;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Rough memory / throughput comparison between the primitive array backed TimeSeries and the boxed List<Double>
+ * representation it replaced. Run with a fixed heap (e.g. -Xmx4g) for stable numbers.
+ *
+ * Usage: TimeSeriesStorageComparison [numSeries] [seriesLength] [windowLength]
+ */
+public class TimeSeriesStorageComparison {
+
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) {
+        final int numSeries = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int seriesLength = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        final int windowLength = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        final Random random = new Random(0);
+        final double[][] raw = new double[numSeries][seriesLength];
+        for(double[] series : raw) {
+            for(int i = 0; i < series.length; i++) {
+                series[i] = random.nextGaussian();
+            }
+        }
+
+        long before = usedMemory();
+        final List<List<Double>> boxed = new ArrayList<>(numSeries);
+        for(double[] series : raw) {
+            final List<Double> list = new ArrayList<>(series.length);
+            for(double value : series) {
+                list.add(value);
+            }
+            boxed.add(list);
+        }
+        final long boxedBytes = usedMemory() - before;
+
+        before = usedMemory();
+        final List<TimeSeries> primitive = new ArrayList<>(numSeries);
+        for(double[] series : raw) {
+            primitive.add(new TimeSeries(series));
+        }
+        final long primitiveBytes = usedMemory() - before;
+
+        System.out.println(numSeries + " series of length " + seriesLength);
+        System.out.println("boxed heap: " + boxedBytes / 1024 + "KB");
+        System.out.println("primitive heap: " + primitiveBytes / 1024 + "KB");
+
+        // the boxed timings replicate what TimeSeries used to do: stream and unbox on every call
+        double checksum = 0;
+        long timeStamp = System.nanoTime();
+        for(List<Double> list : boxed) {
+            checksum += list.stream().mapToDouble(Double::doubleValue).toArray()[0];
+        }
+        System.out.println("boxed toValueArray: " + (System.nanoTime() - timeStamp) / 1000 + "us");
+        timeStamp = System.nanoTime();
+        for(TimeSeries series : primitive) {
+            checksum += series.toValueArray()[0];
+        }
+        System.out.println("primitive toValueArray: " + (System.nanoTime() - timeStamp) / 1000 + "us");
+
+        timeStamp = System.nanoTime();
+        for(List<Double> list : boxed) {
+            for(int start = 0; start + windowLength <= seriesLength; start += windowLength) {
+                checksum += list.subList(start, start + windowLength).stream().mapToDouble(Double::doubleValue).toArray()[0];
+            }
+        }
+        System.out.println("boxed getSlidingWindowArray: " + (System.nanoTime() - timeStamp) / 1000 + "us");
+        timeStamp = System.nanoTime();
+        for(TimeSeries series : primitive) {
+            for(int start = 0; start + windowLength <= seriesLength; start += windowLength) {
+                checksum += series.getSlidingWindowArray(start, start + windowLength)[0];
+            }
+        }
+        System.out.println("primitive getSlidingWindowArray: " + (System.nanoTime() - timeStamp) / 1000 + "us");
+
+        timeStamp = System.nanoTime();
+        for(TimeSeries series : primitive) {
+            for(int start = 0; start + windowLength <= seriesLength; start += windowLength) {
+                checksum += series.getVSlice(start, start + windowLength).getValue(0);
+            }
+        }
+        System.out.println("primitive getVSlice (view): " + (System.nanoTime() - timeStamp) / 1000 + "us");
+        // print the checksum so the jit can't eliminate the loops above
+        System.out.println("checksum: " + checksum);
+    }
+
+    private static long usedMemory() {
+        GcFinalization.awaitFullGc();
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -22,9 +22,6 @@ import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
 import utilities.InstanceTools;
 
-import org.apache.commons.math3.complex.Complex;
-import org.apache.commons.math3.transform.DftNormalization;
-import org.apache.commons.math3.transform.FastFourierTransformer;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
@@ -33,7 +30,6 @@ import weka.core.Instances;
 import java.util.ArrayList;
 
 import static experiments.data.DatasetLoading.loadDataNullable;
-import static org.apache.commons.math3.transform.TransformType.FORWARD;
 
 public class AudioFeatures implements Transformer {
 
@@ -81,13 +77,8 @@ public class AudioFeatures implements Transformer {
 
         int nfft = fs;
         nfft = nearestPowerOF2(nfft);
-        Complex[] complexData = new Complex[nfft];
+        double[] complexData = new double[nfft];
         double[] spectralMag = new double[nfft / 2];
-        FastFourierTransformer fft = new FastFourierTransformer(DftNormalization.STANDARD);
-
-        for (int i = 0; i < complexData.length; i++) {
-            complexData[i] = new Complex(0.0, 0.0);
-        }
 
         double mean = 0;
         if (series.length < nfft) {
@@ -99,15 +90,16 @@ public class AudioFeatures implements Transformer {
 
         for (int i = 0; i < nfft; i++) {
             if (i < series.length)
-                complexData[i] = new Complex(series[i], 0);
+                complexData[i] = series[i];
             else
-                complexData[i] = new Complex(mean, 0);
+                complexData[i] = mean;
         }
 
-        complexData = fft.transform(complexData, FORWARD);
+        double[] spectrum = new double[nfft == 1 ? 2 : nfft + 2];
+        FFT.Plan.forLength(nfft).realForward(complexData, spectrum);
 
         for (int i = 0; i < (nfft / 2); i++) {
-            spectralMag[i] = complexData[i].abs();
+            spectralMag[i] = Math.sqrt(spectrum[2 * i] * spectrum[2 * i] + spectrum[2 * i + 1] * spectrum[2 * i + 1]);
         }
 
 
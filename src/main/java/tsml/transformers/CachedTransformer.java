@@ -18,8 +18,8 @@
 package tsml.transformers;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
@@ -34,7 +34,8 @@ import weka.core.Instances;
 /**
  * Purpose: cache the filtering operation using a map. Note, the instances must
  * be hashed first to use the cache reliably otherwise issues occur with
- * instance copying changing the hashcode due to memory locations.
+ * instance copying changing the hashcode due to memory locations. The cache may be shared between threads, e.g.
+ * trees of a forest being built in parallel.
  * <p>
  * Contributors: goastler, abostrom
  */
@@ -45,7 +46,7 @@ public class CachedTransformer extends BaseTrainableTransformer {
             this.instance = instance;
         }
 
-        private Instance instance;
+        private volatile Instance instance;
 
         public Instance getInstance() {
             return instance;
@@ -63,7 +64,7 @@ public class CachedTransformer extends BaseTrainableTransformer {
     private boolean cacheFittedDataOnly;
 
     // the cache to store instances against their corresponding transform output
-    private Map<Instance, TransformedInstance> cache;
+    private volatile Map<Instance, TransformedInstance> cache;
 
     public CachedTransformer(final Transformer transformer) {
         setTransformer(transformer);
@@ -92,7 +93,7 @@ public class CachedTransformer extends BaseTrainableTransformer {
     public void reset() {
         super.reset();
         cache = null;
-        ts_cache = new HashMap<>();
+        ts_cache = new ConcurrentHashMap<>();
     }
 
     @Override
@@ -103,10 +104,12 @@ public class CachedTransformer extends BaseTrainableTransformer {
         // . Load factor of 1 should mean if no more than data size instances are added,
         // the hashmap will not expand
         // and waste cpu time
-        cache = new HashMap<>(data.size(), 1);
+        // populate the new cache before publishing it to any other threads transforming
+        final Map<Instance, TransformedInstance> cache = new ConcurrentHashMap<>(data.size(), 1);
         for (final Instance instance : data) {
             cache.put(instance, new TransformedInstance(null));
         }
+        this.cache = cache;
     }
 
     @Override
@@ -135,11 +138,13 @@ public class CachedTransformer extends BaseTrainableTransformer {
         if(!isFit()) {
             throw new IllegalStateException("must be fitted first");
         }
-        TransformedInstance transformedInstance = cache.get(instance);
+        final Map<Instance, TransformedInstance> cache = this.cache;
+        // another thread may be part way through fitting, in which case skip the cache
+        TransformedInstance transformedInstance = cache == null ? null : cache.get(instance);
         Instance transform;
         if(transformedInstance == null) {
             transform = transformer.transform(instance);
-            if(!cacheFittedDataOnly) {
+            if(!cacheFittedDataOnly && cache != null) {
                 cache.put(instance, new TransformedInstance(transform));
             }
         } else {
@@ -155,11 +160,7 @@ public class CachedTransformer extends BaseTrainableTransformer {
     @Override
     public TimeSeriesInstance transform(TimeSeriesInstance inst) {
         // if the key is not in the map, transform and store it.
-        if (!ts_cache.containsKey(inst)) {
-            ts_cache.put(inst, transformer.transform(inst));
-        }
-
-        return ts_cache.get(inst);
+        return ts_cache.computeIfAbsent(inst, transformer::transform);
     }
 
     @Override
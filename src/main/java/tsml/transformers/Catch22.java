@@ -17,6 +17,7 @@
 
 package tsml.transformers;
 
+import tsml.classifiers.MultiThreadable;
 import utilities.GenericTools;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
@@ -25,6 +26,11 @@ import weka.core.Instances;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
@@ -46,9 +52,13 @@ import static utilities.Utilities.extractTimeSeries;
  * Implementation based on C and Matlab code provided on authors github:
  * https://github.com/chlubba/catch22
  *
+ * Intermediate results such as the Fourier transform and autocorrelation of a series are found once and shared by all
+ * features which use them. getSummaryStats finds a subset of the features for a batch of series, such as the intervals
+ * of a series, and splits the batch between threads with enableMultiThreading.
+ *
  * @author Matthew Middlehurst
  */
-public class Catch22 implements Transformer {
+public class Catch22 implements Transformer, MultiThreadable {
 
     // z-norm before transform
     private boolean norm = false;
@@ -58,13 +68,10 @@ public class Catch22 implements Transformer {
 
     // for summary stat by index
     private int currentSeriesIndex = Integer.MIN_VALUE;
-    private double idxMin;
-    private double idxMax;
-    private double idxMean;
-    private FFT.Complex[] idxFFT;
-    private double[] idxAC;
-    private double[] idxOutlierSeries;
-    private double[] idxSeries;
+    private transient Intermediates currentSeries;
+
+    private int numThreads = 1;
+    private transient ExecutorService executor;
 
     public Catch22() {
     }
@@ -77,6 +84,15 @@ public class Catch22 implements Transformer {
         this.outlierNorm = b;
     }
 
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        this.numThreads = Math.max(1, numThreads);
+    }
+
     @Override
     public Instance transform(Instance inst) {
         double[] arr = extractTimeSeries(inst);
@@ -119,79 +135,11 @@ public class Catch22 implements Transformer {
         int atts = classValue == Double.MIN_VALUE ? 22 : 23;
         double[] featureSet = new double[atts];
 
-        double[] arr;
-        double[] outlierArr;
-        if (norm) {
-            arr = new double[series.length];
-            System.arraycopy(series, 0, arr, 0, series.length);
-            zNormalise(arr);
-            outlierArr = arr;
-        } else if (outlierNorm) {
-            arr = series;
-            outlierArr = new double[series.length];
-            System.arraycopy(series, 0, outlierArr, 0, series.length);
-            zNormalise(outlierArr);
-        } else {
-            arr = series;
-            outlierArr = series;
+        Intermediates s = new Intermediates(series);
+        for (int i = 0; i < 22; i++) {
+            featureSet[i] = s.feature(i);
         }
 
-        // can reduce amount of computation by pre-computing stats and transforms
-        double min = Double.MAX_VALUE;
-        double max = Double.MIN_VALUE;
-        for (int i = 0; i < arr.length; i++) {
-            if (arr[i] < min) {
-                min = arr[i];
-            }
-            if (arr[i] > max) {
-                max = arr[i];
-            }
-        }
-
-        double mean = mean(arr);
-
-        int length = (int) FFT.MathsPower2.roundPow2((float) arr.length);
-        if (length < arr.length)
-            length *= 2;
-        FFT.Complex[] fft = new FFT.Complex[length];
-        for (int i = 0; i < arr.length; i++) {
-            fft[i] = new FFT.Complex(arr[i] - mean, 0);
-        }
-        for (int i = arr.length; i < length; i++) {
-            fft[i] = new FFT.Complex(0, 0);
-        }
-        FFT t = new FFT();
-        t.fft(fft, length);
-
-        FFT.Complex[] fftClone = new FFT.Complex[length];
-        for (int i = 0; i < length; i++) {
-            fftClone[i] = (FFT.Complex) fft[i].clone();
-        }
-        double[] ac = autoCorr(arr, fftClone);
-
-        featureSet[0] = histMode5DN(arr, min, max);
-        featureSet[1] = histMode10DN(arr, min, max);
-        featureSet[2] = binaryStatsMeanLongstretch1SB(arr, mean);
-        featureSet[3] = outlierIncludeP001mdrmdDN(outlierArr);
-        featureSet[4] = outlierIncludeN001mdrmdDN(outlierArr);
-        featureSet[5] = f1ecacCO(ac);
-        featureSet[6] = firstMinacCO(ac);
-        featureSet[7] = summariesWelchRectArea51SP(arr, fft);
-        featureSet[8] = summariesWelchRectCentroidSP(arr, fft);
-        featureSet[9] = localSimpleMean3StderrFC(arr);
-        featureSet[10] = trev1NumCO(arr);
-        featureSet[11] = histogramAMIeven25CO(arr, min, max);
-        featureSet[12] = autoMutualInfoStats40GaussianFmmiIN(ac);
-        featureSet[13] = hrvClassicPnn40MD(arr);
-        featureSet[14] = binaryStatsDiffLongstretch0SB(arr);
-        featureSet[15] = motifThreeQuantileHhSB(arr);
-        featureSet[16] = localSimpleMean1TauresratFC(arr, ac);
-        featureSet[17] = embed2DistTauDExpfitMeandiffCO(arr, ac);
-        featureSet[18] = fluctAnal2Dfa5012LogiPropR1SC(arr);
-        featureSet[19] = fluctAnal2Rsrangefit501LogiPropR1SC(arr);
-        featureSet[20] = transitionMatrix3acSumdiagcovSB(arr, ac);
-        featureSet[21] = periodicityWangTh001PD(arr);
-
         if (classValue > Double.MIN_VALUE) featureSet[22] = classValue;
 
         for (int i = 0; i < featureSet.length; i++){
@@ -203,162 +151,221 @@ public class Catch22 implements Transformer {
         return featureSet;
     }
 
+    /**
+     * Transform a batch of series, split between threads if multi threading is enabled.
+     *
+     * @param series the series to transform
+     * @return the 22 features of series i at [i], as transform(double[])
+     */
+    public double[][] transform(double[][] series) {
+        double[][] out = new double[series.length][];
+        forBlocks(series.length, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                out[i] = transform(series[i]);
+            }
+        });
+        return out;
+    }
+
     public double getSummaryStatByIndex(int summaryStatIndex, int seriesIndex, double[] series) throws Exception {
-        if (seriesIndex != currentSeriesIndex) {
+        if (seriesIndex != currentSeriesIndex || currentSeries == null) {
             currentSeriesIndex = seriesIndex;
-            idxMin = Double.MAX_VALUE;
-            idxMax = Double.MIN_VALUE;
-            idxMean = Double.MIN_VALUE;
-            idxFFT = null;
-            idxAC = null;
-            idxOutlierSeries = null;
+            currentSeries = new Intermediates(series);
+        }
+
+        return currentSeries.feature(summaryStatIndex);
+    }
+
+    /**
+     * Find a subset of the features for each of a batch of series, split between threads if multi threading is
+     * enabled. Unlike transform, NaN and infinite values are returned as found, as with getSummaryStatByIndex.
+     *
+     * @param series the series to transform, a series with no features requested may be null
+     * @param features the indices of the features to find for each series, as in getSummaryStatByIndex
+     * @return the value of feature features[i][j] of series i at [i][j]
+     * @throws Exception if a feature index is invalid
+     */
+    public double[][] getSummaryStats(double[][] series, int[][] features) throws Exception {
+        double[][] out = new double[series.length][];
+        forBlocks(series.length, (start, end) -> {
+            for (int i = start; i < end; i++) {
+                out[i] = new double[features[i].length];
+                if (features[i].length == 0)
+                    continue;
+
+                Intermediates s = new Intermediates(series[i]);
+                for (int j = 0; j < features[i].length; j++) {
+                    out[i][j] = s.feature(features[i][j]);
+                }
+            }
+        });
+        return out;
+    }
 
+    private void forBlocks(int size, Block block) {
+        int threads = Math.min(numThreads, Math.max(1, size));
+        if (threads == 1) {
+            block.run(0, size);
+            return;
+        }
+
+        if (executor == null) {
+            // daemon threads so an unused transformer never holds the jvm open
+            executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int start = (int) ((long) size * t / threads);
+            int end = (int) ((long) size * (t + 1) / threads);
+            futures.add(executor.submit(() -> block.run(start, end)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private interface Block {
+        void run(int start, int end);
+    }
+
+    /**
+     * A series and the intermediate results shared between its features, each found when first needed.
+     */
+    private class Intermediates {
+        private final double[] series;
+        private double[] outlierSeries;
+        private boolean hasRange = false;
+        private double min = Double.MAX_VALUE;
+        private double max = Double.MIN_VALUE;
+        private boolean hasMean = false;
+        private double mean;
+        private double[] spectrum;
+        private double[] ac;
+
+        private Intermediates(double[] series) {
             if (norm) {
-                idxSeries = new double[series.length];
-                System.arraycopy(series, 0, idxSeries, 0, series.length);
-                zNormalise(idxSeries);
+                this.series = new double[series.length];
+                System.arraycopy(series, 0, this.series, 0, series.length);
+                zNormalise(this.series);
             } else {
-                idxSeries = series;
-            }
-        }
-
-        switch (summaryStatIndex) {
-            case 0:
-            case 1:
-            case 11:
-                if (idxMin == Double.MAX_VALUE) {
-                    for (int i = 0; i < idxSeries.length; i++) {
-                        if (idxSeries[i] < idxMin) {
-                            idxMin = idxSeries[i];
-                        }
-                        if (idxSeries[i] > idxMax) {
-                            idxMax = idxSeries[i];
-                        }
-                    }
-                }
-                break;
-            case 2:
-                if (idxMean == Double.MIN_VALUE) {
-                    idxMean = mean(idxSeries);
-                }
-                break;
-            case 3:
-            case 4:
-                if (idxOutlierSeries == null) {
-                    if (outlierNorm && !norm) {
-                        idxOutlierSeries = new double[idxSeries.length];
-                        for (int i = 0; i < idxSeries.length; i++) {
-                            idxOutlierSeries[i] = idxSeries[i];
-                        }
-                        zNormalise(idxOutlierSeries);
-                    } else {
-                        idxOutlierSeries = idxSeries;
-                    }
+                this.series = series;
+            }
+        }
+
+        private double[] outlierSeries() {
+            if (outlierSeries == null) {
+                if (outlierNorm && !norm) {
+                    outlierSeries = new double[series.length];
+                    System.arraycopy(series, 0, outlierSeries, 0, series.length);
+                    zNormalise(outlierSeries);
+                } else {
+                    outlierSeries = series;
                 }
-                break;
-            case 7:
-            case 8:
-                if (idxFFT == null) {
-                    if (idxMean == Double.MIN_VALUE) {
-                        idxMean = mean(idxSeries);
-                    }
+            }
+            return outlierSeries;
+        }
 
-                    int length = (int) FFT.MathsPower2.roundPow2((float) idxSeries.length);
-                    if (length < idxSeries.length)
-                        length *= 2;
-                    idxFFT = new FFT.Complex[length];
-                    for (int i = 0; i < idxSeries.length; i++) {
-                        idxFFT[i] = new FFT.Complex(idxSeries[i] - idxMean, 0);
+        private void findRange() {
+            if (!hasRange) {
+                for (int i = 0; i < series.length; i++) {
+                    if (series[i] < min) {
+                        min = series[i];
                     }
-                    for (int i = idxSeries.length; i < length; i++) {
-                        idxFFT[i] = new FFT.Complex(0, 0);
+                    if (series[i] > max) {
+                        max = series[i];
                     }
-                    FFT t = new FFT();
-                    t.fft(idxFFT, length);
                 }
-                break;
-            case 5:
-            case 6:
-            case 12:
-            case 16:
-            case 17:
-            case 20:
-                if (idxAC == null) {
-                    if (idxFFT == null) {
-                        if (idxMean == Double.MIN_VALUE) {
-                            idxMean = mean(idxSeries);
-                        }
-
-                        int length = (int) FFT.MathsPower2.roundPow2((float) idxSeries.length);
-                        if (length < idxSeries.length)
-                            length *= 2;
-                        idxFFT = new FFT.Complex[length];
-                        for (int i = 0; i < idxSeries.length; i++) {
-                            idxFFT[i] = new FFT.Complex(idxSeries[i] - idxMean, 0);
-                        }
-                        for (int i = idxSeries.length; i < length; i++) {
-                            idxFFT[i] = new FFT.Complex(0, 0);
-                        }
-                        FFT t = new FFT();
-                        t.fft(idxFFT, length);
-                    }
+                hasRange = true;
+            }
+        }
 
-                    FFT.Complex[] fftClone = new FFT.Complex[idxFFT.length];
-                    for (int i = 0; i < idxFFT.length; i++) {
-                        fftClone[i] = (FFT.Complex) idxFFT[i].clone();
-                    }
-                    idxAC = autoCorr(idxSeries, fftClone);
-                }
-                break;
-        }
-
-        switch (summaryStatIndex) {
-            case 0:
-                return histMode5DN(idxSeries, idxMin, idxMax);
-            case 1:
-                return histMode10DN(idxSeries, idxMin, idxMax);
-            case 2:
-                return binaryStatsMeanLongstretch1SB(idxSeries, idxMean);
-            case 3:
-                return outlierIncludeP001mdrmdDN(idxOutlierSeries);
-            case 4:
-                return outlierIncludeN001mdrmdDN(idxOutlierSeries);
-            case 5:
-                return f1ecacCO(idxAC);
-            case 6:
-                return firstMinacCO(idxAC);
-            case 7:
-                return summariesWelchRectArea51SP(idxSeries, idxFFT);
-            case 8:
-                return summariesWelchRectCentroidSP(idxSeries, idxFFT);
-            case 9:
-                return localSimpleMean3StderrFC(idxSeries);
-            case 10:
-                return trev1NumCO(idxSeries);
-            case 11:
-                return histogramAMIeven25CO(idxSeries, idxMin, idxMax);
-            case 12:
-                return autoMutualInfoStats40GaussianFmmiIN(idxAC);
-            case 13:
-                return hrvClassicPnn40MD(idxSeries);
-            case 14:
-                return binaryStatsDiffLongstretch0SB(idxSeries);
-            case 15:
-                return motifThreeQuantileHhSB(idxSeries);
-            case 16:
-                return localSimpleMean1TauresratFC(idxSeries, idxAC);
-            case 17:
-                return embed2DistTauDExpfitMeandiffCO(idxSeries, idxAC);
-            case 18:
-                return fluctAnal2Dfa5012LogiPropR1SC(idxSeries);
-            case 19:
-                return fluctAnal2Rsrangefit501LogiPropR1SC(idxSeries);
-            case 20:
-                return transitionMatrix3acSumdiagcovSB(idxSeries, idxAC);
-            case 21:
-                return periodicityWangTh001PD(idxSeries);
-            default:
-                throw new Exception("Invalid Catch22 summary stat index.");
+        private double seriesMean() {
+            if (!hasMean) {
+                mean = mean(series);
+                hasMean = true;
+            }
+            return mean;
+        }
+
+        private double[] spectrum() {
+            if (spectrum == null) {
+                spectrum = centredSpectrum(series, seriesMean());
+            }
+            return spectrum;
+        }
+
+        private double[] ac() {
+            if (ac == null) {
+                ac = autoCorr(series, spectrum());
+            }
+            return ac;
+        }
+
+        private double feature(int summaryStatIndex) {
+            switch (summaryStatIndex) {
+                case 0:
+                    findRange();
+                    return histMode5DN(series, min, max);
+                case 1:
+                    findRange();
+                    return histMode10DN(series, min, max);
+                case 2:
+                    return binaryStatsMeanLongstretch1SB(series, seriesMean());
+                case 3:
+                    return outlierIncludeP001mdrmdDN(outlierSeries());
+                case 4:
+                    return outlierIncludeN001mdrmdDN(outlierSeries());
+                case 5:
+                    return f1ecacCO(ac());
+                case 6:
+                    return firstMinacCO(ac());
+                case 7:
+                    return summariesWelchRectArea51SP(series, spectrum());
+                case 8:
+                    return summariesWelchRectCentroidSP(series, spectrum());
+                case 9:
+                    return localSimpleMean3StderrFC(series);
+                case 10:
+                    return trev1NumCO(series);
+                case 11:
+                    findRange();
+                    return histogramAMIeven25CO(series, min, max);
+                case 12:
+                    return autoMutualInfoStats40GaussianFmmiIN(ac());
+                case 13:
+                    return hrvClassicPnn40MD(series);
+                case 14:
+                    return binaryStatsDiffLongstretch0SB(series);
+                case 15:
+                    return motifThreeQuantileHhSB(series);
+                case 16:
+                    return localSimpleMean1TauresratFC(series, ac());
+                case 17:
+                    return embed2DistTauDExpfitMeandiffCO(series, ac());
+                case 18:
+                    return fluctAnal2Dfa5012LogiPropR1SC(series);
+                case 19:
+                    return fluctAnal2Rsrangefit501LogiPropR1SC(series);
+                case 20:
+                    return transitionMatrix3acSumdiagcovSB(series, ac());
+                case 21:
+                    return periodicityWangTh001PD(series);
+                default:
+                    throw new IllegalArgumentException("Invalid Catch22 summary stat index.");
+            }
         }
     }
 
@@ -415,17 +422,12 @@ public class Catch22 implements Transformer {
 
     // Time intervals between successive extreme events above the mean
     private static double outlierIncludeP001mdrmdDN(double[] arr) {
-        return outlierInclude(arr);
+        return outlierInclude(arr, 1);
     }
 
     // Time intervals between successive extreme events below the mean
     private static double outlierIncludeN001mdrmdDN(double[] arr) {
-        double[] newArr = new double[arr.length];
-        for (int i = 0; i < arr.length; i++) {
-            newArr[i] = -arr[i];
-        }
-
-        return outlierInclude(newArr);
+        return outlierInclude(arr, -1);
     }
 
     // First 1/e crossing of autocorrelation function
@@ -456,13 +458,13 @@ public class Catch22 implements Transformer {
     }
 
     // Total power in lowest fifth of frequencies in the Fourier power spectrum
-    private static double summariesWelchRectArea51SP(double[] arr, FFT.Complex[] fft) {
-        return summariesWelchRect(arr, false, fft);
+    private static double summariesWelchRectArea51SP(double[] arr, double[] spectrum) {
+        return summariesWelchRect(arr, false, spectrum);
     }
 
     // Centroid of the Fourier power spectrum
-    private static double summariesWelchRectCentroidSP(double[] arr, FFT.Complex[] fft) {
-        return summariesWelchRect(arr, true, fft);
+    private static double summariesWelchRectCentroidSP(double[] arr, double[] spectrum) {
+        return summariesWelchRect(arr, true, spectrum);
     }
 
     // Mean error from a rolling 3-sample mean forecasting
@@ -626,23 +628,7 @@ public class Catch22 implements Transformer {
             return 0;
         double[] res = localSimpleMean(arr, 1);
 
-        int length = (int) FFT.MathsPower2.roundPow2((float) res.length);
-        if (length < res.length)
-            length *= 2;
-
-        FFT.Complex[] fft = new FFT.Complex[length];
-        double mean = mean(res);
-        for (int i = 0; i < res.length; i++) {
-            fft[i] = new FFT.Complex(res[i] - mean, 0);
-        }
-        for (int i = res.length; i < length; i++) {
-            fft[i] = new FFT.Complex(0, 0);
-        }
-
-        FFT t = new FFT();
-        t.fft(fft, length);
-
-        double[] resAc = autoCorr(res, fft);
+        double[] resAc = autoCorr(res, centredSpectrum(res, mean(res)));
 
         return (double) acFirstZero(resAc) / acFirstZero(ac);
     }
@@ -908,11 +894,14 @@ public class Catch22 implements Transformer {
         return maxStretch;
     }
 
-    private static double outlierInclude(double[] arr) {
+    // outliers of the series multiplied by sign. The positions (n + 1) of the values over each threshold are
+    // ascending, so their mean gap and median are found directly rather than from a sorted copy
+    private static double outlierInclude(double[] arr, double sign) {
         double total = 0;
         double threshold = 0;
 
         for (double v : arr) {
+            v *= sign;
             if (v >= 0) {
                 total++;
                 if (v > threshold) {
@@ -931,25 +920,45 @@ public class Catch22 implements Transformer {
         for (int i = 0; i < numThresholds; i++) {
             double d = i * 0.01;
 
-            ArrayList<Double> r = new ArrayList<>(arr.length);
+            int count = 0;
+            double first = 0;
+            double last = 0;
             for (int n = 0; n < arr.length; n++) {
-                if (arr[n] >= d) {
-                    r.add(n + 1.0);
+                if (arr[n] * sign >= d) {
+                    if (count == 0)
+                        first = n + 1.0;
+                    last = n + 1.0;
+                    count++;
                 }
             }
 
-            if (r.size() == 0)
+            if (count == 0)
                 continue;
 
-            double[] diff = new double[r.size() - 1];
-            for (int n = 0; n < diff.length; n++) {
-                diff[n] = r.get(n + 1) - r.get(n);
-            }
+            // the gaps sum to last - first exactly, as all positions are whole numbers
+            means[i] = (last - first) / (count - 1);
+            dists[i] = (count - 1) * 100.0 / total;
 
-            means[i] = mean(diff);
-            dists[i] = diff.length * 100.0 / total;
+            int lowerIdx = (count - 1) / 2;
+            double lower = 0;
+            double upper = 0;
+            int seen = 0;
+            for (int n = 0; n < arr.length; n++) {
+                if (arr[n] * sign >= d) {
+                    if (seen == lowerIdx) {
+                        lower = n + 1.0;
+                        if (count % 2 == 1)
+                            break;
+                    } else if (seen == lowerIdx + 1) {
+                        upper = n + 1.0;
+                        break;
+                    }
+                    seen++;
+                }
+            }
+            double median = count % 2 == 1 ? lower : (lower + upper) / 2;
 
-            medians[i] = median(r, false) / (arr.length / 2.0) - 1;
+            medians[i] = median / (arr.length / 2.0) - 1;
         }
 
         int mj = 0;
@@ -968,64 +977,52 @@ public class Catch22 implements Transformer {
         return median(Arrays.copyOf(medians, trimLimit + 1), false);
     }
 
-    private static double[] autoCorr(double[] arr, FFT.Complex[] fft) {
-        // int length = (int)FFT.MathsPower2.roundPow2((float)arr.length);
-        // if (length < arr.length) length *= 2;
-        //
-        // FFT.Complex[] fft = new FFT.Complex[length];
-        // double mean = mean(arr);
-        // for (int i = 0; i < arr.length; i++){
-        // fft[i] = new FFT.Complex(arr[i]-mean, 0);
-        // }
-        // for (int i = arr.length; i < length; i++){
-        // fft[i] = new FFT.Complex(0,0);
-        // }
-        //
-        FFT t = new FFT();
-        // t.fft(fft, length);
+    // FFT of the mean centred series padded with 0s to a power of 2, the
+    // interleaved real and imaginary parts of terms 0 to length/2
+    private static double[] centredSpectrum(double[] arr, double mean) {
+        FFT.Plan plan = FFT.Plan.forLength(FFT.Plan.paddedLength(arr.length));
+        double[] centred = new double[arr.length];
+        for (int i = 0; i < arr.length; i++) {
+            centred[i] = arr[i] - mean;
+        }
+        double[] spectrum = new double[plan.length() == 1 ? 2 : plan.length() + 2];
+        plan.realForward(centred, spectrum);
+        return spectrum;
+    }
+
+    private static double[] autoCorr(double[] arr, double[] spectrum) {
+        FFT.Plan plan = FFT.Plan.forLength(FFT.Plan.paddedLength(arr.length));
 
-        for (int i = 0; i < fft.length; i++) {
-            fft[i].multiply(new FFT.Complex(fft[i].getReal(), -fft[i].getImag()));
+        double[] power = new double[spectrum.length];
+        for (int i = 0; i < spectrum.length; i += 2) {
+            power[i] = spectrum[i] * spectrum[i] + spectrum[i + 1] * spectrum[i + 1];
         }
 
-        t.inverseFFT(fft, fft.length);
+        double[] r = new double[plan.length()];
+        plan.realInverse(power, r);
 
         double[] acf = new double[arr.length];
-        float f = fft[0].getReal();
         for (int i = 0; i < arr.length; i++) {
-            acf[i] = fft[i].getReal() / f;
+            acf[i] = r[i] / r[0];
         }
 
         return acf;
     }
 
-    private static double summariesWelchRect(double[] arr, boolean centroid, FFT.Complex[] fft) {
-        // int length = (int)FFT.MathsPower2.roundPow2((float)arr.length);
-        // if (length < arr.length) length *= 2;
-        //
-        // FFT.Complex[] fft = new FFT.Complex[length];
-        // double mean = mean(arr);
-        // for (int i = 0; i < arr.length; i++){
-        // fft[i] = new FFT.Complex(arr[i]-mean, 0);
-        // }
-        // for (int i = arr.length; i < length; i++){
-        // fft[i] = new FFT.Complex(0,0);
-        // }
-        //
-        // FFT t = new FFT();
-        // t.fft(fft, length);
-
-        int newLength = fft.length / 2 + 1;
+    private static double summariesWelchRect(double[] arr, boolean centroid, double[] spectrum) {
+        int nfft = FFT.Plan.paddedLength(arr.length);
+        int newLength = nfft / 2 + 1;
         double[] p = new double[newLength];
-        p[0] = (Math.pow(fft[0].getMagnitude(), 2) / arr.length) / (2 * Math.PI);
-        for (int i = 1; i < newLength - 1; i++) {
-            p[i] = ((Math.pow(fft[i].getMagnitude(), 2) / arr.length) * 2) / (2 * Math.PI);
+        for (int i = 0; i < newLength; i++) {
+            double power = spectrum[2 * i] * spectrum[2 * i] + spectrum[2 * i + 1] * spectrum[2 * i + 1];
+            p[i] = (power / arr.length) / (2 * Math.PI);
+            if (i > 0 && i < newLength - 1)
+                p[i] *= 2;
         }
-        p[newLength - 1] = (Math.pow(fft[newLength - 1].getMagnitude(), 2) / arr.length) / (2 * Math.PI);
 
         double[] w = new double[newLength];
         for (int i = 0; i < newLength; i++) {
-            w[i] = i * (1.0 / fft.length) * Math.PI * 2;
+            w[i] = i * (1.0 / nfft) * Math.PI * 2;
         }
 
         if (centroid) {
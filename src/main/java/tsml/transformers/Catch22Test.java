@@ -0,0 +1,80 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.transformers;
+
+import experiments.data.RandomWalks;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class Catch22Test {
+
+    private static double[][] series(int numSeries, long seed) {
+        Random random = new Random(seed);
+        double[][] series = new double[numSeries][];
+        for (int n = 0; n < numSeries; n++) {
+            series[n] = RandomWalks.randomWalk(random, 20 + random.nextInt(100), 0);
+        }
+        return series;
+    }
+
+    @Test
+    public void testSummaryStatsMatchByIndex() throws Exception {
+        double[][] series = series(10, 0);
+        int[][] features = new int[series.length][];
+        for (int n = 0; n < series.length; n++) {
+            features[n] = new int[n % 4 == 3 ? 0 : 5];
+            for (int j = 0; j < features[n].length; j++) {
+                features[n][j] = (n * 7 + j * 5) % 22;
+            }
+        }
+
+        Catch22 c22 = new Catch22();
+        c22.setOutlierNormalise(true);
+        double[][] stats = c22.getSummaryStats(series, features);
+
+        Catch22 byIndex = new Catch22();
+        byIndex.setOutlierNormalise(true);
+        for (int n = 0; n < series.length; n++) {
+            assertEquals(features[n].length, stats[n].length);
+            for (int j = 0; j < features[n].length; j++) {
+                assertEquals(byIndex.getSummaryStatByIndex(features[n][j], n, series[n]), stats[n][j], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiThreadedTransform() {
+        double[][] series = series(25, 1);
+
+        Catch22 c22 = new Catch22();
+        double[][] expected = new double[series.length][];
+        for (int n = 0; n < series.length; n++) {
+            expected[n] = c22.transform(series[n]);
+        }
+
+        c22.enableMultiThreading(3);
+        double[][] actual = c22.transform(series);
+        for (int n = 0; n < series.length; n++) {
+            assertArrayEquals(expected[n], actual[n], 0);
+        }
+    }
+}
@@ -37,6 +37,9 @@ import weka.core.FastVector;
 import weka.core.Instance;
 import weka.core.Instances;
 
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class FFT implements Transformer {
 	/**
 	 *
@@ -221,39 +224,29 @@ public class FFT implements Transformer {
 		if (fullLength <= 0)
 			fullLength = inst.dataset() != null ? findLength(inst.dataset()) : findLength(inst);
 
-		// 1. Get original series stored in a complex array. This may be padded or
-		// truncated
-		// depending on the original length. If DFT is being used, it is neither.
-		Complex[] c = new Complex[fullLength];
+		// 1. Get original series. This may be padded or truncated depending on the
+		// original length. If DFT is being used, it is neither.
+		double[] series = new double[fullLength];
 		int count = 0;
 		double seriesTotal = 0;
-		for (int j = 0; j < originalLength && count < c.length; j++) { // May cut off the trailing values
+		for (int j = 0; j < originalLength && count < series.length; j++) { // May cut off the trailing values
 			if (inst.classIndex() != j) {
-				c[count] = new Complex(inst.value(j), 0.0);
+				series[count] = inst.value(j);
 				seriesTotal += inst.value(j);
 				count++;
 			}
 		}
-		// Add any Padding required
-		double mean = seriesTotal / count;
-		while (count < c.length)
-			c[count++] = new Complex(mean, 0);
-		// 2. Find FFT/DFT of series.
-		if (algo == AlgorithmType.FFT)
-			fft(c, c.length);
-		else
-			c = dft(c);
+		// 2. Find FFT/DFT of series, padded with the mean.
+		double[] terms = fourierTerms(series, count, seriesTotal / count);
 		// Extract out the terms and set the attributes.
 
-		Instance out = new DenseInstance(c.length + 1);
-		for (int j = 0; j < c.length / 2; j++) {
-			out.setValue(2 * j, c[j].real);
-			out.setValue(2 * j + 1, c[j].imag);
+		Instance out = new DenseInstance(series.length + 1);
+		for (int j = 0; j < terms.length; j++) {
+			out.setValue(j, terms[j]);
 		}
 		// Set class value.
-		// Set class value.
 		if (inst.classIndex() >= 0)
-			out.setValue(c.length, inst.classValue());
+			out.setValue(series.length, inst.classValue());
 
 		return out;
 	}
@@ -287,36 +280,48 @@ public class FFT implements Transformer {
 
 		int i = 0;
 		for (TimeSeries ts : inst) {
-			Complex[] c = new Complex[fullLength];
+			double[] series = new double[fullLength];
 			int count = 0;
 			double seriesTotal = 0;
-			for (int j = 0; j < ts.getSeriesLength() && count < c.length; j++) { // May cut off the trailing values
-				c[count] = new Complex(ts.getValue(j), 0.0);
+			for (int j = 0; j < ts.getSeriesLength() && count < series.length; j++) { // May cut off the trailing values
+				series[count] = ts.getValue(j);
 				seriesTotal += ts.getValue(j);
 				count++;
 			}
-			// Add any Padding required
-			double mean = seriesTotal / count;
-			while (count < c.length)
-				c[count++] = new Complex(mean, 0);
-			// 2. Find FFT/DFT of series.
-			if (algo == AlgorithmType.FFT)
-				fft(c, c.length);
-			else
-				c = dft(c);
-			// Extract out the terms and set the attributes.
 
 			//construct the sequence of real/imaginary alternating values.
-			out[i] = new double[c.length];
-			for (int j = 0; j < c.length / 2; j++) {
-				out[i][2 * j] = c[j].real;
-				out[i][2 * j + 1] = c[j].imag;
-			}
+			out[i] = new double[series.length];
+			double[] terms = fourierTerms(series, count, seriesTotal / count);
+			System.arraycopy(terms, 0, out[i], 0, terms.length);
+			i++;
 		}
 
 		return new TimeSeriesInstance(out, inst.getLabelIndex());
 	}
 
+	// The first half of the Fourier terms of series, real and imaginary parts
+	// alternating. Values from count onwards are padding and set to mean.
+	private double[] fourierTerms(double[] series, int count, double mean) {
+		Arrays.fill(series, count, series.length, mean);
+		int m = series.length / 2;
+		double[] terms = new double[2 * m];
+		if (algo == AlgorithmType.FFT) {
+			double[] spectrum = new double[series.length == 1 ? 2 : series.length + 2];
+			Plan.forLength(series.length).realForward(series, spectrum);
+			System.arraycopy(spectrum, 0, terms, 0, terms.length);
+		} else {
+			Complex[] c = new Complex[series.length];
+			for (int j = 0; j < c.length; j++)
+				c[j] = new Complex(series[j], 0.0);
+			c = dft(c);
+			for (int j = 0; j < m; j++) {
+				terms[2 * j] = c[j].real;
+				terms[2 * j + 1] = c[j].imag;
+			}
+		}
+		return terms;
+	}
+
 	/**
 	 * Perform a discrete fourier transform, O(n^2)
 	 *
@@ -400,206 +405,228 @@ public class FFT implements Transformer {
 		fft(-1, complex, n);
 	}
 
-	// Perform an in-place mixed-radix FFT (if sign is 1) or inverse
-	// FFT (if sign is -1) on the first n elements of the given set of
-	// Complex numbers. Round n to the nearest power of two.
+	// Perform an in-place FFT (if sign is 1) or inverse FFT (if sign is -1) on the
+	// first n elements of the given set of Complex numbers. Round n to the nearest
+	// power of two.
 	//
-	// This method performs the FFT in-place on the given set.
+	// The transform itself is done by a Plan on a primitive copy of the values.
 
 	private void fft(int sign, Complex[] complex, int n) {
 		// n is number of data elements upon which FFT will be
 		// performed. Round number of data elements to nearest power
 		// of 2
 		n = (int) MathsPower2.roundPow2(n);
-		// Sort the first n elements into bit-reversed order
-		bitReverse(complex, n);
-		if (n == 2) {
-			// Perform a radix-2 FFT
-			radix2FFT(sign, complex, n, 0);
-		} else if (((float) Math.log(n) % (float) Math.log(4)) == 0) {
-			// Perform a radix-4 FFT
-			radix4FFT(sign, complex, n, 0);
-		} else {
-			// n is a multiple or two or four [8, 32, 128, ...]
-			// Perform a mixed-radix FFT
-			int halfN = n / 2;
-			// Do a radix-4 transform on elements 0..halfN - 1 which
-			// contains even-indexed elements from the original
-			// unsorted set of numbers by definition of the bit
-			// reversal operation
-			radix4FFT(sign, complex, halfN, 0);
-			// Do a radix-4 transform on elements halfN - 1 .. n - 1
-			// which contains odd-indexed elements from the original
-			// unsorted set of numbers by definition of the bit
-			// reversal operation
-			radix4FFT(sign, complex, halfN, halfN);
-			// Pair off even and odd elements and do final radix-2
-			// transforms, multiplying by twiddle factors as required
-			// Loop variables used to point to pairs of even and odd
-			// elements
-			int g, h;
-			// Array of two complex numbers for performing radix-2
-			// FFTs on pairs of elements
-			Complex[] radix2x2 = new Complex[2];
-			// Twiddle factor
-			Complex twiddle = new Complex();
-			// Values defining twiddle factor
-			double delta = -sign * TWOPI / n;
-			double w = 0;
-			for (g = 0, h = halfN; g < halfN; g++, h++) {
-				// Twiddle factors...
-				twiddle.setRealImag((float) Math.cos(w), (float) Math.sin(w));
-				complex[h].multiply(twiddle);
-				radix2x2[0] = complex[g];
-				radix2x2[1] = complex[h];
-				// Perform the radix-2 FFT
-				radix2FFT(sign, radix2x2, 2, 0);
-				complex[g] = radix2x2[0];
-				complex[h] = radix2x2[1];
-				w += delta;
+		double[] data = new double[2 * n];
+		for (int i = 0; i < n; i++) {
+			data[2 * i] = complex[i].real;
+			data[2 * i + 1] = complex[i].imag;
+		}
+		Plan plan = Plan.forLength(n);
+		if (sign == 1)
+			plan.forward(data);
+		else
+			plan.inverse(data);
+		for (int i = 0; i < n; i++) {
+			complex[i].setRealImag((float) data[2 * i], (float) data[2 * i + 1]);
+		}
+	}
+
+	/**
+	 * A radix 2 fast Fourier transform of a fixed power of two length on primitive
+	 * arrays. Complex values are interleaved, the real part of value k is at [2k]
+	 * and the imaginary part at [2k+1]. The forward transform is
+	 * X_k = sum_j x_j e^(-2 pi i jk/n) and the inverse is scaled by 1/n.
+	 *
+	 * The twiddle factors and bit reversal permutation are found once per length,
+	 * and plans are shared through forLength. A plan is never modified after it is
+	 * made, so one plan can be used by many threads at once.
+	 */
+	public static final class Plan {
+		private static final ConcurrentHashMap<Integer, Plan> PLANS = new ConcurrentHashMap<>();
+
+		private final int n;
+		// cos and sin of 2 pi k / n for k < n / 2
+		private final double[] cos;
+		private final double[] sin;
+		// bit reversed index of each value
+		private final int[] reverse;
+
+		private Plan(int n) {
+			this.n = n;
+			cos = new double[n / 2];
+			sin = new double[n / 2];
+			for (int k = 0; k < n / 2; k++) {
+				double w = TWOPI * k / n;
+				cos[k] = Math.cos(w);
+				sin[k] = Math.sin(w);
 			}
-			radix2x2 = null;
-			twiddle = null;
+			reverse = new int[n];
+			int bits = Integer.numberOfTrailingZeros(n);
+			for (int i = 1; i < n; i++) {
+				reverse[i] = Integer.reverse(i) >>> (32 - bits);
+			}
+		}
+
+		/**
+		 * Get the shared plan for transforms of length n.
+		 *
+		 * @param n transform length, a power of 2
+		 * @return plan for length n
+		 */
+		public static Plan forLength(int n) {
+			if (n < 1 || (n & (n - 1)) != 0)
+				throw new IllegalArgumentException("FFT length must be a power of 2, found " + n);
+			return PLANS.computeIfAbsent(n, Plan::new);
+		}
+
+		/**
+		 * Smallest power of 2 at least as large as length, the length a series is
+		 * padded to.
+		 */
+		public static int paddedLength(int length) {
+			return length <= 1 ? 1 : Integer.highestOneBit(length - 1) << 1;
+		}
+
+		public int length() {
+			return n;
+		}
+
+		/** In-place forward transform of the n interleaved complex values in data */
+		public void forward(double[] data) {
+			transform(data, -1);
 		}
-		if (sign == -1) {
-			// Divide all values by n
-			for (int g = 0; g < n; g++) {
-				complex[g].divide(n);
+
+		/** In-place inverse transform of the n interleaved complex values in data */
+		public void inverse(double[] data) {
+			transform(data, 1);
+			double scale = 1.0 / n;
+			for (int i = 0; i < 2 * n; i++) {
+				data[i] *= scale;
 			}
 		}
-	}
 
-	// Perform an in-place radix-4 FFT (if sign is 1) or inverse
-	// FFT (if sign is -1). FFT is performed in the n elements
-	// starting at index lower
-	//
-	// Assumes that n is a power of 2 and that lower + n is less than
-	// or equal to the number of complex numbers given
-	//
-	// This method performs the FFT in-place on the given set.
-
-	private static void radix4FFT(int sign, Complex[] complex, int n, int lower) {
-		// Index of last element in array which will take part in the
-		// FFT
-		int upper = n + lower;
-		// Variables used to hold the indicies of the elements forming
-		// the four inputs to a butterfly
-		int i, j, k, l;
-		// Variables holding the results of the four main operations
-		// performed when processing a butterfly
-		Complex ijAdd = new Complex();
-		Complex klAdd = new Complex();
-		Complex ijSub = new Complex();
-		Complex klSub = new Complex();
-		// Twiddle factor
-		Complex twiddle = new Complex();
-		// Values defining twiddle factor
-		double delta, w, w2, w3;
-		double deltaLower = -sign * TWOPI;
-		// intraGap is number of array elements between the
-		// two inputs to a butterfly (equivalent to the number of
-		// butterflies in a cluster)
-		int intraGap;
-		// interGap is the number of array elements between the first
-		// input of the ith butterfly in two adjacent clusters
-		int interGap;
-		for (intraGap = 1, interGap = 4 * intraGap; intraGap < n; intraGap = interGap, interGap = 4 * intraGap) {
-			delta = deltaLower / (float) interGap;
-			// For each butterfly in a cluster
-			w = w2 = w3 = 0;
-			for (int but = 0; but < intraGap; ++but) {
-				// Process the intraGap-th butterfly in each cluster
-				// i is the top input to a butterfly and j the second,
-				// k third and l fourth
-				for (i = (but + lower), j = i + intraGap, k = j + intraGap, l = k
-						+ intraGap; i < upper; i += interGap, j += interGap, k += interGap, l += interGap) {
-					// Calculate and apply twiddle factors
-					// cos(0) = 1 and sin(0) = 0
-					twiddle.setRealImag(1, 0);
-					complex[i].multiply(twiddle);
-					twiddle.setRealImag((float) Math.cos(w2), (float) Math.sin(w2));
-					complex[j].multiply(twiddle);
-					twiddle.setRealImag((float) Math.cos(w), (float) Math.sin(w));
-					complex[k].multiply(twiddle);
-					twiddle.setRealImag((float) Math.cos(w3), (float) Math.sin(w3));
-					complex[l].multiply(twiddle);
-					// Compute the butterfly
-					Complex.add(complex[i], complex[j], ijAdd);
-					Complex.subtract(complex[i], complex[j], ijSub);
-					Complex.add(complex[k], complex[l], klAdd);
-					Complex.subtract(complex[k], complex[l], klSub);
-					// Assign values
-					Complex.add(ijAdd, klAdd, complex[i]);
-					klSub.multiply(sign);
-					complex[j].setRealImag(ijSub.getReal() + klSub.getImag(), ijSub.getImag() - klSub.getReal());
-					Complex.subtract(ijAdd, klAdd, complex[k]);
-					complex[l].setRealImag(ijSub.getReal() - klSub.getImag(), ijSub.getImag() + klSub.getReal());
+		// unscaled transform with twiddle factors e^(sign * 2 pi i k / n)
+		private void transform(double[] data, int sign) {
+			for (int i = 1; i < n; i++) {
+				int j = reverse[i];
+				if (j > i) {
+					double t = data[2 * i];
+					data[2 * i] = data[2 * j];
+					data[2 * j] = t;
+					t = data[2 * i + 1];
+					data[2 * i + 1] = data[2 * j + 1];
+					data[2 * j + 1] = t;
 				}
-				w += delta;
-				w2 = w + w;
-				w3 = w2 + w;
 			}
-			intraGap = interGap;
-		}
-		ijAdd = klAdd = ijSub = klSub = twiddle = null;
-	}
 
-	// Perform an in-place radix-2 FFT (if sign is 1) or inverse
-	// FFT (if sign is -1). FFT is performed in the n elements
-	// starting at index lower
-	//
-	// Assumes that n is a power of 2 and that lower + n is less than
-	// or equal to the number of complex numbers given...
-	//
-	// This method performs the FFT in-place on the given set.
-
-	private static void radix2FFT(int sign, Complex[] complex, int n, int lower) {
-		// Index of last element in array which will take part in the
-		// FFT
-		int upper = n + lower;
-		// Variables used to hold the indicies of the elements forming
-		// the two inputs to a butterfly
-		int i, j;
-		// intraGap is number of array elements between the
-		// two inputs to a butterfly (equivalent to the number of
-		// butterflies in a cluster)
-		int intraGap;
-		// interGap is the number of array elements between the first
-		// input of the ith butterfly in two adjacent clusters
-		int interGap;
-		// The twiddle factor
-		Complex twiddle = new Complex();
-		// Values defining twiddle factor
-		float deltaLower = -(float) (sign * Math.PI);
-		float w, delta;
-		// Variable used to hold result of multiplying butterfly input
-		// by a twiddle factor
-		Complex twiddledInput = new Complex();
-		for (intraGap = 1, interGap = intraGap + intraGap; intraGap < n; intraGap = interGap, interGap = intraGap
-				+ intraGap) {
-			delta = deltaLower / (float) intraGap;
-			// For each butterfly in a cluster
-			w = 0;
-			for (int butterfly = 0; butterfly < intraGap; ++butterfly) {
-				// Calculate the twiddle factor
-				twiddle.setRealImag((float) Math.cos(w), (float) Math.sin(w));
-				// i is the top input to a butterfly and j the
-				// bottom
-				for (i = (butterfly + lower), j = i + intraGap; i < upper; i += interGap, j += interGap) {
-					// Calculate the butterfly-th butterfly in
-					// each cluster
-					// Apply the twiddle factor
-					Complex.multiply(complex[j], twiddle, twiddledInput);
-					// Subtraction part of butterfly
-					Complex.subtract(complex[i], twiddledInput, complex[j]);
-					// Addition part of butterfly
-					complex[i].add(twiddledInput);
+			for (int size = 2; size <= n; size *= 2) {
+				int half = size / 2;
+				int step = n / size;
+				for (int start = 0; start < n; start += size) {
+					for (int k = 0; k < half; k++) {
+						double wr = cos[k * step];
+						double wi = sign * sin[k * step];
+						int i = 2 * (start + k);
+						int j = i + 2 * half;
+						double tr = wr * data[j] - wi * data[j + 1];
+						double ti = wr * data[j + 1] + wi * data[j];
+						data[j] = data[i] - tr;
+						data[j + 1] = data[i + 1] - ti;
+						data[i] += tr;
+						data[i + 1] += ti;
+					}
 				}
-				w += delta;
 			}
-			intraGap = interGap;
 		}
-		twiddle = twiddledInput = null;
+
+		/**
+		 * Forward transform of a real series, found with a complex transform of half
+		 * the length.
+		 *
+		 * @param series    real values, shorter series are padded with zeros up to n
+		 * @param spectrum  receives the interleaved terms 0 to n/2, of length at least
+		 *                  n + 2 (2 if n is 1). Terms above n/2 are the conjugates of
+		 *                  those below.
+		 */
+		public void realForward(double[] series, double[] spectrum) {
+			if (n == 1) {
+				spectrum[0] = series.length > 0 ? series[0] : 0;
+				spectrum[1] = 0;
+				return;
+			}
+
+			// pack even values as real parts and odd values as imaginary parts
+			int m = n / 2;
+			int length = Math.min(series.length, n);
+			System.arraycopy(series, 0, spectrum, 0, length);
+			for (int i = length; i < n; i++) {
+				spectrum[i] = 0;
+			}
+			forLength(m).forward(spectrum);
+
+			// separate the transforms of the even and odd values and combine them
+			double r0 = spectrum[0];
+			double i0 = spectrum[1];
+			spectrum[0] = r0 + i0;
+			spectrum[1] = 0;
+			spectrum[2 * m] = r0 - i0;
+			spectrum[2 * m + 1] = 0;
+			for (int k = 1; k <= m / 2; k++) {
+				int j = m - k;
+				double ar = spectrum[2 * k];
+				double ai = spectrum[2 * k + 1];
+				double br = spectrum[2 * j];
+				double bi = spectrum[2 * j + 1];
+				double er = (ar + br) / 2;
+				double ei = (ai - bi) / 2;
+				double or = (ai + bi) / 2;
+				double oi = (br - ar) / 2;
+				double tr = cos[k] * or + sin[k] * oi;
+				double ti = cos[k] * oi - sin[k] * or;
+				spectrum[2 * k] = er + tr;
+				spectrum[2 * k + 1] = ei + ti;
+				spectrum[2 * j] = er - tr;
+				spectrum[2 * j + 1] = ti - ei;
+			}
+		}
+
+		/**
+		 * Inverse of realForward, the real series with the given terms 0 to n/2.
+		 *
+		 * @param spectrum interleaved terms 0 to n/2 as found by realForward
+		 * @param series   receives the n real values
+		 */
+		public void realInverse(double[] spectrum, double[] series) {
+			if (n == 1) {
+				series[0] = spectrum[0];
+				return;
+			}
+
+			int m = n / 2;
+			double x0 = spectrum[0];
+			double xm = spectrum[2 * m];
+			series[0] = (x0 + xm) / 2;
+			series[1] = (x0 - xm) / 2;
+			for (int k = 1; k <= m / 2; k++) {
+				int j = m - k;
+				double ar = spectrum[2 * k];
+				double ai = spectrum[2 * k + 1];
+				double br = spectrum[2 * j];
+				double bi = spectrum[2 * j + 1];
+				double er = (ar + br) / 2;
+				double ei = (ai - bi) / 2;
+				// (X_k - conj(X_j)) / 2 rotated by e^(2 pi i k / n)
+				double dr = (ar - br) / 2;
+				double di = (ai + bi) / 2;
+				double or = cos[k] * dr - sin[k] * di;
+				double oi = cos[k] * di + sin[k] * dr;
+				series[2 * k] = er - oi;
+				series[2 * k + 1] = ei + or;
+				series[2 * j] = er + oi;
+				series[2 * j + 1] = or - ei;
+			}
+			forLength(m).inverse(series);
+		}
 	}
 
 	public String getRevision() {
@@ -0,0 +1,112 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.transformers;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FFTTest {
+
+    // direct O(n^2) transform of interleaved complex values
+    private static double[] dft(double[] data, int n) {
+        double[] out = new double[2 * n];
+        for (int k = 0; k < n; k++) {
+            for (int j = 0; j < n; j++) {
+                double w = -2 * Math.PI * j * k / n;
+                out[2 * k] += data[2 * j] * Math.cos(w) - data[2 * j + 1] * Math.sin(w);
+                out[2 * k + 1] += data[2 * j] * Math.sin(w) + data[2 * j + 1] * Math.cos(w);
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void testForwardAndInverse() {
+        Random random = new Random(0);
+        for (int n = 1; n <= 256; n *= 2) {
+            double[] data = new double[2 * n];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = random.nextGaussian();
+            }
+            double[] expected = dft(data, n);
+
+            double[] actual = data.clone();
+            FFT.Plan plan = FFT.Plan.forLength(n);
+            plan.forward(actual);
+            for (int i = 0; i < actual.length; i++) {
+                assertEquals(expected[i], actual[i], 1e-9);
+            }
+
+            plan.inverse(actual);
+            for (int i = 0; i < actual.length; i++) {
+                assertEquals(data[i], actual[i], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testRealForwardAndInverse() {
+        Random random = new Random(1);
+        for (int n = 1; n <= 256; n *= 2) {
+            // shorter than n so the series is padded
+            double[] series = new double[Math.max(1, n - 3)];
+            double[] data = new double[2 * n];
+            for (int i = 0; i < series.length; i++) {
+                series[i] = random.nextGaussian() + 5;
+                data[2 * i] = series[i];
+            }
+            double[] expected = dft(data, n);
+
+            FFT.Plan plan = FFT.Plan.forLength(n);
+            double[] spectrum = new double[n == 1 ? 2 : n + 2];
+            plan.realForward(series, spectrum);
+            for (int i = 0; i < spectrum.length; i++) {
+                assertEquals(expected[i], spectrum[i], 1e-9);
+            }
+
+            double[] inverse = new double[n];
+            plan.realInverse(spectrum, inverse);
+            for (int i = 0; i < n; i++) {
+                assertEquals(i < series.length ? series[i] : 0, inverse[i], 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testComplexAdapter() {
+        Random random = new Random(2);
+        int n = 32;
+        double[] data = new double[2 * n];
+        FFT.Complex[] complex = new FFT.Complex[n];
+        for (int i = 0; i < n; i++) {
+            complex[i] = new FFT.Complex((float) random.nextGaussian(), (float) random.nextGaussian());
+            data[2 * i] = complex[i].getReal();
+            data[2 * i + 1] = complex[i].getImag();
+        }
+        double[] expected = dft(data, n);
+
+        new FFT().fft(complex, n);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected[2 * i], complex[i].getReal(), 1e-4);
+            assertEquals(expected[2 * i + 1], complex[i].getImag(), 1e-4);
+        }
+    }
+}
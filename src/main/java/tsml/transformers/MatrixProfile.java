@@ -18,10 +18,18 @@
 package tsml.transformers;
 
 import experiments.data.DatasetLoading;
+import tsml.classifiers.MultiThreadable;
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
+import tsml.transformers.shapelet_tools.distance_functions.SlidingDistance;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static utilities.rescalers.ZNormalisation.ROUNDING_ERROR_CORRECTION;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
@@ -37,6 +45,11 @@ import weka.core.Instances;
  *         using the values, rather than having to extract the data back from
  *         the output Instances of process
  * 
+ *         The profile of each series is found with the SCRIMP/STOMP
+ *         recurrence in O(n^2) time rather than comparing every pair of
+ *         windows in full. With enableMultiThreading the diagonals of the
+ *         distance matrix are shared between threads.
+ * 
  *         To-do: - Cache distances that will be reused (is it worth it?
  *         Probably not since it's offline, but might be important for very
  *         large problems and small windows) - Implement 'stride' - not sure if
@@ -46,13 +59,14 @@ import weka.core.Instances;
  *         etc.)
  * 
  */
-public class MatrixProfile implements Transformer {
+public class MatrixProfile implements Transformer, MultiThreadable {
 
     private int windowSize = 10;
-    private final int stride = 1; // to-do later (maybe!)
     private double[][] distances;
     private int[][] indices;
     private boolean m_Debug = false;
+    private int numThreads = 1;
+    private transient ExecutorService executor;
 
     public MatrixProfile() {
         this(10);
@@ -65,7 +79,7 @@ public class MatrixProfile implements Transformer {
     @Override
     public Instance transform(Instance inst) {
 
-        SingleInstanceMatrixProfile mpIns = new SingleInstanceMatrixProfile(inst, this.windowSize, this.stride);
+        SingleInstanceMatrixProfile mpIns = matrixProfile(inst);
         Instance out = new DenseInstance(inst.numAttributes() + 1 - windowSize);
 
         for (int i = 0; i < mpIns.distances.length; i++) {
@@ -85,7 +99,8 @@ public class MatrixProfile implements Transformer {
         double[][] out = new double[inst.getNumDimensions()][];
         int i = 0;
         for (TimeSeries ts : inst) {
-            out[i++] = new SingleInstanceMatrixProfile(ts.toValueArray(), this.windowSize, this.stride).series;
+            double[] series = ts.toValueArray();
+            out[i++] = matrixProfile(series, series.length).distances;
         }
         return new TimeSeriesInstance(out, inst.getLabelIndex()); 
     }
@@ -157,7 +172,7 @@ public class MatrixProfile implements Transformer {
         outputIndices.setRelationName(outputIndices.relationName() + "_indices");
 
         for (int ins = 0; ins < instances.numInstances(); ins++) {
-            mpIns = new SingleInstanceMatrixProfile(instances.get(ins), this.windowSize, this.stride);
+            mpIns = matrixProfile(instances.get(ins));
             outDist = new DenseInstance(outputDistances.numAttributes());
             outIdx = new DenseInstance(outputIndices.numAttributes());
 
@@ -194,81 +209,159 @@ public class MatrixProfile implements Transformer {
         return this.indices;
     }
 
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            // daemon threads so an unused transform never holds the jvm open
+            executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private SingleInstanceMatrixProfile matrixProfile(Instance series) {
+        int seriesLength = series.classIndex() > 0 ? series.numAttributes() - 1 : series.numAttributes();
+        return matrixProfile(series.toDoubleArray(), seriesLength);
+    }
+
+    private SingleInstanceMatrixProfile matrixProfile(double[] series, int seriesLength) {
+        SingleInstanceMatrixProfile mp = new SingleInstanceMatrixProfile(series, seriesLength, this.windowSize);
+        final int first = mp.firstDiagonal();
+        final int threads = Math.min(numThreads, Math.max(1, mp.numWindows - first));
+        if (threads == 1) {
+            mp.diagonals(first, 1, mp.distances, mp.indices);
+            return mp;
+        }
+
+        // each thread takes every threads-th diagonal, so the work is balanced as the diagonals shorten, and keeps
+        // its own profile until all are merged
+        double[][] threadDistances = new double[threads][];
+        int[][] threadIndices = new int[threads][];
+        ExecutorService executor = getExecutor();
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final double[] distances = threadDistances[t] = mp.emptyDistances();
+            final int[] indices = threadIndices[t] = mp.emptyIndices();
+            final int start = first + t;
+            futures.add(executor.submit(() -> mp.diagonals(start, threads, distances, indices)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < mp.numWindows; i++) {
+                SingleInstanceMatrixProfile.update(mp.distances, mp.indices, i, threadDistances[t][i],
+                        threadIndices[t][i]);
+            }
+        }
+        return mp;
+    }
+
+    /**
+     * The squared Euclidean distance between z-normalised windows i and j is found from their dot product QT as
+     * 2m(1 - (QT - m*mean_i*mean_j) / (m*stdv_i*stdv_j)). Along each diagonal j = i + k of the distance matrix the
+     * dot product is updated from the previous one in constant time, and the window means and standard deviations
+     * are found once, so no window is copied or normalised. The distances are those of zNormalise up to rounding.
+     */
     private static class SingleInstanceMatrixProfile {
         private final double[] series;
         private final int windowSize;
-        private final int stride;
+        private final int numWindows;
+        private final double[] means;
+        private final double[] stdvs;
         private final double[] distances;
         private final int[] indices;
-        private final int seriesLength;
 
-        public SingleInstanceMatrixProfile(Instance series, int windowSize, int stride) {
-            this.series = series.toDoubleArray();
-            this.seriesLength = series.classIndex() > 0 ? series.numAttributes() - 1 : series.numAttributes();
+        public SingleInstanceMatrixProfile(double[] series, int seriesLength, int windowSize) {
             this.windowSize = windowSize;
-            this.stride = stride;
-            this.distances = new double[seriesLength + 1 - windowSize];
-            this.indices = new int[seriesLength + 1 - windowSize];
+            this.numWindows = Math.max(0, seriesLength + 1 - windowSize);
 
-            for (int a = 0; a <= seriesLength - windowSize; a++) {
-                this.locateBestMatch(a);
+            // shifting the series leaves the normalised windows unchanged, centring it keeps the dot products small
+            // so the recurrence stays accurate
+            double mean = 0;
+            for (int i = 0; i < seriesLength; i++) {
+                mean += series[i];
+            }
+            mean /= seriesLength;
+            this.series = new double[seriesLength];
+            for (int i = 0; i < seriesLength; i++) {
+                this.series[i] = series[i] - mean;
             }
-        }
 
-        public SingleInstanceMatrixProfile(double[] series, int windowSize, int stride) {
-            this.series = series;
-            this.seriesLength = series.length;
-            this.windowSize = windowSize;
-            this.stride = stride;
-            this.distances = new double[seriesLength + 1 - windowSize];
-            this.indices = new int[seriesLength + 1 - windowSize];
+            this.means = new double[numWindows];
+            this.stdvs = new double[numWindows];
+            SlidingDistance.statistics(this.series, windowSize, numWindows, means, stdvs);
 
-            for (int a = 0; a <= seriesLength - windowSize; a++) {
-                this.locateBestMatch(a);
-            }
+            this.distances = emptyDistances();
+            this.indices = emptyIndices();
         }
 
-        // query is fixed, comparison is every possible match within the series
-        private void locateBestMatch(int queryStartIdx) {
-
-            double dist;
-            double bsfDist = Double.MAX_VALUE;
-            int bsfIdx = -1;
+        private double[] emptyDistances() {
+            double[] distances = new double[numWindows];
+            Arrays.fill(distances, Double.MAX_VALUE);
+            return distances;
+        }
 
-            double[] query = zNormalise(series, queryStartIdx, this.windowSize, false);
-            double[] comparison;
+        private int[] emptyIndices() {
+            int[] indices = new int[numWindows];
+            Arrays.fill(indices, -1);
+            return indices;
+        }
 
-            for (int comparisonStartIdx = 0; comparisonStartIdx <= seriesLength
-                    - windowSize; comparisonStartIdx += stride) {
+        // the first diagonal outside the exclusion zone of +/- 1.5 windows around each window
+        private int firstDiagonal() {
+            return (int) (windowSize * 1.5) + 1;
+        }
 
-                // exclusion zone +/- windowSize/2 around the window
-                if (comparisonStartIdx >= queryStartIdx - windowSize * 1.5
-                        && comparisonStartIdx <= queryStartIdx + windowSize * 1.5) {
-                    continue;
+        // the profile over the diagonals start, start + step, ..., each pair giving a match in both directions
+        private void diagonals(int start, int step, double[] distances, int[] indices) {
+            for (int k = start; k < numWindows; k += step) {
+                double dot = 0;
+                for (int t = 0; t < windowSize; t++) {
+                    dot += series[t] * series[k + t];
                 }
 
-                // using a bespoke version of this, rather than the shapelet version, for
-                // efficiency - see notes with method
-                comparison = zNormalise(series, comparisonStartIdx, windowSize, false);
-                dist = 0;
-
-                for (int j = 0; j < windowSize; j++) {
-                    dist += (query[j] - comparison[j]) * (query[j] - comparison[j]);
-                    if (dist > bsfDist) {
-                        dist = Double.MAX_VALUE;
-                        break;
+                for (int i = 0, j = k; j < numWindows; i++, j++) {
+                    if (i > 0) {
+                        dot += series[i + windowSize - 1] * series[j + windowSize - 1] - series[i - 1] * series[j - 1];
                     }
+                    double dist = distance(dot, i, j);
+                    update(distances, indices, i, dist, j);
+                    update(distances, indices, j, dist, i);
                 }
+            }
+        }
 
-                if (dist < bsfDist) {
-                    bsfDist = dist;
-                    bsfIdx = comparisonStartIdx;
-                }
-
+        private double distance(double dot, int i, int j) {
+            if (stdvs[i] == 0.0 || stdvs[j] == 0.0) {
+                // a window with zero variance normalises to all zeros
+                return stdvs[i] == stdvs[j] ? 0.0 : windowSize;
             }
+            double correlation = (dot - windowSize * means[i] * means[j]) / (windowSize * stdvs[i] * stdvs[j]);
+            return Math.max(0.0, 2 * windowSize * (1 - correlation));
+        }
 
-            this.distances[queryStartIdx] = bsfDist;
-            this.indices[queryStartIdx] = bsfIdx;
+        // keep the closest match, and the earliest of equally close matches
+        private static void update(double[] distances, int[] indices, int i, double dist, int match) {
+            if (dist < distances[i] || (dist == distances[i] && match < indices[i])) {
+                distances[i] = dist;
+                indices[i] = match;
+            }
         }
     }
 
@@ -390,10 +483,8 @@ public class MatrixProfile implements Transformer {
                             // </editor-fold>
                     };
                     int windowSize = 10;
-                    SingleInstanceMatrixProfile simp = new SingleInstanceMatrixProfile(exampleSeries, windowSize, 1);
-                    for (int i = 0; i < exampleSeries.length - windowSize + 1; i++) {
-                        simp.locateBestMatch(i);
-                    }
+                    SingleInstanceMatrixProfile simp = new MatrixProfile(windowSize).matrixProfile(exampleSeries,
+                            exampleSeries.length);
                     System.out.println("Example series:");
                     for (int a = 0; a < exampleSeries.length; a++) {
                         System.out.print(exampleSeries[a] + ",");
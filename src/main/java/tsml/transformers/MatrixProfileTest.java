@@ -0,0 +1,113 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.transformers;
+
+import experiments.data.RandomWalks;
+import org.junit.Test;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class MatrixProfileTest {
+
+    // a random walk far from zero with a repeated motif and a constant stretch
+    private static Instances data(int numSeries, int length, long seed) {
+        Random random = new Random(seed);
+        ArrayList<Attribute> atts = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            atts.add(new Attribute("att" + i));
+        }
+        ArrayList<String> classes = new ArrayList<>();
+        classes.add("a");
+        classes.add("b");
+        atts.add(new Attribute("class", classes));
+        Instances data = new Instances("test", atts, numSeries);
+        data.setClassIndex(length);
+
+        for (int n = 0; n < numSeries; n++) {
+            double[] values = Arrays.copyOf(RandomWalks.randomWalk(random, length, 40), length + 1);
+            for (int i = 0; i < 8; i++) {
+                values[length / 2 + i] = values[10 + i] + 3;
+            }
+            RandomWalks.flatten(values, length - 15, length - 5);
+            values[length] = n % 2;
+            data.add(new DenseInstance(1, values));
+        }
+        return data;
+    }
+
+    private static double distance(double[] series, int i, int j, int windowSize) {
+        double[] a = MatrixProfile.zNormalise(series, i, windowSize, false);
+        double[] b = MatrixProfile.zNormalise(series, j, windowSize, false);
+        double dist = 0;
+        for (int t = 0; t < windowSize; t++) {
+            dist += (a[t] - b[t]) * (a[t] - b[t]);
+        }
+        return dist;
+    }
+
+    @Test
+    public void testMatchesBruteForce() throws Exception {
+        int windowSize = 8;
+        Instances data = data(3, 120, 0);
+        MatrixProfile mp = new MatrixProfile(windowSize);
+        mp.processDistancesAndIndices(data);
+
+        for (int n = 0; n < data.numInstances(); n++) {
+            double[] series = data.get(n).toDoubleArray();
+            int numWindows = series.length - windowSize;
+            double[] distances = mp.getDistances()[n];
+            int[] indices = mp.getIndices()[n];
+            assertEquals(numWindows, distances.length);
+
+            for (int i = 0; i < numWindows; i++) {
+                double best = Double.MAX_VALUE;
+                for (int j = 0; j < numWindows; j++) {
+                    if (Math.abs(i - j) > windowSize * 1.5) {
+                        best = Math.min(best, distance(series, i, j, windowSize));
+                    }
+                }
+                assertEquals(best, distances[i], 1e-8);
+                assertEquals(best, distance(series, i, indices[i], windowSize), 1e-8);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiThreaded() throws Exception {
+        Instances data = data(2, 300, 1);
+        MatrixProfile mp = new MatrixProfile(12);
+        mp.processDistancesAndIndices(data);
+
+        MatrixProfile threaded = new MatrixProfile(12);
+        threaded.enableMultiThreading(3);
+        threaded.processDistancesAndIndices(data);
+
+        for (int n = 0; n < data.numInstances(); n++) {
+            assertArrayEquals(mp.getDistances()[n], threaded.getDistances()[n], 0);
+            assertArrayEquals(mp.getIndices()[n], threaded.getIndices()[n]);
+        }
+    }
+}
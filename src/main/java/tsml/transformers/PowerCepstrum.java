@@ -79,18 +79,16 @@ public class PowerCepstrum extends PowerSpectrum{
         int n = (int)MathsPower2.roundPow2(ar.length-1);
         if(n<ar.length-1)
             n*=2;
-        FFT.Complex[] complex=new FFT.Complex[n];
+        double[] complex=new double[2*n];
         for(int j=0;j<ar.length-1;j++)
-            complex[j]=new FFT.Complex(ar[j],0);
-        for(int j=ar.length-1;j<n;j++)
-            complex[j]=new FFT.Complex(0,0);
+            complex[2*j]=ar[j];
 
 
         //Take inverse FFT
-        inverseFFT(complex,complex.length);
+        Plan.forLength(n).inverse(complex);
         //Square the terms for the PowerCepstrum 
         for(int j=0;j<ar.length-1;j++)
-            out.setValue(j,complex[j].real*complex[j].real+complex[j].imag*complex[j].imag);
+            out.setValue(j,complex[2*j]*complex[2*j]+complex[2*j+1]*complex[2*j+1]);
 
         return out;
     }
@@ -113,17 +111,15 @@ public class PowerCepstrum extends PowerSpectrum{
             int n = (int)MathsPower2.roundPow2(length);
             if(n<length)
                 n*=2;
-            FFT.Complex[] complex=new FFT.Complex[n];
+            double[] complex=new double[2*n];
             for(int j=0;j<length;j++)
-                complex[j]=new FFT.Complex(values[i][j],0);
-            for(int j=length;j<n;j++)
-                complex[j]=new FFT.Complex(0,0);
+                complex[2*j]=values[i][j];
 
             //Take inverse FFT
-            inverseFFT(complex,complex.length);
+            Plan.forLength(n).inverse(complex);
             //Square the terms for the PowerCepstrum 
             for(int j=0; j<length; j++)
-                values[i][j] = complex[j].real*complex[j].real+complex[j].imag*complex[j].imag;
+                values[i][j] = complex[2*j]*complex[2*j]+complex[2*j+1]*complex[2*j+1];
         }
 
         return new TimeSeriesInstance(values, inst.getLabelIndex());
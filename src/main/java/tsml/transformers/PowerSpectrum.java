@@ -170,15 +170,16 @@ public class PowerSpectrum extends FFT {
         // Check power of 2
         if (((d.length) & (d.length - 1)) != 0) // Not a power of 2
             return null;
-        FFT.Complex[] c = new FFT.Complex[d.length];
-        for (int j = 0; j < d.length; j++) {
-            c[j] = new FFT.Complex(d[j], 0.0);
+        int n = d.length;
+        double[] spectrum = new double[n == 1 ? 2 : n + 2];
+        FFT.Plan.forLength(n).realForward(d, spectrum);
+        // the spectrum of a real series is symmetric, term n-i is the conjugate of term i
+        double[] ps = new double[n];
+        for (int i = 0; i <= n / 2; i++) {
+            ps[i] = spectrum[2 * i] * spectrum[2 * i] + spectrum[2 * i + 1] * spectrum[2 * i + 1];
+            if (i > 0)
+                ps[n - i] = ps[i];
         }
-        FFT f = new FFT();
-        f.fft(c, c.length);
-        double[] ps = new double[c.length];
-        for (int i = 0; i < c.length; i++)
-            ps[i] = c[i].getReal() * c[i].getReal() + c[i].getImag() * c[i].getImag();
         return ps;
     }
 
@@ -28,7 +28,6 @@ import tsml.classifiers.MultiThreadable;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.TimeSeriesSummaryStatistics;
-import utilities.generic_storage.Pair;
 import weka.core.*;
 
 import static utilities.ClusteringUtilities.zNormalise;
@@ -64,6 +63,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     private int seed;
 
     private boolean multithreading = false;
+    private int numThreads = 1;
     private ExecutorService ex;
 
     private boolean fit = false;
@@ -71,6 +71,8 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     private int[] numSampledDimensions, dimensions;
     private int[] lengths, dilations, paddings;
     private double[] weights, biases;
+    // the kernels as objects, sliced from the arrays above once rather than per transformed instance
+    private transient Kernel[] kernels;
 
     public ROCKET(){ }
 
@@ -104,6 +106,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     @Override
     public void enableMultiThreading(int numThreads){
         multithreading = true;
+        this.numThreads = numThreads;
         ex = Executors.newFixedThreadPool(numThreads);
     }
 
@@ -123,7 +126,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     public TimeSeriesInstance transform(TimeSeriesInstance inst) {
         double[][] output = new double[1][];
         if (multithreading){
-            output[0] = transformRocketMultithread(inst.toValueArray());
+            output[0] = transformRocketMultithread(new double[][][]{ inst.toValueArray() })[0];
         }
         else {
             output[0] = transformRocket(inst.toValueArray());
@@ -133,24 +136,64 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     }
 
     @Override
-    public Instance transform(Instance inst) {
-        double[][] data;
-        if (inst.dataset().checkForAttributeType(Attribute.RELATIONAL)) {
-            data = convertMultiInstanceToArrays(splitMultivariateInstance(inst));
+    public TimeSeriesInstances transform(TimeSeriesInstances data) {
+        if (!fit) fit(data);
+
+        double[][][] insts = data.toValueArray();
+        double[][] transform = multithreading ? transformRocketMultithread(insts) : transformRocket(insts);
+
+        TimeSeriesInstances output = new TimeSeriesInstances(data.getClassLabels());
+        for (int i = 0; i < transform.length; i++) {
+            output.add(new TimeSeriesInstance(new double[][]{ transform[i] }, data.get(i).getLabelIndex()));
         }
-        else{
-            data = new double[1][];
-            data[0] = extractTimeSeries(inst);
+        return output;
+    }
+
+    @Override
+    public Instances transform(Instances data) {
+        if (!fit) fit(data);
+
+        double[][][] insts = new double[data.numInstances()][][];
+        for (int i = 0; i < insts.length; i++) {
+            insts[i] = toArrays(data.get(i));
         }
+        double[][] transform = multithreading ? transformRocketMultithread(insts) : transformRocket(insts);
+
+        Instances output = determineOutputFormat(data);
+        for (int i = 0; i < transform.length; i++) {
+            output.add(toInstance(transform[i], data.get(i)));
+        }
+        return output;
+    }
+
+    @Override
+    public Instance transform(Instance inst) {
+        double[][] data = toArrays(inst);
 
         double[] transform;
         if (multithreading){
-            transform = transformRocketMultithread(data);
+            transform = transformRocketMultithread(new double[][][]{ data })[0];
         }
         else{
             transform = transformRocket(data);
         }
 
+        return toInstance(transform, inst);
+    }
+
+    private static double[][] toArrays(Instance inst) {
+        double[][] data;
+        if (inst.dataset().checkForAttributeType(Attribute.RELATIONAL)) {
+            data = convertMultiInstanceToArrays(splitMultivariateInstance(inst));
+        }
+        else{
+            data = new double[1][];
+            data[0] = extractTimeSeries(inst);
+        }
+        return data;
+    }
+
+    private Instance toInstance(double[] transform, Instance inst) {
         double[] output = new double[numKernels * 2 + 1];
         System.arraycopy(transform, 0, output, 0, numKernels * 2);
         output[output.length - 1] = inst.classValue();
@@ -158,6 +201,25 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         return new DenseInstance(1, output);
     }
 
+    private Kernel[] getKernels() {
+        if (kernels == null) {
+            Kernel[] k = new Kernel[numKernels];
+            int a1 = 0, a2 = 0, b1, b2; // for weights and channel indices
+            for (int i = 0; i < numKernels; i++) {
+                b1 = a1 + numSampledDimensions[i] * lengths[i];
+                b2 = a2 + numSampledDimensions[i];
+
+                k[i] = new Kernel(ArrayUtils.subarray(weights, a1, b1), lengths[i], biases[i], dilations[i],
+                        paddings[i], numSampledDimensions[i], ArrayUtils.subarray(dimensions, a2, b2));
+
+                a1 = b1;
+                a2 = b2;
+            }
+            kernels = k;
+        }
+        return kernels;
+    }
+
     private double[] transformRocket(double[][] inst){
         if (normalise){
             for (double[] dim : inst) {
@@ -168,62 +230,58 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         // apply kernels to the dataset.
         double[] output = new double[numKernels * 2]; // 2 features per kernel
 
-        int a1 = 0, a2 = 0, a3 = 0, b1, b2; // for weights, channel indices and features
+        Kernel[] kernels = getKernels();
         for (int i = 0; i < numKernels; i++) {
-            b1 = a1 + numSampledDimensions[i] * lengths[i];
-            b2 = a2 + numSampledDimensions[i];
+            applyKernel(inst, kernels[i], output, i * 2);
+        }
 
-            Pair<Double, Double> out = applyKernel(inst, ArrayUtils.subarray(weights, a1, b1), lengths[i],
-                    biases[i], dilations[i], paddings[i], numSampledDimensions[i],
-                    ArrayUtils.subarray(dimensions, a2, b2));
-            output[a3] = out.var1;
-            output[a3 + 1] = out.var2;
+        return output;
+    }
 
-            a1 = b1;
-            a2 = b2;
-            a3 += 2;
+    private double[][] transformRocket(double[][][] insts){
+        double[][] output = new double[insts.length][];
+        for (int i = 0; i < insts.length; i++) {
+            output[i] = transformRocket(insts[i]);
         }
-
         return output;
     }
 
-    private double[] transformRocketMultithread(double[][] inst){
+    /**
+     * Transform a batch of instances. The kernels are split into one contiguous block per thread and each thread
+     * applies its block to every instance, writing straight into the shared output.
+     */
+    private double[][] transformRocketMultithread(double[][][] insts){
         if (normalise){
-            for (double[] dim : inst) {
-                zNormalise(dim);
+            for (double[][] inst : insts) {
+                for (double[] dim : inst) {
+                    zNormalise(dim);
+                }
             }
         }
 
-        ArrayList<Future<Pair<Double, Double>>> futures = new ArrayList<>(numKernels);
-
-        int a1 = 0, a2 = 0, b1, b2;
-        for (int i = 0; i < numKernels; ++i) {
-            b1 = a1 + numSampledDimensions[i] * lengths[i];
-            b2 = a2 + numSampledDimensions[i];
-
-            Kernel k = new Kernel(ArrayUtils.subarray(weights, a1, b1), lengths[i], biases[i], dilations[i],
-                    paddings[i], numSampledDimensions[i], ArrayUtils.subarray(dimensions, a2, b2));
+        double[][] output = new double[insts.length][numKernels * 2]; // 2 features per kernel
 
-            futures.add(ex.submit(new TransformThread(i, inst, k)));
-
-            a1 = b1;
-            a2 = b2;
+        Kernel[] kernels = getKernels();
+        int numBlocks = Math.max(1, Math.min(numThreads, numKernels));
+        ArrayList<Future<?>> futures = new ArrayList<>(numBlocks);
+        for (int b = 0; b < numBlocks; b++) {
+            int start = (int) ((long) numKernels * b / numBlocks);
+            int end = (int) ((long) numKernels * (b + 1) / numBlocks);
+            futures.add(ex.submit(() -> {
+                for (int i = start; i < end; i++) {
+                    for (int j = 0; j < insts.length; j++) {
+                        applyKernel(insts[j], kernels[i], output[j], i * 2);
+                    }
+                }
+            }));
         }
 
-        double[] output = new double[numKernels * 2];
-        int a3 = 0;
-        for (Future<Pair<Double, Double>> f : futures) {
-            Pair<Double, Double> out;
+        for (Future<?> f : futures) {
             try {
-                out = f.get();
+                f.get();
             } catch (Exception e) {
-                e.printStackTrace();
-                return null;
+                throw new IllegalStateException(e);
             }
-
-            output[a3] = out.var1;
-            output[a3 + 1] = out.var2;
-            a3 += 2;
         }
 
         return output;
@@ -260,6 +318,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     }
 
     private void fitRocket(int inputLength, int numDimensions){
+        kernels = null;
         Random random = new Random(seed);
         // generate random kernel lengths between 7,9 or 11, for numKernels.
         lengths = sampleLengths(random, candidateLengths, numKernels);
@@ -333,6 +392,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     }
 
     private void fitRocketMultithread(int inputLength, int numDimensions) {
+        kernels = null;
         ArrayList<Future<Kernel>> futures = new ArrayList<>(numKernels);
 
         lengths = new int[numKernels];
@@ -379,28 +439,32 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
             System.arraycopy(tempDimensions[i], 0, dimensions, a2, numSampledDimensions[i]);
             a2 += numSampledDimensions[i];
         }
+
+        fit = true;
     }
 
-    private static Pair<Double, Double> applyKernel(double[][] inst, double[] weights, int length, double bias,
-                                            int dilation, int padding, int numSampledDimensions, int[] dimensions) {
+    /**
+     * Apply a kernel to an instance, writing the PPV and max to output[offset] and output[offset + 1].
+     */
+    private static void applyKernel(double[][] inst, Kernel k, double[] output, int offset) {
         int inputLength = inst[0].length;
-        int outputLength = (inputLength + (2 * padding)) - ((length - 1) * dilation);
+        int outputLength = (inputLength + (2 * k.padding)) - ((k.length - 1) * k.dilation);
 
         double _ppv = 0;
         double _max = Double.MIN_VALUE;
-        int end = (inputLength + padding) - ((length - 1) * dilation);
+        int end = (inputLength + k.padding) - ((k.length - 1) * k.dilation);
 
-        for (int i = -padding; i < end; i++) {
-            double _sum = bias;
+        for (int i = -k.padding; i < end; i++) {
+            double _sum = k.bias;
             int index = i;
 
-            for (int j = 0; j < length; j++) {
+            for (int j = 0; j < k.length; j++) {
                 if (index > -1 && index < inputLength) {
-                    for (int n = 0; n < numSampledDimensions; n++) {
-                        _sum = _sum + weights[j + n * numSampledDimensions] * inst[dimensions[n]][index];
+                    for (int n = 0; n < k.numSampledDimensions; n++) {
+                        _sum = _sum + k.weights[j + n * k.numSampledDimensions] * inst[k.dimensions[n]][index];
                     }
                 }
-                index = index + dilation;
+                index = index + k.dilation;
             }
 
             if (_sum > _max)
@@ -410,7 +474,8 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
                 _ppv += 1;
         }
 
-        return new Pair<>(_ppv / outputLength, _max);
+        output[offset] = _ppv / outputLength;
+        output[offset + 1] = _max;
     }
 
     private static double uniform(Random rand, double a, double b) {
@@ -452,6 +517,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         paddings = ArrayUtils.addAll(paddings, rocket.paddings);
 
         numKernels += rocket.numKernels;
+        kernels = null;
     }
 
     private static class Kernel {
@@ -475,50 +541,6 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         }
     }
 
-    private class TransformThread implements Callable<Pair<Double, Double>> {
-        int i;
-        double[][] inst;
-        Kernel k;
-
-        public TransformThread(int i, double[][] inst, Kernel k){
-            this.i = i;
-            this.inst = inst;
-            this.k = k;
-        }
-
-        @Override
-        public Pair<Double, Double> call() {
-            int inputLength = inst[0].length;
-            int outputLength = (inputLength + (2 * k.padding)) - ((k.length - 1) * k.dilation);
-
-            double _ppv = 0;
-            double _max = Double.MIN_VALUE;
-            int end = (inputLength + k.padding) - ((k.length - 1) * k.dilation);
-
-            for (int i = -k.padding; i < end; i++) {
-                double _sum = k.bias;
-                int index = i;
-
-                for (int j = 0; j < k.length; j++) {
-                    if (index > -1 && index < inputLength) {
-                        for (int n = 0; n < k.numSampledDimensions; n++) {
-                            _sum = _sum + k.weights[j + n * k.numSampledDimensions] * inst[k.dimensions[n]][index];
-                        }
-                    }
-                    index = index + k.dilation;
-                }
-
-                if (_sum > _max)
-                    _max = _sum;
-
-                if (_sum > 0)
-                    _ppv += 1;
-            }
-
-            return new Pair<>(_ppv / outputLength, _max);
-        }
-    }
-
     private class FitThread implements Callable<Kernel>{
         int i;
         int inputLength;
@@ -17,6 +17,7 @@
  
 package tsml.transformers;
 
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
@@ -26,18 +27,26 @@ import tsml.transformers.shapelet_tools.ShapeletCandidate;
 import tsml.transformers.shapelet_tools.ShapeletTransformTimingUtilities;
 import tsml.transformers.shapelet_tools.class_value.NormalClassValue;
 import tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance;
+import tsml.transformers.shapelet_tools.distance_functions.SlidingDistance;
 import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality;
 import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality.ShapeletQualityChoice;
+import tsml.transformers.shapelet_tools.search_functions.RandomSearch;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearch;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearchFactory;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearchOptions;
 import utilities.NumUtils;
 import utilities.class_counts.ClassCounts;
 import utilities.rescalers.SeriesRescaler;
+import utilities.rescalers.ZNormalisation;
 import weka.core.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -69,7 +78,7 @@ import java.util.logging.Logger;
  *
  *         Refactored version for
  */
-public class ShapeletTransform implements Serializable, TechnicalInformationHandler, TrainableTransformer {
+public class ShapeletTransform implements Serializable, TechnicalInformationHandler, TrainableTransformer, MultiThreadable {
     // Global defaults. Max should be a lambda set to series length
     public final static int MAXTRANSFORMSIZE = 1000;
     public final static int DEFAULT_MINSHAPELETLENGTH = 3;
@@ -137,6 +146,15 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
                                    // BalancedClassShapeletTransform
     private double beta = 0.2;
 
+    /**
+     * Multithreading data. Candidates from a series are evaluated in blocks, one per thread, each thread with its
+     * own copy of the distance function and quality measure
+     */
+    private int numThreads = 1;
+    private transient ExecutorService executor;
+    private transient ShapeletDistance[] threadDistances;
+    private transient ShapeletQuality[] threadQualities;
+
     /**
      * Default constructor; Quality measure defaults to information gain.
      */
@@ -201,6 +219,10 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
     }
 
     protected void initQualityBound(ClassCounts classDist) {
+        initQualityBound(quality, classDist);
+    }
+
+    private void initQualityBound(ShapeletQuality quality, ClassCounts classDist) {
         if (!useCandidatePruning)
             return;
         quality.initQualityBound(classDist, candidatePruningStartPercentage);
@@ -262,7 +284,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         // we log the count from the subsequence distance before we reset it in the
         // transform.
         // we only care about the count from the train. What is it counting?
-        count = shapeletDistance.getCount();
+        count = getDistanceCount();
     }
 
     @Override
@@ -319,7 +341,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         // we log the count from the subsequence distance before we reset it in the
         // transform.
         // we only care about the count from the train. What is it counting?
-        count = shapeletDistance.getCount();
+        count = getDistanceCount();
     }
 
     protected void trainShapelets(Instances data) {
@@ -333,6 +355,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         searchFunction.init(inputData);
         // setup shapelet distance function (sDist). Just initialises the count to 0
         shapeletDistance.init(inputData);
+        threadDistances = null;
         // setup classValue
         classValue.init(inputData);
         outputPrint("num shapelets before search " + numShapelets);
@@ -354,6 +377,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         searchFunction.init(inputDataTS);
         // setup shapelet distance function (sDist). Just initialises the count to 0
         shapeletDistance.init(inputDataTS);
+        threadDistances = null;
         // setup classValue
         classValue.init(inputDataTS);
         outputPrint("num shapelets before search " + numShapelets);
@@ -429,25 +453,20 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         // setup classsValue
         classValue.init(inputData);
 
-        Shapelet s;
         // for each data, get distance to each shapelet and create new instance
         int size = shapelets.size();
         int dataSize = data.numInstances();
 
         //1 dimensional 
         double[][][] out = new double[dataSize][1][size];
-
-        double dist;
-        for (int i = 0; i < size; i++) {
-            s = shapelets.get(i);
-            shapeletDistance.setShapelet(s);
-
-            for (int j = 0; j < dataSize; j++) {
-                dist = shapeletDistance.calculate(data.get(j), j);
-                out[j][0][i] = dist;
-            }
+        double[][] distances = new double[dataSize][];
+        for (int j = 0; j < dataSize; j++) {
+            distances[j] = out[j][0];
         }
 
+        transformSeries(distances, (j, dimension) -> data.get(j).get(dimension).toValueArray(),
+                (distance, j) -> distance.calculate(data.get(j), j), distance -> distance.init(inputData));
+
         return new TimeSeriesInstances(out, data.getClassIndexes(), data.getClassLabels());
     }
 
@@ -461,35 +480,134 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         // setup classsValue
         classValue.init(inputData);
 
-        Shapelet s;
         // for each data, get distance to each shapelet and create new instance
         int size = shapelets.size();
         int dataSize = data.numInstances();
 
+        double[][] distances = new double[dataSize][size + 1];
+        transformSeries(distances, (j, dimension) -> data.instance(j).toDoubleArray(),
+                (distance, j) -> distance.calculate(data.instance(j), j), distance -> distance.init(inputData));
+
         // create our data instances
         for (int j = 0; j < dataSize; j++) {
-            output.add(new DenseInstance(size + 1));
+            // we always want to write the true ClassValue here. Irrelevant of binarised or
+            // not.
+            distances[j][size] = data.instance(j).classValue();
+            output.add(new DenseInstance(1.0, distances[j]));
         }
 
-        double dist;
-        for (int i = 0; i < size; i++) {
-            s = shapelets.get(i);
-            shapeletDistance.setShapelet(s);
+        return output;
+    }
+
+    /**
+     * Find the distance from every series to every shapelet, with distances[j][i] the distance from series j to
+     * shapelet i. The series are split into contiguous blocks, one per thread. When the distance is the plain
+     * z-normalised ShapeletDistance the mean and standard deviation of every window of a series are found once per
+     * shapelet length and shared by all the shapelets of that length, rather than once per shapelet.
+     *
+     * @param distances    one row per series, at least as long as the number of shapelets
+     * @param values       the values of series j in the given dimension, as the distance would see them
+     * @param calculate    the distance from series j to the distance's current shapelet
+     * @param initDistance initialises the distance of each thread
+     */
+    private void transformSeries(double[][] distances, SeriesValues values, SeriesDistance calculate,
+            Consumer<ShapeletDistance> initDistance) {
+        int dataSize = distances.length;
+        boolean sharedStatistics = shapeletDistance.getClass() == ShapeletDistance.class
+                && shapeletDistance.seriesRescaler instanceof ZNormalisation;
+        // shapelets sharing a dimension and length are adjacent, so their window statistics are found once
+        Integer[] order = new Integer[shapelets.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingInt(i -> shapelets.get(i).getDimension())
+                .thenComparingInt(i -> shapelets.get(i).getLength()));
+
+        int threads = Math.min(numThreads, Math.max(1, dataSize));
+        List<Callable<Void>> blocks = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            int start = (int) ((long) dataSize * t / threads);
+            int end = (int) ((long) dataSize * (t + 1) / threads);
+            if (sharedStatistics) {
+                blocks.add(() -> {
+                    transformSeries(distances, values, order, start, end);
+                    return null;
+                });
+            } else {
+                ShapeletDistance distance = threads == 1 ? shapeletDistance : newDistance();
+                if (distance != shapeletDistance) {
+                    initDistance.accept(distance);
+                }
+                blocks.add(() -> {
+                    for (int i = 0; i < shapelets.size(); i++) {
+                        distance.setShapelet(shapelets.get(i));
+                        for (int j = start; j < end; j++) {
+                            distances[j][i] = calculate.apply(distance, j);
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
 
-            for (int j = 0; j < dataSize; j++) {
-                dist = shapeletDistance.calculate(data.instance(j), j);
-                output.instance(j).setValue(i, dist);
+        if (threads == 1) {
+            try {
+                blocks.get(0).call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+        ExecutorService executor = getExecutor();
+        List<Future<Void>> futures = new ArrayList<>(threads);
+        for (Callable<Void> block : blocks) {
+            futures.add(executor.submit(block));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
             }
         }
+    }
 
-        // do the classValues.
-        for (int j = 0; j < dataSize; j++) {
-            // we always want to write the true ClassValue here. Irrelevant of binarised or
-            // not.
-            output.instance(j).setValue(size, data.instance(j).classValue());
+    // the shared statistics path of transformSeries for the series from start to end
+    private void transformSeries(double[][] distances, SeriesValues values, Integer[] order, int start, int end) {
+        double[] means = new double[0], stdvs = new double[0];
+        for (int j = start; j < end; j++) {
+            double[] series = null;
+            int dimension = -1, length = -1, numWindows = 0;
+            for (int i : order) {
+                Shapelet shapelet = shapelets.get(i);
+                if (shapelet.getDimension() != dimension) {
+                    dimension = shapelet.getDimension();
+                    series = values.apply(j, dimension);
+                    length = -1;
+                }
+                if (shapelet.getLength() != length) {
+                    length = shapelet.getLength();
+                    // the same windows as ShapeletDistance.calculate
+                    numWindows = Math.max(0, series.length - length);
+                    if (means.length < numWindows) {
+                        means = new double[series.length];
+                        stdvs = new double[series.length];
+                    }
+                    SlidingDistance.statistics(series, length, numWindows, means, stdvs);
+                }
+                double bestSum = SlidingDistance.min(shapelet.getContent().getShapeletContent(), series, numWindows,
+                        means, stdvs);
+                distances[j][i] = (bestSum == 0.0) ? 0.0 : (1.0 / length * bestSum);
+            }
         }
+    }
 
-        return output;
+    private interface SeriesValues {
+        double[] apply(int seriesIndex, int dimension);
+    }
+
+    private interface SeriesDistance {
+        double apply(ShapeletDistance distance, int seriesIndex);
     }
 
     /**
@@ -577,7 +695,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
             // set the class value of the series we're working with.
             classValue.setShapeletValue(data.get(casesSoFar));
             long t1 = System.nanoTime();
-            seriesShapelets = current.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(current, data.get(casesSoFar));
             long t2 = System.nanoTime();
             numShapeletsEvaluated += seriesShapelets.size();
 
@@ -691,7 +809,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
             // set the class value of the series we're working with.
             classValue.setShapeletValue(data.get(casesSoFar));
             long t1 = System.nanoTime();
-            seriesShapelets = current.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(current, data.get(casesSoFar));
             long t2 = System.nanoTime();
             numShapeletsEvaluated += seriesShapelets.size();
 
@@ -808,7 +926,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
             classValue.setShapeletValue(data.get(casesSoFar));
 
             long t1 = System.nanoTime();
-            seriesShapelets = searchFunction.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(searchFunction, data.get(casesSoFar));
             long t2 = System.nanoTime();
             numShapeletsEvaluated += seriesShapelets.size();
 
@@ -896,7 +1014,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
             classValue.setShapeletValue(data.get(casesSoFar));
 
             long t1 = System.nanoTime();
-            seriesShapelets = searchFunction.searchForShapeletsInSeries(data.get(casesSoFar), this::checkCandidate);
+            seriesShapelets = searchForShapeletsInSeries(searchFunction, data.get(casesSoFar));
             long t2 = System.nanoTime();
             numShapeletsEvaluated += seriesShapelets.size();
 
@@ -1004,6 +1122,146 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         return findBestKShapelets(newData);
     }
 
+    /**
+     * Search a series for shapelets. If multithreading, the search only records the candidates and they are then
+     * evaluated in parallel. This is only done for searches which do not depend on the result of earlier candidates
+     * (full and random search), others are searched one candidate at a time.
+     *
+     * @param search the search to pick the candidates with
+     * @param series the series to search
+     * @return the shapelets which were not abandoned, in the order the search visited them
+     */
+    protected ArrayList<Shapelet> searchForShapeletsInSeries(ShapeletSearch search, Instance series) {
+        if (!isParallelSearch(search)) {
+            return search.searchForShapeletsInSeries(series, this::checkCandidate);
+        }
+        ArrayList<Candidate<Instance>> candidates = new ArrayList<>();
+        search.searchForShapeletsInSeries(series, (candidate, start, length, dimension) -> {
+            candidates.add(new Candidate<>(candidate, start, length, dimension));
+            return null;
+        });
+        return evaluateCandidates(candidates, (candidate, distance, quality) -> checkCandidate(candidate.series,
+                candidate.start, candidate.length, candidate.dimension, distance, quality),
+                distance -> distance.init(inputData));
+    }
+
+    protected ArrayList<Shapelet> searchForShapeletsInSeries(ShapeletSearch search, TimeSeriesInstance series) {
+        if (!isParallelSearch(search)) {
+            return search.searchForShapeletsInSeries(series, this::checkCandidate);
+        }
+        ArrayList<Candidate<TimeSeriesInstance>> candidates = new ArrayList<>();
+        search.searchForShapeletsInSeries(series, (candidate, start, length, dimension) -> {
+            candidates.add(new Candidate<>(candidate, start, length, dimension));
+            return null;
+        });
+        return evaluateCandidates(candidates, (candidate, distance, quality) -> checkCandidate(candidate.series,
+                candidate.start, candidate.length, candidate.dimension, distance, quality),
+                distance -> distance.init(inputDataTS));
+    }
+
+    private boolean isParallelSearch(ShapeletSearch search) {
+        return numThreads > 1 && (search.getClass() == ShapeletSearch.class || search.getClass() == RandomSearch.class);
+    }
+
+    /**
+     * Evaluate the candidates of the current series in contiguous blocks, one per thread. Every thread prunes
+     * against the same worst shapelet as a serial search would, so the shapelets found are the same as if the
+     * candidates were evaluated one by one.
+     */
+    private <A> ArrayList<Shapelet> evaluateCandidates(List<Candidate<A>> candidates, CandidateCheck<A> check,
+            Consumer<ShapeletDistance> initDistance) {
+        if (threadDistances == null) {
+            threadDistances = new ShapeletDistance[numThreads];
+            threadQualities = new ShapeletQuality[numThreads];
+            for (int i = 0; i < numThreads; i++) {
+                threadDistances[i] = newDistance();
+                initDistance.accept(threadDistances[i]);
+                threadQualities[i] = new ShapeletQuality(quality.getChoice());
+            }
+        }
+        ExecutorService executor = getExecutor();
+
+        List<Future<ArrayList<Shapelet>>> futures = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            ShapeletDistance distance = threadDistances[i];
+            ShapeletQuality quality = threadQualities[i];
+            distance.setSeries(casesSoFar);
+            int start = (int) ((long) candidates.size() * i / numThreads);
+            int end = (int) ((long) candidates.size() * (i + 1) / numThreads);
+            futures.add(executor.submit(() -> {
+                ArrayList<Shapelet> shapelets = new ArrayList<>(end - start);
+                for (int j = start; j < end; j++) {
+                    Shapelet shapelet = check.apply(candidates.get(j), distance, quality);
+                    if (shapelet != null) {
+                        shapelets.add(shapelet);
+                    }
+                }
+                return shapelets;
+            }));
+        }
+
+        ArrayList<Shapelet> seriesShapelets = new ArrayList<>();
+        for (Future<ArrayList<Shapelet>> future : futures) {
+            try {
+                seriesShapelets.addAll(future.get());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        numEarlyAbandons += candidates.size() - seriesShapelets.size();
+        return seriesShapelets;
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            // daemon threads so an unused transform never holds the jvm open
+            executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    // a fresh distance of the same type, so each thread has its own shapelet and count
+    private ShapeletDistance newDistance() {
+        ShapeletDistance distance;
+        try {
+            distance = shapeletDistance.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+        distance.seriesRescaler = shapeletDistance.seriesRescaler;
+        return distance;
+    }
+
+    private long getDistanceCount() {
+        long count = shapeletDistance.getCount();
+        if (threadDistances != null) {
+            for (ShapeletDistance distance : threadDistances) {
+                count += distance.getCount();
+            }
+        }
+        return count;
+    }
+
+    private interface CandidateCheck<A> {
+        Shapelet apply(Candidate<A> candidate, ShapeletDistance distance, ShapeletQuality quality);
+    }
+
+    private static class Candidate<A> {
+        private final A series;
+        private final int start, length, dimension;
+
+        private Candidate(A series, int start, int length, int dimension) {
+            this.series = series;
+            this.start = start;
+            this.length = length;
+            this.dimension = dimension;
+        }
+    }
+
     /**
      * Private method to combine two ArrayList collections of FullShapeletTransform
      * objects.
@@ -1151,8 +1409,17 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
     }
 
     protected Shapelet checkCandidate(TimeSeriesInstance series, int start, int length, int dimension) {
+        Shapelet shapelet = checkCandidate(series, start, length, dimension, shapeletDistance, quality);
+        if (shapelet == null) {
+            numEarlyAbandons++;
+        }
+        return shapelet;
+    }
+
+    private Shapelet checkCandidate(TimeSeriesInstance series, int start, int length, int dimension,
+            ShapeletDistance shapeletDistance, ShapeletQuality quality) {
         // init qualityBound.
-        initQualityBound(classValue.getClassDistributions());
+        initQualityBound(quality, classValue.getClassDistributions());
 
         // Set bound of the bounding algorithm
         if (worstShapelet != null) {
@@ -1166,13 +1433,12 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         // distance from candidate to all data, inserting in order.
         ArrayList<OrderLineObj> orderline = new ArrayList<>();
 
-        int dataSize = inputData.numInstances();
+        int dataSize = inputDataTS.numInstances();
 
         for (int i = 0; i < dataSize; i++) {
 
             // Check if it is possible to prune the candidate
             if (quality.pruneCandidate()) {
-                numEarlyAbandons++;
                 return null;
             }
 
@@ -1205,8 +1471,17 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
     }
 
     protected Shapelet checkCandidate(Instance series, int start, int length, int dimension) {
+        Shapelet shapelet = checkCandidate(series, start, length, dimension, shapeletDistance, quality);
+        if (shapelet == null) {
+            numEarlyAbandons++;
+        }
+        return shapelet;
+    }
+
+    private Shapelet checkCandidate(Instance series, int start, int length, int dimension,
+            ShapeletDistance shapeletDistance, ShapeletQuality quality) {
         // init qualityBound.
-        initQualityBound(classValue.getClassDistributions());
+        initQualityBound(quality, classValue.getClassDistributions());
 
         // Set bound of the bounding algorithm
         if (worstShapelet != null) {
@@ -1226,7 +1501,6 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
 
             // Check if it is possible to prune the candidate
             if (quality.pruneCandidate()) {
-                numEarlyAbandons++;
                 return null;
             }
 
@@ -1874,6 +2148,16 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         adaptiveTiming = b;
     }
 
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        threadDistances = null;
+        this.numThreads = Math.max(1, numThreads);
+    }
+
     public void setTimePerShapelet(double t) {
         timePerShapelet = t;
     }
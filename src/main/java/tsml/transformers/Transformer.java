@@ -18,6 +18,8 @@
 package tsml.transformers;
 
 import java.io.Serializable;
+import java.util.Iterator;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.NotImplementedException;
 
@@ -130,6 +132,33 @@ public interface Transformer extends TSCapabilitiesHandler, ParamHandler, Serial
     }
 
 
+    /**
+     * Lazily transform a stream of instances, e.g. from TSReader.stream, so a dataset can be transformed without
+     * holding all of it in memory. Only meaningful once the transformer has been fit, if it needs fitting.
+     * @param data
+     * @return Stream<TimeSeriesInstance> of transformed instances
+     */
+    default Stream<TimeSeriesInstance> transform(Stream<TimeSeriesInstance> data){
+        return data.map(inst -> transform(inst));
+    }
+
+    /**
+     * Lazily transform batches of instances, e.g. from TSReader.batches, one batch at a time.
+     * @param data
+     * @return Iterator<TimeSeriesInstances> of transformed batches
+     */
+    default Iterator<TimeSeriesInstances> transform(Iterator<TimeSeriesInstances> data){
+        return new Iterator<TimeSeriesInstances>() {
+            @Override public boolean hasNext() {
+                return data.hasNext();
+            }
+
+            @Override public TimeSeriesInstances next() {
+                return transform(data.next());
+            }
+        };
+    }
+
     default Instances transformConverter(TimeSeriesInstances data){
         return Converter.toArff(transform(data));
     }
@@ -29,59 +29,60 @@ public class ImprovedOnlineShapeletDistance extends OnlineShapeletDistance {
     @Override
     public double calculate(double[] timeSeries, int timeSeriesId)
     {    
-        DoubleWrapper sumPointer = new DoubleWrapper();
-        DoubleWrapper sum2Pointer = new DoubleWrapper();
-
-        //Generate initial subsequence that starts at the same position our candidate does.
-        double[] subseq = new double[length];
-        System.arraycopy(timeSeries, startPos, subseq, 0, subseq.length);
-        subseq = zNormalise(subseq, false, sumPointer, sum2Pointer);
-        
-        double bestDist = 0.0;
-        double temp;
-        
-        //Compute initial distance. from the startPosition the candidate was found.
-        for (int i = 0; i < length; i++)
+        //Running sums of the subsequence that starts at the same position our candidate does, normalised on the fly
+        //rather than copied.
+        double initialSum = 0.0;
+        double initialSum2 = 0.0;
+        for (int i = startPos; i < startPos + length; i++)
         {
-            temp = cand.getShapeletContent()[i] - subseq[i];
-            bestDist = bestDist + (temp * temp);
-            incrementCount();
+            initialSum += timeSeries[i];
+            initialSum2 += timeSeries[i] * timeSeries[i];
         }
+
+        //Compute initial distance. from the startPosition the candidate was found.
+        double bestDist = calculateBestDistance(startPos, timeSeries, Double.MAX_VALUE, initialSum, initialSum2);
        
         
         int i=1;
         double currentDist;
         
-        int[] pos = new int[2];
-        double[] sum = {sumPointer.get(), sumPointer.get()};
-        double[] sumsq = {sum2Pointer.get(), sum2Pointer.get()};
-        boolean[] traverse = {true,true};
+        //running sums going left and right of the start position
+        double sumLeft = initialSum, sumRight = initialSum;
+        double sumsqLeft = initialSum2, sumsqRight = initialSum2;
+        boolean traverseLeft = true, traverseRight = true;
         
 
-        while(traverse[0] || traverse[1])
+        while(traverseLeft || traverseRight)
         {
-            //i will be 0 and 1.
-            for(int j=0; j<2; j++)
+            //going left check we're greater than 0.
+            int pos = startPos - i;
+            traverseLeft = pos >= 0;
+            if(traverseLeft)
             {
-                int modifier = j==0 ? -1 : 1;
-                
-                pos[j] = startPos + (modifier*i); 
-                
-                //if we're going left check we're greater than 0 if we're going right check we've got room to move.
-                traverse[j] = j==0 ? pos[j] >= 0 : pos[j] < timeSeries.length - length;
+                double start = timeSeries[pos];
+                double end   = timeSeries[pos + length];
+                sumLeft = sumLeft - end + start;
+                sumsqLeft = sumsqLeft - (end * end) + (start * start);
 
-                //if we can't traverse in that direction. skip it.
-                if(!traverse[j] )
-                    continue;
-                
-                //either take off nothing, or take off 1. This gives us our offset.
-                double start = timeSeries[pos[j]-j];
-                double end   = timeSeries[pos[j]-j + length];
-                                
-                sum[j] = sum[j] + (modifier*end) - (modifier*start);
-                sumsq[j] = sumsq[j] + (modifier *(end * end)) - (modifier*(start * start));
+                currentDist = calculateBestDistance(pos, timeSeries, bestDist, sumLeft, sumsqLeft);
+                if (currentDist < bestDist)
+                {
+                    bestDist = currentDist;
+                }
+            }
+
+            //going right check we've got room to move.
+            pos = startPos + i;
+            traverseRight = pos < timeSeries.length - length;
+            if(traverseRight)
+            {
+                //take off 1. This gives us our offset.
+                double start = timeSeries[pos - 1];
+                double end   = timeSeries[pos - 1 + length];
+                sumRight = sumRight + end - start;
+                sumsqRight = sumsqRight + (end * end) - (start * start);
 
-                currentDist = calculateBestDistance(pos[j], timeSeries, bestDist, sum[j], sumsq[j]);  
+                currentDist = calculateBestDistance(pos, timeSeries, bestDist, sumRight, sumsqRight);  
 
                 if (currentDist < bestDist)
                 {
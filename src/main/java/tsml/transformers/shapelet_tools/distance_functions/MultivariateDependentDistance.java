@@ -18,9 +18,11 @@
 package tsml.transformers.shapelet_tools.distance_functions;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.transformers.shapelet_tools.Shapelet;
+import utilities.rescalers.ZNormalisation;
 
 import static utilities.multivariate_tools.MultivariateInstanceTools.convertMultiInstanceToArrays;
 import static utilities.multivariate_tools.MultivariateInstanceTools.splitMultivariateInstance;
@@ -31,6 +33,9 @@ import weka.core.Instance;
  * @author raj09hxu
  */
 public class MultivariateDependentDistance extends MultivariateDistance implements Serializable{
+
+    // distance to each window summed over the channels, reused between calls
+    protected transient double[] windowDistances;
     
     @Override
     public double calculate(Instance inst, int timeSeriesId){
@@ -63,6 +68,26 @@ public class MultivariateDependentDistance extends MultivariateDistance implemen
     //we take in a start pos, but we also start from 0.
     public double calculate(double[][] timeSeries, int timeSeriesId) 
     {
+        if (seriesRescaler instanceof ZNormalisation) {
+            // z-normalise the windows on the fly rather than copying each one
+            int numWindows = Math.max(0, seriesLength - length + 1);
+            if (windowDistances == null || windowDistances.length < numWindows) {
+                windowDistances = new double[numWindows];
+            }
+            Arrays.fill(windowDistances, 0, numWindows, 0);
+            for (int j = 0; j < numChannels; j++) {
+                SlidingDistance.add(cand.getShapeletContent(j), timeSeries[j], numWindows, windowDistances);
+            }
+            count += (long) numWindows * numChannels * length;
+            double bestSum = Double.MAX_VALUE;
+            for (int i = 0; i < numWindows; i++) {
+                if (windowDistances[i] < bestSum) {
+                    bestSum = windowDistances[i];
+                }
+            }
+            return (bestSum == 0.0) ? 0.0 : (1.0 / length * bestSum);
+        }
+
         double bestSum = Double.MAX_VALUE;
         double sum;
         double[] subseq;
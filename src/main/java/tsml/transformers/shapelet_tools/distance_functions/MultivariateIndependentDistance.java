@@ -21,6 +21,7 @@ import java.io.Serializable;
 
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.transformers.shapelet_tools.Shapelet;
+import utilities.rescalers.ZNormalisation;
 import weka.core.Instance;
 
 /**
@@ -73,6 +74,14 @@ public class MultivariateIndependentDistance extends MultivariateDistance implem
     //we take in a start pos, but we also start from 0.
     public double calculate(double[] shape, double[] timeSeries) 
     {
+        if (seriesRescaler instanceof ZNormalisation) {
+            // z-normalise the windows on the fly rather than copying each one
+            int numWindows = Math.max(0, timeSeries.length - length + 1);
+            count += (long) numWindows * length;
+            double bestSum = SlidingDistance.min(shape, timeSeries, numWindows);
+            return (bestSum == 0.0) ? 0.0 : (1.0 / length * bestSum);
+        }
+
         double bestSum = Double.MAX_VALUE;
         double sum;
         double[] subseq;
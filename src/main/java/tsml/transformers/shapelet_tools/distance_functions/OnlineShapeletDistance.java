@@ -46,28 +46,17 @@ public class OnlineShapeletDistance extends ShapeletDistance {
     //we take in a start pos, but we also start from 0.
     @Override
     public double calculate(double[] timeSeries, int timeSeriesId) {
-        DoubleWrapper sumPointer = new DoubleWrapper();
-        DoubleWrapper sumsqPointer = new DoubleWrapper();
-
-        //Generate initial subsequence 
-        double[] subseq = new double[length];
-        System.arraycopy(timeSeries, 0, subseq, 0, subseq.length);
-        subseq = zNormalise(subseq, false, sumPointer, sumsqPointer);
-        //Keep count of fundamental ops for experiment
-
-        double sum = sumPointer.get();
-        double sumsq = sumsqPointer.get();
-
-        double bestDist = 0.0;
+        //Running sums of the initial subsequence, normalised on the fly rather than copied
+        double sum = 0.0;
+        double sumsq = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += timeSeries[i];
+            sumsq += timeSeries[i] * timeSeries[i];
+        }
 
-        double temp;
-        
         int bestPos =0;
         //Compute initial distance
-        for (int i = 0; i < length; i++) {
-            temp = cand.getShapeletContent()[i] - subseq[i];
-            bestDist = bestDist + (temp * temp);
-        }
+        double bestDist = calculateBestDistance(0, timeSeries, Double.MAX_VALUE, sum, sumsq);
 
         double currentDist, start, end;
         // Scan through all possible subsequences of two
@@ -164,6 +164,14 @@ public class ShapeletDistance implements Serializable{
     //we take in a start pos, but we also start from 0.
     public double calculate(double[] timeSeries, int timeSeriesId) 
     {
+        if (seriesRescaler instanceof ZNormalisation) {
+            // z-normalise the windows on the fly rather than copying each one
+            int numWindows = Math.max(0, timeSeries.length - length);
+            count += (long) numWindows * length;
+            double bestSum = SlidingDistance.min(cand.getShapeletContent(), timeSeries, numWindows);
+            return (bestSum == 0.0) ? 0.0 : (1.0 / length * bestSum);
+        }
+
         double bestSum = Double.MAX_VALUE;
         double sum;
         double[] subseq;
@@ -0,0 +1,168 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or 
+ * modify it under the terms of the GNU General Public License as published 
+ * by the Free Software Foundation, either version 3 of the License, or 
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+ 
+package tsml.transformers.shapelet_tools.distance_functions;
+
+import static utilities.rescalers.ZNormalisation.ROUNDING_ERROR_CORRECTION;
+
+/**
+ * Squared Euclidean distances between a z-normalised candidate and every z-normalised window of a series. Rather
+ * than copying and normalising each window, the mean of the window is kept as a running sum and the variance and
+ * dot product with the candidate are found in a single pass over the raw window:
+ *
+ * sum((c - (x - mean) / stdv)^2) = sum(c^2) - 2 * sum(c * (x - mean)) / stdv + length
+ *
+ * so nothing is allocated. The variance is taken about the window mean, as in ZNormalisation, so near constant
+ * windows normalise the same way. Windows with zero variance normalise to all zeros.
+ */
+public final class SlidingDistance {
+
+    private SlidingDistance() {}
+
+    /**
+     * @param candidate  the z-normalised candidate
+     * @param series     the series to slide the candidate along
+     * @param numWindows the number of windows to check, starting from the beginning of the series
+     * @return the smallest squared distance between the candidate and a window, or Double.MAX_VALUE if there are
+     * no windows
+     */
+    public static double min(double[] candidate, double[] series, int numWindows) {
+        final int length = candidate.length;
+        final double candidateSumSq = sumSq(candidate);
+        double sum = initialSum(series, length);
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < numWindows; i++) {
+            sum += series[i + length - 1];
+            final double distance = distance(candidate, candidateSumSq, series, i, sum / length);
+            if (distance < best) {
+                best = distance;
+            }
+            sum -= series[i];
+        }
+        return best;
+    }
+
+    /**
+     * Add the squared distance between the candidate and each window to the distances, e.g. to sum the distance
+     * over the channels of a multivariate series.
+     *
+     * @param candidate  the z-normalised candidate
+     * @param series     the series to slide the candidate along
+     * @param numWindows the number of windows to check, starting from the beginning of the series
+     * @param distances  at least numWindows long, distances[i] is increased by the distance to the window at i
+     */
+    public static void add(double[] candidate, double[] series, int numWindows, double[] distances) {
+        final int length = candidate.length;
+        final double candidateSumSq = sumSq(candidate);
+        double sum = initialSum(series, length);
+        for (int i = 0; i < numWindows; i++) {
+            sum += series[i + length - 1];
+            distances[i] += distance(candidate, candidateSumSq, series, i, sum / length);
+            sum -= series[i];
+        }
+    }
+
+    /**
+     * Find the mean and standard deviation of each window once, to be shared by every candidate of the same length
+     * via min(candidate, series, numWindows, means, stdvs). A window with zero variance is given a standard deviation
+     * of zero.
+     *
+     * @param series     the series to slide along
+     * @param length     the window length
+     * @param numWindows the number of windows, starting from the beginning of the series
+     * @param means      at least numWindows long, filled with the window means
+     * @param stdvs      at least numWindows long, filled with the window standard deviations
+     */
+    public static void statistics(double[] series, int length, int numWindows, double[] means, double[] stdvs) {
+        double sum = initialSum(series, length);
+        for (int i = 0; i < numWindows; i++) {
+            sum += series[i + length - 1];
+            final double mean = sum / length;
+            double sumSq = 0;
+            for (int j = 0; j < length; j++) {
+                final double deviation = series[i + j] - mean;
+                sumSq += deviation * deviation;
+            }
+            final double variance = sumSq / length;
+            means[i] = mean;
+            stdvs[i] = variance < ROUNDING_ERROR_CORRECTION ? 0 : Math.sqrt(variance);
+            sum -= series[i];
+        }
+    }
+
+    /**
+     * As min(candidate, series, numWindows) but with the window statistics already found by statistics(...). The
+     * distances are exactly the same.
+     */
+    public static double min(double[] candidate, double[] series, int numWindows, double[] means, double[] stdvs) {
+        final int length = candidate.length;
+        final double candidateSumSq = sumSq(candidate);
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < numWindows; i++) {
+            final double distance;
+            if (stdvs[i] == 0) {
+                distance = candidateSumSq;
+            } else {
+                final double mean = means[i];
+                double dot = 0;
+                for (int j = 0; j < length; j++) {
+                    dot += candidate[j] * (series[i + j] - mean);
+                }
+                distance = Math.max(candidateSumSq - 2 * dot / stdvs[i] + length, 0);
+            }
+            if (distance < best) {
+                best = distance;
+            }
+        }
+        return best;
+    }
+
+    private static double sumSq(double[] candidate) {
+        double sumSq = 0;
+        for (double value : candidate) {
+            sumSq += value * value;
+        }
+        return sumSq;
+    }
+
+    // sum of the first window, less its last value
+    private static double initialSum(double[] series, int length) {
+        double sum = 0;
+        for (int j = 0; j < length - 1 && j < series.length; j++) {
+            sum += series[j];
+        }
+        return sum;
+    }
+
+    private static double distance(double[] candidate, double candidateSumSq, double[] series, int start,
+                                   double mean) {
+        final int length = candidate.length;
+        double sumSq = 0, dot = 0;
+        for (int j = 0; j < length; j++) {
+            final double deviation = series[start + j] - mean;
+            sumSq += deviation * deviation;
+            dot += candidate[j] * deviation;
+        }
+        final double variance = sumSq / length;
+        if (variance < ROUNDING_ERROR_CORRECTION) {
+            return candidateSumSq;
+        }
+        final double distance = candidateSumSq - 2 * dot / Math.sqrt(variance) + length;
+        // rounding can take an exact match slightly below zero
+        return Math.max(distance, 0);
+    }
+}